@@ -115,4 +115,28 @@ public interface BatchLogger extends BasicLogger {
     @LogMessage(level = Logger.Level.TRACE)
     void notImplementedOnLocalTx(String methodName);
 
-}
\ No newline at end of file
+    @Message(id = 23, value = "Adjusting checkpoint item count of step %s from %s to %s")
+    @LogMessage(level = Logger.Level.DEBUG)
+    void adaptiveItemCount(String stepName, int oldItemCount, int newItemCount);
+
+    @Message(id = 24, value = "Failed to write checkpoint updates to job repository, and will retry with the next update.")
+    @LogMessage(level = Logger.Level.WARN)
+    void failToWriteCheckpoints(@Cause Throwable cause);
+
+    @Message(id = 25, value = "Ignored the rest of job repository file %s from position %s: incomplete or corrupt record.")
+    @LogMessage(level = Logger.Level.WARN)
+    void invalidFileRepositoryRecord(String path, int position);
+
+    @Message(id = 26, value = "Failed to delete job repository file %s")
+    @LogMessage(level = Logger.Level.WARN)
+    void failToDeleteFile(String path);
+
+    @Message(id = 27, value = "Failed to sync or compact the file job repository in the background.")
+    @LogMessage(level = Logger.Level.WARN)
+    void failToMaintainFileRepository(@Cause Throwable cause);
+
+    @Message(id = 28, value = "Step property %s is ignored in step %s while chunks are pipelined with %s, and only applies after the pipeline is rolled back.")
+    @LogMessage(level = Logger.Level.WARN)
+    void ignoreProcessorThreadsInPipeline(String processorThreadsKey, String stepName, String pipelinedKey);
+
+}
@@ -149,5 +149,13 @@ public interface BatchMessages {
     @Message(id = 640, value = "A BatchEnvironment implementation could not be found. Please ensure the SPI has been implemented and is on the class path")
     BatchRuntimeException batchEnvironmentNotFound();
 
+    @Message(id = 641, value = "Failed to serialize %s")
+    BatchRuntimeException failToSerialize(@Cause Throwable cause, Object obj);
+
+    @Message(id = 642, value = "Cannot restart step %s partitioned by range: no partition of step execution %s has a range checkpoint")
+    IllegalStateException noRangePartitionCheckpoint(String stepId, long stepExecutionId);
+
+    @Message(id = 643, value = "Failed to access job repository file %s")
+    BatchRuntimeException failToAccessFileRepository(@Cause Throwable cause, String path);
 
 }
@@ -156,21 +156,8 @@ public class JobOperatorImpl implements JobOperator {
 
     @Override
     public List<JobInstance> getJobInstances(final String jobName, final int start, final int count) throws NoSuchJobException, JobSecurityException {
-        final List<JobInstance> result = new ArrayList<JobInstance>();
-        int pos = 0;
-        final List<JobInstance> instances = repository.getJobInstances(jobName);
-        for (int i = instances.size() - 1; i >= 0; i--) {
-            final JobInstance e = instances.get(i);
-            if (pos >= start) {
-                if (result.size() < count) {
-                    result.add(e);
-                } else {
-                    break;
-                }
-            }
-            pos++;
-        }
-        if (pos == 0) {
+        final List<JobInstance> result = repository.getJobInstances(jobName, start, count);
+        if (result.isEmpty() && repository.getJobInstanceCount(jobName) == 0) {
             throw MESSAGES.noSuchJobException(jobName);
         }
         return result;
@@ -178,18 +165,8 @@ public class JobOperatorImpl implements JobOperator {
 
     @Override
     public List<Long> getRunningExecutions(final String jobName) throws NoSuchJobException, JobSecurityException {
-        final List<Long> result = new ArrayList<Long>();
-        boolean jobExists = false;
-        for (final JobExecution e : repository.getJobExecutions(null)) {
-            if (e.getJobName().equals(jobName)) {
-                jobExists = true;
-                final BatchStatus s = e.getBatchStatus();
-                if (s == BatchStatus.STARTING || s == BatchStatus.STARTED) {
-                    result.add(e.getExecutionId());
-                }
-            }
-        }
-        if (!jobExists) {
+        final List<Long> result = repository.getRunningExecutions(jobName);
+        if (result.isEmpty() && repository.getJobInstanceCount(jobName) == 0) {
             throw MESSAGES.noSuchJobException(jobName);
         }
         return result;
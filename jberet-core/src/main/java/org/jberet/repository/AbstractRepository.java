@@ -13,17 +13,28 @@
 package org.jberet.repository;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.batch.runtime.BatchStatus;
 import javax.batch.runtime.JobExecution;
 import javax.batch.runtime.JobInstance;
@@ -37,14 +48,100 @@ import org.jberet.runtime.JobExecutionImpl;
 import org.jberet.runtime.JobInstanceImpl;
 import org.jberet.runtime.PartitionExecutionImpl;
 import org.jberet.runtime.StepExecutionImpl;
+import org.jberet.spi.CheckpointSerializer;
 import org.jberet.util.BatchUtil;
 import org.wildfly.security.manager.WildFlySecurityManager;
 
 public abstract class AbstractRepository implements JobRepository {
+    //key used in jberet.properties
+    public static final String CHECKPOINT_SERIALIZER_KEY = "checkpoint-serializer";
+    public static final String EXECUTION_CACHE_SIZE_KEY = "execution-cache-size";
+    public static final String EXECUTION_CACHE_MAX_AGE_KEY = "execution-cache-max-age";
+    public static final String THREAD_FACTORY_KEY = "thread-factory";
+
+    private static final int DEFAULT_EXECUTION_CACHE_SIZE = 1000;
+
+    /**
+     * Types whose instances cannot be modified, and therefore need not be cloned when saving persistent data and
+     * checkpoint info.
+     */
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            String.class, Integer.class, Long.class, Short.class, Byte.class, Character.class, Boolean.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class));
+
     final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<String, Job>();
-    final Map<Long, JobInstance> jobInstances = Collections.synchronizedMap(new LinkedHashMap<Long, JobInstance>());
+    final ConcurrentMap<Long, JobInstance> jobInstances = new ConcurrentHashMap<Long, JobInstance>();
     final ConcurrentMap<Long, JobExecution> jobExecutions = new ConcurrentHashMap<Long, JobExecution>();
 
+    /**
+     * Cached job instances of each job name, in the order of their ids.  Maintained together with {@link #jobInstances}
+     * by {@link #cacheJobInstance(JobInstance)}.
+     */
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Long, JobInstance>> jobInstancesByName =
+            new ConcurrentHashMap<String, ConcurrentNavigableMap<Long, JobInstance>>();
+
+    /**
+     * Cached job executions of each job instance id, in the order of their ids.  Maintained together with
+     * {@link #jobExecutions} by {@link #cacheJobExecution(JobExecution)}.
+     */
+    private final ConcurrentMap<Long, ConcurrentNavigableMap<Long, JobExecution>> jobExecutionsByInstance =
+            new ConcurrentHashMap<Long, ConcurrentNavigableMap<Long, JobExecution>>();
+
+    /**
+     * Job executions created by this repository that may still be running, keyed by job execution id.  A job execution
+     * is removed when it is updated with a status other than {@code STARTING} or {@code STARTED}, or else when it is
+     * found no longer running by {@link #getRunningExecutions(String)}.
+     */
+    private final ConcurrentMap<Long, JobExecution> runningExecutions = new ConcurrentHashMap<Long, JobExecution>();
+
+    /**
+     * The most recently added step execution of each step name, for each job instance id, among step executions added
+     * with {@link #addStepExecution(JobExecutionImpl, StepExecutionImpl)}.  Executions of the same job instance never
+     * run concurrently, so the most recently added one is the latest, even if step execution ids are not allocated in
+     * order.
+     */
+    private final ConcurrentMap<Long, ConcurrentMap<String, StepExecutionImpl>> latestStepExecutions =
+            new ConcurrentHashMap<Long, ConcurrentMap<String, StepExecutionImpl>>();
+
+    /**
+     * The max number of cached job instances and job executions, or 0 if the cache is not bounded by size.  Only persistent repositories
+     * bound their cache, with {@link #configureExecutionCache(Properties)}, since cache entries evicted from them can
+     * be loaded again.
+     */
+    private int executionCacheSize;
+
+    /**
+     * The max time in milliseconds a job instance and its job executions stay cached since last accessed, or 0 if the
+     * cache is not bounded by age.
+     */
+    private long executionCacheMaxAge;
+
+    /**
+     * The time in milliseconds each cached job instance was last accessed, keyed by job instance id, if the cache is
+     * bounded.  Job instances are evicted together with their job executions, least recently accessed first.
+     */
+    private final ConcurrentMap<Long, Long> lastAccessTimes = new ConcurrentHashMap<Long, Long>();
+
+    /**
+     * The time in milliseconds after which the next eviction of aged cache entries is due.
+     */
+    private volatile long nextAgeEviction;
+
+    /**
+     * Whether an eviction is in progress, to let only one thread evict at a time.
+     */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Locks striped by job instance id, so that a job instance is not evicted while a job execution is being added to
+     * it.
+     */
+    private final Object[] instanceLocks = newLocks(32);
+
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong cacheMissCount = new AtomicLong();
+    private final AtomicLong cacheEvictionCount = new AtomicLong();
+
     abstract void insertJobInstance(JobInstanceImpl jobInstance);
     abstract void insertJobExecution(JobExecutionImpl jobExecution);
     abstract void insertStepExecution(StepExecutionImpl stepExecution, JobExecutionImpl jobExecution);
@@ -60,18 +157,11 @@ public abstract class AbstractRepository implements JobRepository {
     @Override
     public void removeJob(final String jobId) {
         jobs.remove(jobId);
-        synchronized (jobInstances) {
-            for (Iterator<Map.Entry<Long, JobInstance>> it = jobInstances.entrySet().iterator(); it.hasNext();) {
-                final JobInstance ji = it.next().getValue();
-                if (ji.getJobName().equals(jobId)) {
-                    it.remove();
-                }
-            }
-        }
-        for (Iterator<Map.Entry<Long, JobExecution>> it = jobExecutions.entrySet().iterator(); it.hasNext();) {
-            final JobExecution je = it.next().getValue();
-            if (je.getJobName().equals(jobId)) {
-                it.remove();
+        final ConcurrentMap<Long, JobInstance> instancesOfJob = jobInstancesByName.remove(jobId);
+        if (instancesOfJob != null) {
+            for (final Long jobInstanceId : instancesOfJob.keySet()) {
+                jobInstances.remove(jobInstanceId);
+                uncacheJobExecutions(jobInstanceId);
             }
         }
     }
@@ -91,8 +181,8 @@ public abstract class AbstractRepository implements JobRepository {
         final ApplicationAndJobName appJobNames = new ApplicationAndJobName(applicationName, job.getId());
         final JobInstanceImpl jobInstance = new JobInstanceImpl(job, appJobNames);
         insertJobInstance(jobInstance);
-        final JobInstance jobInstanceExisting = jobInstances.put(jobInstance.getInstanceId(), jobInstance);
-        if (jobInstanceExisting != null) {
+        final JobInstance jobInstanceExisting = cacheJobInstance(jobInstance);
+        if (jobInstanceExisting != jobInstance) {
             throw BatchMessages.MESSAGES.jobInstanceAlreadyExists(jobInstance.getInstanceId());
         }
         return jobInstance;
@@ -100,31 +190,49 @@ public abstract class AbstractRepository implements JobRepository {
 
     @Override
     public void removeJobInstance(final long jobInstanceIdToRemove) {
-        JobInstance jobInstance = jobInstances.get(jobInstanceIdToRemove);
+        final JobInstance jobInstance = jobInstances.remove(jobInstanceIdToRemove);
         if (null != jobInstance) {
-                List<JobExecution> jobExecutionsList = ((JobInstanceImpl) jobInstance).getJobExecutions();
-                for (JobExecution jobExecution : jobExecutionsList) {
-                    jobExecutions.remove(jobExecution.getExecutionId());
-                }
-                String jobName = jobInstance.getJobName();
-                if (getJobInstanceCount(jobName) == 0) {
-                    jobs.remove(jobName);
-                }
+            for (final JobExecution jobExecution : ((JobInstanceImpl) jobInstance).getJobExecutions()) {
+                jobExecutions.remove(jobExecution.getExecutionId());
+                runningExecutions.remove(jobExecution.getExecutionId());
+            }
+            final String jobName = jobInstance.getJobName();
+            final ConcurrentMap<Long, JobInstance> instancesOfJob = jobInstancesByName.get(jobName);
+            if (instancesOfJob != null) {
+                instancesOfJob.remove(jobInstanceIdToRemove);
+            }
+            if (getJobInstanceCount(jobName) == 0) {
+                jobs.remove(jobName);
+            }
         }
-        jobInstances.remove(jobInstanceIdToRemove);
+        uncacheJobExecutions(jobInstanceIdToRemove);
     }
 
     @Override
     public JobInstance getJobInstance(final long jobInstanceId) {
-        return jobInstances.get(jobInstanceId);
+        final JobInstance result = jobInstances.get(jobInstanceId);
+        recordCacheAccess(result == null ? null : jobInstanceId);
+        return result;
     }
 
     @Override
     public List<JobInstance> getJobInstances(final String jobName) {
+        final ConcurrentMap<Long, JobInstance> instancesOfJob = jobName == null ? null : jobInstancesByName.get(jobName);
+        return instancesOfJob == null ? new ArrayList<JobInstance>() : new ArrayList<JobInstance>(instancesOfJob.values());
+    }
+
+    @Override
+    public List<JobInstance> getJobInstances(final String jobName, final int start, final int count) {
         final List<JobInstance> result = new ArrayList<JobInstance>();
-        synchronized (jobInstances) {
-            for (final JobInstance e : jobInstances.values()) {
-                if (e.getJobName().equals(jobName)) {
+        final ConcurrentNavigableMap<Long, JobInstance> instancesOfJob =
+                jobName == null ? null : jobInstancesByName.get(jobName);
+        if (instancesOfJob != null) {
+            int pos = 0;
+            for (final JobInstance e : instancesOfJob.descendingMap().values()) {
+                if (result.size() >= count) {
+                    break;
+                }
+                if (pos++ >= start) {
                     result.add(e);
                 }
             }
@@ -134,32 +242,32 @@ public abstract class AbstractRepository implements JobRepository {
 
     @Override
     public int getJobInstanceCount(final String jobName) {
-        int count = 0;
-        synchronized (jobInstances) {
-            for (final JobInstance e : jobInstances.values()) {
-                if (e.getJobName().equals(jobName)) {
-                    count++;
-                }
-            }
-        }
-        return count;
+        final ConcurrentMap<Long, JobInstance> instancesOfJob = jobName == null ? null : jobInstancesByName.get(jobName);
+        return instancesOfJob == null ? 0 : instancesOfJob.size();
     }
 
     @Override
     public JobExecutionImpl createJobExecution(final JobInstanceImpl jobInstance, final Properties jobParameters) {
         final JobExecutionImpl jobExecution = new JobExecutionImpl(jobInstance, jobParameters);
         insertJobExecution(jobExecution);
-        final JobExecution jobExecutionExisting = jobExecutions.putIfAbsent(jobExecution.getExecutionId(), jobExecution);
-        if (jobExecutionExisting != null) {
-            throw BatchMessages.MESSAGES.jobExecutionAlreadyExists(jobExecutionExisting.getExecutionId());
+        //cache it under the lock of its job instance, so that the job instance is not evicted in the meantime
+        synchronized (instanceLock(jobInstance.getInstanceId())) {
+            //mark it running before caching it, so that it is never evicted from the cache
+            runningExecutions.put(jobExecution.getExecutionId(), jobExecution);
+            final JobExecution jobExecutionExisting = cacheJobExecution(jobExecution);
+            if (jobExecutionExisting != jobExecution) {
+                throw BatchMessages.MESSAGES.jobExecutionAlreadyExists(jobExecutionExisting.getExecutionId());
+            }
+            jobInstance.addJobExecution(jobExecution);
         }
-        jobInstance.addJobExecution(jobExecution);
         return jobExecution;
     }
 
     @Override
     public JobExecution getJobExecution(final long jobExecutionId) {
-        return jobExecutions.get(jobExecutionId);
+        final JobExecution result = jobExecutions.get(jobExecutionId);
+        recordCacheAccess(result == null ? null : ((JobExecutionImpl) result).getJobInstance().getInstanceId());
+        return result;
     }
 
     @Override
@@ -174,6 +282,20 @@ public abstract class AbstractRepository implements JobRepository {
         }
     }
 
+    @Override
+    public List<Long> getRunningExecutions(final String jobName) {
+        final List<Long> result = new ArrayList<Long>();
+        for (final Iterator<JobExecution> it = runningExecutions.values().iterator(); it.hasNext(); ) {
+            final JobExecution e = it.next();
+            if (!isRunning(e)) {
+                it.remove();
+            } else if (e.getJobName().equals(jobName)) {
+                result.add(e.getExecutionId());
+            }
+        }
+        return result;
+    }
+
     @Override
     public StepExecutionImpl createStepExecution(final String stepName) {
 //        this stepExecution will be added to jobExecution later, after determining restart-if-complete, so that
@@ -192,6 +314,17 @@ public abstract class AbstractRepository implements JobRepository {
     public void addStepExecution(final JobExecutionImpl jobExecution, final StepExecutionImpl stepExecution) {
         jobExecution.addStepExecution(stepExecution);
         insertStepExecution(stepExecution, jobExecution);
+
+        final long jobInstanceId = jobExecution.getJobInstance().getInstanceId();
+        ConcurrentMap<String, StepExecutionImpl> latest = latestStepExecutions.get(jobInstanceId);
+        if (latest == null) {
+            final ConcurrentMap<String, StepExecutionImpl> newLatest = new ConcurrentHashMap<String, StepExecutionImpl>();
+            latest = latestStepExecutions.putIfAbsent(jobInstanceId, newLatest);
+            if (latest == null) {
+                latest = newLatest;
+            }
+        }
+        latest.put(stepExecution.getStepName(), stepExecution);
     }
 
     @Override
@@ -220,6 +353,9 @@ public abstract class AbstractRepository implements JobRepository {
     public void updateJobExecution(final JobExecution jobExecution) {
         final JobExecutionImpl jobExecutionImpl = (JobExecutionImpl) jobExecution;
         jobExecutionImpl.setEndTime(System.currentTimeMillis());
+        if (!isRunning(jobExecution)) {
+            runningExecutions.remove(jobExecution.getExecutionId());
+        }
     }
 
     @Override
@@ -229,25 +365,32 @@ public abstract class AbstractRepository implements JobRepository {
                 return (StepExecutionImpl) stepExecution;
             }
         }
-        StepExecutionImpl result = null;
         // the same-named StepExecution is not found in the jobExecutionToRestart.  It's still possible the same-named
         // StepExecution may exit in JobExecution earlier than jobExecutionToRestart for the same JobInstance.
         final long instanceId = jobExecutionToRestart.getJobInstance().getInstanceId();
-        for (final JobExecution jobExecution : jobExecutions.values()) {
+        final ConcurrentMap<String, StepExecutionImpl> latest = latestStepExecutions.get(instanceId);
+        final StepExecutionImpl result = latest == null ? null : latest.get(stepName);
+        if (result != null) {
+            return result;
+        }
+        //step executions not added by this repository, e.g., loaded from a persistent job repository.  Job executions
+        //are searched from the most recent, since a job execution has at most one step execution of the same name.
+        final ConcurrentNavigableMap<Long, JobExecution> executionsOfInstance = jobExecutionsByInstance.get(instanceId);
+        if (executionsOfInstance == null) {
+            return null;
+        }
+        for (final JobExecution jobExecution : executionsOfInstance.descendingMap().values()) {
             final JobExecutionImpl jobExecutionImpl = (JobExecutionImpl) jobExecution;
             //skip the JobExecution that has already been checked above
-            if (instanceId == jobExecutionImpl.getJobInstance().getInstanceId() &&
-                    jobExecutionImpl.getExecutionId() != jobExecutionToRestart.getExecutionId()) {
+            if (jobExecutionImpl.getExecutionId() != jobExecutionToRestart.getExecutionId()) {
                 for (final StepExecution stepExecution : jobExecutionImpl.getStepExecutions()) {
                     if (stepExecution.getStepName().equals(stepName)) {
-                        if (result == null || result.getStepExecutionId() < stepExecution.getStepExecutionId()) {
-                            result = (StepExecutionImpl) stepExecution;
-                        }
+                        return (StepExecutionImpl) stepExecution;
                     }
                 }
             }
         }
-        return result;
+        return null;
     }
 
     @Override
@@ -275,7 +418,321 @@ public abstract class AbstractRepository implements JobRepository {
         return null;
     }
 
+    /**
+     * Adds a job instance to the cache and its index by job name, unless a job instance with the same id is already
+     * cached.
+     *
+     * @param jobInstance the job instance to cache
+     * @return the job instance cached with the same id, either {@code jobInstance} or the one cached earlier
+     */
+    JobInstance cacheJobInstance(final JobInstance jobInstance) {
+        final long jobInstanceId = jobInstance.getInstanceId();
+        final JobInstance existing = jobInstances.putIfAbsent(jobInstanceId, jobInstance);
+        if (existing != null) {
+            return existing;
+        }
+        final String jobName = jobInstance.getJobName();
+        ConcurrentNavigableMap<Long, JobInstance> instancesOfJob = jobInstancesByName.get(jobName);
+        if (instancesOfJob == null) {
+            final ConcurrentNavigableMap<Long, JobInstance> newInstancesOfJob = new ConcurrentSkipListMap<Long, JobInstance>();
+            instancesOfJob = jobInstancesByName.putIfAbsent(jobName, newInstancesOfJob);
+            if (instancesOfJob == null) {
+                instancesOfJob = newInstancesOfJob;
+            }
+        }
+        instancesOfJob.put(jobInstanceId, jobInstance);
+        touch(jobInstanceId);
+        evictIfNeeded();
+        return jobInstance;
+    }
+
+    /**
+     * Adds a job execution to the cache and its index by job instance, unless a job execution with the same id is
+     * already cached.
+     *
+     * @param jobExecution the job execution to cache
+     * @return the job execution cached with the same id, either {@code jobExecution} or the one cached earlier
+     */
+    JobExecution cacheJobExecution(final JobExecution jobExecution) {
+        final long jobExecutionId = jobExecution.getExecutionId();
+        final JobExecution existing = jobExecutions.putIfAbsent(jobExecutionId, jobExecution);
+        if (existing != null) {
+            return existing;
+        }
+        final long jobInstanceId = ((JobExecutionImpl) jobExecution).getJobInstance().getInstanceId();
+        ConcurrentNavigableMap<Long, JobExecution> executionsOfInstance = jobExecutionsByInstance.get(jobInstanceId);
+        if (executionsOfInstance == null) {
+            final ConcurrentNavigableMap<Long, JobExecution> newExecutionsOfInstance =
+                    new ConcurrentSkipListMap<Long, JobExecution>();
+            executionsOfInstance = jobExecutionsByInstance.putIfAbsent(jobInstanceId, newExecutionsOfInstance);
+            if (executionsOfInstance == null) {
+                executionsOfInstance = newExecutionsOfInstance;
+            }
+        }
+        executionsOfInstance.put(jobExecutionId, jobExecution);
+        touch(jobInstanceId);
+        evictIfNeeded();
+        return jobExecution;
+    }
+
+    /**
+     * Removes cached job executions and latest step executions of a job instance.
+     *
+     * @param jobInstanceId the job instance id
+     */
+    private void uncacheJobExecutions(final long jobInstanceId) {
+        final ConcurrentMap<Long, JobExecution> executionsOfInstance = jobExecutionsByInstance.remove(jobInstanceId);
+        if (executionsOfInstance != null) {
+            for (final Long jobExecutionId : executionsOfInstance.keySet()) {
+                jobExecutions.remove(jobExecutionId);
+                runningExecutions.remove(jobExecutionId);
+            }
+        }
+        latestStepExecutions.remove(jobInstanceId);
+        lastAccessTimes.remove(jobInstanceId);
+    }
+
+    /**
+     * Gets ids of running job executions of a job among all job executions returned by
+     * {@link #getJobExecutions(JobInstance)}, including those not created by this repository.
+     *
+     * @param jobName the job name
+     * @return ids of running job executions of the job
+     */
+    List<Long> getRunningExecutionsOfAll(final String jobName) {
+        final List<Long> result = new ArrayList<Long>();
+        for (final JobExecution e : getJobExecutions(null)) {
+            if (e.getJobName().equals(jobName) && isRunning(e)) {
+                result.add(e.getExecutionId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bounds the cache of job instances and job executions by the size and age configured in
+     * {@code configProperties}.  Running job executions and their job instances are never evicted, and evicted ones are
+     * loaded again from the persistent job repository when requested.
+     *
+     * @param configProperties the configuration properties of the job repository
+     */
+    void configureExecutionCache(final Properties configProperties) {
+        executionCacheSize = (int) getLongConfigProperty(configProperties, EXECUTION_CACHE_SIZE_KEY,
+                DEFAULT_EXECUTION_CACHE_SIZE);
+        executionCacheMaxAge = getLongConfigProperty(configProperties, EXECUTION_CACHE_MAX_AGE_KEY, 0);
+        nextAgeEviction = System.currentTimeMillis() + executionCacheMaxAge;
+    }
+
+    /**
+     * Gets the number of times a job instance or job execution was found in the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * Gets the number of times a job instance or job execution was not found in the cache.
+     *
+     * @return the number of cache misses
+     */
+    public long getCacheMissCount() {
+        return cacheMissCount.get();
+    }
+
+    /**
+     * Gets the number of job instances and job executions evicted from the cache.
+     *
+     * @return the number of evicted job instances and job executions
+     */
+    public long getCacheEvictionCount() {
+        return cacheEvictionCount.get();
+    }
+
+    /**
+     * Gets the number of cached job instances and job executions.
+     *
+     * @return the number of cached job instances and job executions
+     */
+    public int getCacheSize() {
+        return jobInstances.size() + jobExecutions.size();
+    }
+
+    private void recordCacheAccess(final Long jobInstanceId) {
+        if (jobInstanceId == null) {
+            cacheMissCount.incrementAndGet();
+        } else {
+            cacheHitCount.incrementAndGet();
+            touch(jobInstanceId);
+        }
+    }
+
+    private void touch(final long jobInstanceId) {
+        if (executionCacheSize > 0 || executionCacheMaxAge > 0) {
+            lastAccessTimes.put(jobInstanceId, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Evicts job instances and their job executions, least recently accessed first, if more entries than
+     * {@link #executionCacheSize} are cached, or if aged entries are due to be evicted.  To amortize the cost of
+     * sorting cached job instances by access time, the cache is shrunk to 90% of its max size.
+     */
+    private void evictIfNeeded() {
+        if (executionCacheSize <= 0 && executionCacheMaxAge <= 0) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final boolean full = executionCacheSize > 0 && getCacheSize() > executionCacheSize;
+        final boolean aged = executionCacheMaxAge > 0 && now >= nextAgeEviction;
+        if (!(full || aged) || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            //copy access times, which may be updated concurrently, before sorting by them
+            final List<long[]> entries = new ArrayList<long[]>(lastAccessTimes.size());
+            for (final Map.Entry<Long, Long> e : lastAccessTimes.entrySet()) {
+                entries.add(new long[]{e.getKey(), e.getValue()});
+            }
+            Collections.sort(entries, new Comparator<long[]>() {
+                @Override
+                public int compare(final long[] o1, final long[] o2) {
+                    return o1[1] < o2[1] ? -1 : (o1[1] == o2[1] ? 0 : 1);
+                }
+            });
+            final int targetSize = executionCacheSize - executionCacheSize / 10;
+            for (final long[] e : entries) {
+                final boolean tooMany = executionCacheSize > 0 && getCacheSize() > targetSize;
+                final boolean tooOld = executionCacheMaxAge > 0 && now - e[1] > executionCacheMaxAge;
+                if (!tooMany && !tooOld) {
+                    break;
+                }
+                evictJobInstance(e[0]);
+            }
+            nextAgeEviction = now + executionCacheMaxAge;
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Evicts a job instance and its job executions from the cache, unless any of its job executions is running.  The
+     * check and the removal are done under the lock of the job instance, so that a job execution added concurrently
+     * by {@link #createJobExecution(JobInstanceImpl, Properties)} is either seen by the check or added after the
+     * removal.
+     */
+    private void evictJobInstance(final long jobInstanceId) {
+        synchronized (instanceLock(jobInstanceId)) {
+            final ConcurrentMap<Long, JobExecution> executionsOfInstance = jobExecutionsByInstance.get(jobInstanceId);
+            if (executionsOfInstance != null) {
+                for (final JobExecution e : executionsOfInstance.values()) {
+                    if (isRunning(e) || runningExecutions.containsKey(e.getExecutionId())) {
+                        return;
+                    }
+                }
+                cacheEvictionCount.addAndGet(executionsOfInstance.size());
+            }
+            final JobInstance jobInstance = jobInstances.remove(jobInstanceId);
+            if (jobInstance != null) {
+                cacheEvictionCount.incrementAndGet();
+                final ConcurrentMap<Long, JobInstance> instancesOfJob = jobInstancesByName.get(jobInstance.getJobName());
+                if (instancesOfJob != null) {
+                    instancesOfJob.remove(jobInstanceId);
+                }
+            }
+            uncacheJobExecutions(jobInstanceId);
+        }
+    }
+
+    private static Object[] newLocks(final int count) {
+        final Object[] locks = new Object[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private Object instanceLock(final long jobInstanceId) {
+        return instanceLocks[(int) (jobInstanceId ^ (jobInstanceId >>> 32)) & (instanceLocks.length - 1)];
+    }
+
+    static long getLongConfigProperty(final Properties configProperties, final String key, final long defaultValue) {
+        String val = configProperties.getProperty(key);
+        if (val == null || (val = val.trim()).isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(val);
+        } catch (final NumberFormatException e) {
+            throw BatchMessages.MESSAGES.invalidConfigProperty(e, key, val);
+        }
+    }
+
+    private static boolean isRunning(final JobExecution jobExecution) {
+        final BatchStatus s = jobExecution.getBatchStatus();
+        return s == BatchStatus.STARTING || s == BatchStatus.STARTED;
+    }
+
+    /**
+     * Creates the {@link CheckpointSerializer} configured with {@value #CHECKPOINT_SERIALIZER_KEY} in
+     * {@code configProperties}, or returns {@link CompactCheckpointSerializer#INSTANCE} if not configured.
+     *
+     * @param configProperties the configuration properties of the job repository
+     * @param classLoader      the class loader to load the configured class
+     * @return the checkpoint serializer to use
+     */
+    static CheckpointSerializer createCheckpointSerializer(final Properties configProperties, final ClassLoader classLoader) {
+        String className = configProperties.getProperty(CHECKPOINT_SERIALIZER_KEY);
+        if (className == null || (className = className.trim()).isEmpty()) {
+            return CompactCheckpointSerializer.INSTANCE;
+        }
+        try {
+            return (CheckpointSerializer) classLoader.loadClass(className).newInstance();
+        } catch (final Exception e) {
+            throw BatchMessages.MESSAGES.invalidConfigProperty(e, CHECKPOINT_SERIALIZER_KEY, className);
+        }
+    }
+
+    /**
+     * Creates a background thread of a job repository with the {@link ThreadFactory} configured with
+     * {@value #THREAD_FACTORY_KEY} in {@code configProperties}, the same one used by the batch environment for its
+     * thread pool.  If not configured, a daemon thread of the given name is created.  The thread is not started.
+     *
+     * @param configProperties the configuration properties of the job repository
+     * @param task             the task to run in the thread
+     * @param name             the name of the thread, if created without a configured thread factory
+     * @return the new thread
+     */
+    static Thread newThread(final Properties configProperties, final Runnable task, final String name) {
+        String className = configProperties.getProperty(THREAD_FACTORY_KEY);
+        if (className == null || (className = className.trim()).isEmpty()) {
+            final Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+        try {
+            return ((ThreadFactory) JdbcRepository.getClassLoader().loadClass(className).newInstance()).newThread(task);
+        } catch (final Exception e) {
+            throw BatchMessages.MESSAGES.invalidConfigProperty(e, THREAD_FACTORY_KEY, className);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     private static <T extends Serializable> T clone(final T object) {
+        //immutable values can be shared, and primitive arrays can be copied directly
+        if (object instanceof Enum || IMMUTABLE_TYPES.contains(object.getClass())) {
+            return object;
+        }
+        if (object instanceof byte[]) {
+            return (T) ((byte[]) object).clone();
+        }
+        if (object instanceof int[]) {
+            return (T) ((int[]) object).clone();
+        }
+        if (object instanceof long[]) {
+            return (T) ((long[]) object).clone();
+        }
         if (WildFlySecurityManager.isChecking()) {
             return WildFlySecurityManager.doUnchecked(new PrivilegedAction<T>() {
                 @Override
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.io.IOException;
+import java.io.ObjectStreamConstants;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.jberet.spi.CheckpointSerializer;
+import org.jberet.util.BatchUtil;
+
+/**
+ * The default {@link CheckpointSerializer}.  The most common types of checkpoint info, i.e., {@code Integer},
+ * {@code Long}, {@code String} and primitive arrays, are written as a one-byte type tag followed by their raw
+ * content, which is much smaller and faster than Java serialization.  All other objects are written with Java
+ * serialization.
+ * <p/>
+ * None of the type tags is the first byte of a Java serialization stream, so bytes written with Java serialization,
+ * including those written by earlier versions of JBeret, can always be told apart and read back.
+ */
+public final class CompactCheckpointSerializer implements CheckpointSerializer {
+    public static final CompactCheckpointSerializer INSTANCE = new CompactCheckpointSerializer();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte STRING = 3;
+    private static final byte BYTE_ARRAY = 4;
+    private static final byte INT_ARRAY = 5;
+    private static final byte LONG_ARRAY = 6;
+    private static final byte SHORT_ARRAY = 7;
+    private static final byte CHAR_ARRAY = 8;
+    private static final byte BOOLEAN_ARRAY = 9;
+    private static final byte FLOAT_ARRAY = 10;
+    private static final byte DOUBLE_ARRAY = 11;
+
+    private static final byte JAVA_SERIALIZATION = (byte) (ObjectStreamConstants.STREAM_MAGIC >>> 8);
+
+    @Override
+    public byte[] serialize(final Serializable obj) throws IOException {
+        if (obj == null) {
+            return null;
+        }
+        final Class<?> c = obj.getClass();
+        if (c == Integer.class) {
+            return allocate(INTEGER, 4).putInt((Integer) obj).array();
+        }
+        if (c == Long.class) {
+            return allocate(LONG, 8).putLong((Long) obj).array();
+        }
+        if (c == String.class) {
+            final byte[] b = ((String) obj).getBytes(UTF_8);
+            return allocate(STRING, b.length).put(b).array();
+        }
+        if (c == byte[].class) {
+            final byte[] a = (byte[]) obj;
+            return allocate(BYTE_ARRAY, a.length).put(a).array();
+        }
+        if (c == int[].class) {
+            final int[] a = (int[]) obj;
+            final ByteBuffer buf = allocate(INT_ARRAY, a.length * 4);
+            buf.asIntBuffer().put(a);
+            return buf.array();
+        }
+        if (c == long[].class) {
+            final long[] a = (long[]) obj;
+            final ByteBuffer buf = allocate(LONG_ARRAY, a.length * 8);
+            buf.asLongBuffer().put(a);
+            return buf.array();
+        }
+        if (c == short[].class) {
+            final short[] a = (short[]) obj;
+            final ByteBuffer buf = allocate(SHORT_ARRAY, a.length * 2);
+            buf.asShortBuffer().put(a);
+            return buf.array();
+        }
+        if (c == char[].class) {
+            final char[] a = (char[]) obj;
+            final ByteBuffer buf = allocate(CHAR_ARRAY, a.length * 2);
+            buf.asCharBuffer().put(a);
+            return buf.array();
+        }
+        if (c == boolean[].class) {
+            final boolean[] a = (boolean[]) obj;
+            final ByteBuffer buf = allocate(BOOLEAN_ARRAY, a.length);
+            for (final boolean b : a) {
+                buf.put(b ? (byte) 1 : (byte) 0);
+            }
+            return buf.array();
+        }
+        if (c == float[].class) {
+            final float[] a = (float[]) obj;
+            final ByteBuffer buf = allocate(FLOAT_ARRAY, a.length * 4);
+            buf.asFloatBuffer().put(a);
+            return buf.array();
+        }
+        if (c == double[].class) {
+            final double[] a = (double[]) obj;
+            final ByteBuffer buf = allocate(DOUBLE_ARRAY, a.length * 8);
+            buf.asDoubleBuffer().put(a);
+            return buf.array();
+        }
+        return BatchUtil.objectToBytes(obj);
+    }
+
+    @Override
+    public Serializable deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length == 0) {
+            throw new StreamCorruptedException();
+        }
+        final byte tag = bytes[0];
+        if (tag == JAVA_SERIALIZATION) {
+            return BatchUtil.bytesToSerializableObject(bytes);
+        }
+        final ByteBuffer buf = ByteBuffer.wrap(bytes, 1, bytes.length - 1).slice();
+        final int length = buf.remaining();
+        switch (tag) {
+            case INTEGER:
+                checkLength(length, 4, true);
+                return buf.getInt();
+            case LONG:
+                checkLength(length, 8, true);
+                return buf.getLong();
+            case STRING:
+                return new String(bytes, 1, length, UTF_8);
+            case BYTE_ARRAY: {
+                final byte[] a = new byte[length];
+                buf.get(a);
+                return a;
+            }
+            case INT_ARRAY: {
+                final int[] a = new int[checkLength(length, 4, false)];
+                buf.asIntBuffer().get(a);
+                return a;
+            }
+            case LONG_ARRAY: {
+                final long[] a = new long[checkLength(length, 8, false)];
+                buf.asLongBuffer().get(a);
+                return a;
+            }
+            case SHORT_ARRAY: {
+                final short[] a = new short[checkLength(length, 2, false)];
+                buf.asShortBuffer().get(a);
+                return a;
+            }
+            case CHAR_ARRAY: {
+                final char[] a = new char[checkLength(length, 2, false)];
+                buf.asCharBuffer().get(a);
+                return a;
+            }
+            case BOOLEAN_ARRAY: {
+                final boolean[] a = new boolean[length];
+                for (int i = 0; i < length; i++) {
+                    a[i] = buf.get() != 0;
+                }
+                return a;
+            }
+            case FLOAT_ARRAY: {
+                final float[] a = new float[checkLength(length, 4, false)];
+                buf.asFloatBuffer().get(a);
+                return a;
+            }
+            case DOUBLE_ARRAY: {
+                final double[] a = new double[checkLength(length, 8, false)];
+                buf.asDoubleBuffer().get(a);
+                return a;
+            }
+            default:
+                throw new StreamCorruptedException(String.valueOf(tag));
+        }
+    }
+
+    private static ByteBuffer allocate(final byte tag, final int length) {
+        return ByteBuffer.allocate(length + 1).put(tag);
+    }
+
+    /**
+     * Checks that the content length is a valid size for values of {@code elementSize} bytes.
+     *
+     * @return the number of values in the content
+     */
+    private static int checkLength(final int length, final int elementSize, final boolean single) throws StreamCorruptedException {
+        if (single ? length != elementSize : length % elementSize != 0) {
+            throw new StreamCorruptedException(String.valueOf(length));
+        }
+        return length / elementSize;
+    }
+}
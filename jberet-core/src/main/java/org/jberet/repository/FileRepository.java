@@ -0,0 +1,618 @@
+/*
+ * Copyright (c) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.JobExecution;
+import javax.batch.runtime.JobInstance;
+import javax.batch.runtime.Metric;
+import javax.batch.runtime.StepExecution;
+
+import org.jberet._private.BatchLogger;
+import org.jberet._private.BatchMessages;
+import org.jberet.runtime.AbstractStepExecution;
+import org.jberet.runtime.JobExecutionImpl;
+import org.jberet.runtime.JobInstanceImpl;
+import org.jberet.runtime.PartitionExecutionImpl;
+import org.jberet.runtime.StepExecutionImpl;
+import org.jberet.runtime.metric.StepMetrics;
+import org.jberet.spi.CheckpointSerializer;
+import org.jberet.util.BatchUtil;
+import org.wildfly.security.manager.WildFlySecurityManager;
+
+/**
+ * Job repository that keeps all job instances and executions in memory, like {@link InMemoryRepository}, and persists
+ * them to an append-only log of memory-mapped segment files in a local directory, so that they survive restarts.
+ * <p/>
+ * Every insert or update appends a record of the full state of the job instance, job execution, step execution or
+ * partition execution.  On startup, the state is rebuilt by replaying the newest snapshot and the segments after it.
+ * A background thread compacts sealed segments into a new snapshot, which holds only the latest record of each
+ * execution, once there are {@code file-compact-segments} of them.  The directory is locked, and can only be used by
+ * one job repository at a time.
+ */
+public final class FileRepository extends AbstractRepository {
+    //keys used in jberet.properties
+    public static final String FILE_DIRECTORY_KEY = "file-directory";
+    public static final String FILE_SEGMENT_SIZE_KEY = "file-segment-size";
+    public static final String FILE_SYNC_KEY = "file-sync";
+    public static final String FILE_SYNC_INTERVAL_KEY = "file-sync-interval";
+    public static final String FILE_COMPACT_SEGMENTS_KEY = "file-compact-segments";
+
+    private static final String DEFAULT_DIRECTORY = "jberet-repo-file";
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final long DEFAULT_SYNC_INTERVAL = 1000;
+    private static final int DEFAULT_COMPACT_SEGMENTS = 4;
+
+    //record types, the first byte of each record
+    private static final byte JOB_INSTANCE = 1;
+    private static final byte JOB_EXECUTION = 2;
+    private static final byte STEP_EXECUTION = 3;
+    private static final byte PARTITION_EXECUTION = 4;
+    private static final byte REMOVE_JOB_INSTANCE = 5;
+    private static final byte ID_SEQUENCES = 6;
+
+    /**
+     * Offset of the parent id in job execution and step execution records, following the record type and the id.
+     */
+    private static final int PARENT_ID_OFFSET = 9;
+
+    private final CheckpointSerializer checkpointSerializer;
+    private final FileRepositoryLog log;
+    private final long syncInterval;
+    private final int compactSegments;
+    private final boolean batchedSync;
+
+    private final AtomicLong jobInstanceIdSequence = new AtomicLong();
+    private final AtomicLong jobExecutionIdSequence = new AtomicLong();
+    private final AtomicLong stepExecutionIdSequence = new AtomicLong();
+
+    //the latest record of each job instance, job execution, step execution and partition execution, in the order of
+    //their ids, from which snapshots are written.  Guarded by this, together with appending to the log.
+    private final TreeMap<Long, byte[]> jobInstanceRecords = new TreeMap<Long, byte[]>();
+    private final TreeMap<Long, byte[]> jobExecutionRecords = new TreeMap<Long, byte[]>();
+    private final TreeMap<Long, byte[]> stepExecutionRecords = new TreeMap<Long, byte[]>();
+    private final TreeMap<Long, TreeMap<Integer, byte[]>> partitionExecutionRecords =
+            new TreeMap<Long, TreeMap<Integer, byte[]>>();
+
+    private final Thread maintenanceThread;
+
+    /**
+     * Closes this job repository when the JVM shuts down, so that records appended since the last sync are forced to
+     * the storage device.
+     */
+    private final Thread shutdownHook;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public static FileRepository create(final Properties configProperties) {
+        return new FileRepository(configProperties);
+    }
+
+    public FileRepository(final Properties configProperties) {
+        checkpointSerializer = createCheckpointSerializer(configProperties, JdbcRepository.getClassLoader());
+
+        String directory = configProperties.getProperty(FILE_DIRECTORY_KEY);
+        if (directory == null || directory.trim().isEmpty()) {
+            directory = new File(WildFlySecurityManager.getPropertyPrivileged("user.home", "."), DEFAULT_DIRECTORY).getPath();
+        }
+        final int segmentSize = (int) getLongConfigProperty(configProperties, FILE_SEGMENT_SIZE_KEY, DEFAULT_SEGMENT_SIZE);
+        final FileRepositoryLog.SyncPolicy syncPolicy;
+        final String syncValue = configProperties.getProperty(FILE_SYNC_KEY);
+        try {
+            syncPolicy = syncValue == null || syncValue.trim().isEmpty() ? FileRepositoryLog.SyncPolicy.BATCHED :
+                    FileRepositoryLog.SyncPolicy.valueOf(syncValue.trim().toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw BatchMessages.MESSAGES.invalidConfigProperty(e, FILE_SYNC_KEY, syncValue);
+        }
+        batchedSync = syncPolicy == FileRepositoryLog.SyncPolicy.BATCHED;
+        syncInterval = Math.max(getLongConfigProperty(configProperties, FILE_SYNC_INTERVAL_KEY, DEFAULT_SYNC_INTERVAL), 1);
+        compactSegments = (int) getLongConfigProperty(configProperties, FILE_COMPACT_SEGMENTS_KEY, DEFAULT_COMPACT_SEGMENTS);
+
+        final File directoryFile = new File(directory.trim());
+        log = new FileRepositoryLog(directoryFile, segmentSize, syncPolicy);
+        replay(log.recover(), directoryFile.getPath());
+
+        maintenanceThread = newThread(configProperties, new Runnable() {
+            @Override
+            public void run() {
+                maintain();
+            }
+        }, "jberet-file-repository");
+        maintenanceThread.start();
+        shutdownHook = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                close();
+            }
+        }, "jberet-file-repository-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    void insertJobInstance(final JobInstanceImpl jobInstance) {
+        final long id = jobInstanceIdSequence.incrementAndGet();
+        jobInstance.setId(id);
+        final byte[] record = jobInstanceRecord(jobInstance);
+        synchronized (this) {
+            jobInstanceRecords.put(id, record);
+            log.append(record);
+        }
+    }
+
+    @Override
+    void insertJobExecution(final JobExecutionImpl jobExecution) {
+        jobExecution.setId(jobExecutionIdSequence.incrementAndGet());
+        writeJobExecution(jobExecution);
+    }
+
+    @Override
+    public void updateJobExecution(final JobExecution jobExecution) {
+        super.updateJobExecution(jobExecution);
+        writeJobExecution((JobExecutionImpl) jobExecution);
+    }
+
+    @Override
+    void insertStepExecution(final StepExecutionImpl stepExecution, final JobExecutionImpl jobExecution) {
+        final long id = stepExecutionIdSequence.incrementAndGet();
+        stepExecution.setId(id);
+        final byte[] record = stepExecutionRecord(stepExecution, jobExecution.getExecutionId());
+        synchronized (this) {
+            stepExecutionRecords.put(id, record);
+            log.append(record);
+        }
+    }
+
+    @Override
+    public void updateStepExecution(final StepExecution stepExecution) {
+        writeStepExecution((StepExecutionImpl) stepExecution);
+    }
+
+    @Override
+    public void savePersistentData(final JobExecution jobExecution, final AbstractStepExecution stepOrPartitionExecution) {
+        super.savePersistentData(jobExecution, stepOrPartitionExecution);
+        if (stepOrPartitionExecution instanceof PartitionExecutionImpl) {
+            writePartitionExecution((PartitionExecutionImpl) stepOrPartitionExecution);
+        } else {
+            writeStepExecution((StepExecutionImpl) stepOrPartitionExecution);
+        }
+    }
+
+    @Override
+    public void addPartitionExecution(final StepExecutionImpl enclosingStepExecution, final PartitionExecutionImpl partitionExecution) {
+        super.addPartitionExecution(enclosingStepExecution, partitionExecution);
+        writePartitionExecution(partitionExecution);
+    }
+
+    @Override
+    public void removeJob(final String jobId) {
+        //the base class removes job instances of the job without calling removeJobInstance
+        synchronized (this) {
+            for (final JobInstance e : getJobInstances(jobId)) {
+                removeRecords(e.getInstanceId());
+            }
+        }
+        super.removeJob(jobId);
+    }
+
+    @Override
+    public void removeJobInstance(final long jobInstanceIdToRemove) {
+        synchronized (this) {
+            removeRecords(jobInstanceIdToRemove);
+        }
+        super.removeJobInstance(jobInstanceIdToRemove);
+    }
+
+    @Override
+    public int countStepStartTimes(final String stepName, final long jobInstanceId) {
+        int count = 0;
+        final JobInstanceImpl jobInstanceImpl = (JobInstanceImpl) jobInstances.get(jobInstanceId);
+        if (jobInstanceImpl != null) {
+            for (final JobExecution jobExecution : jobInstanceImpl.getJobExecutions()) {
+                for (final StepExecution stepExecution : ((JobExecutionImpl) jobExecution).getStepExecutions()) {
+                    if (stepExecution.getStepName().equals(stepName)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stops the background thread, and forces all appended records to the storage device.  This job repository cannot
+     * be used afterwards, and its directory can be opened by another one.  This method is also called when the JVM
+     * shuts down.
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (final IllegalStateException e) {
+            //the JVM is shutting down, and this method is called by the shutdown hook
+        }
+        maintenanceThread.interrupt();
+        try {
+            maintenanceThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    /**
+     * Seals the current segment, and writes a snapshot of the latest records to replace it and the segments before it.
+     * Only the collection of the latest records blocks appending to the log.
+     */
+    void compact() {
+        final long segmentNumber;
+        final List<byte[]> records = new ArrayList<byte[]>();
+        synchronized (this) {
+            segmentNumber = log.rotate();
+            //ids of removed executions are not reused after they are compacted away
+            records.add(ByteBuffer.allocate(25).put(ID_SEQUENCES).putLong(jobInstanceIdSequence.get())
+                    .putLong(jobExecutionIdSequence.get()).putLong(stepExecutionIdSequence.get()).array());
+            records.addAll(jobInstanceRecords.values());
+            records.addAll(jobExecutionRecords.values());
+            records.addAll(stepExecutionRecords.values());
+            for (final TreeMap<Integer, byte[]> e : partitionExecutionRecords.values()) {
+                records.addAll(e.values());
+            }
+        }
+        log.writeSnapshot(segmentNumber, records);
+    }
+
+    private void maintain() {
+        while (true) {
+            try {
+                Thread.sleep(syncInterval);
+            } catch (final InterruptedException e) {
+                return;
+            }
+            try {
+                if (batchedSync) {
+                    log.sync();
+                }
+                if (compactSegments > 0 && log.getSealedSegmentCount() >= compactSegments) {
+                    compact();
+                }
+            } catch (final RuntimeException e) {
+                BatchLogger.LOGGER.failToMaintainFileRepository(e);
+            }
+        }
+    }
+
+    private void writeJobExecution(final JobExecutionImpl jobExecution) {
+        final byte[] record = jobExecutionRecord(jobExecution);
+        synchronized (this) {
+            //skip updates of job executions already removed with their job instance
+            if (jobInstanceRecords.containsKey(jobExecution.getJobInstance().getInstanceId())) {
+                jobExecutionRecords.put(jobExecution.getExecutionId(), record);
+                log.append(record);
+            }
+        }
+    }
+
+    private void writeStepExecution(final StepExecutionImpl stepExecution) {
+        final long id = stepExecution.getStepExecutionId();
+        //serialize checkpoint info outside the lock, and fill in the job execution id from the earlier record
+        final byte[] record = stepExecutionRecord(stepExecution, 0);
+        synchronized (this) {
+            final byte[] earlier = stepExecutionRecords.get(id);
+            if (earlier != null) {
+                ByteBuffer.wrap(record).putLong(PARENT_ID_OFFSET, ByteBuffer.wrap(earlier).getLong(PARENT_ID_OFFSET));
+                stepExecutionRecords.put(id, record);
+                log.append(record);
+            }
+        }
+    }
+
+    private void writePartitionExecution(final PartitionExecutionImpl partitionExecution) {
+        final byte[] record = partitionExecutionRecord(partitionExecution);
+        final long stepExecutionId = partitionExecution.getStepExecutionId();
+        synchronized (this) {
+            if (stepExecutionRecords.containsKey(stepExecutionId)) {
+                TreeMap<Integer, byte[]> partitions = partitionExecutionRecords.get(stepExecutionId);
+                if (partitions == null) {
+                    partitions = new TreeMap<Integer, byte[]>();
+                    partitionExecutionRecords.put(stepExecutionId, partitions);
+                }
+                partitions.put(partitionExecution.getPartitionId(), record);
+                log.append(record);
+            }
+        }
+    }
+
+    /**
+     * Removes the latest records of a job instance and all its executions, and appends a record of the removal.
+     * Must be called while holding the lock on this.
+     *
+     * @param jobInstanceId the id of the job instance to remove
+     */
+    private void removeRecords(final long jobInstanceId) {
+        if (jobInstanceRecords.remove(jobInstanceId) == null) {
+            return;
+        }
+        final Set<Long> jobExecutionIds = new HashSet<Long>();
+        for (final Iterator<byte[]> it = jobExecutionRecords.values().iterator(); it.hasNext(); ) {
+            final byte[] record = it.next();
+            if (ByteBuffer.wrap(record).getLong(PARENT_ID_OFFSET) == jobInstanceId) {
+                jobExecutionIds.add(ByteBuffer.wrap(record).getLong(1));
+                it.remove();
+            }
+        }
+        if (!jobExecutionIds.isEmpty()) {
+            for (final Iterator<Map.Entry<Long, byte[]>> it = stepExecutionRecords.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<Long, byte[]> e = it.next();
+                if (jobExecutionIds.contains(ByteBuffer.wrap(e.getValue()).getLong(PARENT_ID_OFFSET))) {
+                    partitionExecutionRecords.remove(e.getKey());
+                    it.remove();
+                }
+            }
+        }
+        log.append(ByteBuffer.allocate(9).put(REMOVE_JOB_INSTANCE).putLong(jobInstanceId).array());
+    }
+
+    /**
+     * Rebuilds job instances and executions from the records recovered from the log.  Records of the same execution
+     * replace the earlier ones, so only the latest state of each execution is materialized.
+     *
+     * @param records   payloads of all records in the log, in the order they were appended
+     * @param directory the directory of the log, for error messages
+     */
+    private void replay(final List<byte[]> records, final String directory) {
+        for (final byte[] record : records) {
+            final ByteBuffer buffer = ByteBuffer.wrap(record);
+            final byte type = buffer.get();
+            final long id = buffer.getLong();
+            switch (type) {
+                case JOB_INSTANCE:
+                    jobInstanceRecords.put(id, record);
+                    updateSequence(jobInstanceIdSequence, id);
+                    break;
+                case JOB_EXECUTION:
+                    jobExecutionRecords.put(id, record);
+                    updateSequence(jobExecutionIdSequence, id);
+                    break;
+                case STEP_EXECUTION:
+                    stepExecutionRecords.put(id, record);
+                    updateSequence(stepExecutionIdSequence, id);
+                    break;
+                case PARTITION_EXECUTION:
+                    TreeMap<Integer, byte[]> partitions = partitionExecutionRecords.get(id);
+                    if (partitions == null) {
+                        partitions = new TreeMap<Integer, byte[]>();
+                        partitionExecutionRecords.put(id, partitions);
+                    }
+                    partitions.put(buffer.getInt(), record);
+                    break;
+                case REMOVE_JOB_INSTANCE:
+                    jobInstanceRecords.remove(id);
+                    break;
+                case ID_SEQUENCES:
+                    updateSequence(jobInstanceIdSequence, id);
+                    updateSequence(jobExecutionIdSequence, buffer.getLong());
+                    updateSequence(stepExecutionIdSequence, buffer.getLong());
+                    break;
+                default:
+                    throw BatchMessages.MESSAGES.failToAccessFileRepository(null, directory);
+            }
+        }
+
+        try {
+            for (final byte[] record : jobInstanceRecords.values()) {
+                final DataInputStream in = input(record, 1);
+                final long id = in.readLong();
+                final String jobName = readString(in);
+                final String applicationName = readString(in);
+                final JobInstanceImpl jobInstance = new JobInstanceImpl(getJob(jobName), new ApplicationAndJobName(applicationName, jobName));
+                jobInstance.setId(id);
+                cacheJobInstance(jobInstance);
+            }
+
+            for (final Iterator<byte[]> it = jobExecutionRecords.values().iterator(); it.hasNext(); ) {
+                final DataInputStream in = input(it.next(), 1);
+                final long id = in.readLong();
+                final JobInstanceImpl jobInstance = (JobInstanceImpl) jobInstances.get(in.readLong());
+                if (jobInstance == null) {
+                    //the job instance has been removed
+                    it.remove();
+                    continue;
+                }
+                final JobExecutionImpl jobExecution = new JobExecutionImpl(jobInstance, id,
+                        BatchUtil.stringToProperties(readString(in)),
+                        new Date(in.readLong()), new Date(in.readLong()), new Date(in.readLong()), new Date(in.readLong()),
+                        readString(in), readString(in), readString(in));
+                cacheJobExecution(jobExecution);
+                jobInstance.addJobExecution(jobExecution);
+            }
+
+            for (final Iterator<byte[]> it = stepExecutionRecords.values().iterator(); it.hasNext(); ) {
+                final DataInputStream in = input(it.next(), 1);
+                final long id = in.readLong();
+                final JobExecutionImpl jobExecution = (JobExecutionImpl) jobExecutions.get(in.readLong());
+                if (jobExecution == null) {
+                    it.remove();
+                    partitionExecutionRecords.remove(id);
+                    continue;
+                }
+                final StepExecutionImpl stepExecution = new StepExecutionImpl(id, readString(in),
+                        new Date(in.readLong()), new Date(in.readLong()), readString(in), readString(in),
+                        checkpointSerializer.deserialize(readBytes(in)),
+                        in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                        checkpointSerializer.deserialize(readBytes(in)),
+                        checkpointSerializer.deserialize(readBytes(in)));
+                stepExecution.getStepMetrics().setCheckpointItemCount(in.readLong());
+                jobExecution.addStepExecution(stepExecution);
+
+                final TreeMap<Integer, byte[]> partitions = partitionExecutionRecords.get(id);
+                if (partitions != null) {
+                    for (final byte[] partitionRecord : partitions.values()) {
+                        final DataInputStream pin = input(partitionRecord, PARENT_ID_OFFSET);
+                        stepExecution.getPartitionExecutions().add(new PartitionExecutionImpl(
+                                pin.readInt(), id, stepExecution.getStepName(),
+                                BatchStatus.valueOf(readString(pin)), readString(pin),
+                                checkpointSerializer.deserialize(readBytes(pin)),
+                                checkpointSerializer.deserialize(readBytes(pin)),
+                                checkpointSerializer.deserialize(readBytes(pin))));
+                    }
+                }
+            }
+            partitionExecutionRecords.keySet().retainAll(stepExecutionRecords.keySet());
+        } catch (final Exception e) {
+            throw BatchMessages.MESSAGES.failToAccessFileRepository(e, directory);
+        }
+    }
+
+    private static byte[] jobInstanceRecord(final JobInstanceImpl jobInstance) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(JOB_INSTANCE);
+            out.writeLong(jobInstance.getInstanceId());
+            writeString(out, jobInstance.getJobName());
+            writeString(out, jobInstance.getApplicationName());
+        } catch (final IOException e) {
+            throw BatchMessages.MESSAGES.failToSerialize(e, jobInstance);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] jobExecutionRecord(final JobExecutionImpl jobExecution) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(JOB_EXECUTION);
+            out.writeLong(jobExecution.getExecutionId());
+            out.writeLong(jobExecution.getJobInstance().getInstanceId());
+            writeString(out, BatchUtil.propertiesToString(jobExecution.getJobParameters()));
+            out.writeLong(jobExecution.getCreateTime().getTime());
+            out.writeLong(jobExecution.getStartTime().getTime());
+            out.writeLong(jobExecution.getEndTime().getTime());
+            out.writeLong(jobExecution.getLastUpdatedTime().getTime());
+            writeString(out, jobExecution.getBatchStatus().name());
+            writeString(out, jobExecution.getExitStatus());
+            writeString(out, jobExecution.getRestartPosition());
+        } catch (final IOException e) {
+            throw BatchMessages.MESSAGES.failToSerialize(e, jobExecution);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] stepExecutionRecord(final StepExecutionImpl stepExecution, final long jobExecutionId) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(STEP_EXECUTION);
+            out.writeLong(stepExecution.getStepExecutionId());
+            out.writeLong(jobExecutionId);
+            writeString(out, stepExecution.getStepName());
+            out.writeLong(stepExecution.getStartTime().getTime());
+            out.writeLong(stepExecution.getEndTime().getTime());
+            writeString(out, stepExecution.getBatchStatus().name());
+            writeString(out, stepExecution.getExitStatus());
+            writeBytes(out, checkpointSerializer.serialize(stepExecution.getPersistentUserData()));
+            final StepMetrics stepMetrics = stepExecution.getStepMetrics();
+            out.writeLong(stepMetrics.get(Metric.MetricType.READ_COUNT));
+            out.writeLong(stepMetrics.get(Metric.MetricType.WRITE_COUNT));
+            out.writeLong(stepMetrics.get(Metric.MetricType.COMMIT_COUNT));
+            out.writeLong(stepMetrics.get(Metric.MetricType.ROLLBACK_COUNT));
+            out.writeLong(stepMetrics.get(Metric.MetricType.READ_SKIP_COUNT));
+            out.writeLong(stepMetrics.get(Metric.MetricType.PROCESS_SKIP_COUNT));
+            out.writeLong(stepMetrics.get(Metric.MetricType.FILTER_COUNT));
+            out.writeLong(stepMetrics.get(Metric.MetricType.WRITE_SKIP_COUNT));
+            writeBytes(out, checkpointSerializer.serialize(stepExecution.getReaderCheckpointInfo()));
+            writeBytes(out, checkpointSerializer.serialize(stepExecution.getWriterCheckpointInfo()));
+            out.writeLong(stepMetrics.getCheckpointItemCount());
+        } catch (final IOException e) {
+            throw BatchMessages.MESSAGES.failToSerialize(e, stepExecution);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] partitionExecutionRecord(final PartitionExecutionImpl partitionExecution) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(PARTITION_EXECUTION);
+            out.writeLong(partitionExecution.getStepExecutionId());
+            out.writeInt(partitionExecution.getPartitionId());
+            writeString(out, partitionExecution.getBatchStatus().name());
+            writeString(out, partitionExecution.getExitStatus());
+            writeBytes(out, checkpointSerializer.serialize(partitionExecution.getPersistentUserData()));
+            writeBytes(out, checkpointSerializer.serialize(partitionExecution.getReaderCheckpointInfo()));
+            writeBytes(out, checkpointSerializer.serialize(partitionExecution.getWriterCheckpointInfo()));
+        } catch (final IOException e) {
+            throw BatchMessages.MESSAGES.failToSerialize(e, partitionExecution);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void updateSequence(final AtomicLong sequence, final long id) {
+        if (id > sequence.get()) {
+            sequence.set(id);
+        }
+    }
+
+    private static DataInputStream input(final byte[] record, final int offset) {
+        return new DataInputStream(new ByteArrayInputStream(record, offset, record.length - offset));
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        writeBytes(out, s == null ? null : s.getBytes("UTF-8"));
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, "UTF-8");
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.jberet._private.BatchLogger;
+import org.jberet._private.BatchMessages;
+
+/**
+ * Append-only log of {@link FileRepository}, made of memory-mapped segment files in one directory.
+ * <p/>
+ * Each record is written as its length, the CRC32 of its payload, and the payload.  A segment file is created at its
+ * full size and filled with zeros, so a zero length marks the end of the records in it.  Segments are never written
+ * again once the next one is created.  A snapshot file holds the records needed to rebuild the repository state as of
+ * the start of the segment with the same number, and replaces all segments and snapshots before that number.
+ */
+final class FileRepositoryLog {
+    /**
+     * When appended records are forced to the storage device.
+     */
+    enum SyncPolicy {
+        /**
+         * Forces the segment after each record is appended.
+         */
+        COMMIT,
+
+        /**
+         * Forces the segment periodically, by calling {@link #sync()} from a background thread.
+         */
+        BATCHED,
+
+        /**
+         * Leaves it to the operating system to write dirty pages of the mapped segments.  Records survive the crash
+         * of the process, but not of the operating system.
+         */
+        OS
+    }
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String LOCK_FILE = "lock";
+
+    /**
+     * Length and CRC32 preceding the payload of each record.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final File directory;
+    private final int segmentSize;
+    private final SyncPolicy syncPolicy;
+
+    /**
+     * Numbers of the sealed segments that have not been compacted into a snapshot.
+     */
+    private final List<Long> sealedSegments = new ArrayList<Long>();
+
+    private final RandomAccessFile lockFile;
+
+    private long segmentNumber;
+    private RandomAccessFile segmentFile;
+    private MappedByteBuffer segment;
+    private boolean dirty;
+
+    FileRepositoryLog(final File directory, final int segmentSize, final SyncPolicy syncPolicy) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw BatchMessages.MESSAGES.failToAccessFileRepository(null, directory.getPath());
+        }
+        final File f = new File(directory, LOCK_FILE);
+        FileLock lock = null;
+        try {
+            lockFile = new RandomAccessFile(f, "rw");
+            try {
+                lock = lockFile.getChannel().tryLock();
+            } catch (final OverlappingFileLockException e) {
+                //locked by another job repository in this process
+            }
+            if (lock == null) {
+                lockFile.close();
+                throw new IOException(f.getPath());
+            }
+        } catch (final IOException e) {
+            throw BatchMessages.MESSAGES.failToAccessFileRepository(e, directory.getPath());
+        }
+    }
+
+    /**
+     * Reads all records from the newest snapshot and the segments after it, deletes files no longer needed, and opens a
+     * new segment to append to.  Reading a segment stops at the first incomplete or corrupt record, which can only be
+     * left by a crash while the record was being written.
+     *
+     * @return payloads of all records in the order they were appended
+     */
+    synchronized List<byte[]> recover() {
+        final TreeMap<Long, File> segments = new TreeMap<Long, File>();
+        final TreeMap<Long, File> snapshots = new TreeMap<Long, File>();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File f : files) {
+                final String name = f.getName();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    //a snapshot whose compaction did not complete
+                    delete(f);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SUFFIX)) {
+                    segments.put(parseNumber(name, SEGMENT_PREFIX), f);
+                } else if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SUFFIX)) {
+                    snapshots.put(parseNumber(name, SNAPSHOT_PREFIX), f);
+                }
+            }
+        }
+
+        final List<byte[]> records = new ArrayList<byte[]>();
+        long first = 0;
+        if (!snapshots.isEmpty()) {
+            first = snapshots.lastKey();
+            read(snapshots.remove(first), records);
+            for (final File f : snapshots.values()) {
+                delete(f);
+            }
+        }
+        for (final File f : segments.headMap(first).values()) {
+            delete(f);
+        }
+        for (final Long n : segments.tailMap(first).keySet()) {
+            read(segments.get(n), records);
+            sealedSegments.add(n);
+        }
+
+        segmentNumber = Math.max(first, segments.isEmpty() ? 0 : segments.lastKey() + 1);
+        openSegment(segmentSize);
+        return records;
+    }
+
+    /**
+     * Appends a record to the current segment, creating the next segment first if the record does not fit in it.
+     *
+     * @param payload the record payload
+     */
+    synchronized void append(final byte[] payload) {
+        final int recordSize = RECORD_HEADER_SIZE + payload.length;
+        //leave room for the zero length that ends the segment
+        if (segment.remaining() < recordSize + 4) {
+            seal();
+            segmentNumber++;
+            openSegment(Math.max(segmentSize, recordSize + 4));
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        final int position = segment.position();
+        //write the length last, so that a partially written record is never taken as complete
+        segment.position(position + 4);
+        segment.putInt((int) crc.getValue());
+        segment.put(payload);
+        segment.putInt(position, payload.length);
+        if (syncPolicy == SyncPolicy.COMMIT) {
+            segment.force();
+        } else {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forces records appended since the last call to the storage device.
+     */
+    synchronized void sync() {
+        if (dirty) {
+            segment.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Seals the current segment and creates the next one.  Records appended after this call are not covered by a
+     * snapshot written with the returned number.
+     *
+     * @return the number of the new segment
+     */
+    synchronized long rotate() {
+        seal();
+        segmentNumber++;
+        openSegment(segmentSize);
+        return segmentNumber;
+    }
+
+    /**
+     * Gets the number of sealed segments not yet replaced by a snapshot.
+     *
+     * @return the number of sealed segments
+     */
+    synchronized int getSealedSegmentCount() {
+        return sealedSegments.size();
+    }
+
+    /**
+     * Writes a snapshot of the repository state as of the start of segment {@code number}, and then deletes the
+     * segments and snapshots it replaces.  The snapshot is written to a temporary file and renamed once forced to the
+     * storage device, so that a crash in between leaves the earlier files in effect.
+     *
+     * @param number   the segment number returned by {@link #rotate()}
+     * @param payloads payloads of the snapshot records
+     */
+    void writeSnapshot(final long number, final List<byte[]> payloads) {
+        final File temp = new File(directory, SNAPSHOT_PREFIX + number + SUFFIX + TEMP_SUFFIX);
+        final File snapshot = new File(directory, SNAPSHOT_PREFIX + number + SUFFIX);
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(temp);
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            final CRC32 crc = new CRC32();
+            for (final byte[] payload : payloads) {
+                crc.reset();
+                crc.update(payload);
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            }
+            out.writeInt(0);
+            out.flush();
+            fileOutputStream.getFD().sync();
+            fileOutputStream.close();
+            fileOutputStream = null;
+            if (!temp.renameTo(snapshot)) {
+                throw new IOException(temp.getPath());
+            }
+        } catch (final IOException e) {
+            delete(temp);
+            throw BatchMessages.MESSAGES.failToAccessFileRepository(e, snapshot.getPath());
+        } finally {
+            if (fileOutputStream != null) {
+                try {
+                    fileOutputStream.close();
+                } catch (final IOException e) {
+                    BatchLogger.LOGGER.failToClose(e, FileOutputStream.class, fileOutputStream);
+                }
+            }
+        }
+
+        final List<Long> replaced = new ArrayList<Long>();
+        synchronized (this) {
+            for (final Long n : sealedSegments) {
+                if (n < number) {
+                    replaced.add(n);
+                }
+            }
+            sealedSegments.removeAll(replaced);
+        }
+        for (final Long n : replaced) {
+            delete(new File(directory, SEGMENT_PREFIX + n + SUFFIX));
+        }
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File f : files) {
+                final String name = f.getName();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SUFFIX) &&
+                        parseNumber(name, SNAPSHOT_PREFIX) < number) {
+                    delete(f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces the current segment to the storage device, and releases the segment file, its mapping and the directory
+     * lock.
+     */
+    synchronized void close() {
+        seal();
+        segment = null;
+        try {
+            lockFile.close();
+        } catch (final IOException e) {
+            BatchLogger.LOGGER.failToClose(e, RandomAccessFile.class, lockFile);
+        }
+    }
+
+    private void openSegment(final int size) {
+        final File f = new File(directory, SEGMENT_PREFIX + segmentNumber + SUFFIX);
+        try {
+            segmentFile = new RandomAccessFile(f, "rw");
+            segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (final IOException e) {
+            throw BatchMessages.MESSAGES.failToAccessFileRepository(e, f.getPath());
+        }
+    }
+
+    private void seal() {
+        segment.force();
+        dirty = false;
+        //a sealed segment is only read again on recovery, so its mapping is released now rather than when garbage
+        //collected, which may be long after the file is compacted away
+        unmap(segment);
+        try {
+            segmentFile.close();
+        } catch (final IOException e) {
+            BatchLogger.LOGGER.failToClose(e, RandomAccessFile.class, segmentFile);
+        }
+        sealedSegments.add(segmentNumber);
+    }
+
+    private static void read(final File f, final List<byte[]> records) {
+        RandomAccessFile file = null;
+        ByteBuffer buffer = null;
+        try {
+            file = new RandomAccessFile(f, "r");
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            final CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                final int position = buffer.position();
+                final int length = buffer.getInt();
+                final int checksum = buffer.getInt();
+                if (length <= 0) {
+                    break;
+                }
+                if (length > buffer.remaining()) {
+                    BatchLogger.LOGGER.invalidFileRepositoryRecord(f.getPath(), position);
+                    break;
+                }
+                final byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    BatchLogger.LOGGER.invalidFileRepositoryRecord(f.getPath(), position);
+                    break;
+                }
+                records.add(payload);
+            }
+        } catch (final IOException e) {
+            throw BatchMessages.MESSAGES.failToAccessFileRepository(e, f.getPath());
+        } finally {
+            unmap(buffer);
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (final IOException e) {
+                    BatchLogger.LOGGER.failToClose(e, RandomAccessFile.class, file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the mapping of a memory-mapped buffer, which must not be accessed afterwards.  If the JVM does not
+     * support it, the mapping is released when the buffer is garbage collected.
+     *
+     * @param buffer the buffer to unmap, may be null
+     */
+    private static void unmap(final ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (final Exception e) {
+            //left to garbage collection
+        }
+    }
+
+    private static long parseNumber(final String fileName, final String prefix) {
+        return Long.parseLong(fileName.substring(prefix.length(), fileName.length() - SUFFIX.length()));
+    }
+
+    private static void delete(final File f) {
+        if (f.exists() && !f.delete()) {
+            BatchLogger.LOGGER.failToDeleteFile(f.getPath());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jberet._private.BatchLogger;
+
+/**
+ * Writes checkpoint updates of running step and partition executions to the job repository database in the
+ * background.  Updates are kept in a bounded queue, where a newer update of the same step or partition execution
+ * replaces the older one.  A background thread waits for {@link #writeDelay} milliseconds after the first update is
+ * queued, and then writes all queued updates in JDBC batches in one transaction.  If the queue is full, the thread
+ * adding the update writes all queued updates itself.
+ * <p/>
+ * {@link #flush(String)} writes all queued updates synchronously.  It is called by {@link JdbcRepository} before
+ * writing the final state of a step or partition execution, when it completes, stops or fails.
+ * <p/>
+ * If writing a batch of updates fails, the updates are put back in the queue, unless newer updates of the same
+ * executions have been queued since, and the background thread waits for the next update before trying again.  The
+ * failure is recorded for each execution in the failed batch, and is thrown from the next call to
+ * {@link #add(JdbcRepository.StepExecutionUpdate)} or {@link #flush(String)} for that execution, unless its update has
+ * been written successfully by then.
+ * <p/>
+ * The background thread is created with {@link AbstractRepository#newThread(Properties, Runnable, String)}, i.e., with
+ * the thread factory configured for the batch environment, if any.
+ * {@link #close()} stops the background thread and writes the remaining updates.
+ */
+final class JdbcCheckpointWriter implements Runnable {
+    private final JdbcRepository repository;
+    private final Properties configProperties;
+    private final long writeDelay;
+    private final int queueSize;
+
+    /**
+     * Queued updates keyed by {@link JdbcRepository.StepExecutionUpdate#getKey()}.  Guarded by this.
+     */
+    private final Map<String, JdbcRepository.StepExecutionUpdate> queue =
+            new LinkedHashMap<String, JdbcRepository.StepExecutionUpdate>();
+
+    /**
+     * Failures to write updates, keyed by {@link JdbcRepository.StepExecutionUpdate#getKey()}.  Guarded by this.
+     */
+    private final Map<String, RuntimeException> failures = new HashMap<String, RuntimeException>();
+
+    /**
+     * Held while writing updates, so that updates taken from the queue are written before {@link #flush(String)}
+     * returns.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Whether the last write failed, in which case the background thread waits for the next update.  Guarded by this.
+     */
+    private boolean writeFailed;
+
+    /**
+     * Whether {@link #close()} has been called, after which updates are written synchronously.  Guarded by this.
+     */
+    private boolean closed;
+
+    private Thread writerThread;
+
+    JdbcCheckpointWriter(final JdbcRepository repository, final Properties configProperties, final long writeDelay,
+                         final int queueSize) {
+        this.repository = repository;
+        this.configProperties = configProperties;
+        this.writeDelay = writeDelay;
+        this.queueSize = Math.max(queueSize, 1);
+    }
+
+    void add(final JdbcRepository.StepExecutionUpdate update) {
+        final String key = update.getKey();
+        final boolean full;
+        synchronized (this) {
+            throwFailure(key);
+            queue.put(key, update);
+            full = closed || queue.size() >= queueSize;
+            if (closed) {
+                //written synchronously below, once the writer is closed
+            } else if (writerThread == null) {
+                writerThread = AbstractRepository.newThread(configProperties, this, "jberet-checkpoint-writer");
+                writerThread.start();
+            } else if (queue.size() == 1 || writeFailed) {
+                writeFailed = false;
+                notifyAll();
+            }
+        }
+        if (full) {
+            flush(key);
+        }
+    }
+
+    /**
+     * Writes all queued updates, and throws any failure to write updates of the execution identified by {@code key}.
+     *
+     * @param key the key of the step or partition execution on whose behalf the updates are written
+     */
+    void flush(final String key) {
+        synchronized (writeLock) {
+            write(takeAll());
+        }
+        synchronized (this) {
+            throwFailure(key);
+        }
+    }
+
+    /**
+     * Stops the background thread, and writes all queued updates.  Updates added afterwards are written synchronously.
+     */
+    void close() {
+        final Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = writerThread;
+            notifyAll();
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (writeLock) {
+            write(takeAll());
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while ((queue.isEmpty() || writeFailed) && !closed) {
+                        wait();
+                    }
+                    //let more updates arrive within the write delay, so they are written together; close() cuts
+                    //the delay short and writes the queued updates itself
+                    if (!closed) {
+                        wait(writeDelay);
+                    }
+                    if (closed) {
+                        return;
+                    }
+                }
+            } catch (final InterruptedException e) {
+                return;
+            }
+            synchronized (writeLock) {
+                write(takeAll());
+            }
+        }
+    }
+
+    private synchronized List<JdbcRepository.StepExecutionUpdate> takeAll() {
+        final List<JdbcRepository.StepExecutionUpdate> updates =
+                new ArrayList<JdbcRepository.StepExecutionUpdate>(queue.values());
+        queue.clear();
+        return updates;
+    }
+
+    /**
+     * Writes updates taken from the queue.  If the write fails, each update is put back in the queue unless a newer
+     * update of the same execution has been queued, and the failure is recorded for each execution.
+     *
+     * @param updates the updates to write
+     */
+    private void write(final List<JdbcRepository.StepExecutionUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        try {
+            repository.updateStepExecutions(updates);
+        } catch (final RuntimeException e) {
+            BatchLogger.LOGGER.failToWriteCheckpoints(e);
+            synchronized (this) {
+                for (final JdbcRepository.StepExecutionUpdate update : updates) {
+                    final String key = update.getKey();
+                    if (!queue.containsKey(key)) {
+                        queue.put(key, update);
+                    }
+                    failures.put(key, e);
+                }
+                writeFailed = true;
+            }
+            return;
+        }
+        synchronized (this) {
+            for (final JdbcRepository.StepExecutionUpdate update : updates) {
+                failures.remove(update.getKey());
+            }
+        }
+    }
+
+    private void throwFailure(final String key) {
+        final RuntimeException e = failures.remove(key);
+        if (e != null) {
+            throw e;
+        }
+    }
+}
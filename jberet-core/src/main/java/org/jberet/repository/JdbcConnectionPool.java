@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.jberet._private.BatchLogger;
+
+/**
+ * A small pool of JDBC connections obtained from {@code java.sql.DriverManager}, used by {@link JdbcRepository} when
+ * it is configured with a database url instead of a {@code javax.sql.DataSource}.
+ * <p/>
+ * Connections handed out by {@link #getConnection()} are proxies, whose {@code close()} method returns the physical
+ * connection to the pool.  Each pooled connection also keeps the {@code PreparedStatement} of each SQL statement in
+ * {@link #cachedSqls}, and {@code close()} of such a statement only clears its parameters, so that the same statement
+ * is reused the next time it is prepared on the connection.
+ * <p/>
+ * Idle connections are reused most recently returned first.  Connections idle for longer than {@link #idleTimeout} are
+ * closed, as long as at least {@link #minSize} connections remain open, and those idle for longer than
+ * {@link #validationInterval} are validated before being handed out.  Idle connections are evicted and validated when
+ * connections are obtained and returned, without a background thread.
+ */
+final class JdbcConnectionPool {
+    /**
+     * The timeout in seconds of {@code java.sql.Connection#isValid(int)} when validating idle connections.
+     */
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    private final String url;
+    private final Properties properties;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long validationInterval;
+    private final long maxWait;
+
+    /**
+     * SQL statements whose {@code PreparedStatement} is cached per pooled connection.
+     */
+    private final Set<String> cachedSqls;
+
+    /**
+     * Idle connections, the most recently returned first.  Guarded by this.
+     */
+    private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+
+    /**
+     * The number of open physical connections, idle or in use.  Guarded by this.
+     */
+    private int size;
+
+    JdbcConnectionPool(final String url, final Properties properties, final int minSize, final int maxSize,
+                       final long idleTimeout, final long validationInterval, final long maxWait,
+                       final Set<String> cachedSqls) {
+        this.url = url;
+        this.properties = properties;
+        this.maxSize = Math.max(maxSize, 1);
+        this.minSize = Math.min(minSize, this.maxSize);
+        this.idleTimeout = idleTimeout;
+        this.validationInterval = validationInterval;
+        this.maxWait = maxWait;
+        this.cachedSqls = cachedSqls;
+    }
+
+    /**
+     * Gets a connection from the pool, opening a new physical connection if no idle connection is available and the
+     * pool is not full, or else waiting up to {@link #maxWait} milliseconds for a connection to be returned.
+     *
+     * @return a pooled connection, which should be closed to return it to the pool
+     * @throws SQLException if failed to open a physical connection, or timed out waiting for one
+     */
+    Connection getConnection() throws SQLException {
+        PooledConnection pooledConnection;
+        final long deadline = System.currentTimeMillis() + maxWait;
+        synchronized (this) {
+            while (true) {
+                evictIdleConnections();
+                pooledConnection = idle.poll();
+                if (pooledConnection != null) {
+                    break;
+                }
+                if (size < maxSize) {
+                    size++;
+                    break;
+                }
+                final long timeout = deadline - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    throw new SQLException("Timed out waiting for a connection after " + maxWait + " ms: " + url);
+                }
+                try {
+                    wait(timeout);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException(e);
+                }
+            }
+        }
+
+        if (pooledConnection != null && System.currentTimeMillis() - pooledConnection.lastUsed > validationInterval &&
+                !pooledConnection.isValid()) {
+            pooledConnection.closePhysical();
+            pooledConnection = null;
+        }
+        if (pooledConnection == null) {
+            try {
+                pooledConnection = new PooledConnection(DriverManager.getConnection(url, properties));
+            } catch (final SQLException e) {
+                discard();
+                throw e;
+            } catch (final RuntimeException e) {
+                discard();
+                throw e;
+            }
+        }
+        return (Connection) Proxy.newProxyInstance(JdbcConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandle(pooledConnection));
+    }
+
+    /**
+     * Returns a connection to the pool.  Its state is reset, and if that fails, the physical connection is closed.
+     */
+    private void release(final PooledConnection pooledConnection) {
+        try {
+            if (!pooledConnection.connection.getAutoCommit()) {
+                pooledConnection.connection.rollback();
+                pooledConnection.connection.setAutoCommit(true);
+            }
+            pooledConnection.connection.clearWarnings();
+        } catch (final SQLException e) {
+            pooledConnection.closePhysical();
+            discard();
+            return;
+        }
+        pooledConnection.lastUsed = System.currentTimeMillis();
+        synchronized (this) {
+            idle.addFirst(pooledConnection);
+            evictIdleConnections();
+            notify();
+        }
+    }
+
+    private synchronized void discard() {
+        size--;
+        notify();
+    }
+
+    /**
+     * Closes connections idle for longer than {@link #idleTimeout}, least recently used first, while more than
+     * {@link #minSize} connections are open.  Must be called while holding the lock on this.
+     */
+    private void evictIdleConnections() {
+        final long now = System.currentTimeMillis();
+        for (final Iterator<PooledConnection> it = idle.descendingIterator(); it.hasNext() && size > minSize; ) {
+            final PooledConnection c = it.next();
+            if (now - c.lastUsed <= idleTimeout) {
+                break;
+            }
+            it.remove();
+            size--;
+            c.closePhysical();
+        }
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A physical connection and its cached statements.
+     */
+    private final class PooledConnection {
+        final Connection connection;
+
+        /**
+         * Cached statements keyed by SQL statement and the arguments of {@code prepareStatement} after it.
+         */
+        final Map<Object, CachedStatement> statements = new HashMap<Object, CachedStatement>();
+
+        long lastUsed;
+
+        PooledConnection(final Connection connection) {
+            this.connection = connection;
+        }
+
+        boolean isValid() {
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT);
+            } catch (final Throwable e) {
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            statements.clear();
+            try {
+                connection.close();
+            } catch (final SQLException e) {
+                BatchLogger.LOGGER.failToClose(e, Connection.class, connection);
+            }
+        }
+
+        /**
+         * Prepares a statement, or reuses the cached one if the SQL statement is cacheable.
+         */
+        PreparedStatement prepareStatement(final Method method, final Object[] args) throws Throwable {
+            if (!cachedSqls.contains(args[0])) {
+                return (PreparedStatement) invoke(connection, method, args);
+            }
+            final Object key = args.length == 1 ? args[0] : Arrays.asList(args);
+            CachedStatement cachedStatement = statements.get(key);
+            if (cachedStatement == null) {
+                cachedStatement = new CachedStatement((PreparedStatement) invoke(connection, method, args));
+                statements.put(key, cachedStatement);
+            } else if (cachedStatement.inUse) {
+                //the same statement is prepared again before the cached one is closed
+                return (PreparedStatement) invoke(connection, method, args);
+            }
+            cachedStatement.inUse = true;
+            return cachedStatement.proxy;
+        }
+    }
+
+    /**
+     * The connection handed out to the caller for one use.  Once closed, the physical connection is returned to the
+     * pool, and this handle can no longer be used.
+     */
+    private final class ConnectionHandle implements InvocationHandler {
+        private PooledConnection pooledConnection;
+
+        ConnectionHandle(final PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if (name.equals("close") && args == null) {
+                if (pooledConnection != null) {
+                    final PooledConnection c = pooledConnection;
+                    pooledConnection = null;
+                    release(c);
+                }
+                return null;
+            }
+            if (name.equals("isClosed") && args == null) {
+                return pooledConnection == null || pooledConnection.connection.isClosed();
+            }
+            if (name.equals("equals") && args != null && args.length == 1) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode") && args == null) {
+                return System.identityHashCode(proxy);
+            }
+            if (pooledConnection == null) {
+                throw new SQLException("Connection is closed");
+            }
+            if (name.equals("prepareStatement")) {
+                return pooledConnection.prepareStatement(method, args);
+            }
+            return JdbcConnectionPool.invoke(pooledConnection.connection, method, args);
+        }
+    }
+
+    /**
+     * A cached statement, whose proxy only clears its parameters and batch when closed.
+     */
+    private static final class CachedStatement implements InvocationHandler {
+        final PreparedStatement statement;
+        final PreparedStatement proxy;
+        boolean inUse;
+
+        CachedStatement(final PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(JdbcConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if (name.equals("close") && args == null) {
+                if (inUse) {
+                    inUse = false;
+                    statement.clearParameters();
+                    statement.clearBatch();
+                }
+                return null;
+            }
+            if (name.equals("isClosed") && args == null) {
+                return !inUse || statement.isClosed();
+            }
+            if (name.equals("equals") && args != null && args.length == 1) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode") && args == null) {
+                return System.identityHashCode(proxy);
+            }
+            return JdbcConnectionPool.invoke(statement, method, args);
+        }
+    }
+}
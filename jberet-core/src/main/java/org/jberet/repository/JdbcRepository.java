@@ -14,6 +14,8 @@ package org.jberet.repository;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivilegedAction;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -23,10 +25,19 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.batch.runtime.BatchStatus;
 import javax.batch.runtime.JobExecution;
@@ -44,6 +55,8 @@ import org.jberet.runtime.JobExecutionImpl;
 import org.jberet.runtime.JobInstanceImpl;
 import org.jberet.runtime.PartitionExecutionImpl;
 import org.jberet.runtime.StepExecutionImpl;
+import org.jberet.runtime.metric.StepMetrics;
+import org.jberet.spi.CheckpointSerializer;
 import org.jberet.util.BatchUtil;
 import org.wildfly.security.manager.WildFlySecurityManager;
 
@@ -57,6 +70,13 @@ public final class JdbcRepository extends AbstractRepository {
     public static final String DB_PASSWORD_KEY = "db-password";
     public static final String DB_PROPERTIES_KEY = "db-properties";
     public static final String DB_PROPERTY_DELIM = ":";
+    public static final String CHECKPOINT_WRITE_DELAY_KEY = "checkpoint-write-delay";
+    public static final String CHECKPOINT_QUEUE_SIZE_KEY = "checkpoint-queue-size";
+    public static final String DB_POOL_MIN_SIZE_KEY = "db-pool-min-size";
+    public static final String DB_POOL_MAX_SIZE_KEY = "db-pool-max-size";
+    public static final String DB_POOL_IDLE_TIMEOUT_KEY = "db-pool-idle-timeout";
+    public static final String DB_POOL_VALIDATION_INTERVAL_KEY = "db-pool-validation-interval";
+    public static final String DB_POOL_MAX_WAIT_KEY = "db-pool-max-wait";
 
     //defaults for entries in jberet.properties
     //private static final String DEFAULT_DATASOURCE = "java:jboss/datasources/ExampleDS";
@@ -64,11 +84,18 @@ public final class JdbcRepository extends AbstractRepository {
     private static final String DEFAULT_DB_URL = "jdbc:h2:~/jberet-repo";
     private static final String DEFAULT_SQL_FILE = "sql/jberet-sql.properties";
     private static final String DEFAULT_DDL_FILE = "sql/jberet.ddl";
+    private static final int DEFAULT_CHECKPOINT_QUEUE_SIZE = 1000;
+    //no limit by default, so that concurrent partitions never wait for a connection, as without pooling
+    private static final int DEFAULT_DB_POOL_MAX_SIZE = Integer.MAX_VALUE;
+    private static final long DEFAULT_DB_POOL_IDLE_TIMEOUT = 60000;
+    private static final long DEFAULT_DB_POOL_VALIDATION_INTERVAL = 30000;
+    private static final long DEFAULT_DB_POOL_MAX_WAIT = 30000;
 
     //keys used in *.sql files
     private static final String SELECT_ALL_JOB_INSTANCES = "select-all-job-instances";
     private static final String COUNT_JOB_INSTANCES_BY_JOB_NAME = "count-job-instances-by-job-name";
     private static final String SELECT_JOB_INSTANCES_BY_JOB_NAME = "select-job-instances-by-job-name";
+    private static final String SELECT_JOB_INSTANCES_BY_JOB_NAME_DESC = "select-job-instances-by-job-name-desc";
     private static final String SELECT_JOB_INSTANCE = "select-job-instance";
     private static final String INSERT_JOB_INSTANCE = "insert-job-instance";
     private static final String DELETE_JOB_INSTANCE = "delete-job-instance";
@@ -81,6 +108,7 @@ public final class JdbcRepository extends AbstractRepository {
     private static final String UPDATE_JOB_EXECUTION = "update-job-execution";
     private static final String DELETE_JOB_EXECUTIONS_BY_JOB_INSTANCE_ID = "delete-job-executions-by-job-instance-id";
     private static final String DELETE_JOB_EXECUTION = "delete-job-execution";
+    private static final String SELECT_RUNNING_JOB_EXECUTIONS_BY_JOB_NAME = "select-running-job-executions-by-job-name";
 
     private static final String SELECT_ALL_STEP_EXECUTIONS = "select-all-step-executions";
     private static final String SELECT_STEP_EXECUTIONS_BY_JOB_EXECUTION_ID = "select-step-executions-by-job-execution-id";
@@ -105,9 +133,44 @@ public final class JdbcRepository extends AbstractRepository {
     private String dbUrl;
     private final Properties dbProperties;
     private final Properties sqls = new Properties();
+
+    /**
+     * Pools connections obtained with {@link #dbUrl}, unless {@value #DB_POOL_MAX_SIZE_KEY} is configured to 0.  Null
+     * if a datasource is used.
+     */
+    private JdbcConnectionPool connectionPool;
     private boolean isOracle;
     private int[] idIndexInOracle;
 
+    /**
+     * Writes checkpoint updates of running step and partition executions in the background, if
+     * {@value #CHECKPOINT_WRITE_DELAY_KEY} is configured to a positive value.  Null otherwise.
+     */
+    private JdbcCheckpointWriter checkpointWriter;
+
+    /**
+     * Closes {@link #checkpointWriter} when the JVM shuts down, so that queued checkpoint updates are not lost.  Null
+     * if there is no checkpoint writer.
+     */
+    private Thread shutdownHook;
+
+    private final CheckpointSerializer checkpointSerializer;
+
+    /**
+     * Update statements for step executions and partition executions, indexed by the bit mask of checkpoint columns
+     * included in the statement (see {@link StepExecutionUpdate#CHECKPOINT_COLUMNS}).  If the configured update
+     * statements cannot be narrowed, only the element for all columns is present.
+     */
+    private final String[] updateStepSqls = new String[1 << StepExecutionUpdate.CHECKPOINT_COLUMNS.length];
+    private final String[] updatePartitionSqls = new String[updateStepSqls.length];
+
+    /**
+     * Fingerprints of the checkpoint columns last committed to the database for each running step execution and
+     * partition execution, keyed by {@link StepExecutionUpdate#getKey()}.  Checkpoint columns whose fingerprints are
+     * unchanged are left out of the next update.
+     */
+    private final ConcurrentMap<String, byte[][]> persistedCheckpoints = new ConcurrentHashMap<String, byte[][]>();
+
     public static JdbcRepository create(final Properties configProperties) {
         return new JdbcRepository(configProperties);
     }
@@ -117,6 +180,8 @@ public final class JdbcRepository extends AbstractRepository {
         dataSourceName = configProperties.getProperty(DATASOURCE_JNDI_KEY);
         dbUrl = configProperties.getProperty(DB_URL_KEY);
         dbProperties = new Properties();
+        checkpointSerializer = createCheckpointSerializer(configProperties, getClassLoader());
+        configureExecutionCache(configProperties);
 
         //if dataSourceName is configured, use dataSourceName;
         //else if dbUrl is specified, use dbUrl;
@@ -180,7 +245,73 @@ public final class JdbcRepository extends AbstractRepository {
                 }
             }
         }
+        initUpdateSqls(sqls.getProperty(UPDATE_STEP_EXECUTION), updateStepSqls);
+        initUpdateSqls(sqls.getProperty(UPDATE_PARTITION_EXECUTION), updatePartitionSqls);
+        if (dataSource == null) {
+            createConnectionPool();
+        }
         createTables();
+
+        //if checkpoint-write-delay is configured, checkpoint updates of running executions are written in the
+        //background, and may be delayed by up to checkpoint-write-delay milliseconds
+        final long writeDelay = getLongConfigProperty(configProperties, CHECKPOINT_WRITE_DELAY_KEY, 0);
+        if (writeDelay > 0) {
+            checkpointWriter = new JdbcCheckpointWriter(this, configProperties, writeDelay,
+                    (int) getLongConfigProperty(configProperties, CHECKPOINT_QUEUE_SIZE_KEY, DEFAULT_CHECKPOINT_QUEUE_SIZE));
+            shutdownHook = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    checkpointWriter.close();
+                }
+            }, "jberet-checkpoint-writer-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    /**
+     * Stops writing checkpoint updates in the background, and writes all queued updates.  Checkpoint updates are
+     * written synchronously afterwards.  This method is also called when the JVM shuts down.
+     */
+    public void close() {
+        if (checkpointWriter == null) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (final IllegalStateException e) {
+            //the JVM is shutting down, and the shutdown hook closes the checkpoint writer
+        }
+        checkpointWriter.close();
+    }
+
+    private void createConnectionPool() {
+        final int maxSize = (int) Math.min(Integer.MAX_VALUE,
+                getLongConfigProperty(configProperties, DB_POOL_MAX_SIZE_KEY, DEFAULT_DB_POOL_MAX_SIZE));
+        if (maxSize <= 0) {
+            return;
+        }
+        //statements of the fixed sql set are cached per pooled connection, except the one-off query for testing
+        //table existence, which may fail to prepare before tables are created
+        final Set<String> cachedSqls = new HashSet<String>();
+        for (final String key : sqls.stringPropertyNames()) {
+            if (!key.equals(COUNT_PARTITION_EXECUTIONS)) {
+                cachedSqls.add(sqls.getProperty(key));
+            }
+        }
+        for (int i = 0; i < updateStepSqls.length; i++) {
+            if (updateStepSqls[i] != null) {
+                cachedSqls.add(updateStepSqls[i]);
+            }
+            if (updatePartitionSqls[i] != null) {
+                cachedSqls.add(updatePartitionSqls[i]);
+            }
+        }
+        connectionPool = new JdbcConnectionPool(dbUrl, dbProperties,
+                (int) getLongConfigProperty(configProperties, DB_POOL_MIN_SIZE_KEY, 0), maxSize,
+                getLongConfigProperty(configProperties, DB_POOL_IDLE_TIMEOUT_KEY, DEFAULT_DB_POOL_IDLE_TIMEOUT),
+                getLongConfigProperty(configProperties, DB_POOL_VALIDATION_INTERVAL_KEY, DEFAULT_DB_POOL_VALIDATION_INTERVAL),
+                getLongConfigProperty(configProperties, DB_POOL_MAX_WAIT_KEY, DEFAULT_DB_POOL_MAX_WAIT),
+                cachedSqls);
     }
 
     private void createTables() {
@@ -296,21 +427,50 @@ public final class JdbcRepository extends AbstractRepository {
             }
             rs = preparedStatement.executeQuery();
             while (rs.next()) {
-                final long i = rs.getLong(TableColumns.JOBINSTANCEID);
-                JobInstanceImpl jobInstance1 = (JobInstanceImpl) jobInstances.get(i);
-                if (jobInstance1 == null) {
-                    final String appName = rs.getString(TableColumns.APPLICATIONNAME);
-                    if (jobName == null) {
-                        final String goodJobName = rs.getString(TableColumns.JOBNAME);
-                        jobInstance1 = new JobInstanceImpl(getJob(goodJobName), new ApplicationAndJobName(appName, goodJobName));
-                    } else {
-                        jobInstance1 = new JobInstanceImpl(getJob(jobName), new ApplicationAndJobName(appName, jobName));
-                    }
-                    jobInstance1.setId(i);
-                    jobInstances.put(i, jobInstance1);
+                result.add(getOrCreateJobInstance(rs, jobName));
+            }
+        } catch (final Exception e) {
+            throw BatchMessages.MESSAGES.failToRunQuery(e, select);
+        } finally {
+            close(connection, preparedStatement, null, rs);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Job instances are ordered and limited by the database, and only rows up to the end of the requested page are
+     * fetched.
+     */
+    @Override
+    public List<JobInstance> getJobInstances(final String jobName, final int start, final int count) {
+        final String select = sqls.getProperty(SELECT_JOB_INSTANCES_BY_JOB_NAME_DESC);
+        if (select == null) {
+            //not included in a custom sql-file, so page through all job instances of the job
+            final List<JobInstance> instances = getJobInstances(jobName);
+            final List<JobInstance> result = new ArrayList<JobInstance>();
+            for (int i = instances.size() - 1 - start; i >= 0 && result.size() < count; i--) {
+                result.add(instances.get(i));
+            }
+            return result;
+        }
+        final List<JobInstance> result = new ArrayList<JobInstance>();
+        if (count <= 0) {
+            return result;
+        }
+        final Connection connection = getConnection();
+        ResultSet rs = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = connection.prepareStatement(select);
+            preparedStatement.setMaxRows((int) Math.min((long) start + count, Integer.MAX_VALUE));
+            preparedStatement.setString(1, jobName);
+            rs = preparedStatement.executeQuery();
+            for (int pos = 0; rs.next(); pos++) {
+                if (pos >= start) {
+                    result.add(getOrCreateJobInstance(rs, jobName));
                 }
-                //this job instance is already in the cache, so get it from the cache
-                result.add(jobInstance1);
             }
         } catch (final Exception e) {
             throw BatchMessages.MESSAGES.failToRunQuery(e, select);
@@ -320,6 +480,32 @@ public final class JdbcRepository extends AbstractRepository {
         return result;
     }
 
+    /**
+     * Gets the job instance of the current row of a result set from the cache, or creates and caches it.
+     *
+     * @param rs      the result set of a job instance query
+     * @param jobName the job name queried, or null if the job name is read from the result set
+     * @return the job instance
+     * @throws SQLException if failed to read the result set
+     */
+    private JobInstance getOrCreateJobInstance(final ResultSet rs, final String jobName) throws SQLException {
+        final long i = rs.getLong(TableColumns.JOBINSTANCEID);
+        JobInstanceImpl jobInstance1 = (JobInstanceImpl) jobInstances.get(i);
+        if (jobInstance1 == null) {
+            final String appName = rs.getString(TableColumns.APPLICATIONNAME);
+            if (jobName == null) {
+                final String goodJobName = rs.getString(TableColumns.JOBNAME);
+                jobInstance1 = new JobInstanceImpl(getJob(goodJobName), new ApplicationAndJobName(appName, goodJobName));
+            } else {
+                jobInstance1 = new JobInstanceImpl(getJob(jobName), new ApplicationAndJobName(appName, jobName));
+            }
+            jobInstance1.setId(i);
+            jobInstance1 = (JobInstanceImpl) cacheJobInstance(jobInstance1);
+        }
+        //this job instance is already in the cache, so get it from the cache
+        return jobInstance1;
+    }
+
     @Override
     public JobInstance getJobInstance(final long jobInstanceId) {
         JobInstance result = super.getJobInstance(jobInstanceId);
@@ -342,7 +528,7 @@ public final class JdbcRepository extends AbstractRepository {
                     final String goodJobName = rs.getString(TableColumns.JOBNAME);
                     result = new JobInstanceImpl(getJob(goodJobName), new ApplicationAndJobName(appName, goodJobName));
                     ((JobInstanceImpl) result).setId(jobInstanceId);
-                    jobInstances.put(jobInstanceId, result);
+                    result = cacheJobInstance(result);
                 }
                 break;
             }
@@ -454,7 +640,7 @@ public final class JdbcRepository extends AbstractRepository {
                             rs.getString(TableColumns.BATCHSTATUS),
                             rs.getString(TableColumns.EXITSTATUS),
                             rs.getString(TableColumns.RESTARTPOSITION));
-                    jobExecutions.put(jobExecutionId, result);
+                    result = (JobExecutionImpl) cacheJobExecution(result);
                 }
                 break;
             }
@@ -502,7 +688,7 @@ public final class JdbcRepository extends AbstractRepository {
                                     rs.getString(TableColumns.BATCHSTATUS), rs.getString(TableColumns.EXITSTATUS),
                                     rs.getString(TableColumns.RESTARTPOSITION));
 
-                    jobExecutions.put(i, jobExecution1);
+                    jobExecution1 = cacheJobExecution(jobExecution1);
                 }
                 // jobExecution1 is either got from the cache, or created, now add it to the result list
                 result.add(jobExecution1);
@@ -515,6 +701,37 @@ public final class JdbcRepository extends AbstractRepository {
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Job executions started by other processes sharing the same job repository are also included.
+     */
+    @Override
+    public List<Long> getRunningExecutions(final String jobName) {
+        final String select = sqls.getProperty(SELECT_RUNNING_JOB_EXECUTIONS_BY_JOB_NAME);
+        if (select == null) {
+            //not included in a custom sql-file
+            return getRunningExecutionsOfAll(jobName);
+        }
+        final Connection connection = getConnection();
+        ResultSet rs = null;
+        PreparedStatement preparedStatement = null;
+        final List<Long> result = new ArrayList<Long>();
+        try {
+            preparedStatement = connection.prepareStatement(select);
+            preparedStatement.setString(1, jobName);
+            rs = preparedStatement.executeQuery();
+            while (rs.next()) {
+                result.add(rs.getLong(1));
+            }
+        } catch (final Exception e) {
+            throw BatchMessages.MESSAGES.failToRunQuery(e, select);
+        } finally {
+            close(connection, preparedStatement, null, rs);
+        }
+        return result;
+    }
+
     @Override
     void insertStepExecution(final StepExecutionImpl stepExecution, final JobExecutionImpl jobExecution) {
         final String insert = sqls.getProperty(INSERT_STEP_EXECUTION);
@@ -542,71 +759,179 @@ public final class JdbcRepository extends AbstractRepository {
 
     @Override
     public void updateStepExecution(final StepExecution stepExecution) {
-        final String update = sqls.getProperty(UPDATE_STEP_EXECUTION);
-        final Connection connection = getConnection();
-        final StepExecutionImpl stepExecutionImpl = (StepExecutionImpl) stepExecution;
-        PreparedStatement preparedStatement = null;
-        try {
-            preparedStatement = connection.prepareStatement(update);
-            preparedStatement.setTimestamp(1, new Timestamp(stepExecution.getEndTime().getTime()));
-            preparedStatement.setString(2, stepExecution.getBatchStatus().name());
-            preparedStatement.setString(3, stepExecution.getExitStatus());
-            preparedStatement.setString(4, TableColumns.formatException(stepExecutionImpl.getException()));
-            preparedStatement.setBytes(5, BatchUtil.objectToBytes(stepExecution.getPersistentUserData()));
-            preparedStatement.setLong(6, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.READ_COUNT));
-            preparedStatement.setLong(7, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.WRITE_COUNT));
-            preparedStatement.setLong(8, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.COMMIT_COUNT));
-            preparedStatement.setLong(9, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.ROLLBACK_COUNT));
-            preparedStatement.setLong(10, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.READ_SKIP_COUNT));
-            preparedStatement.setLong(11, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.PROCESS_SKIP_COUNT));
-            preparedStatement.setLong(12, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.FILTER_COUNT));
-            preparedStatement.setLong(13, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.WRITE_SKIP_COUNT));
-            preparedStatement.setBytes(14, BatchUtil.objectToBytes(stepExecutionImpl.getReaderCheckpointInfo()));
-            preparedStatement.setBytes(15, BatchUtil.objectToBytes(stepExecutionImpl.getWriterCheckpointInfo()));
-
-            preparedStatement.setLong(16, stepExecution.getStepExecutionId());
-
-            preparedStatement.executeUpdate();
-        } catch (final Exception e) {
-            throw BatchMessages.MESSAGES.failToRunQuery(e, update);
-        } finally {
-            close(connection, preparedStatement, null, null);
+        //pending checkpoint updates are written first, so they do not overwrite this update later
+        final StepExecutionUpdate update = new StepExecutionUpdate((StepExecutionImpl) stepExecution, checkpointSerializer);
+        if (checkpointWriter != null) {
+            checkpointWriter.flush(update.getKey());
         }
+        updateStepExecutions(Collections.singletonList(update));
     }
 
     @Override
     public void savePersistentData(final JobExecution jobExecution, final AbstractStepExecution stepOrPartitionExecution) {
         //super.savePersistentData() serialize persistent data and checkpoint info to avoid further modification
         super.savePersistentData(jobExecution, stepOrPartitionExecution);
-        if (stepOrPartitionExecution instanceof StepExecutionImpl) {
-            //stepExecution is for the main step, and should map to the STEP_EXECUTIOIN table
-            updateStepExecution(stepOrPartitionExecution);
+
+        //stepExecution is for the main step, and should map to the STEP_EXECUTIOIN table;
+        //stepExecutionId is for a partition execution, and should map to the PARTITION_EXECUTION table
+        final StepExecutionUpdate update = new StepExecutionUpdate(stepOrPartitionExecution, checkpointSerializer);
+        if (checkpointWriter != null && stepOrPartitionExecution.getBatchStatus() == BatchStatus.STARTED) {
+            checkpointWriter.add(update);
         } else {
-            //stepExecutionId is for a partition execution, and should map to the PARTITION_EXECUTION table
-            final PartitionExecutionImpl partitionExecution = (PartitionExecutionImpl) stepOrPartitionExecution;
-            final String update = sqls.getProperty(UPDATE_PARTITION_EXECUTION);
-            final Connection connection = getConnection();
-            PreparedStatement preparedStatement = null;
-            try {
-                preparedStatement = connection.prepareStatement(update);
-                preparedStatement.setString(1, partitionExecution.getBatchStatus().name());
-                preparedStatement.setString(2, partitionExecution.getExitStatus());
-                preparedStatement.setString(3, TableColumns.formatException(partitionExecution.getException()));
-                preparedStatement.setBytes(4, BatchUtil.objectToBytes(partitionExecution.getPersistentUserData()));
-                preparedStatement.setBytes(5, BatchUtil.objectToBytes(partitionExecution.getReaderCheckpointInfo()));
-                preparedStatement.setBytes(6, BatchUtil.objectToBytes(partitionExecution.getWriterCheckpointInfo()));
-                preparedStatement.setInt(7, partitionExecution.getPartitionId());
-                preparedStatement.setLong(8, partitionExecution.getStepExecutionId());
+            //the step or partition has ended, or is ending, so write synchronously after all pending updates
+            if (checkpointWriter != null) {
+                checkpointWriter.flush(update.getKey());
+            }
+            updateStepExecutions(Collections.singletonList(update));
+        }
+    }
 
+    /**
+     * Writes updates of step executions and partition executions to the database.  If there are more than one update,
+     * they are written in JDBC batches within one local transaction.
+     * <p/>
+     * Checkpoint columns (persistent user data, reader checkpoint info and writer checkpoint info) that have not
+     * changed since they were last committed for the same execution are left out of the update statement.
+     *
+     * @param updates step and partition execution updates
+     */
+    void updateStepExecutions(final List<StepExecutionUpdate> updates) {
+        final Connection connection = getConnection();
+        final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>();
+        String sql = null;
+        try {
+            if (updates.size() == 1) {
+                final StepExecutionUpdate update = updates.get(0);
+                final int columns = getChangedColumns(update);
+                sql = getUpdateSql(update, columns);
+                final PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                statements.put(sql, preparedStatement);
+                update.setParameters(preparedStatement, columns);
                 preparedStatement.executeUpdate();
+
+                //if the connection is part of a transaction, the update may still be rolled back
+                updatePersistedCheckpoints(updates, connection.getAutoCommit());
+                return;
+            }
+
+            final boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                for (final StepExecutionUpdate update : updates) {
+                    final int columns = getChangedColumns(update);
+                    sql = getUpdateSql(update, columns);
+                    PreparedStatement preparedStatement = statements.get(sql);
+                    if (preparedStatement == null) {
+                        preparedStatement = connection.prepareStatement(sql);
+                        statements.put(sql, preparedStatement);
+                    }
+                    update.setParameters(preparedStatement, columns);
+                    preparedStatement.addBatch();
+                }
+                for (final Map.Entry<String, PreparedStatement> e : statements.entrySet()) {
+                    sql = e.getKey();
+                    e.getValue().executeBatch();
+                }
+                if (autoCommit) {
+                    connection.commit();
+                }
             } catch (final Exception e) {
-                throw BatchMessages.MESSAGES.failToRunQuery(e, update);
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw e;
             } finally {
-                close(connection, preparedStatement, null, null);
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+            updatePersistedCheckpoints(updates, autoCommit);
+        } catch (final Exception e) {
+            for (final StepExecutionUpdate update : updates) {
+                persistedCheckpoints.remove(update.getKey());
+            }
+            throw BatchMessages.MESSAGES.failToRunQuery(e, sql);
+        } finally {
+            for (final PreparedStatement preparedStatement : statements.values()) {
+                close(null, preparedStatement, null, null);
+            }
+            close(connection, null, null, null);
+        }
+    }
+
+    /**
+     * Gets the bit mask of checkpoint columns in {@code update} that are different from those last committed for the
+     * same execution.
+     */
+    private int getChangedColumns(final StepExecutionUpdate update) {
+        final byte[][] persisted = persistedCheckpoints.get(update.getKey());
+        if (persisted == null || getUpdateSql(update, 0) == null) {
+            return updateStepSqls.length - 1;
+        }
+        int columns = 0;
+        for (int i = 0; i < persisted.length; i++) {
+            if (!Arrays.equals(persisted[i], update.fingerprints[i])) {
+                columns |= 1 << i;
+            }
+        }
+        return columns;
+    }
+
+    private String getUpdateSql(final StepExecutionUpdate update, final int columns) {
+        return update.partitionId < 0 ? updateStepSqls[columns] : updatePartitionSqls[columns];
+    }
+
+    /**
+     * Records the checkpoint columns written by {@code updates} as persisted, if they have been committed.  Executions
+     * that have ended are no longer tracked.
+     */
+    private void updatePersistedCheckpoints(final List<StepExecutionUpdate> updates, final boolean committed) {
+        for (final StepExecutionUpdate update : updates) {
+            if (committed && BatchStatus.STARTED.name().equals(update.batchStatus)) {
+                persistedCheckpoints.put(update.getKey(), update.fingerprints);
+            } else {
+                persistedCheckpoints.remove(update.getKey());
             }
         }
     }
 
+    /**
+     * Derives from the configured update statement {@code sql} a statement for each subset of checkpoint columns,
+     * by removing the assignments of the other checkpoint columns.  If any checkpoint column assignment is not found
+     * in {@code sql}, only the configured statement is used.
+     */
+    private static void initUpdateSqls(final String sql, final String[] result) {
+        final int all = result.length - 1;
+        result[all] = sql;
+        for (int columns = 0; columns < all; columns++) {
+            String narrowed = sql;
+            for (int i = 0; i < StepExecutionUpdate.CHECKPOINT_COLUMNS.length && narrowed != null; i++) {
+                if ((columns & (1 << i)) == 0) {
+                    narrowed = removeAssignment(narrowed, StepExecutionUpdate.CHECKPOINT_COLUMNS[i]);
+                }
+            }
+            if (narrowed == null) {
+                Arrays.fill(result, 0, all, null);
+                return;
+            }
+            result[columns] = narrowed;
+        }
+    }
+
+    private static String removeAssignment(final String sql, final String column) {
+        //remove the assignment together with the comma after it, or if it is the last one, the comma before it
+        Matcher matcher = Pattern.compile("\\b" + column + "\\s*=\\s*\\?\\s*,\\s*", Pattern.CASE_INSENSITIVE).matcher(sql);
+        if (!matcher.find()) {
+            matcher = Pattern.compile("\\s*,\\s*" + column + "\\s*=\\s*\\?", Pattern.CASE_INSENSITIVE).matcher(sql);
+            if (!matcher.find()) {
+                return null;
+            }
+        }
+        return sql.substring(0, matcher.start()) + sql.substring(matcher.end());
+    }
+
     StepExecution selectStepExecution(final long stepExecutionId) {
         final String select = sqls.getProperty(SELECT_STEP_EXECUTION);
         final Connection connection = getConnection();
@@ -726,9 +1051,9 @@ public final class JdbcRepository extends AbstractRepository {
                             stepExecution.getStepName(),
                             BatchStatus.valueOf(batchStatusValue),
                             rs.getString(TableColumns.EXITSTATUS),
-                            BatchUtil.bytesToSerializableObject(rs.getBytes(TableColumns.PERSISTENTUSERDATA)),
-                            BatchUtil.bytesToSerializableObject(rs.getBytes(TableColumns.READERCHECKPOINTINFO)),
-                            BatchUtil.bytesToSerializableObject(rs.getBytes(TableColumns.WRITERCHECKPOINTINFO))
+                            checkpointSerializer.deserialize(rs.getBytes(TableColumns.PERSISTENTUSERDATA)),
+                            checkpointSerializer.deserialize(rs.getBytes(TableColumns.READERCHECKPOINTINFO)),
+                            checkpointSerializer.deserialize(rs.getBytes(TableColumns.WRITERCHECKPOINTINFO))
                     ));
                 }
             }
@@ -750,7 +1075,7 @@ public final class JdbcRepository extends AbstractRepository {
                     rs.getTimestamp(TableColumns.ENDTIME),
                     rs.getString(TableColumns.BATCHSTATUS),
                     rs.getString(TableColumns.EXITSTATUS),
-                    BatchUtil.bytesToSerializableObject(rs.getBytes(TableColumns.PERSISTENTUSERDATA)),
+                    checkpointSerializer.deserialize(rs.getBytes(TableColumns.PERSISTENTUSERDATA)),
                     rs.getInt(TableColumns.READCOUNT),
                     rs.getInt(TableColumns.WRITECOUNT),
                     rs.getInt(TableColumns.COMMITCOUNT),
@@ -759,8 +1084,8 @@ public final class JdbcRepository extends AbstractRepository {
                     rs.getInt(TableColumns.PROCESSSKIPCOUNT),
                     rs.getInt(TableColumns.FILTERCOUNT),
                     rs.getInt(TableColumns.WRITESKIPCOUNT),
-                    BatchUtil.bytesToSerializableObject(rs.getBytes(TableColumns.READERCHECKPOINTINFO)),
-                    BatchUtil.bytesToSerializableObject(rs.getBytes(TableColumns.WRITERCHECKPOINTINFO))
+                    checkpointSerializer.deserialize(rs.getBytes(TableColumns.READERCHECKPOINTINFO)),
+                    checkpointSerializer.deserialize(rs.getBytes(TableColumns.WRITERCHECKPOINTINFO))
             );
             result.add(e);
             if (top1) {
@@ -908,6 +1233,9 @@ public final class JdbcRepository extends AbstractRepository {
             }
         } else {
             try {
+                if (connectionPool != null) {
+                    return connectionPool.getConnection();
+                }
                 return DriverManager.getConnection(dbUrl, dbProperties);
             } catch (final Exception e) {
                 throw BatchMessages.MESSAGES.failToObtainConnection(e, dbUrl, dbProperties);
@@ -940,10 +1268,12 @@ public final class JdbcRepository extends AbstractRepository {
             }
         }
 
-        try {
-            conn.close();
-        } catch (final SQLException e) {
-            BatchLogger.LOGGER.failToClose(e, Connection.class, conn);
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (final SQLException e) {
+                BatchLogger.LOGGER.failToClose(e, Connection.class, conn);
+            }
         }
     }
 
@@ -988,7 +1318,7 @@ public final class JdbcRepository extends AbstractRepository {
         return ddlFile;
     }
 
-    private static ClassLoader getClassLoader() {
+    static ClassLoader getClassLoader() {
         if (WildFlySecurityManager.isChecking()) {
             return WildFlySecurityManager.doUnchecked(new PrivilegedAction<ClassLoader>() {
                 @Override
@@ -999,4 +1329,129 @@ public final class JdbcRepository extends AbstractRepository {
         }
         return JdbcRepository.class.getClassLoader();
     }
+
+    /**
+     * A snapshot of the columns of a step execution or partition execution to be updated, taken when the update is
+     * requested, since the execution may continue to change before the update is written.
+     */
+    static final class StepExecutionUpdate {
+        final long stepExecutionId;
+
+        /**
+         * The partition id if this is an update of a partition execution, or -1 for a step execution.
+         */
+        final int partitionId;
+
+        /**
+         * Names of the checkpoint columns, in the order of their bits in a column mask.
+         */
+        static final String[] CHECKPOINT_COLUMNS = {
+                TableColumns.PERSISTENTUSERDATA, TableColumns.READERCHECKPOINTINFO, TableColumns.WRITERCHECKPOINTINFO
+        };
+
+        /**
+         * Values no longer than this are their own fingerprints; longer values are fingerprinted with SHA-256, whose
+         * digest is 32 bytes long, so the 2 kinds of fingerprints never equal each other.
+         */
+        private static final int MAX_RAW_FINGERPRINT_LENGTH = 31;
+
+        private final long endTime;
+        private final String batchStatus;
+        private final String exitStatus;
+        private final String exception;
+        private final byte[] persistentUserData;
+        private final byte[] readerCheckpointInfo;
+        private final byte[] writerCheckpointInfo;
+        private final long[] metrics;
+
+        /**
+         * Fingerprints of the checkpoint columns, in the order of {@link #CHECKPOINT_COLUMNS}.
+         */
+        final byte[][] fingerprints;
+
+        StepExecutionUpdate(final AbstractStepExecution execution, final CheckpointSerializer serializer) {
+            stepExecutionId = execution.getStepExecutionId();
+            partitionId = execution instanceof PartitionExecutionImpl ?
+                    ((PartitionExecutionImpl) execution).getPartitionId() : -1;
+            endTime = execution.getEndTime().getTime();
+            batchStatus = execution.getBatchStatus().name();
+            exitStatus = execution.getExitStatus();
+            exception = TableColumns.formatException(execution.getException());
+            try {
+                persistentUserData = serializer.serialize(execution.getPersistentUserData());
+                readerCheckpointInfo = serializer.serialize(execution.getReaderCheckpointInfo());
+                writerCheckpointInfo = serializer.serialize(execution.getWriterCheckpointInfo());
+            } catch (final IOException e) {
+                throw BatchMessages.MESSAGES.failToSerialize(e, execution);
+            }
+            fingerprints = new byte[][]{
+                    fingerprint(persistentUserData), fingerprint(readerCheckpointInfo), fingerprint(writerCheckpointInfo)
+            };
+            if (partitionId < 0) {
+                final StepMetrics stepMetrics = execution.getStepMetrics();
+                metrics = new long[]{
+                        stepMetrics.get(Metric.MetricType.READ_COUNT),
+                        stepMetrics.get(Metric.MetricType.WRITE_COUNT),
+                        stepMetrics.get(Metric.MetricType.COMMIT_COUNT),
+                        stepMetrics.get(Metric.MetricType.ROLLBACK_COUNT),
+                        stepMetrics.get(Metric.MetricType.READ_SKIP_COUNT),
+                        stepMetrics.get(Metric.MetricType.PROCESS_SKIP_COUNT),
+                        stepMetrics.get(Metric.MetricType.FILTER_COUNT),
+                        stepMetrics.get(Metric.MetricType.WRITE_SKIP_COUNT)
+                };
+            } else {
+                metrics = null;
+            }
+        }
+
+        /**
+         * Gets the key that identifies the step or partition execution of this update.
+         */
+        String getKey() {
+            return partitionId < 0 ? String.valueOf(stepExecutionId) : stepExecutionId + ":" + partitionId;
+        }
+
+        /**
+         * Sets the parameters of the update statement for step execution or partition execution, which includes the
+         * checkpoint columns in the bit mask {@code columns}.
+         */
+        private void setParameters(final PreparedStatement preparedStatement, final int columns) throws SQLException {
+            int i = 1;
+            if (partitionId < 0) {
+                preparedStatement.setTimestamp(i++, new Timestamp(endTime));
+            }
+            preparedStatement.setString(i++, batchStatus);
+            preparedStatement.setString(i++, exitStatus);
+            preparedStatement.setString(i++, exception);
+            if ((columns & 1) != 0) {
+                preparedStatement.setBytes(i++, persistentUserData);
+            }
+            if (partitionId < 0) {
+                for (final long m : metrics) {
+                    preparedStatement.setLong(i++, m);
+                }
+            }
+            if ((columns & 2) != 0) {
+                preparedStatement.setBytes(i++, readerCheckpointInfo);
+            }
+            if ((columns & 4) != 0) {
+                preparedStatement.setBytes(i++, writerCheckpointInfo);
+            }
+            if (partitionId >= 0) {
+                preparedStatement.setInt(i++, partitionId);
+            }
+            preparedStatement.setLong(i, stepExecutionId);
+        }
+
+        private static byte[] fingerprint(final byte[] bytes) {
+            if (bytes == null || bytes.length <= MAX_RAW_FINGERPRINT_LENGTH) {
+                return bytes;
+            }
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(bytes);
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
 }
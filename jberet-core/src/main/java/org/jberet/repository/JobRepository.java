@@ -39,12 +39,14 @@ public interface JobRepository {
     void removeJobInstance(long jobInstanceId);
     JobInstance getJobInstance(long jobInstanceId);
     List<JobInstance> getJobInstances(String jobName);
+    List<JobInstance> getJobInstances(String jobName, int start, int count);
     int getJobInstanceCount(String jobName);
 
     JobExecutionImpl createJobExecution(JobInstanceImpl jobInstance, Properties jobParameters);
     JobExecution getJobExecution(long jobExecutionId);
     List<JobExecution> getJobExecutions(JobInstance jobInstance);
     void updateJobExecution(JobExecution jobExecution);
+    List<Long> getRunningExecutions(String jobName);
 
     List<StepExecution> getStepExecutions(long jobExecutionId);
     StepExecutionImpl createStepExecution(String stepName);
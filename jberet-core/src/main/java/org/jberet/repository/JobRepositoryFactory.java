@@ -23,6 +23,7 @@ public final class JobRepositoryFactory {
     public static final String REPOSITORY_TYPE_IN_MEMORY = "in-memory";
     public static final String REPOSITORY_TYPE_JDBC = "jdbc";
     public static final String REPOSITORY_TYPE_MONGODB = "mongodb";
+    public static final String REPOSITORY_TYPE_FILE = "file";
     private JobRepositoryFactory() {
     }
 
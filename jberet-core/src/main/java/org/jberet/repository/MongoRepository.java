@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.batch.runtime.BatchStatus;
 import javax.batch.runtime.JobExecution;
 import javax.batch.runtime.JobInstance;
@@ -39,20 +40,42 @@ import org.jberet.runtime.JobExecutionImpl;
 import org.jberet.runtime.JobInstanceImpl;
 import org.jberet.runtime.PartitionExecutionImpl;
 import org.jberet.runtime.StepExecutionImpl;
+import org.jberet.spi.CheckpointSerializer;
 import org.jberet.util.BatchUtil;
 
 public final class MongoRepository extends AbstractRepository {
+    //key used in jberet.properties
+    public static final String ID_BLOCK_SIZE_KEY = "id-block-size";
+
+    private static final int DEFAULT_ID_BLOCK_SIZE = 100;
+
     private String dataSourceName;
     private String dbUrl;
     private MongoClient mongoClient;
     private DB db;
     private DBCollection seqCollection;
+    private final CheckpointSerializer checkpointSerializer;
+
+    /**
+     * The number of step execution ids reserved from the sequence collection at a time.  Job instance and job
+     * execution ids are still reserved one at a time, since their order tells the most recent job instance and job
+     * execution among all processes sharing the job repository.
+     */
+    private final int idBlockSize;
+
+    /**
+     * The block of step execution ids currently handed out, replaced when used up.
+     */
+    private volatile IdBlock stepExecutionIdBlock = new IdBlock(0, 0);
 
     public static MongoRepository create(final Properties configProperties) {
         return new MongoRepository(configProperties);
     }
 
     public MongoRepository(final Properties configProperties) {
+        checkpointSerializer = createCheckpointSerializer(configProperties, JdbcRepository.getClassLoader());
+        configureExecutionCache(configProperties);
+        idBlockSize = (int) getLongConfigProperty(configProperties, ID_BLOCK_SIZE_KEY, DEFAULT_ID_BLOCK_SIZE);
         dataSourceName = configProperties.getProperty(JdbcRepository.DATASOURCE_JNDI_KEY);
         dbUrl = configProperties.getProperty(JdbcRepository.DB_URL_KEY);
 
@@ -124,26 +147,52 @@ public final class MongoRepository extends AbstractRepository {
                 db.getCollection(TableColumns.JOB_INSTANCE).find(new BasicDBObject(TableColumns.JOBNAME, jobName));
 
         while (cursor.hasNext()) {
-            final DBObject next = cursor.next();
-            final Long i = (Long) next.get(TableColumns.JOBINSTANCEID);
-            JobInstanceImpl jobInstance1 = (JobInstanceImpl) jobInstances.get(i);
-            if (jobInstance1 == null) {
-                final String appName = (String) next.get(TableColumns.APPLICATIONNAME);
-                if (jobName == null) {
-                    final String goodJobName = (String) next.get(TableColumns.JOBNAME);
-                    jobInstance1 = new JobInstanceImpl(getJob(goodJobName), new ApplicationAndJobName(appName, goodJobName));
-                } else {
-                    jobInstance1 = new JobInstanceImpl(getJob(jobName), new ApplicationAndJobName(appName, jobName));
-                }
-                jobInstance1.setId(i);
-                jobInstances.put(i, jobInstance1);
-            }
-            //this job instance is already in the cache, so get it from the cache
-            result.add(jobInstance1);
+            result.add(getOrCreateJobInstance(cursor.next(), jobName));
         }
         return result;
     }
 
+    @Override
+    public List<JobInstance> getJobInstances(final String jobName, final int start, final int count) {
+        final List<JobInstance> result = new ArrayList<JobInstance>();
+        if (count <= 0) {
+            return result;
+        }
+        final DBCursor cursor = db.getCollection(TableColumns.JOB_INSTANCE)
+                .find(new BasicDBObject(TableColumns.JOBNAME, jobName))
+                .sort(new BasicDBObject(TableColumns.JOBINSTANCEID, -1))
+                .skip(start).limit(count);
+        while (cursor.hasNext()) {
+            result.add(getOrCreateJobInstance(cursor.next(), jobName));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the job instance of a job instance document from the cache, or creates and caches it.
+     *
+     * @param next    the job instance document
+     * @param jobName the job name queried, or null if the job name is read from the document
+     * @return the job instance
+     */
+    private JobInstance getOrCreateJobInstance(final DBObject next, final String jobName) {
+        final Long i = (Long) next.get(TableColumns.JOBINSTANCEID);
+        JobInstanceImpl jobInstance1 = (JobInstanceImpl) jobInstances.get(i);
+        if (jobInstance1 == null) {
+            final String appName = (String) next.get(TableColumns.APPLICATIONNAME);
+            if (jobName == null) {
+                final String goodJobName = (String) next.get(TableColumns.JOBNAME);
+                jobInstance1 = new JobInstanceImpl(getJob(goodJobName), new ApplicationAndJobName(appName, goodJobName));
+            } else {
+                jobInstance1 = new JobInstanceImpl(getJob(jobName), new ApplicationAndJobName(appName, jobName));
+            }
+            jobInstance1.setId(i);
+            jobInstance1 = (JobInstanceImpl) cacheJobInstance(jobInstance1);
+        }
+        //this job instance is already in the cache, so get it from the cache
+        return jobInstance1;
+    }
+
     @Override
     public JobInstance getJobInstance(final long jobInstanceId) {
         JobInstance result = super.getJobInstance(jobInstanceId);
@@ -162,7 +211,7 @@ public final class MongoRepository extends AbstractRepository {
             final String goodJobName = (String) one.get(TableColumns.JOBNAME);
             result = new JobInstanceImpl(getJob(goodJobName), new ApplicationAndJobName(appName, goodJobName));
             ((JobInstanceImpl) result).setId(jobInstanceId);
-            jobInstances.put(jobInstanceId, result);
+            result = cacheJobInstance(result);
         }
         return result;
     }
@@ -224,7 +273,7 @@ public final class MongoRepository extends AbstractRepository {
                     (String) one.get(TableColumns.BATCHSTATUS),
                     (String) one.get(TableColumns.EXITSTATUS),
                     (String) one.get(TableColumns.RESTARTPOSITION));
-            jobExecutions.put(jobExecutionId, result);
+            result = (JobExecutionImpl) cacheJobExecution(result);
         }
         return result;
     }
@@ -255,7 +304,7 @@ public final class MongoRepository extends AbstractRepository {
                                 (String) next.get(TableColumns.BATCHSTATUS),
                                 (String) next.get(TableColumns.EXITSTATUS),
                                 (String) next.get(TableColumns.RESTARTPOSITION));
-                jobExecutions.put(i, jobExecution1);
+                jobExecution1 = cacheJobExecution(jobExecution1);
             }
             // jobExecution1 is either got from the cache, or created, now add it to the result list
             result.add(jobExecution1);
@@ -263,9 +312,42 @@ public final class MongoRepository extends AbstractRepository {
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Job executions started by other processes sharing the same job repository are also included.
+     */
+    @Override
+    public List<Long> getRunningExecutions(final String jobName) {
+        final DBObject idKey = new BasicDBObject(TableColumns.JOBINSTANCEID, 1);
+        idKey.put(TableColumns._id, 0);
+        final DBCursor instanceCursor = db.getCollection(TableColumns.JOB_INSTANCE).find(
+                new BasicDBObject(TableColumns.JOBNAME, jobName), idKey);
+        final BasicDBList jobInstanceIds = new BasicDBList();
+        while (instanceCursor.hasNext()) {
+            jobInstanceIds.add(instanceCursor.next().get(TableColumns.JOBINSTANCEID));
+        }
+        final List<Long> result = new ArrayList<Long>();
+        if (jobInstanceIds.isEmpty()) {
+            return result;
+        }
+        final BasicDBList runningStatuses = new BasicDBList();
+        runningStatuses.add(BatchStatus.STARTING.name());
+        runningStatuses.add(BatchStatus.STARTED.name());
+        final DBObject query = new BasicDBObject(TableColumns.JOBINSTANCEID, new BasicDBObject("$in", jobInstanceIds));
+        query.put(TableColumns.BATCHSTATUS, new BasicDBObject("$in", runningStatuses));
+        final DBObject executionIdKey = new BasicDBObject(TableColumns.JOBEXECUTIONID, 1);
+        executionIdKey.put(TableColumns._id, 0);
+        final DBCursor cursor = db.getCollection(TableColumns.JOB_EXECUTION).find(query, executionIdKey);
+        while (cursor.hasNext()) {
+            result.add((Long) cursor.next().get(TableColumns.JOBEXECUTIONID));
+        }
+        return result;
+    }
+
     @Override
     void insertStepExecution(final StepExecutionImpl stepExecution, final JobExecutionImpl jobExecution) {
-        final Long nextId = incrementAndGetSequence(TableColumns.STEPEXECUTIONID);
+        final Long nextId = nextStepExecutionId();
         stepExecution.setId(nextId);
         final DBObject dbObject = new BasicDBObject(TableColumns.STEPEXECUTIONID, nextId);
         dbObject.put(TableColumns.JOBEXECUTIONID, jobExecution.getExecutionId());
@@ -283,7 +365,7 @@ public final class MongoRepository extends AbstractRepository {
             update.put(TableColumns.BATCHSTATUS, stepExecution.getBatchStatus().name());
             update.put(TableColumns.EXITSTATUS, stepExecution.getExitStatus());
             update.put(TableColumns.EXECUTIONEXCEPTION, TableColumns.formatException(stepExecutionImpl.getException()));
-            update.put(TableColumns.PERSISTENTUSERDATA, BatchUtil.objectToBytes(stepExecution.getPersistentUserData()));
+            update.put(TableColumns.PERSISTENTUSERDATA, checkpointSerializer.serialize(stepExecution.getPersistentUserData()));
             update.put(TableColumns.READCOUNT, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.READ_COUNT));
             update.put(TableColumns.WRITECOUNT, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.WRITE_COUNT));
             update.put(TableColumns.COMMITCOUNT, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.COMMIT_COUNT));
@@ -292,8 +374,9 @@ public final class MongoRepository extends AbstractRepository {
             update.put(TableColumns.PROCESSSKIPCOUNT, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.PROCESS_SKIP_COUNT));
             update.put(TableColumns.FILTERCOUNT, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.FILTER_COUNT));
             update.put(TableColumns.WRITESKIPCOUNT, stepExecutionImpl.getStepMetrics().get(Metric.MetricType.WRITE_SKIP_COUNT));
-            update.put(TableColumns.READERCHECKPOINTINFO, BatchUtil.objectToBytes(stepExecutionImpl.getReaderCheckpointInfo()));
-            update.put(TableColumns.WRITERCHECKPOINTINFO, BatchUtil.objectToBytes(stepExecutionImpl.getWriterCheckpointInfo()));
+            update.put(TableColumns.CHECKPOINTITEMCOUNT, stepExecutionImpl.getStepMetrics().getCheckpointItemCount());
+            update.put(TableColumns.READERCHECKPOINTINFO, checkpointSerializer.serialize(stepExecutionImpl.getReaderCheckpointInfo()));
+            update.put(TableColumns.WRITERCHECKPOINTINFO, checkpointSerializer.serialize(stepExecutionImpl.getWriterCheckpointInfo()));
 
             db.getCollection(TableColumns.STEP_EXECUTION).update(
                     new BasicDBObject(TableColumns.STEPEXECUTIONID, stepExecution.getStepExecutionId()),
@@ -324,9 +407,9 @@ public final class MongoRepository extends AbstractRepository {
                 final DBObject update = new BasicDBObject(TableColumns.BATCHSTATUS, partitionExecution.getBatchStatus().name());
                 update.put(TableColumns.EXITSTATUS, partitionExecution.getExitStatus());
                 update.put(TableColumns.EXECUTIONEXCEPTION, TableColumns.formatException(partitionExecution.getException()));
-                update.put(TableColumns.PERSISTENTUSERDATA, BatchUtil.objectToBytes(partitionExecution.getPersistentUserData()));
-                update.put(TableColumns.READERCHECKPOINTINFO, BatchUtil.objectToBytes(partitionExecution.getReaderCheckpointInfo()));
-                update.put(TableColumns.WRITERCHECKPOINTINFO, BatchUtil.objectToBytes(partitionExecution.getWriterCheckpointInfo()));
+                update.put(TableColumns.PERSISTENTUSERDATA, checkpointSerializer.serialize(partitionExecution.getPersistentUserData()));
+                update.put(TableColumns.READERCHECKPOINTINFO, checkpointSerializer.serialize(partitionExecution.getReaderCheckpointInfo()));
+                update.put(TableColumns.WRITERCHECKPOINTINFO, checkpointSerializer.serialize(partitionExecution.getWriterCheckpointInfo()));
 
                 db.getCollection(TableColumns.PARTITION_EXECUTION).update(query, new BasicDBObject("$set", update));
             } catch (final Exception e) {
@@ -389,8 +472,11 @@ public final class MongoRepository extends AbstractRepository {
         final DBObject inClause = new BasicDBObject("$in", basicDBList);
         final DBObject query = new BasicDBObject(TableColumns.JOBEXECUTIONID, inClause);
         query.put(TableColumns.STEPNAME, stepName);
-        final DBCursor cursor1 = db.getCollection(TableColumns.STEP_EXECUTION).find(query).sort(
-                new BasicDBObject(TableColumns.STEPEXECUTIONID, -1));
+        //step execution ids are allocated in blocks by each process, so they only tell the order of step executions
+        //within the same job execution
+        final DBObject orderBy = new BasicDBObject(TableColumns.JOBEXECUTIONID, -1);
+        orderBy.put(TableColumns.STEPEXECUTIONID, -1);
+        final DBCursor cursor1 = db.getCollection(TableColumns.STEP_EXECUTION).find(query).sort(orderBy);
 
         return createStepExecutionFromDBObject(cursor1.one());
     }
@@ -420,9 +506,9 @@ public final class MongoRepository extends AbstractRepository {
                             stepExecution.getStepName(),
                             BatchStatus.valueOf(batchStatusValue),
                             (String) next.get(TableColumns.EXITSTATUS),
-                            BatchUtil.bytesToSerializableObject((byte[]) next.get(TableColumns.PERSISTENTUSERDATA)),
-                            BatchUtil.bytesToSerializableObject((byte[]) next.get(TableColumns.READERCHECKPOINTINFO)),
-                            BatchUtil.bytesToSerializableObject((byte[]) next.get(TableColumns.WRITERCHECKPOINTINFO))
+                            checkpointSerializer.deserialize((byte[]) next.get(TableColumns.PERSISTENTUSERDATA)),
+                            checkpointSerializer.deserialize((byte[]) next.get(TableColumns.READERCHECKPOINTINFO)),
+                            checkpointSerializer.deserialize((byte[]) next.get(TableColumns.WRITERCHECKPOINTINFO))
                     ));
                 }
             }
@@ -443,14 +529,14 @@ public final class MongoRepository extends AbstractRepository {
             return null;
         }
         try {
-            return new StepExecutionImpl(
+            final StepExecutionImpl stepExecution = new StepExecutionImpl(
                     ((Number) dbObject.get(TableColumns.STEPEXECUTIONID)).longValue(),
                     (String) dbObject.get(TableColumns.STEPNAME),
                     (Date) dbObject.get(TableColumns.STARTTIME),
                     (Date) dbObject.get(TableColumns.ENDTIME),
                     (String) dbObject.get(TableColumns.BATCHSTATUS),
                     (String) dbObject.get(TableColumns.EXITSTATUS),
-                    BatchUtil.bytesToSerializableObject((byte[]) dbObject.get(TableColumns.PERSISTENTUSERDATA)),
+                    checkpointSerializer.deserialize((byte[]) dbObject.get(TableColumns.PERSISTENTUSERDATA)),
                     ((Number) dbObject.get(TableColumns.READCOUNT)).longValue(),
                     ((Number) dbObject.get(TableColumns.WRITECOUNT)).longValue(),
                     ((Number) dbObject.get(TableColumns.COMMITCOUNT)).longValue(),
@@ -459,9 +545,15 @@ public final class MongoRepository extends AbstractRepository {
                     ((Number) dbObject.get(TableColumns.PROCESSSKIPCOUNT)).longValue(),
                     ((Number) dbObject.get(TableColumns.FILTERCOUNT)).longValue(),
                     ((Number) dbObject.get(TableColumns.WRITESKIPCOUNT)).longValue(),
-                    BatchUtil.bytesToSerializableObject((byte[]) dbObject.get(TableColumns.READERCHECKPOINTINFO)),
-                    BatchUtil.bytesToSerializableObject((byte[]) dbObject.get(TableColumns.WRITERCHECKPOINTINFO))
+                    checkpointSerializer.deserialize((byte[]) dbObject.get(TableColumns.READERCHECKPOINTINFO)),
+                    checkpointSerializer.deserialize((byte[]) dbObject.get(TableColumns.WRITERCHECKPOINTINFO))
             );
+            //not present in step executions saved by earlier versions
+            final Number checkpointItemCount = (Number) dbObject.get(TableColumns.CHECKPOINTITEMCOUNT);
+            if (checkpointItemCount != null) {
+                stepExecution.getStepMetrics().setCheckpointItemCount(checkpointItemCount.longValue());
+            }
+            return stepExecution;
         } catch (final Exception e) {
             throw BatchMessages.MESSAGES.failToRunQuery(e, "createStepExecutionFromDBObject");
         }
@@ -486,9 +578,53 @@ public final class MongoRepository extends AbstractRepository {
     }
 
     private Long incrementAndGetSequence(final String whichId) {
+        return incrementAndGetSequence(whichId, 1);
+    }
+
+    /**
+     * Reserves a range of ids from the sequence collection.  The sequence is incremented atomically, so ranges
+     * reserved by different processes never overlap.
+     *
+     * @param whichId   the sequence name
+     * @param increment the number of ids to reserve
+     * @return the first id of the reserved range
+     */
+    private Long incrementAndGetSequence(final String whichId, final int increment) {
         final DBObject query = new BasicDBObject(TableColumns._id, whichId);
-        final DBObject update = new BasicDBObject("$inc", new BasicDBObject(TableColumns.SEQ, 1));
+        final DBObject update = new BasicDBObject("$inc", new BasicDBObject(TableColumns.SEQ, (long) increment));
         final DBObject result = seqCollection.findAndModify(query, update);
         return (Long) result.get(TableColumns.SEQ);
     }
+
+    private long nextStepExecutionId() {
+        if (idBlockSize <= 1) {
+            return incrementAndGetSequence(TableColumns.STEPEXECUTIONID);
+        }
+        while (true) {
+            final IdBlock block = stepExecutionIdBlock;
+            final long id = block.next.getAndIncrement();
+            if (id < block.end) {
+                return id;
+            }
+            synchronized (this) {
+                if (block == stepExecutionIdBlock) {
+                    stepExecutionIdBlock =
+                            new IdBlock(incrementAndGetSequence(TableColumns.STEPEXECUTIONID, idBlockSize), idBlockSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * A range of ids reserved from the sequence collection, handed out in order.
+     */
+    private static final class IdBlock {
+        final AtomicLong next;
+        final long end;
+
+        IdBlock(final long start, final int size) {
+            next = new AtomicLong(start);
+            end = start + size;
+        }
+    }
 }
@@ -79,6 +79,7 @@ final class TableColumns {
     static final String PROCESSSKIPCOUNT = "PROCESSSKIPCOUNT";
     static final String FILTERCOUNT = "FILTERCOUNT";
     static final String WRITESKIPCOUNT = "WRITESKIPCOUNT";
+    static final String CHECKPOINTITEMCOUNT = "CHECKPOINTITEMCOUNT";
     static final String READERCHECKPOINTINFO = "READERCHECKPOINTINFO";
     static final String WRITERCHECKPOINTINFO = "WRITERCHECKPOINTINFO";
 
@@ -13,53 +13,131 @@
 package org.jberet.runtime.metric;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
 import javax.batch.runtime.Metric;
 
 /**
  * Maintains execution metrics for a single step.
+ * <p/>
+ * Each metric is kept in its own slot of an array indexed by {@link Metric.MetricType#ordinal()}, and slots are
+ * spaced one cache line apart, so that metrics updated by different threads (e.g., read count by the reading thread
+ * and write count by the writing thread in pipelined chunk processing) do not contend with each other.  Metrics can be
+ * safely read by other threads while the step is running.
+ * <p/>
+ * The metrics of a partition may be linked to those of the enclosing step with {@link #setParent(StepMetrics)}, so
+ * that any update to the partition metrics is also applied to the step metrics as it happens.
  */
 final public class StepMetrics implements Serializable {
 
-    private static final long serialVersionUID = -4854359401644105419L;
-    private final Map<Metric.MetricType, MetricImpl> metricsMapping = new HashMap<Metric.MetricType, MetricImpl>();
+    private static final long serialVersionUID = -2119486383327441653L;
+
+    private static final Metric.MetricType[] METRIC_TYPES = Metric.MetricType.values();
+
+    /**
+     * Number of array elements between 2 adjacent metric slots, so that each slot occupies a 64-byte cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray values = new AtomicLongArray((METRIC_TYPES.length + 2) * PADDING);
+
+    /**
+     * The item count chosen by {@link org.jberet.runtime.runner.AdaptiveCheckpointAlgorithm} for the most recent
+     * chunk, which is the count it converged to once the step has ended, or 0 if the step does not use it.  This is
+     * not one of the standard {@link Metric.MetricType}, and is therefore not included in {@link #getMetrics()}.  It is
+     * saved by the in-memory, file and MongoDB job repositories along with the other step metrics.
+     */
+    private volatile long checkpointItemCount;
+
+    /**
+     * The metrics of the enclosing step, if this instance is for a partition.
+     */
+    private transient volatile StepMetrics parent;
 
     public StepMetrics() {
-        for (final Metric.MetricType m : Metric.MetricType.values()) {
-            metricsMapping.put(m, new MetricImpl(m));
-        }
     }
 
+    /**
+     * Gets a snapshot of all metrics.
+     *
+     * @return an array of metrics, in the order of {@link Metric.MetricType}
+     */
     public Metric[] getMetrics() {
-        return metricsMapping.values().toArray(new Metric[metricsMapping.size()]);
+        final Metric[] metrics = new Metric[METRIC_TYPES.length];
+        for (int i = 0; i < metrics.length; i++) {
+            final MetricImpl m = new MetricImpl(METRIC_TYPES[i]);
+            m.setValue(values.get(index(METRIC_TYPES[i])));
+            metrics[i] = m;
+        }
+        return metrics;
     }
 
     public void set(final Metric.MetricType name, final long value) {
-        final MetricImpl targetMetric = metricsMapping.get(name);
-        targetMetric.setValue(value);
+        values.set(index(name), value);
     }
 
     public long get(final Metric.MetricType name) {
-        return metricsMapping.get(name).getValue();
+        return values.get(index(name));
     }
 
     public void increment(final Metric.MetricType name, final long value) {
-        final MetricImpl targetMetric = metricsMapping.get(name);
-        targetMetric.increment(value);
+        values.addAndGet(index(name), value);
+        final StepMetrics p = parent;
+        if (p != null) {
+            p.increment(name, value);
+        }
+    }
+
+    public long getCheckpointItemCount() {
+        return checkpointItemCount;
+    }
+
+    public void setCheckpointItemCount(final long checkpointItemCount) {
+        this.checkpointItemCount = checkpointItemCount;
+        final StepMetrics p = parent;
+        if (p != null) {
+            p.setCheckpointItemCount(checkpointItemCount);
+        }
+    }
+
+    /**
+     * Links this instance to the metrics of the enclosing step, so that all subsequent updates to this instance are
+     * also applied to {@code parent}.
+     *
+     * @param parent the metrics of the enclosing step
+     */
+    public void setParent(final StepMetrics parent) {
+        this.parent = parent;
     }
 
     public void addStepMetrics(final StepMetrics other) {
-        for (final Map.Entry<Metric.MetricType, MetricImpl> e : other.metricsMapping.entrySet()) {
-            final long number = e.getValue().getValue();
+        for (final Metric.MetricType type : METRIC_TYPES) {
+            final long number = other.get(type);
             if (number > 0) {
-                increment(e.getKey(), number);
+                increment(type, number);
             }
         }
+        if (other.checkpointItemCount > checkpointItemCount) {
+            setCheckpointItemCount(other.checkpointItemCount);
+        }
     }
 
     @Override
     public String toString() {
-        return "StepMetrics: " + metricsMapping;
+        final StringBuilder sb = new StringBuilder("StepMetrics: {");
+        for (int i = 0; i < METRIC_TYPES.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(METRIC_TYPES[i]).append('=').append(values.get(index(METRIC_TYPES[i])));
+        }
+        sb.append('}');
+        if (checkpointItemCount != 0) {
+            sb.append(", checkpointItemCount=").append(checkpointItemCount);
+        }
+        return sb.toString();
+    }
+
+    private static int index(final Metric.MetricType type) {
+        return (type.ordinal() + 1) * PADDING;
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.runtime.runner;
+
+import java.util.concurrent.TimeUnit;
+import javax.batch.api.BatchProperty;
+import javax.batch.api.chunk.CheckpointAlgorithm;
+import javax.batch.runtime.context.StepContext;
+import javax.inject.Inject;
+
+import static org.jberet._private.BatchLogger.LOGGER;
+
+/**
+ * A built-in {@code CheckpointAlgorithm} that adjusts the number of items per chunk, so that each chunk, from reading
+ * the first item to committing the transaction, takes about {@link #targetTime} milliseconds.  The durations of
+ * reading, processing, writing and committing each chunk are measured by {@link ChunkRunner} and reported to this
+ * class after the chunk is committed.  The item count is then recalculated from the average time per item and the
+ * average commit time, and kept within {@link #minItemCount} and {@link #maxItemCount}.  The item count grows at most
+ * two-fold from one chunk to the next.  After a chunk is rolled back, the item count is halved and kept from growing
+ * for the next few chunks.
+ * <p/>
+ * The item count chosen for the most recent chunk is available from
+ * {@link org.jberet.runtime.metric.StepMetrics#getCheckpointItemCount()}, and each change of it is also logged at
+ * DEBUG level, along with the step name.
+ * <p/>
+ * To use this checkpoint algorithm, specify its fully-qualified class name in job xml:
+ * <pre>
+ * &lt;chunk checkpoint-policy="custom"&gt;
+ *     &lt;reader ref="..."/&gt;
+ *     &lt;writer ref="..."/&gt;
+ *     &lt;checkpoint-algorithm ref="org.jberet.runtime.runner.AdaptiveCheckpointAlgorithm"&gt;
+ *         &lt;properties&gt;
+ *             &lt;property name="targetTime" value="2000"/&gt;
+ *             &lt;property name="maxItemCount" value="5000"/&gt;
+ *         &lt;/properties&gt;
+ *     &lt;/checkpoint-algorithm&gt;
+ * &lt;/chunk&gt;
+ * </pre>
+ */
+public final class AdaptiveCheckpointAlgorithm implements CheckpointAlgorithm {
+    /**
+     * Weight of the most recent chunk when averaging the time per item and the commit time.
+     */
+    private static final double SMOOTHING = 0.5;
+
+    /**
+     * Number of chunks after a rollback during which the item count is not increased.
+     */
+    private static final int ROLLBACK_HOLD_CHUNKS = 3;
+
+    /**
+     * The target duration of each chunk in milliseconds, including the commit.  Optional property, and defaults to 1000.
+     */
+    @Inject
+    @BatchProperty
+    private long targetTime = 1000;
+
+    /**
+     * The item count of the first chunk.  Optional property, and defaults to 10.
+     */
+    @Inject
+    @BatchProperty
+    private int initialItemCount = 10;
+
+    /**
+     * The minimum item count of a chunk.  Optional property, and defaults to 1.
+     */
+    @Inject
+    @BatchProperty
+    private int minItemCount = 1;
+
+    /**
+     * The maximum item count of a chunk.  Optional property, and defaults to 10000.
+     */
+    @Inject
+    @BatchProperty
+    private int maxItemCount = 10000;
+
+    /**
+     * The transaction timeout in seconds for each chunk.  Optional property, and defaults to 0, i.e., the default
+     * transaction timeout.
+     */
+    @Inject
+    @BatchProperty
+    private int timeout;
+
+    @Inject
+    private StepContext stepContext;
+
+    private int itemCount;
+    private int count;
+    private int growthHold;
+
+    /**
+     * Average time in nanoseconds to read, process and write one item, or negative if not measured yet.
+     */
+    private double itemTime = -1;
+
+    /**
+     * Average time in nanoseconds to commit one chunk.
+     */
+    private double commitTime;
+
+    @Override
+    public int checkpointTimeout() throws Exception {
+        return timeout;
+    }
+
+    @Override
+    public void beginCheckpoint() throws Exception {
+        if (itemCount == 0) {
+            itemCount = bound(initialItemCount);
+        }
+        count = 0;
+    }
+
+    @Override
+    public boolean isReadyToCheckpoint() throws Exception {
+        return ++count >= itemCount;
+    }
+
+    @Override
+    public void endCheckpoint() throws Exception {
+    }
+
+    /**
+     * Gets the item count for the current or next chunk.
+     *
+     * @return the current item count
+     */
+    public int getItemCount() {
+        return itemCount == 0 ? bound(initialItemCount) : itemCount;
+    }
+
+    /**
+     * Recalculates the item count after a chunk has been committed.
+     *
+     * @param items       number of items read in the chunk
+     * @param readTime    time in nanoseconds spent reading items
+     * @param processTime time in nanoseconds spent processing items
+     * @param writeTime   time in nanoseconds spent writing items and saving checkpoint data
+     * @param commitTime  time in nanoseconds spent committing the transaction
+     */
+    void chunkCommitted(final int items, final long readTime, final long processTime, final long writeTime, final long commitTime) {
+        if (items <= 0) {
+            return;
+        }
+        final double lastItemTime = (double) (readTime + processTime + writeTime) / items;
+        if (itemTime < 0) {
+            itemTime = lastItemTime;
+            this.commitTime = commitTime;
+        } else {
+            itemTime = SMOOTHING * lastItemTime + (1 - SMOOTHING) * itemTime;
+            this.commitTime = SMOOTHING * commitTime + (1 - SMOOTHING) * this.commitTime;
+        }
+
+        final double budget = TimeUnit.MILLISECONDS.toNanos(targetTime) - this.commitTime;
+        long next = budget <= 0 ? minItemCount : (long) (budget / Math.max(itemTime, 1));
+        final int current = getItemCount();
+        if (growthHold > 0) {
+            growthHold--;
+            next = Math.min(next, current);
+        } else {
+            next = Math.min(next, current * 2L);
+        }
+        setItemCount(bound(next));
+    }
+
+    /**
+     * Halves the item count after a chunk has been rolled back, and keeps it from growing for the next few chunks.
+     */
+    void chunkRolledBack() {
+        setItemCount(bound(getItemCount() / 2));
+        growthHold = ROLLBACK_HOLD_CHUNKS;
+    }
+
+    private void setItemCount(final int newItemCount) {
+        if (newItemCount != itemCount) {
+            LOGGER.adaptiveItemCount(stepContext == null ? null : stepContext.getStepName(), itemCount, newItemCount);
+            itemCount = newItemCount;
+        }
+    }
+
+    private int bound(final long n) {
+        return (int) Math.max(Math.max(minItemCount, 1), Math.min(n, Math.max(maxItemCount, minItemCount)));
+    }
+}
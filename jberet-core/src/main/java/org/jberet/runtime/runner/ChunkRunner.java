@@ -13,10 +13,16 @@
 package org.jberet.runtime.runner;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.batch.api.chunk.CheckpointAlgorithm;
 import javax.batch.api.chunk.ItemProcessor;
 import javax.batch.api.chunk.ItemReader;
@@ -32,6 +38,7 @@ import javax.batch.api.chunk.listener.SkipProcessListener;
 import javax.batch.api.chunk.listener.SkipReadListener;
 import javax.batch.api.chunk.listener.SkipWriteListener;
 import javax.batch.api.partition.PartitionCollector;
+import javax.batch.operations.BatchRuntimeException;
 import javax.batch.runtime.BatchStatus;
 import javax.batch.runtime.Metric;
 import javax.transaction.Status;
@@ -45,6 +52,8 @@ import org.jberet.job.model.RefArtifact;
 import org.jberet.runtime.AbstractStepExecution;
 import org.jberet.runtime.context.StepContextImpl;
 import org.jberet.runtime.metric.StepMetrics;
+import org.jberet.spi.BatchItemReader;
+import org.jberet.spi.PropertyKey;
 
 import static org.jberet._private.BatchLogger.LOGGER;
 import static org.jberet._private.BatchMessages.MESSAGES;
@@ -83,10 +92,34 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
 
     private String checkpointPolicy = "item";
     private CheckpointAlgorithm checkpointAlgorithm;
+
+    /**
+     * Same as {@link #checkpointAlgorithm} if it is an {@link AdaptiveCheckpointAlgorithm}, in which case the durations
+     * of reading, processing, writing and committing each chunk are measured and reported to it.
+     */
+    private AdaptiveCheckpointAlgorithm adaptiveCheckpointAlgorithm;
     private int itemCount = 10;
     private int timeLimit;  //in seconds
     private int skipLimit;  //default no limit
     private int retryLimit;  //default no limit
+    private int globalTimeout = 180; //default 180 seconds defined by spec
+
+    /**
+     * Whether to overlap reading and processing of the next chunk with writing of the current chunk.
+     * See {@link PropertyKey#CHUNK_PIPELINED}.
+     */
+    private boolean pipelined;
+
+    /**
+     * Max number of items of a chunk processed concurrently.  See {@link PropertyKey#CHUNK_PROCESSOR_THREADS}.
+     */
+    private int processorThreads;
+
+    /**
+     * Whether to retry a chunk whose write failed in bisected segments instead of one item at a time.
+     * See {@link PropertyKey#CHUNK_BISECT_WRITE_FAILURE}.
+     */
+    private boolean bisectWriteFailure;
 
     private final ExceptionClassFilter skippableExceptionClasses;
     private final ExceptionClassFilter retryableExceptionClasses;
@@ -97,9 +130,49 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
     private Object itemRead;
     private final List<Object> outputList = new ArrayList<Object>();
 
+    /**
+     * Same as {@link #itemReader} if it implements {@link BatchItemReader} and items can be read in bulk, i.e., with
+     * item checkpoint policy, no time-limit and no item read listeners.  Items read in bulk are kept in
+     * {@link #readBuffer} until consumed one by one, and any exception thrown after some items have been read is kept
+     * in {@link #pendingReadException} until these items have been consumed.
+     */
+    private BatchItemReader batchItemReader;
+    private final List<Object> readBuffer = new ArrayList<Object>();
+    private int readBufferPosition;
+    private Exception pendingReadException;
+
+    /**
+     * Items read in the current chunk that have been submitted for concurrent processing, and their processing results
+     * in the same order.  Only used when {@link #processorThreads} is greater than 1.
+     */
+    private final List<Object> bufferedItems = new ArrayList<Object>();
+    private final List<Future<Object>> bufferedResults = new ArrayList<Future<Object>>();
+    private int settledResults;
+
+    /**
+     * The result of concurrent processing for {@link #itemRead}, to be consumed by {@link #processItem(ProcessingInfo)}.
+     */
+    private Future<Object> processedResult;
+
     private final TransactionManager tm;
 
+    /**
+     * Reader and writer checkpoint info as of the last successful commit in pipelined mode.
+     */
+    private Serializable committedReaderCheckpointInfo;
+    private Serializable committedWriterCheckpointInfo;
+
     public ChunkRunner(final StepContextImpl stepContext, final CompositeExecutionRunner enclosingRunner, final StepExecutionRunner stepRunner, final Chunk chunk) {
+        this(stepContext, enclosingRunner, stepRunner, chunk, null);
+    }
+
+    /**
+     * Creates a chunk runner for a partition of a step partitioned with {@link org.jberet.spi.RangePartitionPlan}.
+     *
+     * @param rangeSplit the sub-range of the partition, or null if the step is not partitioned by range
+     */
+    ChunkRunner(final StepContextImpl stepContext, final CompositeExecutionRunner enclosingRunner, final StepExecutionRunner stepRunner, final Chunk chunk,
+                final RangeSplit rangeSplit) {
         super(stepContext, enclosingRunner);
         this.stepRunner = stepRunner;
         this.chunk = chunk;
@@ -107,7 +180,8 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
         this.stepMetrics = this.stepOrPartitionExecution.getStepMetrics();
 
         final RefArtifact readerElement = chunk.getReader();
-        itemReader = jobContext.createArtifact(readerElement.getRef(), null, readerElement.getProperties(), batchContext);
+        final ItemReader reader = jobContext.createArtifact(readerElement.getRef(), null, readerElement.getProperties(), batchContext);
+        itemReader = rangeSplit == null ? reader : new RangeItemReader(reader, rangeSplit);
 
         final RefArtifact writerElement = chunk.getWriter();
         itemWriter = jobContext.createArtifact(writerElement.getRef(), null, writerElement.getProperties(), batchContext);
@@ -142,6 +216,10 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
             final RefArtifact alg = chunk.getCheckpointAlgorithm();
             if (alg != null) {
                 checkpointAlgorithm = jobContext.createArtifact(alg.getRef(), null, alg.getProperties(), batchContext);
+                if (checkpointAlgorithm instanceof AdaptiveCheckpointAlgorithm) {
+                    adaptiveCheckpointAlgorithm = (AdaptiveCheckpointAlgorithm) checkpointAlgorithm;
+                    stepMetrics.setCheckpointItemCount(adaptiveCheckpointAlgorithm.getItemCount());
+                }
             } else {
                 throw MESSAGES.checkpointAlgorithmMissing(stepRunner.step.getId());
             }
@@ -149,6 +227,22 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
             throw MESSAGES.invalidCheckpointPolicy(attrVal);
         }
 
+        final Properties stepProps = batchContext.getStep().getProperties();
+        if (stepProps != null) {
+            if (checkpointPolicy.equals("item")) {
+                pipelined = Boolean.parseBoolean(stepProps.get(PropertyKey.CHUNK_PIPELINED));
+            }
+            attrVal = stepProps.get(PropertyKey.CHUNK_PROCESSOR_THREADS);
+            if (attrVal != null && itemProcessor != null) {
+                processorThreads = Integer.parseInt(attrVal.trim());
+            }
+            bisectWriteFailure = Boolean.parseBoolean(stepProps.get(PropertyKey.CHUNK_BISECT_WRITE_FAILURE));
+            if (pipelined && processorThreads > 1) {
+                LOGGER.ignoreProcessorThreadsInPipeline(PropertyKey.CHUNK_PROCESSOR_THREADS, stepRunner.step.getId(),
+                        PropertyKey.CHUNK_PIPELINED);
+            }
+        }
+
         attrVal = chunk.getSkipLimit();
         skipLimit = attrVal == null ? -1 : Integer.parseInt(attrVal);
 
@@ -160,6 +254,12 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
         noRollbackExceptionClasses = chunk.getNoRollbackExceptionClasses();
         this.tm = stepRunner.tm;
         createChunkRelatedListeners();
+
+        //steps with item read listeners keep reading one item at a time, so that listeners are called for each item
+        if (itemReader instanceof BatchItemReader && checkpointPolicy.equals("item") && timeLimit <= 0 &&
+                itemReadListeners.isEmpty()) {
+            batchItemReader = (BatchItemReader) itemReader;
+        }
     }
 
     @Override
@@ -168,7 +268,6 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
             //When running in EE environment, set global transaction timeout for the current thread
             // from javax.transaction.global.timeout property at step level
             final Properties stepProps = stepRunner.step.getProperties();
-            int globalTimeout = 180; //default 180 seconds defined by spec
             if (stepProps != null) {
                 final String globalTimeoutProp = stepProps.get("javax.transaction.global.timeout");
                 if (globalTimeoutProp != null) {
@@ -188,7 +287,11 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                 throw e;
             }
 
-            readProcessWriteItems();
+            if (pipelined) {
+                readProcessWriteItemsPipelined();
+            } else {
+                readProcessWriteItems();
+            }
 
             tm.begin();
             try {
@@ -226,7 +329,8 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
             if (stepRunner.completedPartitionThreads != null) {
                 stepRunner.completedPartitionThreads.offer(Boolean.TRUE);
             }
-            jobContext.destroyArtifact(itemReader, itemWriter, itemProcessor, collector, checkpointAlgorithm);
+            final ItemReader reader = itemReader instanceof RangeItemReader ? ((RangeItemReader) itemReader).delegate : itemReader;
+            jobContext.destroyArtifact(reader, itemWriter, itemProcessor, collector, checkpointAlgorithm);
             jobContext.destroyArtifact(allChunkRelatedListeners);
             // Safely close the reader and writer
             safeClose();
@@ -286,12 +390,33 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                     beginCheckpoint(processingInfo);
                 }
 
+                long startTime = adaptiveCheckpointAlgorithm == null ? 0 : System.nanoTime();
                 if (processingInfo.itemState != ItemState.RETRYING_PROCESS && processingInfo.itemState != ItemState.RETRYING_WRITE) {
                     readItem(processingInfo);
+                    if (adaptiveCheckpointAlgorithm != null) {
+                        final long now = System.nanoTime();
+                        processingInfo.readTime += now - startTime;
+                        startTime = now;
+                    }
                 }
 
                 if (itemRead != null && processingInfo.itemState!= ItemState.RETRYING_WRITE) {
-                    processItem(processingInfo);
+                    if (processorThreads > 1 && processingInfo.chunkState == ChunkState.RUNNING &&
+                            processingInfo.itemState == ItemState.RUNNING) {
+                        submitProcessItem();
+                    } else {
+                        //items already submitted for processing must be added to outputList first to keep the order
+                        if (!bufferedItems.isEmpty()) {
+                            processBufferedItems(processingInfo);
+                            if (processingInfo.chunkState == ChunkState.TO_RETRY) {
+                                continue;
+                            }
+                        }
+                        processItem(processingInfo);
+                    }
+                    if (adaptiveCheckpointAlgorithm != null) {
+                        processingInfo.processTime += System.nanoTime() - startTime;
+                    }
                 }
 
                 if (processingInfo.toStopItem()) {
@@ -299,8 +424,23 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                 }
 
                 if (isReadyToCheckpoint(processingInfo)) {
+                    if (!bufferedItems.isEmpty()) {
+                        startTime = adaptiveCheckpointAlgorithm == null ? 0 : System.nanoTime();
+                        processBufferedItems(processingInfo);
+                        if (adaptiveCheckpointAlgorithm != null) {
+                            processingInfo.processTime += System.nanoTime() - startTime;
+                        }
+                        if (processingInfo.chunkState == ChunkState.TO_RETRY) {
+                            continue;
+                        }
+                    }
+                    final int chunkItems = processingInfo.count;
                     try {
+                        startTime = adaptiveCheckpointAlgorithm == null ? 0 : System.nanoTime();
                         doCheckpoint(processingInfo);
+                        if (adaptiveCheckpointAlgorithm != null) {
+                            processingInfo.writeTime += System.nanoTime() - startTime;
+                        }
 
                         //errors may happen during the above doCheckpoint (e.g., in writer.write method).  If so, need
                         //to skip the remainder of the current loop.  If retry with rollback, chunkState has been set to
@@ -320,7 +460,13 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                         throw e;
                     }
 
+                    startTime = adaptiveCheckpointAlgorithm == null ? 0 : System.nanoTime();
                     tm.commit();
+                    if (adaptiveCheckpointAlgorithm != null) {
+                        adaptiveCheckpointAlgorithm.chunkCommitted(chunkItems, processingInfo.readTime,
+                                processingInfo.processTime, processingInfo.writeTime, System.nanoTime() - startTime);
+                        stepMetrics.setCheckpointItemCount(adaptiveCheckpointAlgorithm.getItemCount());
+                    }
                     if (checkpointAlgorithm != null) {
                         checkpointAlgorithm.endCheckpoint();
                     }
@@ -328,6 +474,7 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                     stepMetrics.increment(Metric.MetricType.COMMIT_COUNT, 1);
                 }
             } catch (final Exception e) {
+                discardBufferedItems();
                 final int txStatus = tm.getStatus();
                 if (txStatus == Status.STATUS_ACTIVE || txStatus == Status.STATUS_MARKED_ROLLBACK ||
                         txStatus == Status.STATUS_PREPARED || txStatus == Status.STATUS_PREPARING ||
@@ -342,21 +489,274 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
         }
     }
 
-    private void readItem(final ProcessingInfo processingInfo) throws Exception {
+    /**
+     * The read-process-write loop in pipelined mode.  Items of the next chunk are read and processed on the current
+     * thread while the previous chunk is written and committed by a {@link ChunkWriteTask} on another thread, so that
+     * at most one chunk is being written at any time.  Reader checkpoint info is captured at the chunk boundary and is
+     * only persisted by the write task after the write has succeeded, in the same transaction.  Partition data is
+     * collected on the current thread once the chunk has been committed.
+     * <p/>
+     * If reading, processing or writing fails with an exception that is neither skippable nor retryable, the step
+     * fails after the in-flight write has finished, leaving the last committed checkpoint for restart.  Otherwise, the
+     * pipeline is rolled back to the last committed checkpoint and the remainder of the step continues in the regular
+     * read-process-write loop, where the configured skip and retry rules apply to the failed item.  A retryable
+     * exception is counted as a retry, and notified to error and retry listeners, before the pipeline is rolled back.
+     *
+     * @throws Exception
+     */
+    private void readProcessWriteItemsPipelined() throws Exception {
+        committedReaderCheckpointInfo = stepOrPartitionExecution.getReaderCheckpointInfo();
+        committedWriterCheckpointInfo = stepOrPartitionExecution.getWriterCheckpointInfo();
+        Future<Void> pendingWrite = null;
+        List<Object> pendingItems = null;
+        //the item being processed or the items being written, to tell where a failure happened
+        Object processingItem = null;
+        List<Object> writingItems = null;
+        boolean depleted = false;
+        boolean stopping = false;
+        try {
+            while (!depleted && !stopping) {
+                for (final ChunkListener l : chunkListeners) {
+                    l.beforeChunk();
+                }
+                final List<Object> chunkOutput = new ArrayList<Object>();
+                final long timeLimitDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeLimit);
+                int count = 0;
+                while (true) {
+                    if (jobContext.getJobExecution().isStopRequested()) {
+                        stopping = true;
+                        break;
+                    }
+                    final Object item = readItemPipelined();
+                    if (item == null) {
+                        depleted = true;
+                        break;
+                    }
+                    count++;
+                    processingItem = item;
+                    final Object output = processItemPipelined(item);
+                    processingItem = null;
+                    if (output != null) {
+                        chunkOutput.add(output);
+                    }
+                    if (count >= itemCount || (timeLimit > 0 && System.nanoTime() - timeLimitDeadline >= 0)) {
+                        break;
+                    }
+                }
+                final Serializable readerCheckpointInfo = itemReader.checkpointInfo();
+
+                //wait for the previous chunk to commit before handing over the current one
+                final Future<Void> previousWrite = pendingWrite;
+                pendingWrite = null;
+                writingItems = pendingItems;
+                awaitCommit(previousWrite);
+                writingItems = null;
+                if (chunkOutput.isEmpty() && depleted) {
+                    break;
+                }
+                pendingWrite = jobContext.getBatchEnvironment().submitTask(new ChunkWriteTask(chunkOutput, readerCheckpointInfo));
+                pendingItems = chunkOutput;
+            }
+            final Future<Void> lastWrite = pendingWrite;
+            pendingWrite = null;
+            writingItems = pendingItems;
+            awaitCommit(lastWrite);
+        } catch (final Exception e) {
+            try {
+                awaitWrite(pendingWrite);
+            } catch (final Exception e2) {
+                LOGGER.trace("Error from the pending chunk write.", e2);
+            }
+            stepOrPartitionExecution.setReaderCheckpointInfo(committedReaderCheckpointInfo);
+            stepOrPartitionExecution.setWriterCheckpointInfo(committedWriterCheckpointInfo);
+            if (isFatalInPipeline(e)) {
+                for (final ChunkListener l : chunkListeners) {
+                    l.onError(e);
+                }
+                throw e;
+            }
+            if (needRetry(e)) {
+                retryPipeline(e, processingItem, writingItems);
+            }
+            rollbackPipeline();
+            readProcessWriteItems();
+            return;
+        }
+        if (stopping) {
+            batchContext.setBatchStatus(BatchStatus.STOPPED);
+        }
+    }
+
+    private Object readItemPipelined() throws Exception {
         try {
             for (final ItemReadListener l : itemReadListeners) {
                 l.beforeRead();
             }
-            itemRead = itemReader.readItem();
-            if (itemRead != null) {  //only count successful read
+            final Object item = itemReader.readItem();
+            if (item != null) {
                 stepMetrics.increment(Metric.MetricType.READ_COUNT, 1);
+            }
+            for (final ItemReadListener l : itemReadListeners) {
+                l.afterRead(item);
+            }
+            return item;
+        } catch (final Exception e) {
+            //for retryable exceptions, error listeners are notified when the pipeline is rolled back, and for
+            //skippable exceptions, when the item is re-read serially
+            if (isFatalInPipeline(e)) {
+                for (final ItemReadListener l : itemReadListeners) {
+                    l.onReadError(e);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private Object processItemPipelined(final Object item) throws Exception {
+        if (itemProcessor == null) {
+            return item;
+        }
+        try {
+            for (final ItemProcessListener l : itemProcessListeners) {
+                l.beforeProcess(item);
+            }
+            final Object output = itemProcessor.processItem(item);
+            for (final ItemProcessListener l : itemProcessListeners) {
+                l.afterProcess(item, output);
+            }
+            if (output == null) {
+                stepMetrics.increment(Metric.MetricType.FILTER_COUNT, 1);
+            }
+            return output;
+        } catch (final Exception e) {
+            if (isFatalInPipeline(e)) {
+                for (final ItemProcessListener l : itemProcessListeners) {
+                    l.onProcessError(item, e);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a chunk write submitted in pipelined mode to complete, and rethrows any exception from the write.
+     *
+     * @param pendingWrite the future representing the chunk write, may be null
+     * @throws Exception the exception thrown by the chunk write task
+     */
+    private static void awaitWrite(final Future<Void> pendingWrite) throws Exception {
+        if (pendingWrite != null) {
+            getResult(pendingWrite);
+        }
+    }
+
+    /**
+     * Waits for a chunk write submitted in pipelined mode to commit, and then collects partition data for that chunk
+     * on the current thread, so that the partition collector is not invoked concurrently with the reader or processor.
+     *
+     * @param pendingWrite the future representing the chunk write, may be null
+     * @throws Exception the exception thrown by the chunk write task or the partition collector
+     */
+    private void awaitCommit(final Future<Void> pendingWrite) throws Exception {
+        if (pendingWrite != null) {
+            getResult(pendingWrite);
+            if (collector != null) {
+                stepRunner.collectorDataQueue.put(collector.collectPartitionData());
+            }
+        }
+    }
+
+    /**
+     * Notifies error and retry listeners of a retryable exception in pipelined mode, and counts it as a retry, before
+     * the pipeline is rolled back and the failed item or chunk is retried in the regular read-process-write loop.
+     *
+     * @param e           the retryable exception
+     * @param failedItem  the item whose processing failed, or null
+     * @param failedItems the items whose write failed, or null
+     * @throws Exception if a listener fails
+     */
+    private void retryPipeline(final Exception e, final Object failedItem, final List<Object> failedItems) throws Exception {
+        if (failedItems != null) {
+            for (final ItemWriteListener l : itemWriteListeners) {
+                l.onWriteError(failedItems, e);
+            }
+            for (final RetryWriteListener l : retryWriteListeners) {
+                l.onRetryWriteException(failedItems, e);
+            }
+        } else if (failedItem != null) {
+            for (final ItemProcessListener l : itemProcessListeners) {
+                l.onProcessError(failedItem, e);
+            }
+            for (final RetryProcessListener l : retryProcessListeners) {
+                l.onRetryProcessException(failedItem, e);
+            }
+        } else {
+            for (final ItemReadListener l : itemReadListeners) {
+                l.onReadError(e);
+            }
+            for (final RetryReadListener l : retryReadListeners) {
+                l.onRetryReadException(e);
+            }
+        }
+        retryCount++;
+    }
+
+    /**
+     * Closes and reopens the reader and writer at the last committed checkpoint, discarding any chunk that has been
+     * read ahead in pipelined mode.
+     *
+     * @throws Exception
+     */
+    private void rollbackPipeline() throws Exception {
+        try {
+            itemReader.close();
+            itemWriter.close();
+        } catch (Exception e) {
+            // An error occurred, safely close the reader and writer
+            safeClose();
+            throw e;
+        }
+        try {
+            itemReader.open(committedReaderCheckpointInfo);
+            itemWriter.open(committedWriterCheckpointInfo);
+        } catch (Exception e) {
+            // An error occurred, safely close the reader and writer
+            safeClose();
+            throw e;
+        }
+    }
+
+    private boolean isFatalInPipeline(final Exception e) {
+        return !needRetry(e) && !needSkip(e);
+    }
+
+    private void readItem(final ProcessingInfo processingInfo) throws Exception {
+        try {
+            if (batchItemReader == null) {
+                for (final ItemReadListener l : itemReadListeners) {
+                    l.beforeRead();
+                }
+                itemRead = itemReader.readItem();
+                if (itemRead != null) {  //only count successful read
+                    stepMetrics.increment(Metric.MetricType.READ_COUNT, 1);
+                }
+                for (final ItemReadListener l : itemReadListeners) {
+                    l.afterRead(itemRead);
+                }
+            } else {
+                //there are no item read listeners in bulk mode, and read count is incremented once per bulk read
+                itemRead = readBufferedItem(processingInfo);
+            }
+            if (itemRead != null) {
                 processingInfo.count++;
                 processingInfo.readPosition++;
             } else {
                 processingInfo.chunkState = ChunkState.DEPLETED;
             }
-            for (final ItemReadListener l : itemReadListeners) {
-                l.afterRead(itemRead);
+            if (itemRead != null && processingInfo.writeSkippedPositions.contains(processingInfo.readPosition)) {
+                //this item failed to write and has been skipped, so it is only read again to move past it
+                itemRead = null;
+                checkIfEndRetry(processingInfo);
             }
         } catch (Exception e) {
             for (final ItemReadListener l : itemReadListeners) {
@@ -379,6 +779,10 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                     rollbackCheckpoint(processingInfo);
                 } else {
                     processingInfo.itemState = ItemState.TO_RETRY_READ;
+                    //the same item is read again, for the position already claimed by the failed read
+                    if (itemReader instanceof RangeItemReader) {
+                        ((RangeItemReader) itemReader).unclaim();
+                    }
                 }
                 itemRead = null;
             } else {
@@ -391,14 +795,68 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
         }
     }
 
+    /**
+     * Gets the next item read in bulk, and reads up to the remaining items of the current chunk with
+     * {@link BatchItemReader#readItems(int, List)} when all items already read have been consumed.  When the chunk or
+     * the current item is being retried, items are read one at a time.  The read count metric is incremented once for
+     * all items of each bulk read, including those discarded if the chunk is rolled back before they are consumed.
+     *
+     * @param processingInfo the current chunk processing info
+     * @return the next item, or null if there are no more items
+     * @throws Exception if the reader fails, possibly after items read before the failure have been consumed
+     */
+    private Object readBufferedItem(final ProcessingInfo processingInfo) throws Exception {
+        if (readBufferPosition < readBuffer.size()) {
+            return readBuffer.set(readBufferPosition++, null);
+        }
+        clearReadBuffer();
+        if (pendingReadException != null) {
+            final Exception e = pendingReadException;
+            pendingReadException = null;
+            throw e;
+        }
+        if (processingInfo.chunkState != ChunkState.RUNNING || processingInfo.itemState != ItemState.RUNNING) {
+            final Object item = itemReader.readItem();
+            if (item != null) {
+                stepMetrics.increment(Metric.MetricType.READ_COUNT, 1);
+            }
+            return item;
+        }
+        try {
+            batchItemReader.readItems(Math.max(itemCount - processingInfo.count, 1), readBuffer);
+        } catch (final Exception e) {
+            if (readBuffer.isEmpty()) {
+                throw e;
+            }
+            pendingReadException = e;
+        }
+        if (readBuffer.isEmpty()) {
+            return null;
+        }
+        stepMetrics.increment(Metric.MetricType.READ_COUNT, readBuffer.size());
+        return readBuffer.set(readBufferPosition++, null);
+    }
+
+    private void clearReadBuffer() {
+        readBuffer.clear();
+        readBufferPosition = 0;
+    }
+
     private void processItem(final ProcessingInfo processingInfo) throws Exception {
         Object output;
         if (itemProcessor != null) {
             try {
-                for (final ItemProcessListener l : itemProcessListeners) {
-                    l.beforeProcess(itemRead);
+                final Future<Object> precomputed = processedResult;
+                if (precomputed == null) {
+                    for (final ItemProcessListener l : itemProcessListeners) {
+                        l.beforeProcess(itemRead);
+                    }
+                    output = itemProcessor.processItem(itemRead);
+                } else {
+                    //already processed concurrently, and any retry of this item is done serially
+                    processedResult = null;
+                    output = getResult(precomputed);
                 }
-                output = itemProcessor.processItem(itemRead);
                 for (final ItemProcessListener l : itemProcessListeners) {
                     l.afterProcess(itemRead, output);
                 }
@@ -448,6 +906,107 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
         }
     }
 
+    /**
+     * Submits the current item for processing on another thread, and buffers it until the current chunk is ready to
+     * checkpoint.  At most {@link #processorThreads} items are being processed at any time.
+     *
+     * @throws Exception
+     */
+    private void submitProcessItem() throws Exception {
+        for (final ItemProcessListener l : itemProcessListeners) {
+            l.beforeProcess(itemRead);
+        }
+        final int maxSettled = bufferedResults.size() - processorThreads;
+        while (settledResults <= maxSettled) {
+            awaitQuietly(bufferedResults.get(settledResults++));
+        }
+        bufferedResults.add(jobContext.getBatchEnvironment().submitTask(new ProcessItemTask(itemRead)));
+        bufferedItems.add(itemRead);
+        itemRead = null;
+    }
+
+    /**
+     * Collects the results of items submitted for concurrent processing, in the order they were read.  Each result is
+     * passed through {@link #processItem(ProcessingInfo)}, so that process listeners, filter count, and skip and retry
+     * handling are applied to each item as in serial processing.  If the chunk is rolled back for retry, the remaining
+     * results are discarded.
+     *
+     * @param processingInfo the current processing info
+     * @throws Exception
+     */
+    private void processBufferedItems(final ProcessingInfo processingInfo) throws Exception {
+        final Object current = itemRead;
+        final ItemState currentItemState = processingInfo.itemState;
+        final int size = bufferedItems.size();
+        final int endPosition = current == null ? processingInfo.readPosition : processingInfo.readPosition - 1;
+        try {
+            for (int i = 0; i < size; i++) {
+                itemRead = bufferedItems.get(i);
+                processedResult = bufferedResults.get(i);
+                processingInfo.itemState = ItemState.RUNNING;
+                processingInfo.readPosition = endPosition - (size - 1 - i);
+                processItem(processingInfo);
+                while (processingInfo.itemState == ItemState.TO_RETRY_PROCESS) {
+                    processingInfo.itemState = ItemState.RETRYING_PROCESS;
+                    processItem(processingInfo);
+                }
+                if (processingInfo.chunkState == ChunkState.TO_RETRY) {
+                    itemRead = null;
+                    return;
+                }
+            }
+            processingInfo.readPosition = current == null ? endPosition : endPosition + 1;
+            processingInfo.itemState = currentItemState;
+            itemRead = current;
+        } finally {
+            discardBufferedItems();
+        }
+    }
+
+    /**
+     * Waits for all items submitted for concurrent processing to finish, and clears them.
+     */
+    private void discardBufferedItems() throws InterruptedException {
+        for (final Future<Object> f : bufferedResults) {
+            awaitQuietly(f);
+        }
+        bufferedResults.clear();
+        bufferedItems.clear();
+        settledResults = 0;
+        processedResult = null;
+    }
+
+    /**
+     * Gets the result of a task submitted to the batch environment, and rethrows any exception from the task.
+     *
+     * @param future the future representing the task
+     * @param <T> the type of the result
+     * @return the result of the task
+     * @throws Exception the exception thrown by the task
+     */
+    private static <T> T getResult(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BatchRuntimeException(cause);
+        }
+    }
+
+    private static void awaitQuietly(final Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            //the exception is handled when the result is collected
+        }
+    }
+
     private void checkIfEndRetry(final ProcessingInfo processingInfo) {
         if (processingInfo.chunkState == ChunkState.RETRYING &&
                 processingInfo.itemState != ItemState.TO_RETRY_READ &&
@@ -462,13 +1021,7 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
     private void beginCheckpoint(final ProcessingInfo processingInfo) throws Exception {
         if (checkpointPolicy.equals("item")) {
             if (timeLimit > 0) {
-                final Timer timer = new Timer("chunk-checkpoint-timer", true);
-                timer.schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        processingInfo.timerExpired = true;
-                    }
-                }, timeLimit * 1000);
+                processingInfo.timeLimitDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeLimit);
             }
         }
         //if chunk is already RETRYING, do not change it to RUNNING
@@ -480,10 +1033,14 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
     }
 
     private boolean isReadyToCheckpoint(final ProcessingInfo processingInfo) throws Exception {
-        if (jobContext.getJobExecution().isStopRequested()) {
+        //items already read in bulk must be consumed before checkpoint, since the reader has moved past them
+        if (jobContext.getJobExecution().isStopRequested() && readBufferPosition >= readBuffer.size()) {
             processingInfo.chunkState=ChunkState.JOB_STOPPING;
             return true;
         }
+        if (processingInfo.chunkState == ChunkState.RETRYING && !processingInfo.writeSegments.isEmpty()) {
+            return processingInfo.readPosition - processingInfo.checkpointPosition >= processingInfo.writeSegments.peek();
+        }
         if (processingInfo.chunkState == ChunkState.DEPLETED ||
                 processingInfo.chunkState == ChunkState.RETRYING ||
                 processingInfo.chunkState == ChunkState.TO_END_RETRY) {
@@ -494,7 +1051,7 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                 return true;
             }
             if (timeLimit > 0) {
-                return processingInfo.timerExpired;
+                return System.nanoTime() - processingInfo.timeLimitDeadline >= 0;
             }
             return false;
         }
@@ -520,6 +1077,9 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
             batchContext.savePersistentData();
             outputList.clear();
             processingInfo.checkpointPosition = processingInfo.readPosition;
+            if (!processingInfo.writeSegments.isEmpty()) {
+                processingInfo.writeSegments.pop();
+            }
 
             if (processingInfo.chunkState == ChunkState.JOB_STOPPING) {
                 processingInfo.chunkState = ChunkState.JOB_STOPPED;
@@ -534,6 +1094,9 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
             for (final ItemWriteListener l : itemWriteListeners) {
                 l.onWriteError(outputList, e);
             }
+            if (!processingInfo.writeSegments.isEmpty() && bisectWriteSegment(e, processingInfo)) {
+                return;
+            }
             toSkipOrRetry(e, processingInfo);
             if (processingInfo.itemState == ItemState.TO_SKIP) {
                 //if requested to stop the job, do not skip to the next item
@@ -546,6 +1109,12 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                     }
                     stepMetrics.increment(Metric.MetricType.WRITE_SKIP_COUNT, 1);
                     skipCount += outputSize;
+                    //the skipped items must not be written again with the next items
+                    outputList.clear();
+                    if (!processingInfo.writeSegments.isEmpty()) {
+                        skipWriteSegment(processingInfo);
+                        return;
+                    }
                 }
             } else if (processingInfo.itemState == ItemState.TO_RETRY) {
                 for (final RetryWriteListener l : retryWriteListeners) {
@@ -553,7 +1122,16 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
                 }
                 retryCount++;
                 if (needRollbackBeforeRetry(e)) {
+                    final int items = processingInfo.readPosition - processingInfo.checkpointPosition;
+                    final Integer failurePoint = processingInfo.failurePoint;
+                    final boolean bisecting = !processingInfo.writeSegments.isEmpty();
                     rollbackCheckpoint(processingInfo);
+                    if (bisecting) {
+                        //retry the same single-item segment, and keep retrying up to the original failure point
+                        processingInfo.failurePoint = failurePoint;
+                    } else if (bisectWriteFailure && items > 1) {
+                        pushWriteSegments(processingInfo, items);
+                    }
                 } else {
                     processingInfo.itemState = ItemState.TO_RETRY_WRITE;
                 }
@@ -568,11 +1146,64 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
         }
     }
 
+    /**
+     * Rolls back a segment of more than one item whose write failed while bisecting a write failure, and splits it
+     * into 2 halves to retry separately.
+     *
+     * @param e              the exception from writing the segment
+     * @param processingInfo the current chunk processing info
+     * @return true if the segment has been rolled back and split; false if the segment has only one item or
+     * {@code e} is neither skippable nor retryable with rollback, and should be handled as usual
+     * @throws Exception if failed to roll back
+     */
+    private boolean bisectWriteSegment(final Exception e, final ProcessingInfo processingInfo) throws Exception {
+        final int items = processingInfo.readPosition - processingInfo.checkpointPosition;
+        if (items <= 1 || !(needSkip(e) || (needRetry(e) && needRollbackBeforeRetry(e)))) {
+            return false;
+        }
+        final Integer failurePoint = processingInfo.failurePoint;
+        rollbackCheckpoint(processingInfo);
+        processingInfo.failurePoint = failurePoint;
+        processingInfo.writeSegments.pop();
+        pushWriteSegments(processingInfo, items);
+        return true;
+    }
+
+    /**
+     * Rolls back a single-item segment whose write failed and was skipped while bisecting a write failure.  The item
+     * will be read again but not processed or written, and is merged into the next segment, so that moving past it
+     * is committed together with the next segment.
+     *
+     * @param processingInfo the current chunk processing info
+     * @throws Exception if failed to roll back
+     */
+    private void skipWriteSegment(final ProcessingInfo processingInfo) throws Exception {
+        final Integer failurePoint = processingInfo.failurePoint;
+        processingInfo.writeSkippedPositions.add(processingInfo.readPosition);
+        rollbackCheckpoint(processingInfo);
+        processingInfo.failurePoint = failurePoint;
+        processingInfo.writeSegments.pop();
+        final Integer next = processingInfo.writeSegments.poll();
+        processingInfo.writeSegments.push(next == null ? 1 : next + 1);
+    }
+
+    private static void pushWriteSegments(final ProcessingInfo processingInfo, final int items) {
+        final int firstHalf = (items + 1) / 2;
+        processingInfo.writeSegments.push(items - firstHalf);
+        processingInfo.writeSegments.push(firstHalf);
+    }
+
     private void rollbackCheckpoint(final ProcessingInfo processingInfo) throws Exception {
         outputList.clear();
+        clearReadBuffer();
+        pendingReadException = null;
         processingInfo.failurePoint = processingInfo.readPosition;
         tm.rollback();
         stepMetrics.increment(Metric.MetricType.ROLLBACK_COUNT, 1);
+        if (adaptiveCheckpointAlgorithm != null) {
+            adaptiveCheckpointAlgorithm.chunkRolledBack();
+            stepMetrics.setCheckpointItemCount(adaptiveCheckpointAlgorithm.getItemCount());
+        }
         // Close the reader and writer
         try {
             itemReader.close();
@@ -709,13 +1340,85 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
     }
 
 
+    /**
+     * Writes and commits one chunk in pipelined mode, in its own transaction on a thread other than the step thread.
+     * Item write listeners and {@code ChunkListener.afterChunk} are invoked on that thread as well, while the next
+     * chunk is being read and processed on the step thread.
+     */
+    private final class ChunkWriteTask implements Callable<Void> {
+        private final List<Object> items;
+        private final Serializable readerCheckpointInfo;
+
+        private ChunkWriteTask(final List<Object> items, final Serializable readerCheckpointInfo) {
+            this.items = items;
+            this.readerCheckpointInfo = readerCheckpointInfo;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            tm.setTransactionTimeout(globalTimeout);
+            tm.begin();
+            try {
+                for (final ItemWriteListener l : itemWriteListeners) {
+                    l.beforeWrite(items);
+                }
+                itemWriter.writeItems(items);
+                stepMetrics.increment(Metric.MetricType.WRITE_COUNT, items.size());
+                for (final ItemWriteListener l : itemWriteListeners) {
+                    l.afterWrite(items);
+                }
+                stepOrPartitionExecution.setReaderCheckpointInfo(readerCheckpointInfo);
+                stepOrPartitionExecution.setWriterCheckpointInfo(itemWriter.checkpointInfo());
+                batchContext.savePersistentData();
+                for (final ChunkListener l : chunkListeners) {
+                    l.afterChunk();
+                }
+            } catch (final Exception e) {
+                tm.rollback();
+                stepMetrics.increment(Metric.MetricType.ROLLBACK_COUNT, 1);
+                if (isFatalInPipeline(e)) {
+                    for (final ItemWriteListener l : itemWriteListeners) {
+                        l.onWriteError(items, e);
+                    }
+                }
+                throw e;
+            }
+            tm.commit();
+            stepMetrics.increment(Metric.MetricType.COMMIT_COUNT, 1);
+            committedReaderCheckpointInfo = stepOrPartitionExecution.getReaderCheckpointInfo();
+            committedWriterCheckpointInfo = stepOrPartitionExecution.getWriterCheckpointInfo();
+            return null;
+        }
+    }
+
+    /**
+     * Processes one item on a thread other than the step thread, when {@link #processorThreads} is greater than 1.
+     */
+    private final class ProcessItemTask implements Callable<Object> {
+        private final Object item;
+
+        private ProcessItemTask(final Object item) {
+            this.item = item;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            return itemProcessor.processItem(item);
+        }
+    }
+
     private static final class ProcessingInfo {
         /**
          * Number of items completed in during a checkpoint interval
          */
         int count;
 
-        boolean timerExpired;
+        /**
+         * When the time limit of the current chunk expires, as a {@link System#nanoTime()} value.  Only used with item
+         * checkpoint policy and a time-limit greater than 0.
+         */
+        long timeLimitDeadline;
+
         ItemState itemState = ItemState.RUNNING;
         ChunkState chunkState = ChunkState.TO_START_NEW;
 
@@ -735,12 +1438,35 @@ public final class ChunkRunner extends AbstractRunner<StepContextImpl> implement
          */
         Integer failurePoint;
 
+        /**
+         * When bisecting a chunk write failure, the number of items in each of the remaining segments of the chunk,
+         * with the current segment first.  Each segment is written and committed separately.  Empty otherwise.
+         */
+        final Deque<Integer> writeSegments = new ArrayDeque<Integer>();
+
+        /**
+         * Read positions of the items skipped after failing to write while bisecting a chunk write failure.
+         */
+        final Set<Integer> writeSkippedPositions = new HashSet<Integer>();
+
+        /**
+         * Time in nanoseconds spent reading, processing and writing items in the current chunk.  Only measured with
+         * {@link AdaptiveCheckpointAlgorithm}.
+         */
+        long readTime;
+        long processTime;
+        long writeTime;
+
         private void reset() {
             count = 0;
-            timerExpired = false;
+            readTime = 0;
+            processTime = 0;
+            writeTime = 0;
             itemState = ItemState.RUNNING;
             chunkState = ChunkState.RUNNING;
             failurePoint = null;
+            writeSegments.clear();
+            writeSkippedPositions.clear();
         }
 
         private boolean toStopItem() {
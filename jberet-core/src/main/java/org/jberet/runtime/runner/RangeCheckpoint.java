@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.runtime.runner;
+
+import java.io.Serializable;
+
+/**
+ * The reader checkpoint info saved for a partition of a step partitioned with
+ * {@link org.jberet.spi.RangePartitionPlan}.  It records the sub-range of the partition and the next position to read,
+ * along with the checkpoint info of the item reader itself.
+ * <p/>
+ * {@link #end} is the end of the sub-range when the partition was created.  When part of the sub-range is later
+ * taken over by another partition, the new partition starts where the remaining sub-range ends, so the effective end
+ * of a sub-range is the start of the next sub-range of the same step execution, if it is lower than {@link #end}.
+ * If the new partition failed to be saved, the part taken over is still covered by this sub-range upon restart.
+ */
+final class RangeCheckpoint implements Serializable {
+    private static final long serialVersionUID = -2954238104529736185L;
+
+    /**
+     * The first position of the sub-range.
+     */
+    final long start;
+
+    /**
+     * The position after the last one of the sub-range, when the partition was created.
+     */
+    final long end;
+
+    /**
+     * The next position to read.
+     */
+    final long position;
+
+    final Serializable readerCheckpointInfo;
+
+    RangeCheckpoint(final long start, final long end, final long position, final Serializable readerCheckpointInfo) {
+        this.start = start;
+        this.end = end;
+        this.position = position;
+        this.readerCheckpointInfo = readerCheckpointInfo;
+    }
+
+    @Override
+    public String toString() {
+        return "RangeCheckpoint{start=" + start + ", end=" + end + ", position=" + position +
+                ", readerCheckpointInfo=" + readerCheckpointInfo + '}';
+    }
+}
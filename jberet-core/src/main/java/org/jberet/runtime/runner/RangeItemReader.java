@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.runtime.runner;
+
+import java.io.Serializable;
+import javax.batch.api.chunk.ItemReader;
+
+/**
+ * Wraps the item reader of a partition of a step partitioned with {@link org.jberet.spi.RangePartitionPlan}, so that
+ * the reader stops at the end of its sub-range, even after the end has been lowered by the step thread, and the
+ * position in the sub-range is saved with the reader checkpoint info.
+ */
+final class RangeItemReader implements ItemReader {
+    final ItemReader delegate;
+    private final RangeSplit split;
+
+    RangeItemReader(final ItemReader delegate, final RangeSplit split) {
+        this.delegate = delegate;
+        this.split = split;
+    }
+
+    @Override
+    public void open(final Serializable checkpoint) throws Exception {
+        if (checkpoint instanceof RangeCheckpoint) {
+            final RangeCheckpoint rangeCheckpoint = (RangeCheckpoint) checkpoint;
+            split.reset(rangeCheckpoint.position);
+            delegate.open(rangeCheckpoint.readerCheckpointInfo);
+        } else {
+            delegate.open(checkpoint);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+
+    @Override
+    public Object readItem() throws Exception {
+        if (!split.claim()) {
+            return null;
+        }
+        final Object item = delegate.readItem();
+        if (item == null) {
+            split.deplete();
+        }
+        return item;
+    }
+
+    /**
+     * Gives back the position claimed by the last call to {@link #readItem()}, which failed and is to be retried
+     * without rollback.
+     */
+    void unclaim() {
+        split.unclaim();
+    }
+
+    @Override
+    public Serializable checkpointInfo() throws Exception {
+        return split.checkpoint(delegate.checkpointInfo());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.runtime.runner;
+
+import java.io.Serializable;
+
+/**
+ * The sub-range of a running partition of a step partitioned with {@link org.jberet.spi.RangePartitionPlan}.  The
+ * partition thread claims one position before reading each item, while the step thread may take over the remaining
+ * half of the sub-range for another partition by lowering its end.
+ */
+final class RangeSplit {
+    private final long start;
+
+    /**
+     * The end of the sub-range when the partition was created, which is saved in checkpoints.
+     */
+    private final long limit;
+
+    /**
+     * The position after the last one of the sub-range.  Guarded by this.
+     */
+    private long end;
+
+    /**
+     * The next position to claim.  Guarded by this.
+     */
+    private long next;
+
+    RangeSplit(final long start, final long end, final long next) {
+        this.start = start;
+        this.limit = end;
+        this.end = end;
+        this.next = next;
+    }
+
+    /**
+     * Claims the next position.
+     *
+     * @return true if a position has been claimed; false if there are no more positions in the sub-range
+     */
+    synchronized boolean claim() {
+        if (next < end) {
+            next++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gives back the position just claimed, when the reader failed and is retried without rollback, so that the same
+     * item is read again for that position.
+     */
+    synchronized void unclaim() {
+        if (next > start) {
+            next--;
+        }
+    }
+
+    /**
+     * Marks the sub-range as depleted after the reader returned no item for the position just claimed, so that no
+     * further positions are claimed or taken over.
+     */
+    synchronized void deplete() {
+        end = next - 1;
+        next = end;
+    }
+
+    /**
+     * Moves to {@code position}, when the reader is opened at a checkpoint.
+     *
+     * @param position the next position to claim
+     */
+    synchronized void reset(final long position) {
+        next = Math.min(position, end);
+    }
+
+    synchronized RangeCheckpoint checkpoint(final Serializable readerCheckpointInfo) {
+        return new RangeCheckpoint(start, limit, next, readerCheckpointInfo);
+    }
+
+    synchronized long remaining() {
+        return end - next;
+    }
+
+    /**
+     * Takes over the remaining half of this sub-range, leaving at least {@code minSize} positions on either side.
+     *
+     * @param minSize the min number of positions in either half
+     * @return the sub-range taken over, with no position read yet, or null if this sub-range is too small to split
+     */
+    synchronized RangeCheckpoint split(final long minSize) {
+        final long remaining = end - next;
+        if (remaining < 2 * minSize) {
+            return null;
+        }
+        final long mid = end - remaining / 2;
+        final RangeCheckpoint result = new RangeCheckpoint(mid, end, mid, null);
+        end = mid;
+        return result;
+    }
+}
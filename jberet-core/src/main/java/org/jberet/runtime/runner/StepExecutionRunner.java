@@ -13,10 +13,13 @@
 package org.jberet.runtime.runner;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -53,6 +56,7 @@ import org.jberet.runtime.context.AbstractContext;
 import org.jberet.runtime.context.JobContextImpl;
 import org.jberet.runtime.context.StepContextImpl;
 import org.jberet.spi.PropertyKey;
+import org.jberet.spi.RangePartitionPlan;
 import org.jberet.tx.LocalTransactionManager;
 import org.jberet.util.BatchUtil;
 
@@ -75,6 +79,19 @@ public final class StepExecutionRunner extends AbstractRunner<StepContextImpl> i
     int numOfThreads;
     java.util.Properties[] partitionProperties;
 
+    /**
+     * Splittable range declared by the partition mapper, or null if the step is not partitioned by range.
+     */
+    RangePartitionPlan rangePlan;
+
+    /**
+     * Sub-ranges of running chunk-type partitions keyed by partition id, when the step is partitioned by range.
+     * Only accessed by the step thread.
+     */
+    Map<Integer, RangeSplit> rangeSplits;
+    private final Deque<StepContextImpl> pendingRangePartitions = new ArrayDeque<StepContextImpl>();
+    private int nextPartitionId;
+
     boolean isPartitioned;
     BlockingQueue<Serializable> collectorDataQueue;
     BlockingQueue<Boolean> completedPartitionThreads;
@@ -218,6 +235,15 @@ public final class StepExecutionRunner extends AbstractRunner<StepContextImpl> i
         if (mapper != null) {
             final javax.batch.api.partition.PartitionPlan partitionPlan = mapper.mapPartitions();
             isOverride = partitionPlan.getPartitionsOverride();
+            if (partitionPlan instanceof RangePartitionPlan) {
+                rangePlan = (RangePartitionPlan) partitionPlan;
+                if (isRestart && isOverride && reducer != null) {
+                    reducer.rollbackPartitionedStep();
+                }
+                beginRangePartitions(isRestart && !isOverride);
+                collectPartitions();
+                return;
+            }
             numOfPartitions = partitionPlan.getPartitions();
             numOfThreads = partitionPlan.getThreads();
             partitionProperties = partitionPlan.getPartitionProperties();
@@ -281,6 +307,9 @@ public final class StepExecutionRunner extends AbstractRunner<StepContextImpl> i
             if (ch == null) {
                 runner1 = new BatchletRunner(stepContext1, enclosingRunner, this, step1.getBatchlet());
             } else {
+                //partition metrics are applied to the step metrics as they are updated, so that the step execution
+                //shows the progress of all partitions while they are running
+                partitionExecution1.getStepMetrics().setParent(stepExecution.getStepMetrics());
                 runner1 = new ChunkRunner(stepContext1, enclosingRunner, this, ch);
             }
             if (i >= numOfThreads) {
@@ -289,7 +318,16 @@ public final class StepExecutionRunner extends AbstractRunner<StepContextImpl> i
             jobContext.getJobRepository().addPartitionExecution(stepExecution, partitionExecution1);
             jobContext.getBatchEnvironment().submitTask(runner1);
         }
+        collectPartitions();
+    }
 
+    /**
+     * Waits for all partitions to end, and consolidates their batch status into the step.  When the step is
+     * partitioned with {@link RangePartitionPlan}, another partition is started whenever a partition completes.
+     *
+     * @throws Exception
+     */
+    private void collectPartitions() throws Exception {
         BatchStatus consolidatedBatchStatus = BatchStatus.STARTED;
         final List<PartitionExecutionImpl> fromAllPartitions = new ArrayList<PartitionExecutionImpl>();
         tm.begin();
@@ -299,9 +337,6 @@ public final class StepExecutionRunner extends AbstractRunner<StepContextImpl> i
                 if (data instanceof PartitionExecutionImpl) {
                     final PartitionExecutionImpl s = (PartitionExecutionImpl) data;
 
-                    if (step.getChunk() != null) {
-                        stepExecution.getStepMetrics().addStepMetrics(s.getStepMetrics());
-                    }
                     //save status and data for the terminated partition
                     jobContext.getJobRepository().savePersistentData(jobContext.getJobExecution(), s);
 
@@ -320,6 +355,13 @@ public final class StepExecutionRunner extends AbstractRunner<StepContextImpl> i
                     if (analyzer != null) {
                         analyzer.analyzeStatus(bs, s.getExitStatus());
                     }
+
+                    if (rangeSplits != null) {
+                        rangeSplits.remove(s.getPartitionId());
+                        if (consolidatedBatchStatus == BatchStatus.STARTED && !jobContext.getJobExecution().isStopRequested()) {
+                            startRangePartition();
+                        }
+                    }
                 } else if (analyzer != null) {
                     analyzer.analyzeCollectorData(data);
                 }
@@ -352,6 +394,141 @@ public final class StepExecutionRunner extends AbstractRunner<StepContextImpl> i
         batchContext.setBatchStatus(consolidatedBatchStatus);
     }
 
+    /**
+     * Divides the range of {@link #rangePlan} into sub-ranges, or upon restart, collects the sub-ranges that have not
+     * completed in the original step execution, and starts the first partitions.  All sub-ranges are saved as
+     * partition executions before any of them starts, so that those not yet started when the step is stopped or
+     * fails are also processed upon restart.
+     *
+     * @param isRestartNotOverride whether to carry over partition executions from the original step execution
+     */
+    private void beginRangePartitions(final boolean isRestartNotOverride) {
+        numOfThreads = rangePlan.getThreads();
+        if (numOfThreads <= 0) {
+            numOfThreads = rangePlan.getPartitions() > 0 ? rangePlan.getPartitions() : Runtime.getRuntime().availableProcessors();
+        }
+        rangeSplits = new HashMap<Integer, RangeSplit>();
+        collectorDataQueue = new LinkedBlockingQueue<Serializable>();
+
+        if (isRestartNotOverride) {
+            final StepExecutionImpl originalStepExecution = batchContext.getOriginalStepExecution();
+            final List<PartitionExecutionImpl> partitionExecutions = jobContext.getJobRepository()
+                    .getPartitionExecutions(originalStepExecution.getStepExecutionId(), originalStepExecution, false);
+
+            //sub-ranges are ordered by their start, so that the effective end of each can be determined
+            final TreeMap<Long, PartitionExecutionImpl> byStart = new TreeMap<Long, PartitionExecutionImpl>();
+            for (final PartitionExecutionImpl e : partitionExecutions) {
+                if (e.getReaderCheckpointInfo() instanceof RangeCheckpoint) {
+                    byStart.put(((RangeCheckpoint) e.getReaderCheckpointInfo()).start, e);
+                }
+                nextPartitionId = Math.max(nextPartitionId, e.getPartitionId() + 1);
+            }
+            if (byStart.isEmpty() && !partitionExecutions.isEmpty()) {
+                throw MESSAGES.noRangePartitionCheckpoint(id, originalStepExecution.getStepExecutionId());
+            }
+            for (final Map.Entry<Long, PartitionExecutionImpl> entry : byStart.entrySet()) {
+                final PartitionExecutionImpl e = entry.getValue();
+                if (e.getBatchStatus() != BatchStatus.COMPLETED) {
+                    final RangeCheckpoint range = (RangeCheckpoint) e.getReaderCheckpointInfo();
+                    final Long nextStart = byStart.higherKey(entry.getKey());
+                    final long end = nextStart == null ? range.end : Math.min(range.end, nextStart);
+                    pendingRangePartitions.add(addRangePartition(e.getPartitionId(),
+                            new RangeCheckpoint(range.start, end, Math.min(range.position, end), range.readerCheckpointInfo), e));
+                }
+            }
+        } else {
+            final long start = rangePlan.getStart();
+            final long size = rangePlan.getEnd() - start + 1;
+            final int count = (int) Math.max(Math.min(rangePlan.getPartitions() > 0 ? rangePlan.getPartitions() : numOfThreads,
+                    size / rangePlan.getMinSplitSize()), 1);
+            final long base = size / count;
+            final long remainder = size % count;
+            long first = start;
+            for (int i = 0; i < count; i++) {
+                final long next = first + base + (i < remainder ? 1 : 0);
+                pendingRangePartitions.add(addRangePartition(nextPartitionId++, new RangeCheckpoint(first, next, first, null), null));
+                first = next;
+            }
+        }
+
+        numOfPartitions = 0;
+        while (numOfPartitions < numOfThreads && startRangePartition()) {
+            //keep starting partitions until all threads are busy
+        }
+    }
+
+    /**
+     * Creates and saves the partition execution for a sub-range.
+     *
+     * @param partitionId the id of the partition
+     * @param range       the sub-range and the position to start from
+     * @param previous    the partition execution of the same sub-range in the original step execution, or null
+     * @return the step context of the partition
+     */
+    private StepContextImpl addRangePartition(final int partitionId, final RangeCheckpoint range, final PartitionExecutionImpl previous) {
+        final StepContextImpl stepContext1 = batchContext.clone();
+        final PartitionExecutionImpl partitionExecution1 = (PartitionExecutionImpl) stepContext1.getStepExecution();
+        partitionExecution1.setPartitionId(partitionId);
+
+        final PropertyResolver resolver = new PropertyResolver();
+        resolver.setPartitionPlanProperties(rangePlan.getPartitionProperties(range.start, range.end - 1));
+        resolver.setResolvePartitionPlanProperties(true);
+        resolver.resolve(stepContext1.getStep());
+
+        if (previous != null) {
+            stepContext1.setPersistentUserData(previous.getPersistentUserData());
+            partitionExecution1.setWriterCheckpointInfo(previous.getWriterCheckpointInfo());
+        }
+        //the sub-range is saved as part of the reader checkpoint info, which the partition keeps updating as it commits
+        partitionExecution1.setReaderCheckpointInfo(range);
+        jobContext.getJobRepository().addPartitionExecution(stepExecution, partitionExecution1);
+        jobContext.getJobRepository().savePersistentData(jobContext.getJobExecution(), partitionExecution1);
+        return stepContext1;
+    }
+
+    /**
+     * Starts the next pending partition, or if there is none, a partition that takes over the remaining half of the
+     * running sub-range with the most positions left.
+     *
+     * @return true if a partition has been started; false if there is nothing left to split
+     */
+    private boolean startRangePartition() {
+        StepContextImpl stepContext1 = pendingRangePartitions.poll();
+        if (stepContext1 == null) {
+            RangeSplit largest = null;
+            long largestRemaining = 0;
+            for (final RangeSplit split : rangeSplits.values()) {
+                final long remaining = split.remaining();
+                if (remaining > largestRemaining) {
+                    largest = split;
+                    largestRemaining = remaining;
+                }
+            }
+            final RangeCheckpoint range = largest == null ? null : largest.split(rangePlan.getMinSplitSize());
+            if (range == null) {
+                return false;
+            }
+            stepContext1 = addRangePartition(nextPartitionId++, range, null);
+        }
+
+        final Step step1 = stepContext1.getStep();
+        final PartitionExecutionImpl partitionExecution1 = (PartitionExecutionImpl) stepContext1.getStepExecution();
+        final AbstractRunner<StepContextImpl> runner1;
+        final Chunk ch = step1.getChunk();
+        if (ch == null) {
+            runner1 = new BatchletRunner(stepContext1, enclosingRunner, this, step1.getBatchlet());
+        } else {
+            partitionExecution1.getStepMetrics().setParent(stepExecution.getStepMetrics());
+            final RangeCheckpoint range = (RangeCheckpoint) partitionExecution1.getReaderCheckpointInfo();
+            final RangeSplit split = new RangeSplit(range.start, range.end, range.position);
+            rangeSplits.put(partitionExecution1.getPartitionId(), split);
+            runner1 = new ChunkRunner(stepContext1, enclosingRunner, this, ch, split);
+        }
+        numOfPartitions++;
+        jobContext.getBatchEnvironment().submitTask(runner1);
+        return true;
+    }
+
     private void initPartitionConfig() {
         final Partition partition = step.getPartition();
         if (partition != null) {
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.spi;
+
+import java.util.List;
+import javax.batch.api.chunk.ItemReader;
+
+/**
+ * An optional extension of {@code ItemReader} for readers that can read multiple items in one call.
+ * <p/>
+ * When a chunk-type step uses item checkpoint policy without time-limit, and has no {@code ItemReadListener},
+ * the batch runtime calls {@link #readItems(int, List)} to read up to the remaining items of the current chunk at
+ * once, instead of calling {@link #readItem()} for each item.  Otherwise, {@link #readItem()} is used as usual.
+ * Items returned by {@link #readItems(int, List)} are always processed before {@link #checkpointInfo()} is called,
+ * so an implementation may advance its checkpoint position as it reads.
+ */
+public interface BatchItemReader extends ItemReader {
+    /**
+     * Reads up to {@code maxItems} items and appends them to {@code items}.  Fewer items than {@code maxItems}
+     * may be read, and 0 indicates that there are no more items.
+     * <p/>
+     * If an exception occurs after some items have been read, the implementation may either return normally with
+     * the items read so far, or add them to {@code items} and throw the exception.  In the latter case, the batch
+     * runtime processes the items already added before handling the exception, as if it were thrown from
+     * {@link #readItem()} after them.
+     *
+     * @param maxItems the max number of items to read, always greater than 0
+     * @param items    the list to which items read are appended
+     * @return the number of items read and appended to {@code items}
+     * @throws Exception if an error occurs while reading items
+     */
+    int readItems(int maxItems, List<Object> items) throws Exception;
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.spi;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Converts persistent user data, reader checkpoint info and writer checkpoint info to and from the bytes stored in
+ * the job repository.
+ * <p/>
+ * The implementation used by a job repository is configured with the {@code checkpoint-serializer} property in
+ * jberet.properties, whose value is the fully-qualified name of a class implementing this interface and having a
+ * public no-arg constructor.  If not configured, {@link org.jberet.repository.CompactCheckpointSerializer} is used.
+ * Implementations must be thread-safe.
+ */
+public interface CheckpointSerializer {
+    /**
+     * Serializes the object into bytes.
+     *
+     * @param obj the object to serialize, may be null
+     * @return the serialized bytes, or null if {@code obj} is null
+     * @throws IOException if failed to serialize {@code obj}
+     */
+    byte[] serialize(Serializable obj) throws IOException;
+
+    /**
+     * Deserializes the bytes into an object.  Implementations should also be able to read bytes in the format
+     * of Java serialization, which were written by earlier versions of JBeret.
+     *
+     * @param bytes the bytes to deserialize, may be null
+     * @return the deserialized object, or null if {@code bytes} is null
+     * @throws IOException            if failed to deserialize {@code bytes}
+     * @throws ClassNotFoundException if the class of the serialized object cannot be found
+     */
+    Serializable deserialize(byte[] bytes) throws IOException, ClassNotFoundException;
+}
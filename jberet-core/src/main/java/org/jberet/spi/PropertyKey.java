@@ -24,4 +24,52 @@ public interface PropertyKey {
      * BatchEnvironment#getBatchConfigurationProperties()}  batch environment} level.
      */
     String LOCAL_TX = "jberet.local-tx";
+
+    /**
+     * A step property key to enable pipelined chunk processing, where the next chunk is read and processed on the step
+     * thread while the current chunk is written and committed on another thread.  The value for this key can be {@code
+     * true} or {@code false} (default).
+     * <p/>
+     * This property only applies to chunk-type steps with item checkpoint policy.  In pipelined mode, the item reader
+     * and processor are invoked outside of the chunk transaction, and the checkpoint info returned by the item reader
+     * should not be modified by subsequent reads.
+     * <p/>
+     * The item writer, {@code ItemWriteListener} and {@code ChunkListener.afterChunk} are invoked on the writer thread,
+     * concurrently with {@code ChunkListener.beforeChunk}, {@code ItemReadListener}, {@code ItemProcessListener}, and
+     * the item reader and processor for the next chunk on the step thread, so any state shared between them must be
+     * thread-safe.  The partition collector is invoked on the step thread after each chunk is committed.
+     * <p/>
+     * The writer thread is taken from the thread pool of the batch environment, and the step thread waits for it.  With
+     * a thread pool of a fixed or max size, the pool needs one thread for each running step or partition, plus one for
+     * each pipelined one, or else pipelined steps may wait forever for a writer thread.
+     * {@link #CHUNK_PROCESSOR_THREADS} is ignored while chunks are pipelined.
+     */
+    String CHUNK_PIPELINED = "jberet.chunk.pipelined";
+
+    /**
+     * A step property key for the max number of threads used to process the items of a chunk concurrently.  The items
+     * are still read one by one on the step thread, and the processing results are passed to the item writer in the
+     * order they were read.  A value of 1 or less (default) disables concurrent processing.
+     * <p/>
+     * This property only applies to chunk-type steps with an item processor, which must be thread-safe when this
+     * property is set.  Item process listeners, skip and retry listeners are still invoked on the step thread, in the
+     * order the items were read.
+     * <p/>
+     * The items are processed on threads taken from the thread pool of the batch environment, while the step thread
+     * waits for their results.  With a thread pool of a fixed or max size, the pool needs this many threads for each
+     * running step or partition with this property, besides the step or partition thread itself, or else processing
+     * may wait forever for a thread.
+     */
+    String CHUNK_PROCESSOR_THREADS = "jberet.chunk.processor-threads";
+
+    /**
+     * A step property key to isolate the items that cause a chunk write to fail by bisection.  The value for this key
+     * can be {@code true} or {@code false} (default).
+     * <p/>
+     * By default, when writing a chunk fails with a retryable exception that requires rollback, the chunk is retried
+     * one item per transaction.  When this property is {@code true}, the chunk is instead retried in 2 halves, and any
+     * half that fails again is retried in 2 halves of its own, until the failing items are isolated and skipped or
+     * retried individually.  Items that are written successfully are committed in as few transactions as possible.
+     */
+    String CHUNK_BISECT_WRITE_FAILURE = "jberet.chunk.bisect-write-failure";
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.spi;
+
+import java.util.Properties;
+import javax.batch.api.partition.PartitionPlanImpl;
+
+/**
+ * A partition plan that declares a splittable range of positions, e.g., row numbers or keys, instead of a fixed set
+ * of partitions.  When a {@code PartitionMapper} returns an instance of this class, the batch runtime divides the
+ * range into sub-ranges at runtime:
+ * <ul>
+ * <li>the range is initially divided into {@link #getPartitions()} equal sub-ranges, or {@link #getThreads()}
+ * sub-ranges if partitions is not set, which are handed out to worker threads as they become available;</li>
+ * <li>once all sub-ranges have been handed out, a worker that becomes idle takes over the remaining half of the
+ * sub-range that has the most positions left, as long as both halves have at least {@link #getMinSplitSize()}
+ * positions.</li>
+ * </ul>
+ * Each sub-range runs as a partition, whose partition plan properties contain {@link #getCommonProperties()}, and the
+ * first and last position of the sub-range (both inclusive) as {@link #getStartProperty()} and
+ * {@link #getEndProperty()}.  Taking over part of a sub-range only works for chunk-type steps, where the item reader
+ * is expected to read exactly one item per position from the start property, and its checkpoint info should
+ * represent its absolute position.  For batchlet steps, sub-ranges are never split after they are handed out.
+ * <p/>
+ * The sub-ranges and the positions committed in each of them are saved in the job repository along with the
+ * partition executions, so that upon restart, only the positions that have not been committed are processed again.
+ * The number of partitions is therefore determined by the runtime, and may vary from one execution to another.
+ */
+public class RangePartitionPlan extends PartitionPlanImpl {
+    /**
+     * The default name of the partition plan property for the first position of a sub-range.
+     */
+    public static final String DEFAULT_START_PROPERTY = "start";
+
+    /**
+     * The default name of the partition plan property for the last position of a sub-range.
+     */
+    public static final String DEFAULT_END_PROPERTY = "end";
+
+    private final long start;
+    private final long end;
+    private String startProperty = DEFAULT_START_PROPERTY;
+    private String endProperty = DEFAULT_END_PROPERTY;
+    private long minSplitSize = 1;
+    private Properties commonProperties;
+
+    /**
+     * Creates a partition plan for the range from {@code start} to {@code end}, both inclusive.
+     *
+     * @param start the first position of the range
+     * @param end   the last position of the range
+     */
+    public RangePartitionPlan(final long start, final long end) {
+        if (end < start) {
+            throw new IllegalArgumentException(start + " > " + end);
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public String getStartProperty() {
+        return startProperty;
+    }
+
+    public void setStartProperty(final String startProperty) {
+        this.startProperty = startProperty;
+    }
+
+    public String getEndProperty() {
+        return endProperty;
+    }
+
+    public void setEndProperty(final String endProperty) {
+        this.endProperty = endProperty;
+    }
+
+    public long getMinSplitSize() {
+        return minSplitSize;
+    }
+
+    /**
+     * Sets the min number of positions of a sub-range taken over from another one, and of the part left to the other
+     * one.  Default is 1.
+     *
+     * @param minSplitSize the min number of positions
+     */
+    public void setMinSplitSize(final long minSplitSize) {
+        this.minSplitSize = Math.max(minSplitSize, 1);
+    }
+
+    public Properties getCommonProperties() {
+        return commonProperties;
+    }
+
+    /**
+     * Sets the partition plan properties shared by all sub-ranges.
+     *
+     * @param commonProperties partition plan properties shared by all sub-ranges
+     */
+    public void setCommonProperties(final Properties commonProperties) {
+        this.commonProperties = commonProperties;
+    }
+
+    /**
+     * Gets the partition plan properties for a sub-range.
+     *
+     * @param first the first position of the sub-range
+     * @param last  the last position of the sub-range
+     * @return partition plan properties for the sub-range
+     */
+    public Properties getPartitionProperties(final long first, final long last) {
+        final Properties props = new Properties();
+        if (commonProperties != null) {
+            props.putAll(commonProperties);
+        }
+        props.setProperty(startProperty, String.valueOf(first));
+        props.setProperty(endProperty, String.valueOf(last));
+        return props;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.jberet.util.BatchUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactCheckpointSerializerTest {
+    private final CompactCheckpointSerializer serializer = CompactCheckpointSerializer.INSTANCE;
+
+    @Test
+    public void compactTypes() throws Exception {
+        final Serializable[] values = {
+                0, -1, Integer.MAX_VALUE, 123L, Long.MIN_VALUE, "", "checkpoint é中",
+                new byte[]{1, -2, 3}, new int[]{1, -2, 3}, new long[]{Long.MAX_VALUE, 0}, new short[]{7, -7},
+                new char[]{'a', '中'}, new boolean[]{true, false, true}, new float[]{1.5f, Float.NaN},
+                new double[]{-2.5, Double.MAX_VALUE}, new int[0]
+        };
+        for (final Serializable v : values) {
+            final byte[] bytes = serializer.serialize(v);
+            final Serializable result = serializer.deserialize(bytes);
+            Assert.assertEquals(v.getClass(), result.getClass());
+            Assert.assertTrue(v + " -> " + result, Arrays.deepEquals(new Object[]{v}, new Object[]{result}));
+            Assert.assertTrue(bytes.length < BatchUtil.objectToBytes(v).length);
+        }
+        Assert.assertEquals(5, serializer.serialize(100).length);
+        Assert.assertEquals(9, serializer.serialize(100L).length);
+    }
+
+    @Test
+    public void javaSerialization() throws Exception {
+        final List<Object> list = new ArrayList<Object>();
+        list.add("a");
+        list.add(1);
+        list.add(new Date(1000));
+
+        final byte[] bytes = serializer.serialize((Serializable) list);
+        Assert.assertArrayEquals(BatchUtil.objectToBytes(list), bytes);
+        Assert.assertEquals(list, serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void legacyBytes() throws Exception {
+        Assert.assertEquals(5, serializer.deserialize(BatchUtil.objectToBytes(5)));
+        Assert.assertEquals("abc", serializer.deserialize(BatchUtil.objectToBytes("abc")));
+        Assert.assertArrayEquals(new int[]{1, 2}, (int[]) serializer.deserialize(BatchUtil.objectToBytes(new int[]{1, 2})));
+    }
+
+    @Test
+    public void nullValue() throws Exception {
+        Assert.assertNull(serializer.serialize(null));
+        Assert.assertNull(serializer.deserialize(null));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void corruptBytes() throws Exception {
+        serializer.deserialize(new byte[]{1, 0, 0});
+    }
+}
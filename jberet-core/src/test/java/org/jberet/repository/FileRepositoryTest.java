@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.JobInstance;
+import javax.batch.runtime.Metric;
+
+import org.jberet.creation.ArchiveXmlLoader;
+import org.jberet.job.model.Job;
+import org.jberet.runtime.JobExecutionImpl;
+import org.jberet.runtime.JobInstanceImpl;
+import org.jberet.runtime.PartitionExecutionImpl;
+import org.jberet.runtime.StepExecutionImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileRepositoryTest {
+    private File directory;
+    private FileRepository repo;
+
+    @Before
+    public void before() throws Exception {
+        directory = File.createTempFile("file-repository-test", "");
+        Assert.assertTrue(directory.delete() && directory.mkdir());
+    }
+
+    @After
+    public void after() {
+        if (repo != null) {
+            repo.close();
+        }
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private FileRepository open(final String... keyValues) {
+        if (repo != null) {
+            repo.close();
+        }
+        final Properties configProperties = new Properties();
+        configProperties.setProperty(FileRepository.FILE_DIRECTORY_KEY, directory.getPath());
+        configProperties.setProperty(FileRepository.FILE_COMPACT_SEGMENTS_KEY, "0");
+        for (int i = 0; i < keyValues.length; i += 2) {
+            configProperties.setProperty(keyValues[i], keyValues[i + 1]);
+        }
+        return repo = new FileRepository(configProperties);
+    }
+
+    private static Job loadJob() throws Exception {
+        return ArchiveXmlLoader.loadJobXml("exception-class-filter.xml",
+                FileRepositoryTest.class.getClassLoader(), new ArrayList<Job>());
+    }
+
+    @Test
+    public void recoverAfterRestart() throws Exception {
+        open(FileRepository.FILE_SYNC_KEY, "commit");
+        final Job job = loadJob();
+        final JobInstanceImpl jobInstance = repo.createJobInstance(job, "app", FileRepositoryTest.class.getClassLoader());
+        final Properties jobParameters = new Properties();
+        jobParameters.setProperty("p", "v");
+        final JobExecutionImpl jobExecution = repo.createJobExecution(jobInstance, jobParameters);
+        final StepExecutionImpl stepExecution = repo.createStepExecution("step1");
+        stepExecution.setBatchStatus(BatchStatus.STARTED);
+        repo.addStepExecution(jobExecution, stepExecution);
+        final PartitionExecutionImpl partitionExecution = new PartitionExecutionImpl(stepExecution);
+        partitionExecution.setPartitionId(1);
+        repo.addPartitionExecution(stepExecution, partitionExecution);
+
+        stepExecution.setReaderCheckpointInfo(5);
+        stepExecution.getStepMetrics().increment(Metric.MetricType.READ_COUNT, 10);
+        stepExecution.getStepMetrics().setCheckpointItemCount(8);
+        repo.savePersistentData(jobExecution, stepExecution);
+        partitionExecution.setWriterCheckpointInfo("partition");
+        partitionExecution.setBatchStatus(BatchStatus.COMPLETED);
+        repo.savePersistentData(jobExecution, partitionExecution);
+        stepExecution.setBatchStatus(BatchStatus.FAILED);
+        repo.updateStepExecution(stepExecution);
+        jobExecution.setBatchStatus(BatchStatus.FAILED);
+        repo.updateJobExecution(jobExecution);
+
+        open();
+        final List<JobInstance> jobInstances = repo.getJobInstances(job.getId());
+        Assert.assertEquals(1, jobInstances.size());
+        final JobInstanceImpl recoveredInstance = (JobInstanceImpl) jobInstances.get(0);
+        Assert.assertEquals(jobInstance.getInstanceId(), recoveredInstance.getInstanceId());
+        Assert.assertEquals("app", recoveredInstance.getApplicationName());
+
+        final JobExecutionImpl recoveredExecution = (JobExecutionImpl) repo.getJobExecution(jobExecution.getExecutionId());
+        Assert.assertEquals(BatchStatus.FAILED, recoveredExecution.getBatchStatus());
+        Assert.assertEquals("v", recoveredExecution.getJobParameters().getProperty("p"));
+        Assert.assertEquals(jobExecution.getEndTime(), recoveredExecution.getEndTime());
+        Assert.assertEquals(1, recoveredInstance.getJobExecutions().size());
+
+        final StepExecutionImpl recoveredStep = repo.findOriginalStepExecutionForRestart("step1", recoveredExecution);
+        Assert.assertEquals(stepExecution.getStepExecutionId(), recoveredStep.getStepExecutionId());
+        Assert.assertEquals(BatchStatus.FAILED, recoveredStep.getBatchStatus());
+        Assert.assertEquals(5, recoveredStep.getReaderCheckpointInfo());
+        Assert.assertEquals(10, recoveredStep.getStepMetrics().get(Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(8, recoveredStep.getStepMetrics().getCheckpointItemCount());
+        Assert.assertEquals(1, repo.countStepStartTimes("step1", recoveredInstance.getInstanceId()));
+
+        final List<PartitionExecutionImpl> partitions =
+                repo.getPartitionExecutions(recoveredStep.getStepExecutionId(), recoveredStep, false);
+        Assert.assertEquals(1, partitions.size());
+        Assert.assertEquals(1, partitions.get(0).getPartitionId());
+        Assert.assertEquals(BatchStatus.COMPLETED, partitions.get(0).getBatchStatus());
+        Assert.assertEquals("partition", partitions.get(0).getWriterCheckpointInfo());
+
+        //ids continue after those recovered
+        final JobInstanceImpl nextInstance = repo.createJobInstance(job, "app", FileRepositoryTest.class.getClassLoader());
+        Assert.assertTrue(nextInstance.getInstanceId() > jobInstance.getInstanceId());
+    }
+
+    @Test
+    public void compactSegments() throws Exception {
+        open(FileRepository.FILE_SEGMENT_SIZE_KEY, "1024", FileRepository.FILE_SYNC_KEY, "os");
+        final Job job = loadJob();
+        final JobInstanceImpl jobInstance = repo.createJobInstance(job, null, FileRepositoryTest.class.getClassLoader());
+        final JobExecutionImpl jobExecution = repo.createJobExecution(jobInstance, null);
+        final JobInstanceImpl removedInstance = repo.createJobInstance(job, null, FileRepositoryTest.class.getClassLoader());
+        repo.createJobExecution(removedInstance, null);
+        final StepExecutionImpl stepExecution = repo.createStepExecution("step1");
+        stepExecution.setBatchStatus(BatchStatus.STARTED);
+        repo.addStepExecution(jobExecution, stepExecution);
+        for (int i = 1; i <= 200; i++) {
+            stepExecution.setReaderCheckpointInfo(i);
+            repo.savePersistentData(jobExecution, stepExecution);
+        }
+        repo.removeJobInstance(removedInstance.getInstanceId());
+        final int filesBefore = directory.listFiles().length;
+
+        repo.compact();
+        Assert.assertTrue(directory.listFiles().length < filesBefore);
+
+        open();
+        Assert.assertNull(repo.getJobInstance(removedInstance.getInstanceId()));
+        Assert.assertEquals(1, repo.getJobInstanceCount(job.getId()));
+        final StepExecutionImpl recoveredStep = repo.findOriginalStepExecutionForRestart("step1",
+                (JobExecutionImpl) repo.getJobExecution(jobExecution.getExecutionId()));
+        Assert.assertEquals(200, recoveredStep.getReaderCheckpointInfo());
+
+        //ids of job instances removed before compaction are not reused
+        final JobInstanceImpl nextInstance = repo.createJobInstance(job, null, FileRepositoryTest.class.getClassLoader());
+        Assert.assertTrue(nextInstance.getInstanceId() > removedInstance.getInstanceId());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JdbcConnectionPoolTest {
+    private static final String DB_URL = "jdbc:h2:mem:jdbc-connection-pool-test;DB_CLOSE_DELAY=-1";
+    private static final String CACHED_SQL = "select 1";
+
+    private static JdbcConnectionPool createPool(final int minSize, final int maxSize, final long idleTimeout,
+                                                 final long validationInterval, final long maxWait) {
+        return new JdbcConnectionPool(DB_URL, new Properties(), minSize, maxSize, idleTimeout, validationInterval,
+                maxWait, Collections.singleton(CACHED_SQL));
+    }
+
+    /**
+     * Gets the id of the H2 session of a connection, which identifies the physical connection.
+     */
+    private static int sessionId(final Connection connection) throws SQLException {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet rs = statement.executeQuery("select SESSION_ID()");
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Test
+    public void reuseConnection() throws Exception {
+        final JdbcConnectionPool pool = createPool(0, 2, 600000, 600000, 1000);
+        final Connection connection1 = pool.getConnection();
+        final int id = sessionId(connection1);
+        connection1.close();
+        Assert.assertTrue(connection1.isClosed());
+        try {
+            connection1.createStatement();
+            Assert.fail("Expecting SQLException from a closed connection handle");
+        } catch (final SQLException e) {
+            System.out.printf("Got expected exception: %s%n", e);
+        }
+
+        final Connection connection2 = pool.getConnection();
+        Assert.assertEquals(id, sessionId(connection2));
+        final Connection connection3 = pool.getConnection();
+        Assert.assertNotEquals(id, sessionId(connection3));
+        connection2.close();
+        connection3.close();
+    }
+
+    @Test
+    public void maxWait() throws Exception {
+        final JdbcConnectionPool pool = createPool(0, 1, 600000, 600000, 200);
+        final Connection connection1 = pool.getConnection();
+        final long start = System.currentTimeMillis();
+        try {
+            pool.getConnection();
+            Assert.fail("Expecting SQLException after waiting for a connection");
+        } catch (final SQLException e) {
+            System.out.printf("Got expected exception: %s%n", e);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+
+        //a waiting caller gets the connection as soon as it is returned
+        final Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                    connection1.close();
+                } catch (final Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        releaser.start();
+        final Connection connection2 = pool.getConnection();
+        releaser.join();
+        Assert.assertFalse(connection2.isClosed());
+        connection2.close();
+    }
+
+    @Test
+    public void evictIdleConnections() throws Exception {
+        final JdbcConnectionPool pool = createPool(1, 3, 100, 600000, 1000);
+        final Connection[] connections = {pool.getConnection(), pool.getConnection(), pool.getConnection()};
+        final Set<Integer> ids = new HashSet<Integer>();
+        for (final Connection c : connections) {
+            ids.add(sessionId(c));
+        }
+        final int lastReturnedId = sessionId(connections[2]);
+        for (final Connection c : connections) {
+            c.close();
+        }
+        Thread.sleep(300);
+
+        //idle connections are closed down to the min size, least recently used first
+        final Connection connection1 = pool.getConnection();
+        Assert.assertEquals(lastReturnedId, sessionId(connection1));
+        final Connection connection2 = pool.getConnection();
+        Assert.assertFalse(ids.contains(sessionId(connection2)));
+        connection1.close();
+        connection2.close();
+    }
+
+    @Test
+    public void validateStaleConnection() throws Exception {
+        final JdbcConnectionPool pool = createPool(0, 1, 600000, 0, 1000);
+        final Connection connection1 = pool.getConnection();
+        connection1.close();
+
+        //shutting down the database closes the idle pooled connection
+        final Connection direct = DriverManager.getConnection(DB_URL);
+        direct.createStatement().execute("shutdown");
+        direct.close();
+        Thread.sleep(10);
+
+        final Connection connection2 = pool.getConnection();
+        Assert.assertFalse(connection2.isClosed());
+        sessionId(connection2);
+        connection2.close();
+    }
+
+    @Test
+    public void cacheStatements() throws Exception {
+        final JdbcConnectionPool pool = createPool(0, 1, 600000, 600000, 1000);
+        Connection connection = pool.getConnection();
+        final PreparedStatement statement1 = connection.prepareStatement(CACHED_SQL);
+
+        //the same sql is prepared again while the cached statement is in use
+        final PreparedStatement statement2 = connection.prepareStatement(CACHED_SQL);
+        Assert.assertNotSame(statement1, statement2);
+        statement2.close();
+        statement1.close();
+        Assert.assertTrue(statement1.isClosed());
+        connection.close();
+
+        connection = pool.getConnection();
+        final PreparedStatement statement3 = connection.prepareStatement(CACHED_SQL);
+        Assert.assertSame(statement1, statement3);
+        Assert.assertFalse(statement3.isClosed());
+        final ResultSet rs = statement3.executeQuery();
+        Assert.assertTrue(rs.next());
+        Assert.assertEquals(1, rs.getInt(1));
+        statement3.close();
+
+        final PreparedStatement uncached1 = connection.prepareStatement("select 2");
+        uncached1.close();
+        final PreparedStatement uncached2 = connection.prepareStatement("select 2");
+        Assert.assertNotSame(uncached1, uncached2);
+        uncached2.close();
+        connection.close();
+    }
+
+    @Test
+    public void rollbackOnRelease() throws Exception {
+        final JdbcConnectionPool pool = createPool(0, 1, 600000, 600000, 1000);
+        Connection connection = pool.getConnection();
+        final Statement statement = connection.createStatement();
+        statement.execute("create table if not exists POOL_TEST (ID INT)");
+        statement.execute("delete from POOL_TEST");
+        statement.close();
+
+        connection.setAutoCommit(false);
+        final PreparedStatement insert = connection.prepareStatement("insert into POOL_TEST values(1)");
+        insert.executeUpdate();
+        insert.close();
+        final int id = sessionId(connection);
+        connection.close();
+
+        //uncommitted work is rolled back, and auto-commit is restored, before the connection is reused
+        connection = pool.getConnection();
+        Assert.assertEquals(id, sessionId(connection));
+        Assert.assertTrue(connection.getAutoCommit());
+        final Statement query = connection.createStatement();
+        final ResultSet rs = query.executeQuery("select count(*) from POOL_TEST");
+        rs.next();
+        Assert.assertEquals(0, rs.getInt(1));
+        query.close();
+        connection.close();
+    }
+}
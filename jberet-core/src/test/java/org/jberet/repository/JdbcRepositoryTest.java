@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.JobInstance;
+import javax.batch.runtime.Metric;
+
+import org.h2.api.Trigger;
+import org.jberet.creation.ArchiveXmlLoader;
+import org.jberet.job.model.Job;
+import org.jberet.runtime.JobExecutionImpl;
+import org.jberet.runtime.JobInstanceImpl;
+import org.jberet.runtime.StepExecutionImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JdbcRepositoryTest {
+    private static final String DB_URL = "jdbc:h2:mem:jdbc-repository-test;DB_CLOSE_DELAY=-1";
+
+    static JdbcRepository createRepository(final String... keyValues) {
+        final Properties configProperties = new Properties();
+        configProperties.setProperty(JdbcRepository.DB_URL_KEY, DB_URL);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            configProperties.setProperty(keyValues[i], keyValues[i + 1]);
+        }
+        return new JdbcRepository(configProperties);
+    }
+
+    static StepExecutionImpl startStep(final JdbcRepository repo) throws Exception {
+        final Job job = ArchiveXmlLoader.loadJobXml("exception-class-filter.xml",
+                JdbcRepositoryTest.class.getClassLoader(), new ArrayList<Job>());
+        final JobInstanceImpl jobInstance = repo.createJobInstance(job, null, JdbcRepositoryTest.class.getClassLoader());
+        final JobExecutionImpl jobExecution = repo.createJobExecution(jobInstance, null);
+        final StepExecutionImpl stepExecution = repo.createStepExecution("step1");
+        stepExecution.setBatchStatus(BatchStatus.STARTED);
+        repo.addStepExecution(jobExecution, stepExecution);
+        return stepExecution;
+    }
+
+    @Test
+    public void writeBehindFlushAtStepEnd() throws Exception {
+        final JdbcRepository repo = createRepository(JdbcRepository.CHECKPOINT_WRITE_DELAY_KEY, "600000");
+        final StepExecutionImpl stepExecution = startStep(repo);
+
+        stepExecution.setReaderCheckpointInfo(5);
+        repo.savePersistentData(null, stepExecution);
+        stepExecution.setReaderCheckpointInfo(7);
+        repo.savePersistentData(null, stepExecution);
+
+        //checkpoint updates are queued and not written yet
+        Assert.assertNull(((StepExecutionImpl) repo.selectStepExecution(stepExecution.getStepExecutionId())).getReaderCheckpointInfo());
+
+        stepExecution.setBatchStatus(BatchStatus.COMPLETED);
+        repo.updateStepExecution(stepExecution);
+        final StepExecutionImpl saved = (StepExecutionImpl) repo.selectStepExecution(stepExecution.getStepExecutionId());
+        Assert.assertEquals(7, saved.getReaderCheckpointInfo());
+        Assert.assertEquals(BatchStatus.COMPLETED, saved.getBatchStatus());
+    }
+
+    @Test
+    public void writeBehindWithinDelay() throws Exception {
+        final JdbcRepository repo = createRepository(JdbcRepository.CHECKPOINT_WRITE_DELAY_KEY, "100");
+        final StepExecutionImpl stepExecution1 = startStep(repo);
+        final StepExecutionImpl stepExecution2 = startStep(repo);
+
+        stepExecution1.setReaderCheckpointInfo(1);
+        repo.savePersistentData(null, stepExecution1);
+        stepExecution2.setReaderCheckpointInfo(2);
+        repo.savePersistentData(null, stepExecution2);
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        StepExecutionImpl saved1;
+        StepExecutionImpl saved2;
+        do {
+            Thread.sleep(50);
+            saved1 = (StepExecutionImpl) repo.selectStepExecution(stepExecution1.getStepExecutionId());
+            saved2 = (StepExecutionImpl) repo.selectStepExecution(stepExecution2.getStepExecutionId());
+        } while ((saved1.getReaderCheckpointInfo() == null || saved2.getReaderCheckpointInfo() == null) &&
+                System.currentTimeMillis() < deadline);
+        Assert.assertEquals(1, saved1.getReaderCheckpointInfo());
+        Assert.assertEquals(2, saved2.getReaderCheckpointInfo());
+    }
+
+    @Test
+    public void writeBehindQueueFull() throws Exception {
+        final JdbcRepository repo = createRepository(JdbcRepository.CHECKPOINT_WRITE_DELAY_KEY, "600000",
+                JdbcRepository.CHECKPOINT_QUEUE_SIZE_KEY, "2");
+        final StepExecutionImpl stepExecution1 = startStep(repo);
+        final StepExecutionImpl stepExecution2 = startStep(repo);
+
+        stepExecution1.setReaderCheckpointInfo(1);
+        repo.savePersistentData(null, stepExecution1);
+        stepExecution1.setReaderCheckpointInfo(2);
+        repo.savePersistentData(null, stepExecution1);
+        Assert.assertNull(((StepExecutionImpl) repo.selectStepExecution(stepExecution1.getStepExecutionId())).getReaderCheckpointInfo());
+
+        //the queue is full with 2 different step executions, and is written by the calling thread
+        stepExecution2.setReaderCheckpointInfo(3);
+        repo.savePersistentData(null, stepExecution2);
+        Assert.assertEquals(2, ((StepExecutionImpl) repo.selectStepExecution(stepExecution1.getStepExecutionId())).getReaderCheckpointInfo());
+        Assert.assertEquals(3, ((StepExecutionImpl) repo.selectStepExecution(stepExecution2.getStepExecutionId())).getReaderCheckpointInfo());
+    }
+
+    @Test
+    public void writeBehindClose() throws Exception {
+        final JdbcRepository repo = createRepository(JdbcRepository.CHECKPOINT_WRITE_DELAY_KEY, "600000",
+                JdbcRepository.THREAD_FACTORY_KEY, CountingThreadFactory.class.getName());
+        final StepExecutionImpl stepExecution = startStep(repo);
+        final int threadCount = CountingThreadFactory.count.get();
+
+        stepExecution.setReaderCheckpointInfo(5);
+        repo.savePersistentData(null, stepExecution);
+        Assert.assertEquals(threadCount + 1, CountingThreadFactory.count.get());
+        Assert.assertNull(((StepExecutionImpl) repo.selectStepExecution(stepExecution.getStepExecutionId())).getReaderCheckpointInfo());
+
+        //queued updates are written when the repository is closed, and later updates are written synchronously
+        repo.close();
+        Assert.assertEquals(5, ((StepExecutionImpl) repo.selectStepExecution(stepExecution.getStepExecutionId())).getReaderCheckpointInfo());
+        stepExecution.setReaderCheckpointInfo(6);
+        repo.savePersistentData(null, stepExecution);
+        Assert.assertEquals(6, ((StepExecutionImpl) repo.selectStepExecution(stepExecution.getStepExecutionId())).getReaderCheckpointInfo());
+        Assert.assertEquals(threadCount + 1, CountingThreadFactory.count.get());
+    }
+
+    public static final class CountingThreadFactory implements ThreadFactory {
+        static final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "counting-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    @Test
+    public void writeBehindBatchFailure() throws Exception {
+        final JdbcRepository repo = createRepository(JdbcRepository.CHECKPOINT_WRITE_DELAY_KEY, "600000",
+                JdbcRepository.CHECKPOINT_QUEUE_SIZE_KEY, "2");
+        final StepExecutionImpl stepExecution1 = startStep(repo);
+        final StepExecutionImpl stepExecution2 = startStep(repo);
+        final StepExecutionImpl stepExecution3 = startStep(repo);
+        final Connection connection = DriverManager.getConnection(DB_URL);
+        try {
+            connection.prepareStatement("CREATE TRIGGER FAIL_STEP_UPDATE BEFORE UPDATE ON STEP_EXECUTION FOR EACH ROW CALL \"" +
+                    FailingUpdateTrigger.class.getName() + "\"").execute();
+            FailingUpdateTrigger.failing = true;
+            stepExecution1.setReaderCheckpointInfo(1);
+            repo.savePersistentData(null, stepExecution1);
+            stepExecution2.setReaderCheckpointInfo(2);
+            try {
+                //the queue is full, and the batch update of both step executions fails
+                repo.savePersistentData(null, stepExecution2);
+                Assert.fail("Expecting the batch update to fail");
+            } catch (final RuntimeException e) {
+                System.out.printf("Got expected exception: %s%n", e);
+            }
+            FailingUpdateTrigger.failing = false;
+
+            //the failure is not thrown to an execution whose updates were not in the failed batch, and the failed
+            //updates are written with the next batch
+            stepExecution3.setReaderCheckpointInfo(3);
+            repo.savePersistentData(null, stepExecution3);
+            Assert.assertEquals(1, ((StepExecutionImpl) repo.selectStepExecution(stepExecution1.getStepExecutionId())).getReaderCheckpointInfo());
+            Assert.assertEquals(2, ((StepExecutionImpl) repo.selectStepExecution(stepExecution2.getStepExecutionId())).getReaderCheckpointInfo());
+            Assert.assertEquals(3, ((StepExecutionImpl) repo.selectStepExecution(stepExecution3.getStepExecutionId())).getReaderCheckpointInfo());
+
+            //the failed update of stepExecution1 has been written, so its failure is no longer thrown
+            stepExecution1.setBatchStatus(BatchStatus.COMPLETED);
+            repo.updateStepExecution(stepExecution1);
+            Assert.assertEquals(BatchStatus.COMPLETED, repo.selectStepExecution(stepExecution1.getStepExecutionId()).getBatchStatus());
+        } finally {
+            FailingUpdateTrigger.failing = false;
+            connection.prepareStatement("DROP TRIGGER IF EXISTS FAIL_STEP_UPDATE").execute();
+            connection.close();
+        }
+    }
+
+    /**
+     * An H2 trigger that fails updates of {@code STEP_EXECUTION} rows while {@link #failing} is true.
+     */
+    public static final class FailingUpdateTrigger implements Trigger {
+        static volatile boolean failing;
+
+        @Override
+        public void init(final Connection conn, final String schemaName, final String triggerName,
+                         final String tableName, final boolean before, final int type) {
+        }
+
+        @Override
+        public void fire(final Connection conn, final Object[] oldRow, final Object[] newRow) throws SQLException {
+            if (failing) {
+                throw new SQLException("Failing update of " + oldRow[0]);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void remove() {
+        }
+    }
+
+    @Test
+    public void skipUnchangedCheckpoints() throws Exception {
+        final JdbcRepository repo = createRepository();
+        final StepExecutionImpl stepExecution = startStep(repo);
+        final long id = stepExecution.getStepExecutionId();
+
+        stepExecution.setPersistentUserData("user data");
+        stepExecution.setReaderCheckpointInfo(1);
+        repo.savePersistentData(null, stepExecution);
+
+        //change the columns behind the repository, so that a later update that includes them can be detected
+        setColumns(id, "a", "b", "c");
+
+        stepExecution.setReaderCheckpointInfo(2);
+        stepExecution.getStepMetrics().increment(Metric.MetricType.READ_COUNT, 10);
+        repo.savePersistentData(null, stepExecution);
+        StepExecutionImpl saved = (StepExecutionImpl) repo.selectStepExecution(id);
+        Assert.assertEquals("a", saved.getPersistentUserData());
+        Assert.assertEquals(2, saved.getReaderCheckpointInfo());
+        Assert.assertEquals("c", saved.getWriterCheckpointInfo());
+        Assert.assertEquals(10, saved.getStepMetrics().get(Metric.MetricType.READ_COUNT));
+
+        stepExecution.setPersistentUserData("user data 2");
+        stepExecution.setWriterCheckpointInfo(new long[]{3});
+        stepExecution.setBatchStatus(BatchStatus.COMPLETED);
+        repo.updateStepExecution(stepExecution);
+        saved = (StepExecutionImpl) repo.selectStepExecution(id);
+        Assert.assertEquals("user data 2", saved.getPersistentUserData());
+        Assert.assertEquals(2, saved.getReaderCheckpointInfo());
+        Assert.assertArrayEquals(new long[]{3}, (long[]) saved.getWriterCheckpointInfo());
+        Assert.assertEquals(BatchStatus.COMPLETED, saved.getBatchStatus());
+
+        //the step has ended and is no longer tracked, so all columns are written
+        setColumns(id, "a", "b", "c");
+        repo.updateStepExecution(stepExecution);
+        saved = (StepExecutionImpl) repo.selectStepExecution(id);
+        Assert.assertEquals("user data 2", saved.getPersistentUserData());
+        Assert.assertEquals(2, saved.getReaderCheckpointInfo());
+        Assert.assertArrayEquals(new long[]{3}, (long[]) saved.getWriterCheckpointInfo());
+    }
+
+    private static void setColumns(final long stepExecutionId, final String persistentUserData,
+                                   final String readerCheckpointInfo, final String writerCheckpointInfo) throws Exception {
+        final Connection connection = DriverManager.getConnection(DB_URL);
+        try {
+            final PreparedStatement preparedStatement = connection.prepareStatement(
+                    "UPDATE STEP_EXECUTION SET PERSISTENTUSERDATA=?, READERCHECKPOINTINFO=?, WRITERCHECKPOINTINFO=? WHERE STEPEXECUTIONID=?");
+            preparedStatement.setBytes(1, CompactCheckpointSerializer.INSTANCE.serialize(persistentUserData));
+            preparedStatement.setBytes(2, CompactCheckpointSerializer.INSTANCE.serialize(readerCheckpointInfo));
+            preparedStatement.setBytes(3, CompactCheckpointSerializer.INSTANCE.serialize(writerCheckpointInfo));
+            preparedStatement.setLong(4, stepExecutionId);
+            preparedStatement.executeUpdate();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void boundedExecutionCache() throws Exception {
+        final JdbcRepository repo = createRepository(AbstractRepository.EXECUTION_CACHE_SIZE_KEY, "4");
+        final Job job = ArchiveXmlLoader.loadJobXml("exception-class-filter.xml",
+                JdbcRepositoryTest.class.getClassLoader(), new ArrayList<Job>());
+        final JobExecutionImpl running = repo.createJobExecution(
+                repo.createJobInstance(job, null, JdbcRepositoryTest.class.getClassLoader()), null);
+        long firstCompletedId = 0;
+        for (int i = 0; i < 5; i++) {
+            final JobInstanceImpl jobInstance = repo.createJobInstance(job, null, JdbcRepositoryTest.class.getClassLoader());
+            final JobExecutionImpl jobExecution = repo.createJobExecution(jobInstance, null);
+            jobExecution.setBatchStatus(BatchStatus.COMPLETED);
+            repo.updateJobExecution(jobExecution);
+            if (firstCompletedId == 0) {
+                firstCompletedId = jobExecution.getExecutionId();
+            }
+        }
+        Assert.assertTrue(repo.getCacheSize() <= 4);
+        Assert.assertTrue(repo.getCacheEvictionCount() > 0);
+
+        //the running job execution is never evicted
+        Assert.assertSame(running, repo.getJobExecution(running.getExecutionId()));
+
+        //an evicted job execution is loaded again from the database
+        final long misses = repo.getCacheMissCount();
+        final JobExecutionImpl reloaded = (JobExecutionImpl) repo.getJobExecution(firstCompletedId);
+        Assert.assertTrue(repo.getCacheMissCount() > misses);
+        Assert.assertEquals(BatchStatus.COMPLETED, reloaded.getBatchStatus());
+        Assert.assertSame(reloaded, repo.getJobExecution(firstCompletedId));
+    }
+
+    @Test
+    public void pagedAndRunningQueries() throws Exception {
+        final JdbcRepository repo = createRepository();
+        final Job job = ArchiveXmlLoader.loadJobXml("exception-class-filter.xml",
+                JdbcRepositoryTest.class.getClassLoader(), new ArrayList<Job>());
+        final ClassLoader classLoader = JdbcRepositoryTest.class.getClassLoader();
+        repo.createJobInstance(job, null, classLoader);
+        final JobInstanceImpl jobInstance2 = repo.createJobInstance(job, null, classLoader);
+        final JobInstanceImpl jobInstance3 = repo.createJobInstance(job, null, classLoader);
+
+        //most recent first
+        final List<JobInstance> page = repo.getJobInstances(job.getId(), 0, 2);
+        Assert.assertEquals(2, page.size());
+        Assert.assertEquals(jobInstance3.getInstanceId(), page.get(0).getInstanceId());
+        Assert.assertEquals(jobInstance2.getInstanceId(), page.get(1).getInstanceId());
+        Assert.assertEquals(jobInstance2.getInstanceId(), repo.getJobInstances(job.getId(), 1, 1).get(0).getInstanceId());
+        Assert.assertTrue(repo.getJobInstances("no-such-job", 0, 10).isEmpty());
+
+        final JobExecutionImpl jobExecution = repo.createJobExecution(jobInstance3, null);
+        Assert.assertTrue(repo.getRunningExecutions(job.getId()).contains(jobExecution.getExecutionId()));
+        jobExecution.setBatchStatus(BatchStatus.COMPLETED);
+        repo.updateJobExecution(jobExecution);
+        Assert.assertFalse(repo.getRunningExecutions(job.getId()).contains(jobExecution.getExecutionId()));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.repository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.batch.runtime.BatchStatus;
+
+import org.jberet.creation.ArchiveXmlLoader;
+import org.jberet.job.model.Job;
+import org.jberet.runtime.JobExecutionImpl;
+import org.jberet.runtime.JobInstanceImpl;
+import org.jberet.runtime.StepExecutionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the cost of a chunk checkpoint ({@code saveCheckpoint}) and of the repository calls for a one-step job
+ * ({@code runJob}) across {@link InMemoryRepository}, {@link JdbcRepository} on an H2 file, and {@link FileRepository}
+ * under each {@code file-sync} policy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JobRepositoryBenchmark {
+    @Param({"in-memory", "jdbc", "file-commit", "file-batched", "file-os"})
+    public String repositoryType;
+
+    private File directory;
+
+    private AbstractRepository repository;
+
+    private Job job;
+
+    private JobExecutionImpl jobExecution;
+
+    private StepExecutionImpl stepExecution;
+
+    private long checkpoint;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = File.createTempFile("JobRepositoryBenchmark", "");
+        directory.delete();
+        directory.mkdir();
+        if (repositoryType.equals("in-memory")) {
+            repository = InMemoryRepository.create();
+        } else if (repositoryType.equals("jdbc")) {
+            final Properties configProperties = new Properties();
+            configProperties.setProperty(JdbcRepository.DB_URL_KEY, "jdbc:h2:" + new File(directory, "h2").getPath());
+            repository = JdbcRepository.create(configProperties);
+        } else {
+            final Properties configProperties = new Properties();
+            configProperties.setProperty(FileRepository.FILE_DIRECTORY_KEY, directory.getPath());
+            configProperties.setProperty(FileRepository.FILE_SYNC_KEY, repositoryType.substring("file-".length()));
+            repository = FileRepository.create(configProperties);
+        }
+
+        job = ArchiveXmlLoader.loadJobXml("exception-class-filter.xml",
+                JobRepositoryBenchmark.class.getClassLoader(), new ArrayList<Job>());
+        final JobInstanceImpl jobInstance = repository.createJobInstance(job, null, JobRepositoryBenchmark.class.getClassLoader());
+        jobExecution = repository.createJobExecution(jobInstance, null);
+        stepExecution = repository.createStepExecution("step1");
+        stepExecution.setBatchStatus(BatchStatus.STARTED);
+        repository.addStepExecution(jobExecution, stepExecution);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (repository instanceof FileRepository) {
+            ((FileRepository) repository).close();
+        }
+        delete(directory);
+    }
+
+    @Benchmark
+    public void saveCheckpoint() {
+        stepExecution.setReaderCheckpointInfo(++checkpoint);
+        stepExecution.setWriterCheckpointInfo(checkpoint);
+        repository.savePersistentData(jobExecution, stepExecution);
+    }
+
+    @Benchmark
+    public JobExecutionImpl runJob() {
+        final JobInstanceImpl jobInstance = repository.createJobInstance(job, null, JobRepositoryBenchmark.class.getClassLoader());
+        final JobExecutionImpl execution = repository.createJobExecution(jobInstance, null);
+        execution.setBatchStatus(BatchStatus.STARTED);
+        repository.updateJobExecution(execution);
+        final StepExecutionImpl step = repository.createStepExecution("step1");
+        step.setBatchStatus(BatchStatus.STARTED);
+        repository.addStepExecution(execution, step);
+        step.setBatchStatus(BatchStatus.COMPLETED);
+        repository.updateStepExecution(step);
+        execution.setBatchStatus(BatchStatus.COMPLETED);
+        repository.updateJobExecution(execution);
+        return execution;
+    }
+
+    private static void delete(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(JobRepositoryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
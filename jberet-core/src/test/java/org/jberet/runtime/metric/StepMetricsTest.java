@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.runtime.metric;
+
+import javax.batch.runtime.Metric;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StepMetricsTest {
+    @Test
+    public void getMetrics() throws Exception {
+        final StepMetrics stepMetrics = new StepMetrics();
+        stepMetrics.increment(Metric.MetricType.READ_COUNT, 3);
+        stepMetrics.increment(Metric.MetricType.READ_COUNT, 2);
+        stepMetrics.set(Metric.MetricType.COMMIT_COUNT, 7);
+
+        final Metric[] metrics = stepMetrics.getMetrics();
+        Assert.assertEquals(Metric.MetricType.values().length, metrics.length);
+        for (final Metric m : metrics) {
+            final long expected = m.getType() == Metric.MetricType.READ_COUNT ? 5 :
+                    m.getType() == Metric.MetricType.COMMIT_COUNT ? 7 : 0;
+            Assert.assertEquals(expected, m.getValue());
+            Assert.assertEquals(expected, stepMetrics.get(m.getType()));
+        }
+    }
+
+    @Test
+    public void concurrentPartitions() throws Exception {
+        final StepMetrics parent = new StepMetrics();
+        final int numOfPartitions = 4;
+        final int count = 100000;
+        final Thread[] threads = new Thread[numOfPartitions];
+        final StepMetrics[] partitions = new StepMetrics[numOfPartitions];
+        for (int i = 0; i < numOfPartitions; i++) {
+            final StepMetrics partition = new StepMetrics();
+            partition.setParent(parent);
+            partitions[i] = partition;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < count; j++) {
+                        partition.increment(Metric.MetricType.READ_COUNT, 1);
+                        partition.increment(Metric.MetricType.WRITE_COUNT, 1);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread t : threads) {
+            t.join();
+        }
+        for (final StepMetrics partition : partitions) {
+            Assert.assertEquals(count, partition.get(Metric.MetricType.READ_COUNT));
+        }
+        Assert.assertEquals(count * numOfPartitions, parent.get(Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(count * numOfPartitions, parent.get(Metric.MetricType.WRITE_COUNT));
+    }
+}
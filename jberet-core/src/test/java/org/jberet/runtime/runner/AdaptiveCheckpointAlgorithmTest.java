@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.runtime.runner;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveCheckpointAlgorithmTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void initialItemCount() throws Exception {
+        final AdaptiveCheckpointAlgorithm alg = new AdaptiveCheckpointAlgorithm();
+        alg.beginCheckpoint();
+        for (int i = 1; i < 10; i++) {
+            Assert.assertFalse(alg.isReadyToCheckpoint());
+        }
+        Assert.assertTrue(alg.isReadyToCheckpoint());
+        Assert.assertEquals(10, alg.getItemCount());
+    }
+
+    @Test
+    public void growTowardTarget() throws Exception {
+        final AdaptiveCheckpointAlgorithm alg = new AdaptiveCheckpointAlgorithm();
+        alg.beginCheckpoint();
+
+        //1 ms per item and no commit overhead: target 1000 ms => 1000 items, growing at most 2x per chunk
+        alg.chunkCommitted(10, 5 * MS, 3 * MS, 2 * MS, 0);
+        Assert.assertEquals(20, alg.getItemCount());
+        alg.chunkCommitted(20, 10 * MS, 6 * MS, 4 * MS, 0);
+        Assert.assertEquals(40, alg.getItemCount());
+        for (int i = 0; i < 10; i++) {
+            final int n = alg.getItemCount();
+            alg.chunkCommitted(n, n * MS, 0, 0, 0);
+        }
+        Assert.assertEquals(1000, alg.getItemCount());
+    }
+
+    @Test
+    public void shrinkWhenSlow() throws Exception {
+        final AdaptiveCheckpointAlgorithm alg = new AdaptiveCheckpointAlgorithm();
+        alg.beginCheckpoint();
+
+        //500 ms per item and 200 ms per commit => (1000 - 200) / 500 = 1 item
+        alg.chunkCommitted(10, 5000 * MS, 0, 0, 200 * MS);
+        Assert.assertEquals(1, alg.getItemCount());
+    }
+
+    @Test
+    public void backOffAfterRollback() throws Exception {
+        final AdaptiveCheckpointAlgorithm alg = new AdaptiveCheckpointAlgorithm();
+        alg.beginCheckpoint();
+        alg.chunkRolledBack();
+        Assert.assertEquals(5, alg.getItemCount());
+
+        //growth is held for the next few chunks even if items are fast
+        for (int i = 0; i < 3; i++) {
+            alg.chunkCommitted(5, MS, 0, 0, 0);
+            Assert.assertEquals(5, alg.getItemCount());
+        }
+        alg.chunkCommitted(5, MS, 0, 0, 0);
+        Assert.assertEquals(10, alg.getItemCount());
+    }
+}
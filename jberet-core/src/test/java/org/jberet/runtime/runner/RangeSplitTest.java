@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.runtime.runner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangeSplitTest {
+    @Test
+    public void claimAndSplit() throws Exception {
+        final RangeSplit split = new RangeSplit(0, 10, 0);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(split.claim());
+        }
+        //6 positions left: the upper half [7, 10) is taken over
+        final RangeCheckpoint taken = split.split(1);
+        Assert.assertEquals(7, taken.start);
+        Assert.assertEquals(10, taken.end);
+        Assert.assertEquals(7, taken.position);
+        Assert.assertEquals(3, split.remaining());
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(split.claim());
+        }
+        Assert.assertFalse(split.claim());
+
+        //the checkpoint keeps the original end, so the part taken over is covered if it is not saved
+        final RangeCheckpoint checkpoint = split.checkpoint(7);
+        Assert.assertEquals(0, checkpoint.start);
+        Assert.assertEquals(10, checkpoint.end);
+        Assert.assertEquals(7, checkpoint.position);
+        Assert.assertEquals(7, checkpoint.readerCheckpointInfo);
+    }
+
+    @Test
+    public void minSplitSize() throws Exception {
+        final RangeSplit split = new RangeSplit(100, 110, 103);
+        Assert.assertNull(split.split(4));
+        final RangeCheckpoint taken = split.split(3);
+        Assert.assertEquals(107, taken.start);
+        Assert.assertNull(split.split(3));
+    }
+
+    @Test
+    public void rollbackAndDeplete() throws Exception {
+        final RangeSplit split = new RangeSplit(0, 10, 0);
+        split.claim();
+        split.claim();
+        split.split(1);
+        split.reset(0);
+        Assert.assertEquals(6, split.remaining());
+
+        split.claim();
+        split.deplete();
+        Assert.assertEquals(0, split.remaining());
+        Assert.assertNull(split.split(1));
+        Assert.assertFalse(split.claim());
+    }
+
+    @Test
+    public void unclaimForRetry() throws Exception {
+        final RangeSplit split = new RangeSplit(0, 3, 0);
+        split.claim();
+        split.claim();
+        split.unclaim();
+        Assert.assertEquals(2, split.remaining());
+        Assert.assertEquals(1, split.checkpoint(null).position);
+
+        //all 3 positions can still be claimed
+        Assert.assertTrue(split.claim());
+        Assert.assertTrue(split.claim());
+        Assert.assertFalse(split.claim());
+    }
+}
@@ -13,10 +13,15 @@
 package org.jberet.test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import javax.batch.runtime.BatchStatus;
+import javax.batch.runtime.JobInstance;
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
 import javax.transaction.InvalidTransactionException;
@@ -32,6 +37,9 @@ import org.jberet.creation.ArchiveXmlLoader;
 import org.jberet.job.model.Job;
 import org.jberet.repository.InMemoryRepository;
 import org.jberet.repository.JobRepository;
+import org.jberet.runtime.JobExecutionImpl;
+import org.jberet.runtime.JobInstanceImpl;
+import org.jberet.runtime.StepExecutionImpl;
 import org.jberet.spi.ArtifactFactory;
 import org.jberet.spi.BatchEnvironment;
 import org.junit.Assert;
@@ -178,4 +186,45 @@ public class JobRepositoryTest {
         Assert.assertEquals(existingJobsCount, repo.getJobs().size());
     }
 
+    @Test
+    public void indexedJobInstancesAndExecutions() throws Exception {
+        final JobRepository repo = InMemoryRepository.create();
+        final Job job = ArchiveXmlLoader.loadJobXml("exception-class-filter.xml", this.getClass().getClassLoader(), new ArrayList<Job>());
+        final JobInstanceImpl jobInstance1 = repo.createJobInstance(job, null, this.getClass().getClassLoader());
+        final JobInstanceImpl jobInstance2 = repo.createJobInstance(job, null, this.getClass().getClassLoader());
+        Assert.assertEquals(Arrays.<JobInstance>asList(jobInstance1, jobInstance2), repo.getJobInstances(job.getId()));
+        Assert.assertEquals(2, repo.getJobInstanceCount(job.getId()));
+        Assert.assertEquals(0, repo.getJobInstanceCount("no-such-job"));
+
+        final JobExecutionImpl jobExecution1 = repo.createJobExecution(jobInstance1, null);
+        final JobExecutionImpl jobExecution2 = repo.createJobExecution(jobInstance2, null);
+        Assert.assertEquals(Arrays.asList(jobExecution1.getExecutionId(), jobExecution2.getExecutionId()),
+                sorted(repo.getRunningExecutions(job.getId())));
+
+        final StepExecutionImpl stepExecution1 = repo.createStepExecution("step1");
+        repo.addStepExecution(jobExecution1, stepExecution1);
+        jobExecution1.setBatchStatus(BatchStatus.FAILED);
+        repo.updateJobExecution(jobExecution1);
+        Assert.assertEquals(Collections.singletonList(jobExecution2.getExecutionId()), repo.getRunningExecutions(job.getId()));
+
+        //step1 is not in the restarted execution, so the latest step1 of the job instance is found
+        final JobExecutionImpl jobExecution3 = repo.createJobExecution(jobInstance1, null);
+        jobExecution3.setBatchStatus(BatchStatus.FAILED);
+        Assert.assertSame(stepExecution1, repo.findOriginalStepExecutionForRestart("step1", jobExecution3));
+        Assert.assertNull(repo.findOriginalStepExecutionForRestart("step2", jobExecution3));
+
+        repo.removeJobInstance(jobInstance1.getInstanceId());
+        Assert.assertEquals(Collections.<JobInstance>singletonList(jobInstance2), repo.getJobInstances(job.getId()));
+        Assert.assertNull(repo.getJobExecution(jobExecution1.getExecutionId()));
+
+        repo.removeJob(job.getId());
+        Assert.assertEquals(0, repo.getJobInstanceCount(job.getId()));
+        Assert.assertNull(repo.getJobExecution(jobExecution2.getExecutionId()));
+    }
+
+    private static List<Long> sorted(final List<Long> ids) {
+        Collections.sort(ids);
+        return ids;
+    }
+
 }
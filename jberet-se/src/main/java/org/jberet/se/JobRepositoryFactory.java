@@ -11,6 +11,7 @@ package org.jberet.se;
 
 import java.util.Properties;
 
+import org.jberet.repository.FileRepository;
 import org.jberet.repository.InMemoryRepository;
 import org.jberet.repository.JdbcRepository;
 import org.jberet.repository.JobRepository;
@@ -54,6 +55,10 @@ class JobRepositoryFactory {
                 if (!(jobRepository instanceof MongoRepository)) {
                     jobRepository = INSTANCE.jobRepository = MongoRepository.create(configProperties);
                 }
+            } else if (repositoryType.equalsIgnoreCase(BatchSEEnvironment.REPOSITORY_TYPE_FILE)) {
+                if (!(jobRepository instanceof FileRepository)) {
+                    jobRepository = INSTANCE.jobRepository = FileRepository.create(configProperties);
+                }
             } else {
                 throw SEBatchLogger.LOGGER.unrecognizedJobRepositoryType(repositoryType);
             }
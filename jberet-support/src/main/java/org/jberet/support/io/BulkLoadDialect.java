@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import org.jberet.support._private.SupportMessages;
+
+/**
+ * Loads chunks of rows into a database table with a database-specific bulk loading mechanism, for
+ * {@link JdbcBulkLoadItemWriter}.  A dialect instance is opened with a database connection and the target table and
+ * columns, loads any number of chunks, and is closed along with the connection.
+ * <p/>
+ * Custom dialects can extend this class, and be configured with {@link JdbcBulkLoadItemWriter#dialect} by their
+ * fully-qualified class name.  They should have a public no-arg constructor.
+ *
+ * @see JdbcBulkLoadItemWriter
+ * @since 1.1.0
+ */
+public abstract class BulkLoadDialect {
+    /**
+     * The rows of a chunk to load.
+     */
+    public interface Rows {
+        /**
+         * Gets the number of rows.
+         *
+         * @return the number of rows
+         */
+        int size();
+
+        /**
+         * Gets the column values of a row, in the same order as the columns the dialect was opened with.  The
+         * returned array may be reused for the next row.
+         *
+         * @param index the 0-based row index
+         * @return the column values of the row
+         * @throws Exception
+         */
+        Object[] get(int index) throws Exception;
+    }
+
+    /**
+     * Prepares to load rows into a table.
+     *
+     * @param connection the database connection
+     * @param table      the target table
+     * @param columns    the target columns
+     * @throws Exception
+     */
+    public abstract void open(Connection connection, String table, String[] columns) throws Exception;
+
+    /**
+     * Loads a chunk of rows into the table.
+     *
+     * @param rows the rows to load
+     * @throws Exception
+     */
+    public abstract void load(Rows rows) throws Exception;
+
+    /**
+     * Releases any resources obtained in {@link #open(Connection, String, String[])}, but not the connection itself.
+     */
+    public abstract void close();
+
+    /**
+     * Gets the dialect for a dialect name.
+     *
+     * @param name       {@code postgresql}, {@code h2}, {@code insert}, or the fully-qualified class name of a custom
+     *                   dialect
+     * @param connection the database connection, to detect the dialect from if {@code name} is null
+     * @return the dialect, or null for batched INSERT statements, including when no dialect is detected
+     * @throws Exception
+     */
+    static BulkLoadDialect forName(final String name, final Connection connection) throws Exception {
+        final String dialect = name != null ? name : connection.getMetaData().getDatabaseProductName().toLowerCase();
+        if (dialect.equals("postgresql")) {
+            return new PostgreSql();
+        }
+        if (dialect.equals("h2")) {
+            return new H2();
+        }
+        if (name == null || name.equals("insert")) {
+            return null;
+        }
+        try {
+            return (BulkLoadDialect) BulkLoadDialect.class.getClassLoader().loadClass(name).newInstance();
+        } catch (final Exception e) {
+            throw SupportMessages.MESSAGES.failToLoadOrCreateCustomType(e, name);
+        }
+    }
+
+    /**
+     * Dialect for PostgreSQL, which streams each chunk in CSV format to {@code COPY ... FROM STDIN} through the
+     * driver's {@code CopyManager}.  The driver classes are accessed reflectively, so that they are only needed at
+     * runtime.
+     */
+    static final class PostgreSql extends BulkLoadDialect {
+        private Object copyManager;
+        private Method copyIn;
+        private String copySql;
+
+        @Override
+        public void open(final Connection connection, final String table, final String[] columns) throws Exception {
+            final ClassLoader classLoader = connection.getClass().getClassLoader();
+            final Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection", true, classLoader);
+            final Object pgConnection = connection.unwrap(pgConnectionClass);
+            copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(pgConnection);
+            copyIn = copyManager.getClass().getMethod("copyIn", String.class, Reader.class);
+
+            final StringBuilder sb = new StringBuilder("COPY ").append(table).append(" (");
+            for (int i = 0; i < columns.length; ++i) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(columns[i]);
+            }
+            copySql = sb.append(") FROM STDIN WITH CSV").toString();
+        }
+
+        @Override
+        public void load(final Rows rows) throws Exception {
+            copyIn.invoke(copyManager, copySql, new CsvRowsReader(rows));
+        }
+
+        @Override
+        public void close() {
+            copyManager = null;
+            copyIn = null;
+        }
+    }
+
+    /**
+     * Dialect for H2, which inserts each chunk with one {@code INSERT ... DIRECT SELECT} statement from the H2
+     * {@code TABLE} function, binding the values of each column as an array parameter.  The column types are queried
+     * from the target table when the dialect is opened.
+     */
+    static final class H2 extends BulkLoadDialect {
+        private PreparedStatement statement;
+        private Object[][] columnValues;
+
+        @Override
+        public void open(final Connection connection, final String table, final String[] columns) throws Exception {
+            final StringBuilder columnList = new StringBuilder();
+            for (int i = 0; i < columns.length; ++i) {
+                if (i > 0) {
+                    columnList.append(", ");
+                }
+                columnList.append(columns[i]);
+            }
+
+            final StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append(" (").append(columnList)
+                    .append(") DIRECT SELECT * FROM TABLE(");
+            final PreparedStatement typeQuery = connection.prepareStatement(
+                    "SELECT " + columnList + " FROM " + table + " WHERE 1 = 0");
+            try {
+                final ResultSetMetaData metaData = typeQuery.executeQuery().getMetaData();
+                for (int i = 0; i < columns.length; ++i) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append('C').append(i + 1).append(' ').append(metaData.getColumnTypeName(i + 1)).append(" = ?");
+                }
+            } finally {
+                JdbcItemReaderWriterBase.close(null, typeQuery);
+            }
+            statement = connection.prepareStatement(sb.append(')').toString());
+            columnValues = new Object[columns.length][];
+        }
+
+        @Override
+        public void load(final Rows rows) throws Exception {
+            final int size = rows.size();
+            for (int i = 0; i < columnValues.length; ++i) {
+                columnValues[i] = new Object[size];
+            }
+            for (int row = 0; row < size; ++row) {
+                final Object[] values = rows.get(row);
+                for (int i = 0; i < columnValues.length; ++i) {
+                    columnValues[i][row] = values[i];
+                }
+            }
+            for (int i = 0; i < columnValues.length; ++i) {
+                statement.setObject(i + 1, columnValues[i]);
+            }
+            statement.executeUpdate();
+        }
+
+        @Override
+        public void close() {
+            JdbcItemReaderWriterBase.close(null, statement);
+            statement = null;
+            columnValues = null;
+        }
+    }
+
+    /**
+     * Reads rows in the CSV format of PostgreSQL {@code COPY}, formatting one row at a time as they are read.  Null
+     * values are written as empty unquoted columns, and all other values except numbers and booleans are quoted.
+     */
+    static final class CsvRowsReader extends Reader {
+        private final Rows rows;
+        private final StringBuilder row = new StringBuilder();
+        private int rowIndex;
+        private int pos;
+
+        CsvRowsReader(final Rows rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            int count = 0;
+            while (count < len) {
+                if (pos == row.length()) {
+                    if (rowIndex == rows.size()) {
+                        break;
+                    }
+                    formatRow();
+                }
+                final int n = Math.min(len - count, row.length() - pos);
+                row.getChars(pos, pos + n, cbuf, off + count);
+                pos += n;
+                count += n;
+            }
+            return count == 0 && len > 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void formatRow() throws IOException {
+            final Object[] values;
+            try {
+                values = rows.get(rowIndex++);
+            } catch (final IOException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new IOException(e);
+            }
+            row.setLength(0);
+            pos = 0;
+            for (int i = 0; i < values.length; ++i) {
+                if (i > 0) {
+                    row.append(',');
+                }
+                final Object val = values[i];
+                if (val == null) {
+                    continue;
+                }
+                if (val instanceof Number || val instanceof Boolean) {
+                    row.append(val);
+                    continue;
+                }
+                final String s;
+                if (val instanceof byte[]) {
+                    s = toHex((byte[]) val);
+                } else if (val instanceof java.util.Date && !(val instanceof java.sql.Date) && !(val instanceof Time) &&
+                        !(val instanceof Timestamp)) {
+                    s = new Timestamp(((java.util.Date) val).getTime()).toString();
+                } else {
+                    s = val.toString();
+                }
+                row.append('"');
+                for (int j = 0; j < s.length(); ++j) {
+                    final char c = s.charAt(j);
+                    if (c == '"') {
+                        row.append('"');
+                    }
+                    row.append(c);
+                }
+                row.append('"');
+            }
+            row.append('\n');
+        }
+
+        private static String toHex(final byte[] bytes) {
+            final char[] digits = "0123456789abcdef".toCharArray();
+            final StringBuilder sb = new StringBuilder(2 + bytes.length * 2).append("\\x");
+            for (final byte b : bytes) {
+                sb.append(digits[(b >> 4) & 0xF]).append(digits[b & 0xF]);
+            }
+            return sb.toString();
+        }
+    }
+}
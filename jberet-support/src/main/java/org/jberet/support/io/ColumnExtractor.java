@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.jberet.support._private.SupportMessages;
+
+/**
+ * Gets a column value from the current row of a {@code ResultSet} with the {@code ResultSet} getter method for a
+ * column type configured in {@link JdbcItemReader#columnTypes}.  Extractors are created once per column when the
+ * reader is opened, so that the column type is not looked up again for each row.
+ */
+abstract class ColumnExtractor {
+    /**
+     * Extractor that calls {@link ResultSet#getObject(int)}.
+     */
+    static final ColumnExtractor OBJECT = new ColumnExtractor() {
+        @Override
+        Object extract(final ResultSet rs, final int pos) throws SQLException {
+            return rs.getObject(pos);
+        }
+    };
+
+    /**
+     * Gets the value of the column at {@code pos} in the current row.
+     *
+     * @param rs  the {@code ResultSet}
+     * @param pos the 1-based column position
+     * @return the column value
+     * @throws SQLException
+     */
+    abstract Object extract(ResultSet rs, int pos) throws SQLException;
+
+    /**
+     * Gets the extractor for a column type.
+     *
+     * @param type the column type, as configured in {@link JdbcItemReader#columnTypes}
+     * @return the extractor for the column type
+     * @throws javax.batch.operations.BatchRuntimeException if the column type is not recognized
+     */
+    static ColumnExtractor forType(final String type) {
+        if (type.equals("String")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getString(pos);
+                }
+            };
+        }
+        if (type.equals("Date")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getDate(pos);
+                }
+            };
+        }
+        if (type.equals("Timestamp")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getTimestamp(pos);
+                }
+            };
+        }
+        if (type.equals("Time")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getTime(pos);
+                }
+            };
+        }
+        if (type.equals("Object") || type.equals("null")) {
+            return OBJECT;
+        }
+        if (type.equals("NString")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getNString(pos);
+                }
+            };
+        }
+        if (type.equals("Boolean")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getBoolean(pos);
+                }
+            };
+        }
+        if (type.equals("Int")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getInt(pos);
+                }
+            };
+        }
+        if (type.equals("Long")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getLong(pos);
+                }
+            };
+        }
+        if (type.equals("Double")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getDouble(pos);
+                }
+            };
+        }
+        if (type.equals("Float")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getFloat(pos);
+                }
+            };
+        }
+        if (type.equals("Short")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getShort(pos);
+                }
+            };
+        }
+        if (type.equals("Byte")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getByte(pos);
+                }
+            };
+        }
+        if (type.equals("Blob")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getBlob(pos);
+                }
+            };
+        }
+        if (type.equals("Clob")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getClob(pos);
+                }
+            };
+        }
+        if (type.equals("NClob")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getNClob(pos);
+                }
+            };
+        }
+        if (type.equals("BigDecimal")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getBigDecimal(pos);
+                }
+            };
+        }
+        if (type.equals("URL")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getURL(pos);
+                }
+            };
+        }
+        if (type.equals("Bytes")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getBytes(pos);
+                }
+            };
+        }
+        if (type.equals("BinaryStream")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getBinaryStream(pos);
+                }
+            };
+        }
+        if (type.equals("CharacterStream")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getCharacterStream(pos);
+                }
+            };
+        }
+        if (type.equals("NCharacterStream")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getNCharacterStream(pos);
+                }
+            };
+        }
+        if (type.equals("AsciiStream")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getAsciiStream(pos);
+                }
+            };
+        }
+        if (type.equals("Ref")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getRef(pos);
+                }
+            };
+        }
+        if (type.equals("RowId")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getRowId(pos);
+                }
+            };
+        }
+        if (type.equals("SQLXML")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getSQLXML(pos);
+                }
+            };
+        }
+        if (type.equals("Array")) {
+            return new ColumnExtractor() {
+                @Override
+                Object extract(final ResultSet rs, final int pos) throws SQLException {
+                    return rs.getArray(pos);
+                }
+            };
+        }
+        throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, type, "columnTypes");
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.Serializable;
+
+/**
+ * The checkpoint info of {@link CsvItemReader} when reading from a local file, and of {@link MappedCsvItemReader},
+ * which records both the row number of the last row read, and the byte offset in the file where the next row starts,
+ * so that the reader can seek directly to the next row upon restart, instead of parsing all rows before it.
+ */
+public final class CsvCheckpoint implements Serializable {
+    private static final long serialVersionUID = 6320425874237941062L;
+
+    private final int rowNumber;
+    private final long offset;
+
+    public CsvCheckpoint(final int rowNumber, final long offset) {
+        this.rowNumber = rowNumber;
+        this.offset = offset;
+    }
+
+    /**
+     * Gets the row number of the last row read.  For {@link CsvItemReader}, it counts the header row, if any; for
+     * {@link MappedCsvItemReader}, it counts the rows read from its start offset.
+     *
+     * @return the row number of the last row read
+     */
+    public int getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Gets the byte offset in the file where the next row starts.
+     *
+     * @return the byte offset of the next row
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return "CsvCheckpoint{rowNumber=" + rowNumber + ", offset=" + offset + '}';
+    }
+}
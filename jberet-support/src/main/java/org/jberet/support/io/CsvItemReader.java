@@ -12,16 +12,19 @@
 
 package org.jberet.support.io;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.util.List;
 import javax.batch.api.BatchProperty;
-import javax.batch.api.chunk.ItemReader;
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.jberet.spi.BatchItemReader;
 import org.jberet.support._private.SupportLogger;
 import org.jberet.support._private.SupportMessages;
 import org.supercsv.io.ICsvBeanReader;
@@ -36,11 +39,18 @@ import static org.jberet.support.io.CsvProperties.BEAN_TYPE_KEY;
  * bean, java.util.List&lt;String&gt;, or java.util.Map&lt;String, String&gt;. Data files delimited with characters
  * other than comma (e.g., tab, |) are also supported by configuring {@code preference}, {@code delimiterChar},
  * or {@code quoteChar} properties in job xml.
+ * <p/>
+ * When reading from a local file, the reader saves the byte offset of the next row along with the row number in its
+ * checkpoint info, so that upon restart it seeks directly to the next row.  Otherwise, e.g., for URL and classpath
+ * resources, it parses and skips all rows up to the row number saved in the checkpoint info.
+ * <p/>
+ * The range of a local file to read can also be specified in bytes with {@link #startOffset} and {@link #endOffset},
+ * so that partitions can each read their own slice of the same file, as planned by {@link RangePartitionMapper}.
  * This class is not designed to be thread-safe and its instance should not be shared between threads.
  */
 @Named
 @Dependent
-public class CsvItemReader extends CsvItemReaderWriterBase implements ItemReader {
+public class CsvItemReader extends CsvItemReaderWriterBase implements BatchItemReader {
     @Inject
     @BatchProperty
     protected int start;
@@ -53,8 +63,36 @@ public class CsvItemReader extends CsvItemReaderWriterBase implements ItemReader
     @BatchProperty
     protected boolean headerless;
 
+    /**
+     * The byte offset of the local file to start reading from, which should be at the start of a row.  Optional
+     * property, and defaults to 0.  If it is greater than 0, the header row, if any, is read separately from the
+     * beginning of the file, and {@link #start} and {@link #end} are counted from this offset.
+     */
+    @Inject
+    @BatchProperty
+    protected long startOffset;
+
+    /**
+     * The byte offset of the local file to stop reading at, which should be at the start of a row.  Optional property,
+     * and defaults to the end of the file.  The reader reads all rows that start before this offset.
+     */
+    @Inject
+    @BatchProperty
+    protected long endOffset;
+
     protected ICsvReader delegateReader;
 
+    /**
+     * The row number of the last row read before {@link #delegateReader} starts, when it starts reading in the middle
+     * of the resource upon restart.
+     */
+    private int rowNumberBase;
+
+    /**
+     * Tracks the byte offset of each line when reading from a local file, or null otherwise.
+     */
+    private LineOffsetInputStream lineOffsetInputStream;
+
     @Override
     public void open(final Serializable checkpoint) throws Exception {
         /**
@@ -64,19 +102,50 @@ public class CsvItemReader extends CsvItemReaderWriterBase implements ItemReader
         if (this.end == 0) {
             this.end = Integer.MAX_VALUE;
         }
-        int startRowNumber = checkpoint == null ? this.start : (Integer) checkpoint;
+        final CsvCheckpoint csvCheckpoint = checkpoint instanceof CsvCheckpoint ? (CsvCheckpoint) checkpoint : null;
+        int startRowNumber = checkpoint == null ? this.start :
+                csvCheckpoint != null ? csvCheckpoint.getRowNumber() : (Integer) checkpoint;
         if (startRowNumber < this.start || startRowNumber > this.end || startRowNumber < 0) {
             throw SupportMessages.MESSAGES.invalidStartPosition(startRowNumber, this.start, this.end);
         }
         if (headerless) {
-            startRowNumber--;
             this.end--;
         }
 
         if (beanType == null) {
             throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, null, BEAN_TYPE_KEY);
         }
-        final InputStream inputStream = getInputStream(resource, true);
+        final File file = getLocalFile();
+        if ((startOffset > 0 || endOffset > 0) && (file == null || !isLineOffsetCharset())) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, String.valueOf(startOffset), "startOffset");
+        }
+        final boolean seek = csvCheckpoint != null && csvCheckpoint.getOffset() > 0 && file != null;
+        if (seek) {
+            //the checkpoint row number already counts the header row, if any
+            rowNumberBase = startRowNumber;
+            startRowNumber = 0;
+        } else if (startOffset > 0) {
+            //rows are numbered as if the header row, if any, were right before startOffset
+            rowNumberBase = headerless ? 0 : 1;
+            startRowNumber = Math.max(startRowNumber - rowNumberBase, 0);
+        } else {
+            rowNumberBase = 0;
+            if (headerless) {
+                startRowNumber--;
+            }
+        }
+
+        final InputStream inputStream;
+        lineOffsetInputStream = null;
+        if (file != null && isLineOffsetCharset()) {
+            final long offset = seek ? csvCheckpoint.getOffset() : startOffset;
+            final FileInputStream fileInputStream = new FileInputStream(file);
+            fileInputStream.getChannel().position(offset);
+            lineOffsetInputStream = new LineOffsetInputStream(fileInputStream, offset);
+            inputStream = offset > 0 ? lineOffsetInputStream : new UnicodeBOMInputStream(lineOffsetInputStream).skipBOM();
+        } else {
+            inputStream = getInputStream(resource, true);
+        }
         final InputStreamReader r = charset == null ? new InputStreamReader(inputStream) :
                 new InputStreamReader(inputStream, charset);
         if (java.util.List.class.isAssignableFrom(beanType)) {
@@ -88,7 +157,11 @@ public class CsvItemReader extends CsvItemReaderWriterBase implements ItemReader
         }
         SupportLogger.LOGGER.openingResource(resource, this.getClass());
 
-        if (!headerless) {
+        if (seek || startOffset > 0) {
+            if (!headerless && this.nameMapping == null) {
+                this.nameMapping = readHeader();
+            }
+        } else if (!headerless) {
             final String[] header;
             try {
                 header = delegateReader.getHeader(true);    //first line check true
@@ -113,9 +186,50 @@ public class CsvItemReader extends CsvItemReaderWriterBase implements ItemReader
 
     @Override
     public Object readItem() throws Exception {
-        if (delegateReader.getRowNumber() > this.end) {
+        if (rowNumberBase + delegateReader.getRowNumber() > this.end || isAtEndOffset()) {
             return null;
         }
+        final Object result = readRow();
+        if (lineOffsetInputStream != null) {
+            lineOffsetInputStream.discardBefore(delegateReader.getLineNumber() + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Reads up to {@code maxItems} rows, and maps each row in the same way as {@link #readItem()}.  Buffered line
+     * offsets before the next row are only discarded once after the last row read.
+     *
+     * @param maxItems the max number of rows to read
+     * @param items the list to add the rows to
+     * @return the number of rows read
+     * @throws Exception any exception raised
+     */
+    @Override
+    public int readItems(final int maxItems, final List<Object> items) throws Exception {
+        int count = 0;
+        Object result;
+        while (count < maxItems && rowNumberBase + delegateReader.getRowNumber() <= this.end && !isAtEndOffset() &&
+                (result = readRow()) != null) {
+            items.add(result);
+            count++;
+        }
+        if (lineOffsetInputStream != null) {
+            lineOffsetInputStream.discardBefore(delegateReader.getLineNumber() + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the next row starts at or after {@link #endOffset}.  The start of the next row is always known, since
+     * the line terminator of the last row read has been consumed.
+     */
+    private boolean isAtEndOffset() {
+        return endOffset > 0 && lineOffsetInputStream != null &&
+                lineOffsetInputStream.getLineOffset(delegateReader.getLineNumber() + 1) >= endOffset;
+    }
+
+    private Object readRow() throws Exception {
         final Object result;
         if (delegateReader instanceof org.supercsv.io.ICsvBeanReader) {
             if (cellProcessorInstances.length == 0) {
@@ -142,8 +256,34 @@ public class CsvItemReader extends CsvItemReaderWriterBase implements ItemReader
         return result;
     }
 
+    /**
+     * Gets the checkpoint info, which is a {@link CsvCheckpoint} if the resource is a local file and the offset of
+     * each row can be tracked, or the row number of the last row read otherwise.
+     *
+     * @return the checkpoint info
+     * @throws Exception
+     */
     @Override
-    public Integer checkpointInfo() throws Exception {
-        return delegateReader.getRowNumber();
+    public Serializable checkpointInfo() throws Exception {
+        final int rowNumber = rowNumberBase + delegateReader.getRowNumber();
+        if (lineOffsetInputStream == null) {
+            return rowNumber;
+        }
+        //the next row starts on the line after the last line consumed by the tokenizer
+        return new CsvCheckpoint(rowNumber, lineOffsetInputStream.getLineOffset(delegateReader.getLineNumber() + 1));
+    }
+
+    private String[] readHeader() throws Exception {
+        final InputStream inputStream = getInputStream(resource, true);
+        final InputStreamReader r = charset == null ? new InputStreamReader(inputStream) :
+                new InputStreamReader(inputStream, charset);
+        final ICsvListReader headerReader = new FastForwardCsvListReader(r, getCsvPreference(), 0);
+        try {
+            return headerReader.getHeader(true);
+        } catch (final IOException e) {
+            throw SupportMessages.MESSAGES.failToReadCsvHeader(e, resource);
+        } finally {
+            headerReader.close();
+        }
     }
 }
@@ -13,6 +13,8 @@
 package org.jberet.support.io;
 
 import java.lang.reflect.Constructor;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import javax.batch.api.BatchProperty;
 import javax.inject.Inject;
 
@@ -156,6 +158,16 @@ public abstract class CsvItemReaderWriterBase extends ItemReaderWriterBase {
         return csvPreference;
     }
 
+    /**
+     * Checks if the charset encodes line terminators as single bytes, as required to track the byte offset of rows.
+     *
+     * @return true if the byte offset of rows can be tracked
+     */
+    protected boolean isLineOffsetCharset() {
+        final Charset cs = charset == null ? Charset.defaultCharset() : Charset.forName(charset);
+        return cs.canEncode() && Arrays.equals("\r\n".getBytes(cs), new byte[]{'\r', '\n'});
+    }
+
     /**
      * Gets the cell processors for reading CSV resource.  The default implementation returns an empty array,
      * and subclasses may override it to provide more meaningful cell processors.
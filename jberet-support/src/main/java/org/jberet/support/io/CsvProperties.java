@@ -103,6 +103,11 @@ public final class CsvProperties {
      */
     public static final String DELIMITER_CHAR_KEY = "delimiterChar";
 
+    /**
+     * The name of the character set of the CSV resource, e.g., UTF-8.
+     */
+    public static final String CHARSET_KEY = "charset";
+
     /**
      * The end of line symbols to use when writing (Windows, Mac and Linux style line breaks are all supported when
      * reading, so this preference won't be used at all for reading).
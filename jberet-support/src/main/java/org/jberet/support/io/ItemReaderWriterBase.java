@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Set;
 import javax.batch.api.BatchProperty;
@@ -156,6 +157,26 @@ public abstract class ItemReaderWriterBase {
         return inputStream;
     }
 
+    /**
+     * Gets the file of the resource, if the resource is a local file or file URL.
+     *
+     * @return the local file, or null if the resource is not a local file
+     */
+    protected File getLocalFile() {
+        File file = null;
+        try {
+            final URL url = new URL(resource);
+            if ("file".equals(url.getProtocol())) {
+                file = new File(url.toURI());
+            }
+        } catch (final MalformedURLException e) {
+            file = new File(resource);
+        } catch (final URISyntaxException e) {
+            SupportLogger.LOGGER.tracef("The resource %s is not a file %n", resource);
+        }
+        return file != null && file.isFile() ? file : null;
+    }
+
     protected OutputStream getOutputStream(final String writeMode) {
         if (resource == null) {
             throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, null, RESOURCE_KEY);
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.Serializable;
+import java.util.List;
+import javax.batch.api.BatchProperty;
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.jberet.support._private.SupportMessages;
+
+/**
+ * An implementation of {@code javax.batch.api.chunk.ItemWriter} that loads data items into the target database table
+ * with a database-specific bulk loading mechanism, which is usually much faster than INSERT statements for large
+ * amounts of data.  Each chunk is streamed to the database as it is mapped, without intermediate files.
+ * <p/>
+ * The target table and columns are taken from the SQL insert statement {@link #sql}, e.g.,
+ * <p/>
+ * INSERT INTO PERSON(NAME, ADDRESS, AGE) VALUES(?, ?, ?)
+ * <p/>
+ * which should only contain parameter markers in its VALUES clause.  Data items are mapped to the columns in the same
+ * way as {@link JdbcItemWriter}, and {@link #parameterTypes} is only used when falling back to INSERT statements.
+ *
+ * @see BulkLoadDialect
+ * @since 1.1.0
+ */
+@Named
+@Dependent
+public class JdbcBulkLoadItemWriter extends JdbcItemWriter {
+    /**
+     * The bulk loading mechanism to use.  Optional property, and if not set, it is detected from the database product
+     * name.  Valid values are:
+     * <p/>
+     * <ul>
+     * <li>{@code postgresql}: {@code COPY ... FROM STDIN} in CSV format, through the PostgreSQL JDBC driver's
+     * {@code CopyManager};</li>
+     * <li>{@code h2}: one {@code INSERT ... DIRECT SELECT} statement per chunk from the H2 {@code TABLE} function;</li>
+     * <li>{@code insert}: batched INSERT statements, as with {@link JdbcItemWriter}, which is also used for databases
+     * without a built-in dialect;</li>
+     * <li>the fully-qualified class name of a custom {@link BulkLoadDialect}.</li>
+     * </ul>
+     */
+    @Inject
+    @BatchProperty
+    protected String dialect;
+
+    /**
+     * The dialect to load chunks with, or null for INSERT statements.
+     */
+    private BulkLoadDialect bulkLoadDialect;
+
+    /**
+     * Whether {@link #bulkLoadDialect} has been resolved, which is done once the first connection is obtained.
+     */
+    private boolean dialectResolved;
+
+    private String table;
+    private String[] columns;
+
+    @Override
+    public void open(final Serializable checkpoint) throws Exception {
+        dialectResolved = false;
+        bulkLoadDialect = null;
+        columns = getParameterColumns();
+        table = getTable();
+        super.open(checkpoint);
+    }
+
+    @Override
+    public void writeItems(final List<Object> items) throws Exception {
+        //obtains the connection for this chunk, and resolves the dialect with the first one
+        if (connection == null) {
+            openStatement();
+        }
+        if (bulkLoadDialect == null) {
+            super.writeItems(items);
+            return;
+        }
+        final Object[] values = new Object[parameterNames.length];
+        try {
+            bulkLoadDialect.load(new BulkLoadDialect.Rows() {
+                @Override
+                public int size() {
+                    return items.size();
+                }
+
+                @Override
+                public Object[] get(final int index) throws Exception {
+                    getParameterValues(items.get(index), values);
+                    return values;
+                }
+            });
+        } catch (final Exception e) {
+            closeStatement();
+            throw e;
+        }
+        if (dataSource != null) {
+            closeStatement();
+        }
+    }
+
+    @Override
+    protected void openStatement() throws Exception {
+        super.openStatement();
+        try {
+            if (!dialectResolved) {
+                bulkLoadDialect = BulkLoadDialect.forName(dialect, connection);
+                dialectResolved = true;
+            }
+            if (bulkLoadDialect != null) {
+                bulkLoadDialect.open(connection, table, columns);
+            }
+        } catch (final Exception e) {
+            closeStatement();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void closeStatement() {
+        if (bulkLoadDialect != null) {
+            bulkLoadDialect.close();
+        }
+        super.closeStatement();
+    }
+
+    /**
+     * Gets the target table of the SQL insert statement {@link #sql}.
+     *
+     * @return the target table
+     */
+    private String getTable() {
+        final String sqlLowerCase = sql.toLowerCase();
+        final int intoPos = sqlLowerCase.indexOf("into");
+        final int leftParenthesisPos = sqlLowerCase.indexOf('(', intoPos + 4);
+        if (intoPos < 0 || leftParenthesisPos < 0) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, sql, "sql");
+        }
+        return sql.substring(intoPos + 4, leftParenthesisPos).trim();
+    }
+}
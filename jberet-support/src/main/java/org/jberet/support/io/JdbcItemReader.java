@@ -13,6 +13,13 @@
 package org.jberet.support.io;
 
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -23,11 +30,24 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.batch.api.BatchProperty;
-import javax.batch.api.chunk.ItemReader;
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.introspect.AnnotatedConstructor;
+import com.fasterxml.jackson.databind.introspect.AnnotatedField;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.util.ClassUtil;
+import org.jberet.spi.BatchItemReader;
 import org.jberet.support._private.SupportLogger;
 import org.jberet.support._private.SupportMessages;
 
@@ -39,7 +59,12 @@ import org.jberet.support._private.SupportMessages;
  */
 @Named
 @Dependent
-public class JdbcItemReader extends JdbcItemReaderWriterBase implements ItemReader {
+public class JdbcItemReader extends JdbcItemReaderWriterBase implements BatchItemReader {
+    /**
+     * Alias of the query specified with {@link #sql} when used as a derived table in keyset mode.
+     */
+    private static final String DERIVED_TABLE_ALIAS = "JBERET_KEYSET";
+
     /**
      * The row number in the {@code ResultSet} to start reading.  It's a positive integer starting from 1.
      */
@@ -53,6 +78,38 @@ public class JdbcItemReader extends JdbcItemReaderWriterBase implements ItemRead
     @Inject
     @BatchProperty
     protected int end;
+
+    /**
+     * A unique column to read rows in the order of.  Optional property, and if set, this reader works in keyset mode:
+     * the query is ordered by this column, the checkpoint info is the key value of the last row read, and upon restart,
+     * only rows with greater key values are queried, so that the database can seek to them with an index instead of
+     * fetching and discarding all previous rows.  {@link #start} and {@link #end} are ignored in keyset mode, and
+     * {@link #keyStart} and {@link #keyEnd} can be used to restrict the range of rows instead.
+     * <p/>
+     * The query specified with {@link #sql} should select this column, and should not contain ORDER BY clause.
+     */
+    @Inject
+    @BatchProperty
+    protected String keyColumn;
+
+    /**
+     * The key value of the first row to read (inclusive) in keyset mode.  Optional property, and defaults to the
+     * first row.  A value that can be parsed as a number is compared as a number, e.g., the {@code keyStart}
+     * partition plan property of {@link RangePartitionMapper}.
+     */
+    @Inject
+    @BatchProperty
+    protected String keyStart;
+
+    /**
+     * The key value of the last row to read (inclusive) in keyset mode.  Optional property, and defaults to the last
+     * row.  A value that can be parsed as a number is compared as a number, e.g., the {@code keyEnd} partition plan
+     * property of {@link RangePartitionMapper}.
+     */
+    @Inject
+    @BatchProperty
+    protected String keyEnd;
+
     /**
      * String keys used in target data structure for database columns. Optional property, and if not specified, it
      * defaults to {@link #columnLabels} . This property should have the same length and order as {@link #columnTypes},
@@ -140,13 +197,50 @@ public class JdbcItemReader extends JdbcItemReaderWriterBase implements ItemRead
 
     protected int currentRowNumber;
 
+    /**
+     * In keyset mode, the position of {@link #keyColumn} in the {@code ResultSet}, and the key value of the last row
+     * read.
+     */
+    private int keyIndex;
+    private Serializable lastKey;
+
+    /**
+     * Extractors for each column, specialized by {@link #columnTypes}.
+     */
+    private ColumnExtractor[] extractors;
+
+    /**
+     * The initial capacity of the {@code java.util.HashMap} for each row, so that it is never resized.
+     */
+    private int mapCapacity;
+
+    /**
+     * The no-arg constructor of {@link #beanType}, and the setter methods or fields to set each column value with,
+     * or null if rows should be converted to beans with Jackson.  {@link #mutatorTypes} holds the declared type of
+     * each setter parameter or field, and {@link #mutatorClasses} the class of values that can be set without
+     * conversion, i.e., the declared class with primitives boxed.
+     */
+    private Constructor<?> beanConstructor;
+    Member[] mutators;
+    private JavaType[] mutatorTypes;
+    private Class<?>[] mutatorClasses;
+
     @Override
     public void open(final Serializable checkpoint) throws Exception {
         init();
         connection = getConnection();
 
+        final List<Object> keyParameters = new ArrayList<Object>();
+        final String query;
+        if (keyColumn == null) {
+            query = sql;
+        } else {
+            lastKey = checkpoint;
+            query = getKeysetSql(keyParameters);
+        }
+
         if (resultSetProperties == null) {
-            preparedStatement = connection.prepareStatement(sql,
+            preparedStatement = connection.prepareStatement(query,
                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, ResultSet.HOLD_CURSORS_OVER_COMMIT);
         } else {
             int rsType = ResultSet.TYPE_FORWARD_ONLY;
@@ -200,27 +294,44 @@ public class JdbcItemReader extends JdbcItemReaderWriterBase implements ItemRead
                     throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, v, k);
                 }
             }
-            preparedStatement = connection.prepareStatement(sql, rsType, rsConcur, rsHold);
+            preparedStatement = connection.prepareStatement(query, rsType, rsConcur, rsHold);
             preparedStatement.setFetchDirection(fetchDirection);
             preparedStatement.setFetchSize(fetchSize);
         }
 
+        for (int i = 0; i < keyParameters.size(); ++i) {
+            preparedStatement.setObject(i + 1, keyParameters.get(i));
+        }
         resultSet = preparedStatement.executeQuery();
 
         if (columnMapping == null) {
             final ResultSetMetaData metaData = resultSet.getMetaData();
             final int columnCount = metaData.getColumnCount();
-
-            if (columnTypes != null && columnTypes.length != columnCount) {
-                throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, Arrays.toString(columnTypes), "columnTypes");
-            }
-
             columnLabels = new String[columnCount];
             for (int i = 0; i < columnCount; ++i) {
                 columnLabels[i] = metaData.getColumnLabel(i + 1);
             }
             columnMapping = columnLabels;
         }
+        if (columnTypes != null && columnTypes.length != columnMapping.length) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, Arrays.toString(columnTypes), "columnTypes");
+        }
+
+        extractors = new ColumnExtractor[columnMapping.length];
+        for (int i = 0; i < extractors.length; ++i) {
+            extractors[i] = columnTypes == null ? ColumnExtractor.OBJECT : ColumnExtractor.forType(columnTypes[i]);
+        }
+        mapCapacity = (int) (columnMapping.length / 0.75f) + 1;
+        if (beanType != List.class && beanType != Map.class) {
+            resolveMutators();
+        }
+
+        if (keyColumn != null) {
+            keyIndex = resultSet.findColumn(keyColumn);
+            currentRowNumber = 0;
+            end = Integer.MAX_VALUE;
+            return;
+        }
 
         if (start == 0) {
             start = 1;
@@ -263,27 +374,9 @@ public class JdbcItemReader extends JdbcItemReaderWriterBase implements ItemRead
         }
         Object result = null;
         if (resultSet.next()) {
-            if (beanType == List.class) {
-                final List<Object> resultList = new ArrayList<Object>();
-                for (int i = 0; i < columnMapping.length; ++i) {
-                    resultList.add(getColumnValue(i));
-                }
-                result = resultList;
-            } else {
-                final Map<String, Object> resultMap = new HashMap<String, Object>();
-                for (int i = 0; i < columnMapping.length; ++i) {
-                    resultMap.put(columnMapping[i], getColumnValue(i));
-                }
-
-                if (beanType == Map.class) {
-                    result = resultMap;
-                } else {
-                    final Object readValue = objectMapper.convertValue(resultMap, beanType);
-                    if (!skipBeanValidation) {
-                        ItemReaderWriterBase.validate(readValue);
-                    }
-                    result = readValue;
-                }
+            result = mapRow();
+            if (keyIndex > 0) {
+                lastKey = (Serializable) resultSet.getObject(keyIndex);
             }
         }
         currentRowNumber = resultSet.getRow();
@@ -291,79 +384,201 @@ public class JdbcItemReader extends JdbcItemReaderWriterBase implements ItemRead
     }
 
     /**
-     * Gets the current row number in the {@code ResultSet} as the checkpoint info.
+     * Reads up to {@code maxItems} rows from the current {@code ResultSet} position, and maps each row in the same
+     * way as {@link #readItem()}.  In keyset mode, the key value is recorded after each row is mapped, so that it is
+     * that of the last row read even if the {@code ResultSet} runs out partway through the batch.  The row number is
+     * only retrieved once after the last row read.
+     *
+     * @param maxItems the max number of rows to read
+     * @param items the list to add the rows to
+     * @return the number of rows read
+     * @throws Exception any exception raised
+     */
+    @Override
+    public int readItems(final int maxItems, final List<Object> items) throws Exception {
+        if (currentRowNumber >= end) {
+            return 0;
+        }
+        final int limit = Math.min(maxItems, end - currentRowNumber);
+        int count = 0;
+        while (count < limit && resultSet.next()) {
+            items.add(mapRow());
+            if (keyIndex > 0) {
+                lastKey = (Serializable) resultSet.getObject(keyIndex);
+            }
+            count++;
+        }
+        currentRowNumber = resultSet.getRow();
+        return count;
+    }
+
+    /**
+     * Maps the current row of the {@code ResultSet} to an item of {@link #beanType}.
+     *
+     * @return the item for the current row
+     * @throws Exception any exception raised
+     */
+    private Object mapRow() throws Exception {
+        if (beanType == List.class) {
+            final List<Object> resultList = new ArrayList<Object>(extractors.length);
+            for (int i = 0; i < extractors.length; ++i) {
+                resultList.add(extractors[i].extract(resultSet, i + 1));
+            }
+            return resultList;
+        }
+        if (beanType == Map.class) {
+            return readMap();
+        }
+        final Object readValue;
+        if (mutators != null) {
+            readValue = beanConstructor.newInstance();
+            for (int i = 0; i < extractors.length; ++i) {
+                setProperty(readValue, i, extractors[i].extract(resultSet, i + 1));
+            }
+        } else {
+            readValue = objectMapper.convertValue(readMap(), beanType);
+        }
+        if (!skipBeanValidation) {
+            ItemReaderWriterBase.validate(readValue);
+        }
+        return readValue;
+    }
+
+    /**
+     * Gets the current row number in the {@code ResultSet} as the checkpoint info, or in keyset mode, the key value of
+     * the last row read.
      *
-     * @return the current row number in the {@code ResultSet}
+     * @return the current row number in the {@code ResultSet}, or the key value of the last row read
      * @throws Exception any exception raised
      */
     @Override
     public Serializable checkpointInfo() throws Exception {
-        return currentRowNumber;
+        return keyColumn == null ? currentRowNumber : lastKey;
     }
 
-    private Object getColumnValue(final int i) throws Exception {
-        Object val = null;
-        final int pos = i + 1;
-        if (columnTypes == null) {
-            val = resultSet.getObject(pos);
+    /**
+     * Gets the query in keyset mode, which restricts the query specified with {@link #sql} to the key range of rows
+     * to read, and orders it by {@link #keyColumn}.
+     *
+     * @param parameters the list to add the key values to bind to the query to
+     * @return the query in keyset mode
+     */
+    private String getKeysetSql(final List<Object> parameters) {
+        final StringBuilder sb = new StringBuilder("SELECT * FROM (").append(sql).append(") ").append(DERIVED_TABLE_ALIAS);
+        String conjunction = " WHERE ";
+        if (lastKey != null) {
+            sb.append(conjunction).append(keyColumn).append(" > ?");
+            parameters.add(lastKey);
+            conjunction = " AND ";
+        } else if (keyStart != null) {
+            sb.append(conjunction).append(keyColumn).append(" >= ?");
+            parameters.add(parseKey(keyStart));
+            conjunction = " AND ";
+        }
+        if (keyEnd != null) {
+            sb.append(conjunction).append(keyColumn).append(" <= ?");
+            parameters.add(parseKey(keyEnd));
+        }
+        return sb.append(" ORDER BY ").append(keyColumn).toString();
+    }
+
+    private static Object parseKey(final String key) {
+        try {
+            return Long.valueOf(key);
+        } catch (final NumberFormatException e) {
+            try {
+                return new BigDecimal(key);
+            } catch (final NumberFormatException e2) {
+                return key;
+            }
+        }
+    }
+
+    private Map<String, Object> readMap() throws Exception {
+        final Map<String, Object> resultMap = new HashMap<String, Object>(mapCapacity);
+        for (int i = 0; i < extractors.length; ++i) {
+            resultMap.put(columnMapping[i], extractors[i].extract(resultSet, i + 1));
+        }
+        return resultMap;
+    }
+
+    private void setProperty(final Object bean, final int i, Object val) throws Exception {
+        if (val == null) {
+            final Class<?> declaredClass = mutatorTypes[i].getRawClass();
+            if (declaredClass.isPrimitive()) {
+                val = ClassUtil.defaultValue(declaredClass);
+            }
+        } else if (!mutatorClasses[i].isInstance(val)) {
+            val = objectMapper.convertValue(val, mutatorTypes[i]);
+        }
+        final Member mutator = mutators[i];
+        if (mutator instanceof Method) {
+            ((Method) mutator).invoke(bean, val);
         } else {
-            final String type = columnTypes[i];
-            if (type.equals("String")) {
-                val = resultSet.getString(pos);
-            } else if (type.equals("Date")) {
-                val = resultSet.getDate(pos);
-            } else if (type.equals("Timestamp")) {
-                val = resultSet.getTimestamp(pos);
-            } else if (type.equals("Time")) {
-                val = resultSet.getTime(pos);
-            } else if (type.equals("Object") || type.equals("null")) {
-                val = resultSet.getObject(pos);
-            } else if (type.equals("NString")) {
-                val = resultSet.getNString(pos);
-            } else if (type.equals("Boolean")) {
-                val = resultSet.getBoolean(pos);
-            } else if (type.equals("Int")) {
-                val = resultSet.getInt(pos);
-            } else if (type.equals("Long")) {
-                val = resultSet.getLong(pos);
-            } else if (type.equals("Double")) {
-                val = resultSet.getDouble(pos);
-            } else if (type.equals("Float")) {
-                val = resultSet.getFloat(pos);
-            } else if (type.equals("Short")) {
-                val = resultSet.getShort(pos);
-            } else if (type.equals("Byte")) {
-                val = resultSet.getByte(pos);
-            } else if (type.equals("Blob")) {
-                val = resultSet.getBlob(pos);
-            } else if (type.equals("Clob")) {
-                val = resultSet.getClob(pos);
-            } else if (type.equals("NClob")) {
-                val = resultSet.getNClob(pos);
-            } else if (type.equals("BigDecimal")) {
-                val = resultSet.getBigDecimal(pos);
-            } else if (type.equals("URL")) {
-                val = resultSet.getURL(pos);
-            } else if (type.equals("Bytes")) {
-                val = resultSet.getBytes(pos);
-            } else if (type.equals("BinaryStream")) {
-                val = resultSet.getBinaryStream(pos);
-            } else if (type.equals("CharacterStream")) {
-                val = resultSet.getCharacterStream(pos);
-            } else if (type.equals("NCharacterStream")) {
-                val = resultSet.getNCharacterStream(pos);
-            } else if (type.equals("AsciiStream")) {
-                val = resultSet.getAsciiStream(pos);
-            } else if (type.equals("Ref")) {
-                val = resultSet.getRef(pos);
-            } else if (type.equals("RowId")) {
-                val = resultSet.getRowId(pos);
-            } else if (type.equals("SQLXML")) {
-                val = resultSet.getSQLXML(pos);
-            } else if (type.equals("Array")) {
-                val = resultSet.getArray(pos);
+            ((Field) mutator).set(bean, val);
+        }
+    }
+
+    /**
+     * Resolves the no-arg constructor of {@link #beanType}, and the setter method or field of each column in
+     * {@link #columnMapping}, with the same property names as used by Jackson when converting {@code java.util.Map}
+     * to the bean.  If any column cannot be set directly, e.g., because of custom deserializers, creator methods or
+     * unknown properties, {@link #mutators} is left null and rows will be converted with Jackson.
+     */
+    private void resolveMutators() {
+        mutators = null;
+        if (customDeserializers != null || Modifier.isAbstract(beanType.getModifiers()) ||
+                objectMapper.isEnabled(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES)) {
+            return;
+        }
+        final BeanDescription beanDescription =
+                objectMapper.getDeserializationConfig().introspect(objectMapper.constructType(beanType));
+        final AnnotatedConstructor constructor = beanDescription.findDefaultConstructor();
+        if (constructor == null || beanDescription.findAnySetter() != null ||
+                beanDescription.getClassAnnotations().get(JsonDeserialize.class) != null ||
+                beanDescription.getClassAnnotations().get(JsonTypeInfo.class) != null) {
+            return;
+        }
+        for (final AnnotatedConstructor c : beanDescription.getConstructors()) {
+            if (c.getAnnotation(JsonCreator.class) != null) {
+                return;
+            }
+        }
+        for (final AnnotatedMethod m : beanDescription.getFactoryMethods()) {
+            if (m.getAnnotation(JsonCreator.class) != null) {
+                return;
+            }
+        }
+
+        final Map<String, AnnotatedMember> members = new HashMap<String, AnnotatedMember>();
+        for (final BeanPropertyDefinition property : beanDescription.findProperties()) {
+            members.put(property.getName(), property.getMutator());
+        }
+        final Member[] resolved = new Member[columnMapping.length];
+        final JavaType[] types = new JavaType[columnMapping.length];
+        final Class<?>[] classes = new Class<?>[columnMapping.length];
+        for (int i = 0; i < columnMapping.length; ++i) {
+            final AnnotatedMember member = members.get(columnMapping[i]);
+            final Type declaredType;
+            if (member instanceof AnnotatedMethod && ((AnnotatedMethod) member).getParameterCount() == 1) {
+                declaredType = ((AnnotatedMethod) member).getGenericParameterType(0);
+            } else if (member instanceof AnnotatedField) {
+                declaredType = ((AnnotatedField) member).getGenericType();
+            } else {
+                return;
+            }
+            if (member.getAnnotation(JsonDeserialize.class) != null || member.getAnnotation(JsonFormat.class) != null) {
+                return;
             }
+            member.fixAccess();
+            resolved[i] = member.getMember();
+            types[i] = objectMapper.constructType(declaredType);
+            classes[i] = types[i].isPrimitive() ? ClassUtil.wrapperType(types[i].getRawClass()) : types[i].getRawClass();
         }
-        return val;
+        constructor.fixAccess();
+        beanConstructor = constructor.getAnnotated();
+        mutatorTypes = types;
+        mutatorClasses = classes;
+        mutators = resolved;
     }
 }
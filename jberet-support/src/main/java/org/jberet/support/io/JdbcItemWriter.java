@@ -12,23 +12,16 @@
 
 package org.jberet.support.io;
 
-import java.io.InputStream;
-import java.io.Reader;
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
-import java.net.URI;
-import java.net.URL;
-import java.sql.Array;
-import java.sql.Blob;
-import java.sql.Clob;
+import java.math.BigInteger;
 import java.sql.Connection;
-import java.sql.NClob;
-import java.sql.Ref;
-import java.sql.RowId;
-import java.sql.SQLXML;
-import java.sql.Time;
-import java.sql.Timestamp;
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.batch.api.BatchProperty;
@@ -37,10 +30,21 @@ import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 import org.jberet.support._private.SupportMessages;
 
 /**
  * An implementation of {@code javax.batch.api.chunk.ItemWriter} that inserts data items into the target database.
+ * <p/>
+ * When the database connection is configured with {@link #url}, the connection and {@code PreparedStatement} are
+ * obtained in {@link #open(Serializable)} and reused for all chunks until {@link #close()}.  If writing a chunk fails,
+ * they are closed and obtained again for the next chunk.  When it is configured with {@link #dataSourceLookup}, they
+ * are obtained and closed for each chunk, so that the connection is enlisted in each chunk transaction if the
+ * {@code DataSource} is transactional.
  *
  * @see JdbcItemReader
  * @since 1.1.0
@@ -91,19 +95,105 @@ public class JdbcItemWriter extends JdbcItemReaderWriterBase implements ItemWrit
     @BatchProperty
     protected String[] parameterTypes;
 
+    /**
+     * The max number of data items to send to the database in one {@link java.sql.PreparedStatement#executeBatch()}
+     * call. Optional property, and defaults to 0 (all data items of a chunk are sent in one batch).
+     */
+    @Inject
+    @BatchProperty
+    protected int batchSize;
+
+    /**
+     * The number of data items to insert with one multi-row INSERT statement, e.g.,
+     * <p/>
+     * INSERT INTO PERSON(NAME, ADDRESS, AGE) VALUES(?, ?, ?), (?, ?, ?), (?, ?, ?)
+     * <p/>
+     * which is rewritten from {@link #sql}. Optional property, and defaults to 1 (no rewriting). This property should
+     * only be set if {@link #sql} is a single-row INSERT statement ending with its VALUES clause, and the target
+     * database supports multi-row VALUES, which is more efficient than a batch of single-row statements with some
+     * drivers.
+     */
+    @Inject
+    @BatchProperty
+    protected int rowsPerStatement;
+
+    protected Connection connection;
+
+    /**
+     * The SQL statement for {@link #preparedStatement}, rewritten from {@link #sql} for {@link #rowsPerStatement}.
+     */
+    private String statementSql;
+
+    /**
+     * The statement for the remaining data items of a chunk, when its size is not a multiple of
+     * {@link #rowsPerStatement}, its SQL, and the number of data items it inserts.
+     */
+    private PreparedStatement remainderStatement;
+    private String remainderSql;
+    private int remainderRows;
+
+    /**
+     * Binders for each statement parameter, specialized by {@link #parameterTypes}.
+     */
+    private ParameterBinder[] binders;
+
+    /**
+     * The parameter values of the data item being mapped, reused for all data items.
+     */
+    private Object[] parameterValues;
+
+    /**
+     * The getter methods or fields to read each statement parameter from beans of {@link #accessorsClass}, or null if
+     * the beans should be converted to {@code java.util.Map} with Jackson.
+     */
+    private Member[] accessors;
+    private Class<?> accessorsClass;
+
     @Override
     public void writeItems(final List<Object> items) throws Exception {
-        Connection connection = null;
+        if (connection == null) {
+            openStatement();
+        }
         try {
-            connection = getConnection();
-            preparedStatement = connection.prepareStatement(sql);
-            for (final Object item : items) {
-                mapParameters(item);
+            final int rows = rowsPerStatement > 1 ? rowsPerStatement : 1;
+            final int size = items.size();
+            int pendingItems = 0;
+            int i = 0;
+            for (; size - i >= rows; i += rows) {
+                for (int row = 0; row < rows; row++) {
+                    mapParameters(preparedStatement, items.get(i + row), row * parameterNames.length);
+                }
                 preparedStatement.addBatch();
+                pendingItems += rows;
+                if (batchSize > 0 && pendingItems >= batchSize) {
+                    preparedStatement.executeBatch();
+                    pendingItems = 0;
+                }
+            }
+            if (pendingItems > 0) {
+                preparedStatement.executeBatch();
             }
-            preparedStatement.executeBatch();
-        } finally {
-            JdbcItemReaderWriterBase.close(connection, preparedStatement);
+            if (i < size) {
+                if (remainderRows != size - i) {
+                    JdbcItemReaderWriterBase.close(null, remainderStatement);
+                    remainderStatement = null;
+                    remainderSql = getMultiRowSql(size - i);
+                    remainderRows = size - i;
+                }
+                if (remainderStatement == null) {
+                    remainderStatement = connection.prepareStatement(remainderSql);
+                }
+                for (int row = 0; i < size; i++, row++) {
+                    mapParameters(remainderStatement, items.get(i), row * parameterNames.length);
+                }
+                remainderStatement.executeUpdate();
+            }
+        } catch (final Exception e) {
+            closeStatement();
+            throw e;
+        }
+        if (dataSource != null) {
+            closeStatement();
         }
     }
 
@@ -112,34 +202,26 @@ public class JdbcItemWriter extends JdbcItemReaderWriterBase implements ItemWrit
         init();
 
         if (parameterNames == null) {
-            final String sqlLowerCase = sql.toLowerCase();
-            final int insertPos = sqlLowerCase.indexOf("insert");
-            int leftParenthesisPos = sqlLowerCase.indexOf('(', insertPos + 7);
-            int rightParenthesisPos = sqlLowerCase.indexOf(')', leftParenthesisPos + 1);
-            final String[] columns = sql.substring(leftParenthesisPos + 1, rightParenthesisPos).split(",");
-            final int valuesPos = sqlLowerCase.indexOf("values", rightParenthesisPos + 1);
-            leftParenthesisPos = sqlLowerCase.indexOf('(', valuesPos + 1);
-            rightParenthesisPos = sqlLowerCase.lastIndexOf(')');
-
-            if (rightParenthesisPos <= leftParenthesisPos) {
-                throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, sql, "sql");
-            }
-
-            final String[] values = sql.substring(leftParenthesisPos + 1, rightParenthesisPos).split(",");
-            final List<String> parameterNamesList = new ArrayList<String>();
-            for (int i = 0; i < values.length; ++i) {
-                final String v = values[i].trim();
-                if (v.equals("?")) {
-                    parameterNamesList.add(columns[i].trim());
-                }
-            }
-            parameterNames = parameterNamesList.toArray(new String[parameterNamesList.size()]);
+            parameterNames = getParameterColumns();
+        }
+        parameterValues = new Object[parameterNames.length];
+        binders = new ParameterBinder[parameterNames.length];
+        for (int i = 0; i < binders.length; ++i) {
+            binders[i] = parameterTypes == null ? ParameterBinder.OBJECT : ParameterBinder.forType(parameterTypes[i]);
+        }
+        accessorsClass = null;
+        accessors = null;
+        statementSql = rowsPerStatement > 1 ? getMultiRowSql(rowsPerStatement) : sql;
+        remainderSql = null;
+        remainderRows = 0;
+        if (dataSource == null) {
+            openStatement();
         }
     }
 
     @Override
     public void close() throws Exception {
-
+        closeStatement();
     }
 
     @Override
@@ -147,212 +229,189 @@ public class JdbcItemWriter extends JdbcItemReaderWriterBase implements ItemWrit
         return null;
     }
 
-    private void mapParameters(final Object item) throws Exception {
+    /**
+     * Gets the columns of the SQL insert statement {@link #sql} whose values are parameter markers.
+     *
+     * @return the columns for the statement parameters, in the same order
+     */
+    protected String[] getParameterColumns() {
+        final String sqlLowerCase = sql.toLowerCase();
+        final int insertPos = sqlLowerCase.indexOf("insert");
+        int leftParenthesisPos = sqlLowerCase.indexOf('(', insertPos + 7);
+        int rightParenthesisPos = sqlLowerCase.indexOf(')', leftParenthesisPos + 1);
+        final String[] columns = sql.substring(leftParenthesisPos + 1, rightParenthesisPos).split(",");
+        final int valuesPos = sqlLowerCase.indexOf("values", rightParenthesisPos + 1);
+        leftParenthesisPos = sqlLowerCase.indexOf('(', valuesPos + 1);
+        rightParenthesisPos = sqlLowerCase.lastIndexOf(')');
+
+        if (rightParenthesisPos <= leftParenthesisPos) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, sql, "sql");
+        }
+
+        final String[] values = sql.substring(leftParenthesisPos + 1, rightParenthesisPos).split(",");
+        final List<String> parameterColumns = new ArrayList<String>();
+        for (int i = 0; i < values.length; ++i) {
+            final String v = values[i].trim();
+            if (v.equals("?")) {
+                parameterColumns.add(columns[i].trim());
+            }
+        }
+        return parameterColumns.toArray(new String[parameterColumns.size()]);
+    }
+
+    /**
+     * Obtains the database connection and prepares the statement(s) to write data items with.
+     *
+     * @throws Exception
+     */
+    protected void openStatement() throws Exception {
+        connection = getConnection();
+        try {
+            preparedStatement = connection.prepareStatement(statementSql);
+        } catch (final Exception e) {
+            closeStatement();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the statement(s) and the database connection, if any.  The SQL of the statements is kept to prepare them
+     * again with the next connection.
+     */
+    protected void closeStatement() {
+        if (remainderStatement != null) {
+            JdbcItemReaderWriterBase.close(null, remainderStatement);
+            remainderStatement = null;
+        }
+        JdbcItemReaderWriterBase.close(connection, preparedStatement);
+        preparedStatement = null;
+        connection = null;
+    }
+
+    /**
+     * Rewrites {@link #sql} to insert multiple rows in one statement.
+     *
+     * @param rows number of rows to insert
+     * @return the multi-row INSERT statement
+     */
+    private String getMultiRowSql(final int rows) {
+        if (rows == 1) {
+            return sql;
+        }
+        final String sqlLowerCase = sql.toLowerCase();
+        final int valuesPos = sqlLowerCase.lastIndexOf("values");
+        final int leftParenthesisPos = sqlLowerCase.indexOf('(', valuesPos + 6);
+        final int rightParenthesisPos = sqlLowerCase.lastIndexOf(')');
+        if (!sqlLowerCase.trim().startsWith("insert") || valuesPos < 0 || rightParenthesisPos <= leftParenthesisPos ||
+                sql.substring(rightParenthesisPos + 1).trim().length() > 0) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, sql, "sql");
+        }
+        final String valuesRow = sql.substring(leftParenthesisPos, rightParenthesisPos + 1);
+        final StringBuilder sb = new StringBuilder(sql.length() + (valuesRow.length() + 2) * (rows - 1));
+        sb.append(sql, 0, rightParenthesisPos + 1);
+        for (int i = 1; i < rows; i++) {
+            sb.append(", ").append(valuesRow);
+        }
+        return sb.toString();
+    }
+
+    private void mapParameters(final PreparedStatement preparedStatement, final Object item, final int offset)
+            throws Exception {
+        getParameterValues(item, parameterValues);
+        for (int i = 0; i < binders.length; ++i) {
+            binders[i].bind(preparedStatement, offset + i + 1, parameterValues[i]);
+        }
+    }
+
+    /**
+     * Gets the value of each statement parameter from a data item, in the order of {@link #parameterNames}.
+     *
+     * @param item   the data item
+     * @param values the array to store the parameter values in, whose length is the number of parameters
+     * @throws Exception
+     */
+    protected void getParameterValues(final Object item, final Object[] values) throws Exception {
         if (item instanceof List) {
             final List itemAsList = (List) item;
             //the item is a list and should contain data of proper types, e.g., String, Integer, Date, etc,
             //and in the same order as SQL insert statement parameters.
-            for (int i = 0; i < parameterNames.length; ++i) {
-                setParameter(i, itemAsList.get(i));
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = itemAsList.get(i);
+            }
+        } else if (item instanceof Map) {
+            final Map itemAsMap = (Map) item;
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = itemAsMap.get(parameterNames[i]);
             }
         } else {
-            final Map itemAsMap;
-            if (item instanceof Map) {
-                itemAsMap = (Map) item;
-            } else {
-                itemAsMap = objectMapper.convertValue(item, Map.class);
+            if (item.getClass() != accessorsClass) {
+                resolveAccessors(item.getClass());
             }
-            for (int i = 0; i < parameterNames.length; ++i) {
-                setParameter(i, itemAsMap.get(parameterNames[i]));
+            if (accessors != null) {
+                for (int i = 0; i < values.length; ++i) {
+                    final Member accessor = accessors[i];
+                    values[i] = accessor instanceof Method ? ((Method) accessor).invoke(item) :
+                            ((Field) accessor).get(item);
+                }
+            } else {
+                final Map itemAsMap = objectMapper.convertValue(item, Map.class);
+                for (int i = 0; i < values.length; ++i) {
+                    values[i] = itemAsMap.get(parameterNames[i]);
+                }
             }
         }
     }
 
-    private void setParameter(final int i, final Object val) throws Exception {
-        final int pos = i + 1;
-        if (parameterTypes == null) {
-            preparedStatement.setObject(i + 1, val);
+    /**
+     * Resolves the getter method or field of each parameter name in a bean class, with the same property names as
+     * used by Jackson when converting the bean to {@code java.util.Map}.  If any parameter cannot be read directly,
+     * e.g., because of custom serializers, or because its type is not one that JDBC drivers accept as is, such as an
+     * enum or a nested bean, {@link #accessors} is set to null and beans of this class will be converted with Jackson.
+     *
+     * @param beanClass the bean class
+     */
+    private void resolveAccessors(final Class<?> beanClass) {
+        accessorsClass = beanClass;
+        accessors = null;
+        if (customSerializers != null) {
             return;
         }
-        final String type = parameterTypes[i];
-        if (type.equals("String")) {
-            preparedStatement.setString(pos, val == null ? null : val.toString());
-        } else if (type.equals("Date")) {
-            if (val == null) {
-                preparedStatement.setDate(pos, null);
-            } else {
-                final java.sql.Date sqlDate;
-                if (val instanceof java.sql.Date) {
-                    sqlDate = (java.sql.Date) val;
-                } else if (val instanceof java.util.Date) {
-                    sqlDate = new java.sql.Date(((java.util.Date) val).getTime());
-                } else if (val instanceof Long) {
-                    sqlDate = new java.sql.Date((Long) val);
-                } else {
-                    sqlDate = new java.sql.Date(Long.parseLong(val.toString()));
-                }
-                preparedStatement.setDate(pos, sqlDate);
-            }
-        } else if (type.equals("Timestamp")) {
-            if (val == null) {
-                preparedStatement.setTimestamp(pos, null);
-            } else {
-                final Timestamp sqlTimestamp;
-                if (val instanceof Timestamp) {
-                    sqlTimestamp = (Timestamp) val;
-                } else if (val instanceof java.util.Date) {
-                    sqlTimestamp = new Timestamp(((java.util.Date) val).getTime());
-                } else if (val instanceof Long) {
-                    sqlTimestamp = new Timestamp((Long) val);
-                } else {
-                    sqlTimestamp = new Timestamp(Long.parseLong(val.toString()));
-                }
-                preparedStatement.setTimestamp(pos, sqlTimestamp);
-            }
-        } else if (type.equals("Time")) {
-            if (val == null) {
-                preparedStatement.setTime(pos, null);
-            } else {
-                final Time sqlTime;
-                if (val instanceof Time) {
-                    sqlTime = (Time) val;
-                } else if (val instanceof java.util.Date) {
-                    sqlTime = new Time(((java.util.Date) val).getTime());
-                } else if (val instanceof Long) {
-                    sqlTime = new Time((Long) val);
-                } else {
-                    sqlTime = new Time(Long.parseLong(val.toString()));
-                }
-                preparedStatement.setTime(pos, sqlTime);
-            }
-        } else if (type.equals("Object") || type.equals("null")) {
-            preparedStatement.setObject(pos, val);
-        } else if (type.equals("NString")) {
-            preparedStatement.setNString(pos, val == null ? null : val.toString());
-        } else if (type.equals("Boolean")) {
-            preparedStatement.setBoolean(pos, (val instanceof Boolean ? (Boolean) val :
-                    val != null && Boolean.parseBoolean(val.toString())));
-        } else if (type.equals("Int")) {
-            preparedStatement.setInt(pos, (val instanceof Integer ? (Integer) val :
-                    val == null ? 0 : Integer.parseInt(val.toString())));
-        } else if (type.equals("Long")) {
-            preparedStatement.setLong(pos, (val instanceof Long ? (Long) val :
-                    val == null ? 0 : Long.parseLong(val.toString())));
-        } else if (type.equals("Double")) {
-            preparedStatement.setDouble(pos, (val instanceof Double ? (Double) val :
-                    val == null ? 0 : Double.parseDouble(val.toString())));
-        } else if (type.equals("Float")) {
-            preparedStatement.setFloat(pos, (val instanceof Float ? (Float) val :
-                    val == null ? 0 : Float.parseFloat(val.toString())));
-        } else if (type.equals("Short")) {
-            preparedStatement.setShort(pos, (val instanceof Short ? (Short) val :
-                    val == null ? 0 : Short.parseShort(val.toString())));
-        } else if (type.equals("Byte")) {
-            preparedStatement.setByte(pos, (val instanceof Byte ? (Byte) val :
-                    val == null ? 0 : Byte.parseByte(val.toString())));
-        } else if (type.equals("Blob")) {
-            if (val == null) {
-                preparedStatement.setBlob(pos, (Blob) null);
-            } else if (val instanceof Blob) {
-                preparedStatement.setBlob(pos, (Blob) val);
-            } else if (val instanceof InputStream) {
-                preparedStatement.setBlob(pos, (InputStream) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("Blob | InputStream", val.getClass().getName(), val);
-            }
-        } else if (type.equals("Clob")) {
-            if (val == null) {
-                preparedStatement.setClob(pos, (Clob) null);
-            } else if (val instanceof Clob) {
-                preparedStatement.setClob(pos, (Clob) val);
-            } else if (val instanceof Reader) {
-                preparedStatement.setClob(pos, (Reader) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("Clob | Reader", val.getClass().getName(), val);
-            }
-        } else if (type.equals("NClob")) {
-            if (val == null) {
-                preparedStatement.setNClob(pos, (NClob) null);
-            } else if (val instanceof NClob) {
-                preparedStatement.setNClob(pos, (NClob) val);
-            } else if (val instanceof Reader) {
-                preparedStatement.setNClob(pos, (Reader) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("NClob | Reader", val.getClass().getName(), val);
-            }
-        } else if (type.equals("BigDecimal")) {
-            preparedStatement.setBigDecimal(pos, (val instanceof BigDecimal ? (BigDecimal) val :
-                    val == null ? null : new BigDecimal(val.toString())));
-        } else if (type.equals("URL")) {
-            preparedStatement.setURL(pos, (val instanceof URL ? (URL) val :
-                    val == null ? null : (new URI(val.toString())).toURL()));
-        } else if (type.equals("Bytes")) {
-            preparedStatement.setBytes(pos, (val instanceof byte[] ? (byte[]) val :
-                    val == null ? null : val.toString().getBytes()));
-        } else if (type.equals("BinaryStream")) {
-            if (val == null) {
-                preparedStatement.setBinaryStream(pos, null);
-            } else if (val instanceof InputStream) {
-                preparedStatement.setBinaryStream(pos, (InputStream) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("InputStream", val.getClass().getName(), val);
-            }
-        } else if (type.equals("CharacterStream")) {
-            if (val == null) {
-                preparedStatement.setCharacterStream(pos, null);
-            } else if (val instanceof Reader) {
-                preparedStatement.setCharacterStream(pos, (Reader) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("Reader", val.getClass().getName(), val);
-            }
-        } else if (type.equals("NCharacterStream")) {
-            if (val == null) {
-                preparedStatement.setNCharacterStream(pos, null);
-            } else if (val instanceof Reader) {
-                preparedStatement.setNCharacterStream(pos, (Reader) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("Reader", val.getClass().getName(), val);
-            }
-        } else if (type.equals("AsciiStream")) {
-            if (val == null) {
-                preparedStatement.setAsciiStream(pos, null);
-            } else if (val instanceof InputStream) {
-                preparedStatement.setAsciiStream(pos, (InputStream) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("InputStream", val.getClass().getName(), val);
-            }
-        } else if (type.equals("Ref")) {
-            if (val == null) {
-                preparedStatement.setRef(pos, null);
-            } else if (val instanceof Ref) {
-                preparedStatement.setRef(pos, (Ref) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("java.sql.Ref", val.getClass().getName(), val);
-            }
-        } else if (type.equals("RowId")) {
-            if (val == null) {
-                preparedStatement.setRowId(pos, null);
-            } else if (val instanceof RowId) {
-                preparedStatement.setRowId(pos, (RowId) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("java.sql.RowId", val.getClass().getName(), val);
-            }
-        } else if (type.equals("SQLXML")) {
-            if (val == null) {
-                preparedStatement.setSQLXML(pos, null);
-            } else if (val instanceof SQLXML) {
-                preparedStatement.setSQLXML(pos, (SQLXML) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("java.sql.SQLXML", val.getClass().getName(), val);
-            }
-        } else if (type.equals("Array")) {
-            if (val == null) {
-                preparedStatement.setArray(pos, null);
-            } else if (val instanceof Array) {
-                preparedStatement.setArray(pos, (Array) val);
-            } else {
-                throw SupportMessages.MESSAGES.unexpectedDataType("java.sql.Array", val.getClass().getName(), val);
+        final BeanDescription beanDescription =
+                objectMapper.getSerializationConfig().introspect(objectMapper.constructType(beanClass));
+        if (beanDescription.findJsonValueMethod() != null) {
+            return;
+        }
+        final Map<String, AnnotatedMember> members = new HashMap<String, AnnotatedMember>();
+        for (final BeanPropertyDefinition property : beanDescription.findProperties()) {
+            members.put(property.getName(), property.getAccessor());
+        }
+        final Member[] resolved = new Member[parameterNames.length];
+        for (int i = 0; i < parameterNames.length; ++i) {
+            final AnnotatedMember member = members.get(parameterNames[i]);
+            if (member == null || !isScalarType(member.getRawType()) ||
+                    member.getAnnotation(JsonSerialize.class) != null || member.getAnnotation(JsonFormat.class) != null) {
+                return;
             }
+            member.fixAccess();
+            resolved[i] = member.getMember();
+        }
+        accessors = resolved;
+    }
+
+    /**
+     * Checks if values of a property type can be passed to {@link ParameterBinder#OBJECT} as read from the bean,
+     * without converting them with Jackson first.
+     *
+     * @param type the declared type of the property
+     * @return true if the property type is a JDBC scalar type; false otherwise
+     */
+    private static boolean isScalarType(final Class<?> type) {
+        if (type.isPrimitive()) {
+            return type != char.class;
         }
+        return type == String.class || type == Integer.class || type == Long.class || type == Boolean.class ||
+                type == Double.class || type == Float.class || type == Short.class || type == Byte.class ||
+                type == BigDecimal.class || type == BigInteger.class || type == byte[].class ||
+                java.util.Date.class.isAssignableFrom(type);
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that records the byte offset where each line starts, as bytes are read by a reader on top of it,
+ * so that the offset of a line can be looked up by its line number after the reader has consumed it, regardless of
+ * how far the reader has buffered ahead.  Lines are terminated by \n, \r, or \r\n, the same as in
+ * {@code java.io.LineNumberReader}, and the charset of the stream must encode them as single bytes.
+ * <p/>
+ * Offsets are kept only for lines after {@link #discardBefore(int)}, so memory use is bounded by the read-ahead of
+ * the reader.
+ */
+final class LineOffsetInputStream extends FilterInputStream {
+    /**
+     * The offset of the next byte to read.
+     */
+    private long position;
+
+    /**
+     * Circular buffer of the start offsets of lines {@link #firstLine} and up.
+     */
+    private long[] starts = new long[64];
+    private int head;
+    private int size;
+    private int firstLine = 1;
+
+    /**
+     * Whether the last byte read is \r, in which case the line start just recorded is replaced if followed by \n.
+     */
+    private boolean lastCR;
+
+    /**
+     * Creates an instance whose first line starts at {@code offset}.
+     *
+     * @param in     the underlying input stream, positioned at {@code offset}
+     * @param offset the byte offset of the underlying input stream
+     */
+    LineOffsetInputStream(final InputStream in, final long offset) {
+        super(in);
+        position = offset;
+        starts[0] = offset;
+        size = 1;
+    }
+
+    /**
+     * Gets the byte offset where a line starts.
+     *
+     * @param lineNumber the 1-based line number, which must not be before {@link #discardBefore(int)}
+     * @return the byte offset where the line starts, or the current position if the line has not been read yet
+     */
+    long getLineOffset(final int lineNumber) {
+        final int index = lineNumber - firstLine;
+        return index < size ? starts[(head + index) % starts.length] : position;
+    }
+
+    /**
+     * Discards the offsets of lines before {@code lineNumber}, which will no longer be looked up.
+     *
+     * @param lineNumber the 1-based line number
+     */
+    void discardBefore(final int lineNumber) {
+        final int n = Math.min(lineNumber - firstLine, size - 1);
+        if (n > 0) {
+            head = (head + n) % starts.length;
+            size -= n;
+            firstLine += n;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = in.read();
+        if (b >= 0) {
+            scan(b);
+            position++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int n = in.read(b, off, len);
+        for (int i = off; i < off + n; i++) {
+            scan(b[i]);
+            position++;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        //skipping over line terminators would miss line starts
+        final byte[] buf = new byte[(int) Math.min(n, 8192)];
+        final int count = read(buf, 0, buf.length);
+        return count < 0 ? 0 : count;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void scan(final int b) {
+        if (b == '\n') {
+            if (lastCR) {
+                starts[(head + size - 1) % starts.length] = position + 1;
+                lastCR = false;
+            } else {
+                add(position + 1);
+            }
+        } else if (b == '\r') {
+            add(position + 1);
+            lastCR = true;
+        } else {
+            lastCR = false;
+        }
+    }
+
+    private void add(final long offset) {
+        if (size == starts.length) {
+            final long[] grown = new long[starts.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = starts[(head + i) % starts.length];
+            }
+            starts = grown;
+            head = 0;
+        }
+        starts[(head + size) % starts.length] = offset;
+        size++;
+    }
+}
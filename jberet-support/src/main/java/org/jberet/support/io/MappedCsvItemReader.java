@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.batch.api.BatchProperty;
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.jberet.spi.BatchItemReader;
+import org.jberet.support._private.SupportLogger;
+import org.jberet.support._private.SupportMessages;
+import org.supercsv.comment.CommentMatcher;
+import org.supercsv.exception.SuperCsvReflectionException;
+import org.supercsv.prefs.CsvPreference;
+import org.supercsv.util.BeanInterfaceProxy;
+import org.supercsv.util.MethodCache;
+import org.supercsv.util.Util;
+
+import static org.jberet.support.io.CsvProperties.BEAN_TYPE_KEY;
+import static org.jberet.support.io.CsvProperties.CHARSET_KEY;
+import static org.jberet.support.io.CsvProperties.DELIMITER_CHAR_KEY;
+import static org.jberet.support.io.CsvProperties.QUOTE_CHAR_KEY;
+import static org.jberet.support.io.CsvProperties.RESOURCE_KEY;
+
+/**
+ * An implementation of {@code javax.batch.api.chunk.ItemReader} that reads from a local CSV file into a user-defined
+ * bean, java.util.List&lt;String&gt;, or java.util.Map&lt;String, String&gt;, the same as {@link CsvItemReader}, but
+ * maps the file into memory with {@code java.nio.channels.FileChannel#map}, one window at a time, and scans for
+ * delimiters, quotes and line terminators directly over the mapped bytes.  Strings are only created for columns that
+ * are in {@code nameMapping} (or all columns, if {@code beanType} is {@code java.util.List}), and unmapped columns are
+ * passed to cell processors as null.
+ * <p/>
+ * The range of the file to read can be specified in bytes with {@link #startOffset} and {@link #endOffset}, so that
+ * partitions can each read their own slice of the same file, e.g., as planned by {@link RangePartitionMapper}.  The
+ * checkpoint info is a {@link CsvCheckpoint} with the byte offset of the next row.
+ * <p/>
+ * The file must be encoded in a charset where delimiters, quotes and line terminators are single bytes (e.g., UTF-8,
+ * ISO-8859-1), and the delimiter and quote characters must be single-byte characters.  Rows are tokenized the same
+ * way as super-csv: a quote starts a quoted section anywhere in a column, two consecutive quotes in a quoted section
+ * are an escaped quote, line terminators in a quoted section are read as \n, and empty lines are skipped.
+ * This class is not designed to be thread-safe and its instance should not be shared between threads.
+ *
+ * @since 1.1.0
+ */
+@Named
+@Dependent
+public class MappedCsvItemReader extends CsvItemReaderWriterBase implements BatchItemReader {
+    /**
+     * The byte offset of the file to start reading from.  Optional property, and defaults to 0.  If the offset is
+     * not at the start of a line, the reader starts from the next line.  Note that the header row is only read if
+     * the reader starts from the beginning of the file, or if {@code nameMapping} is not specified.
+     */
+    @Inject
+    @BatchProperty
+    protected long startOffset;
+
+    /**
+     * The byte offset of the file to stop reading at.  Optional property, and defaults to the end of the file.  The
+     * reader reads all rows that start before this offset.
+     */
+    @Inject
+    @BatchProperty
+    protected long endOffset;
+
+    @Inject
+    @BatchProperty
+    protected boolean headerless;
+
+    /**
+     * The max number of bytes to map at a time.  Optional property, and defaults to 64 MB.  A larger window is mapped
+     * if a single row does not fit in it.
+     */
+    @Inject
+    @BatchProperty
+    protected int windowSize;
+
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final char UNICODE_BOM = '\uFEFF';
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer buffer;
+
+    /**
+     * The byte offset of the file where {@link #buffer} starts.
+     */
+    private long bufferOffset;
+
+    /**
+     * The byte offset of the next row to read.
+     */
+    private long position;
+
+    /**
+     * The number of rows read since {@link #startOffset}.
+     */
+    private int rowNumber;
+
+    private Charset cs;
+    private byte quote;
+    private byte delimiter;
+    private boolean surroundingSpacesNeedQuotes;
+    private CommentMatcher commentMatcher;
+
+    /**
+     * Whether each column needs to be converted to string, or null if all columns are needed.
+     */
+    private boolean[] columnsNeeded;
+
+    // the start and end offset in buffer, and whether it contains quotes, of each column of the current row
+    private int[] columnStarts = new int[16];
+    private int[] columnEnds = new int[16];
+    private boolean[] columnsQuoted = new boolean[16];
+    private int columnCount;
+
+    private byte[] bytes = new byte[256];
+    private final List<Object> columns = new ArrayList<Object>();
+    private final List<Object> processedColumns = new ArrayList<Object>();
+    private final MethodCache cache = new MethodCache();
+
+    @Override
+    public void open(final Serializable checkpoint) throws Exception {
+        if (beanType == null) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, null, BEAN_TYPE_KEY);
+        }
+        final File localFile = getLocalFile();
+        if (localFile == null) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, resource, RESOURCE_KEY);
+        }
+        if (!isLineOffsetCharset()) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, charset, CHARSET_KEY);
+        }
+        cs = charset == null ? Charset.defaultCharset() : Charset.forName(charset);
+        final CsvPreference csvPreference = getCsvPreference();
+        quote = toByte(csvPreference.getQuoteChar(), QUOTE_CHAR_KEY);
+        delimiter = toByte(csvPreference.getDelimiterChar(), DELIMITER_CHAR_KEY);
+        surroundingSpacesNeedQuotes = csvPreference.isSurroundingSpacesNeedQuotes();
+        commentMatcher = csvPreference.getCommentMatcher();
+
+        file = new RandomAccessFile(localFile, "r");
+        channel = file.getChannel();
+        fileSize = channel.size();
+        if (windowSize <= 0) {
+            windowSize = DEFAULT_WINDOW_SIZE;
+        }
+        if (endOffset <= 0 || endOffset > fileSize) {
+            endOffset = fileSize;
+        }
+        SupportLogger.LOGGER.openingResource(resource, this.getClass());
+
+        //the first row starts after the byte order mark, if any
+        final long firstRow = bomLength();
+        if (checkpoint != null) {
+            final CsvCheckpoint csvCheckpoint = (CsvCheckpoint) checkpoint;
+            rowNumber = csvCheckpoint.getRowNumber();
+            position = csvCheckpoint.getOffset();
+        } else {
+            rowNumber = 0;
+            position = startOffset <= firstRow ? firstRow : startOffset >= endOffset ? endOffset : toLineStart(startOffset);
+        }
+
+        if (!headerless) {
+            final long next = position;
+            final boolean atHeader = position == firstRow;
+            if (atHeader || nameMapping == null) {
+                position = firstRow;
+                if (!readRow(true)) {
+                    throw SupportMessages.MESSAGES.failToReadCsvHeader(null, resource);
+                }
+                final String[] header = new String[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    header[i] = getColumn(i);
+                }
+                if (nameMapping == null) {
+                    nameMapping = header;
+                }
+                if (!atHeader) {
+                    position = next;
+                }
+            }
+        }
+        cellProcessorInstances = getCellProcessors();
+
+        columnsNeeded = null;
+        if (!List.class.isAssignableFrom(beanType) && nameMapping != null) {
+            columnsNeeded = new boolean[nameMapping.length];
+            for (int i = 0; i < nameMapping.length; i++) {
+                columnsNeeded[i] = nameMapping[i] != null;
+                if (!columnsNeeded[i] && i < cellProcessorInstances.length) {
+                    //unmapped columns are null, and skipped by cell processors
+                    cellProcessorInstances[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the length of the byte order mark at the start of the file, as encoded in the configured charset.
+     *
+     * @return the number of bytes of the byte order mark, or 0 if the file does not start with one
+     */
+    private int bomLength() throws Exception {
+        if (!cs.newEncoder().canEncode(UNICODE_BOM)) {
+            return 0;
+        }
+        final byte[] bom = String.valueOf(UNICODE_BOM).getBytes(cs);
+        if (fileSize < bom.length) {
+            return 0;
+        }
+        final ByteBuffer head = ByteBuffer.allocate(bom.length);
+        channel.read(head, 0);
+        return Arrays.equals(head.array(), bom) ? bom.length : 0;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (file != null) {
+            SupportLogger.LOGGER.closingResource(resource, this.getClass());
+            buffer = null;
+            channel = null;
+            file.close();
+            file = null;
+        }
+    }
+
+    @Override
+    public Object readItem() throws Exception {
+        if (!readRow(false)) {
+            return null;
+        }
+        rowNumber++;
+        columns.clear();
+        for (int i = 0; i < columnCount; i++) {
+            columns.add(columnsNeeded == null || (i < columnsNeeded.length && columnsNeeded[i]) ? getColumn(i) : null);
+        }
+        final List<Object> values;
+        if (cellProcessorInstances.length == 0) {
+            values = columns;
+        } else {
+            processedColumns.clear();
+            Util.executeCellProcessors(processedColumns, columns, cellProcessorInstances, rowNumber, rowNumber);
+            values = processedColumns;
+        }
+
+        if (List.class.isAssignableFrom(beanType)) {
+            return new ArrayList<Object>(values);
+        }
+        final String[] names = getNameMapping();
+        if (names.length != values.size()) {
+            throw new IllegalArgumentException(String.format("the nameMapping array and the number of columns read " +
+                    "should be the same size (nameMapping length = %d, columns = %d)", names.length, values.size()));
+        }
+        if (Map.class.isAssignableFrom(beanType)) {
+            final Map<String, Object> result = new HashMap<String, Object>();
+            Util.filterListToMap(result, names, values);
+            return result;
+        }
+        final Object result = populateBean(names, values);
+        if (!skipBeanValidation) {
+            ItemReaderWriterBase.validate(result);
+        }
+        return result;
+    }
+
+    @Override
+    public int readItems(final int maxItems, final List<Object> items) throws Exception {
+        int count = 0;
+        Object item;
+        while (count < maxItems && (item = readItem()) != null) {
+            items.add(item);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public Serializable checkpointInfo() throws Exception {
+        return new CsvCheckpoint(rowNumber, position);
+    }
+
+    /**
+     * Reads the columns of the next row into {@link #columnStarts}, {@link #columnEnds} and {@link #columnsQuoted}.
+     *
+     * @param header whether to read the header row, which is not limited by {@link #endOffset}
+     * @return false if there are no more rows to read
+     * @throws Exception
+     */
+    private boolean readRow(final boolean header) throws Exception {
+        final long limit = header ? fileSize : endOffset;
+        while (true) {
+            skipEmptyLines();
+            if (position >= limit || position >= fileSize) {
+                return false;
+            }
+            final int next = scanRow();
+            if (next < 0) {
+                //the row does not fit in the current window, so map a window starting at the row, or a larger one
+                map(position, position == bufferOffset ? (int) Math.min(buffer.limit() * 2L, Integer.MAX_VALUE) : windowSize);
+                continue;
+            }
+            if (commentMatcher != null) {
+                final int lineEnd = lineEnd(0);
+                if (commentMatcher.isComment(decode((int) (position - bufferOffset), lineEnd, false))) {
+                    position = bufferOffset + skipLineTerminator(lineEnd);
+                    continue;
+                }
+            }
+            position = bufferOffset + next;
+            return true;
+        }
+    }
+
+    /**
+     * Scans the row at {@link #position}, which must be in {@link #buffer}.
+     *
+     * @return the offset in {@link #buffer} of the next row, or -1 if the row does not end in {@link #buffer}
+     */
+    private int scanRow() {
+        final int limit = buffer.limit();
+        final boolean lastWindow = bufferOffset + limit == fileSize;
+        int i = (int) (position - bufferOffset);
+        columnCount = 0;
+        int columnStart = i;
+        boolean quoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            if (i == limit) {
+                if (!lastWindow) {
+                    return -1;
+                }
+                addColumn(columnStart, i, quoted);
+                return i;
+            }
+            final byte b = buffer.get(i);
+            if (inQuotes) {
+                if (b == quote) {
+                    if (i + 1 == limit && !lastWindow) {
+                        return -1;
+                    }
+                    if (i + 1 < limit && buffer.get(i + 1) == quote) {
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+                i++;
+            } else if (b == quote) {
+                inQuotes = quoted = true;
+                i++;
+            } else if (b == delimiter) {
+                addColumn(columnStart, i, quoted);
+                quoted = false;
+                columnStart = ++i;
+            } else if (b == '\n' || b == '\r') {
+                if (b == '\r' && i + 1 == limit && !lastWindow) {
+                    return -1;
+                }
+                addColumn(columnStart, i, quoted);
+                return skipLineTerminator(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private void addColumn(final int start, final int end, final boolean quoted) {
+        if (columnCount == columnStarts.length) {
+            final int n = columnCount * 2;
+            final int[] starts = new int[n];
+            final int[] ends = new int[n];
+            final boolean[] quotes = new boolean[n];
+            System.arraycopy(columnStarts, 0, starts, 0, columnCount);
+            System.arraycopy(columnEnds, 0, ends, 0, columnCount);
+            System.arraycopy(columnsQuoted, 0, quotes, 0, columnCount);
+            columnStarts = starts;
+            columnEnds = ends;
+            columnsQuoted = quotes;
+        }
+        columnStarts[columnCount] = start;
+        columnEnds[columnCount] = end;
+        columnsQuoted[columnCount] = quoted;
+        columnCount++;
+    }
+
+    /**
+     * Converts a column of the current row to string.
+     *
+     * @param column the column index
+     * @return the column value, or null if the column is empty
+     */
+    private String getColumn(final int column) {
+        int start = columnStarts[column];
+        int end = columnEnds[column];
+        final boolean quoted = columnsQuoted[column];
+        if (surroundingSpacesNeedQuotes && !quoted) {
+            while (start < end && buffer.get(start) == ' ') {
+                start++;
+            }
+            while (end > start && buffer.get(end - 1) == ' ') {
+                end--;
+            }
+        }
+        if (start == end) {
+            return null;
+        }
+        //empty columns are read as null, even if quoted
+        final String value = decode(start, end, quoted);
+        return value.length() == 0 ? null : value;
+    }
+
+    /**
+     * Decodes the bytes in {@link #buffer} between {@code start} and {@code end}, removing quotes if
+     * {@code quoted} is true.
+     */
+    private String decode(final int start, final int end, final boolean quoted) {
+        if (bytes.length < end - start) {
+            bytes = new byte[Math.max(end - start, bytes.length * 2)];
+        }
+        int length = 0;
+        if (!quoted) {
+            buffer.position(start);
+            buffer.get(bytes, 0, end - start);
+            length = end - start;
+        } else {
+            boolean inQuotes = false;
+            for (int i = start; i < end; i++) {
+                final byte b = buffer.get(i);
+                if (b == quote) {
+                    if (inQuotes && i + 1 < end && buffer.get(i + 1) == quote) {
+                        bytes[length++] = b;
+                        i++;
+                    } else {
+                        inQuotes = !inQuotes;
+                    }
+                } else if (b == '\r') {
+                    //line terminators in quotes are read as \n
+                    bytes[length++] = '\n';
+                    if (i + 1 < end && buffer.get(i + 1) == '\n') {
+                        i++;
+                    }
+                } else {
+                    bytes[length++] = b;
+                }
+            }
+        }
+        return new String(bytes, 0, length, cs);
+    }
+
+    /**
+     * Skips empty lines at {@link #position}, and maps the window starting at the first non-empty line.
+     */
+    private void skipEmptyLines() throws Exception {
+        while (position < fileSize) {
+            if (buffer == null || position < bufferOffset || position >= bufferOffset + buffer.limit()) {
+                map(position, windowSize);
+            }
+            final int i = (int) (position - bufferOffset);
+            final byte b = buffer.get(i);
+            if (b == '\n') {
+                position++;
+            } else if (b == '\r') {
+                position++;
+                if (i + 1 < buffer.limit()) {
+                    if (buffer.get(i + 1) == '\n') {
+                        position++;
+                    }
+                } else if (position < fileSize) {
+                    map(position, windowSize);
+                    if (buffer.get(0) == '\n') {
+                        position++;
+                    }
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the offset in {@link #buffer} of the first line terminator after {@link #position}, or the end of
+     * {@link #buffer}.
+     */
+    private int lineEnd(final int from) {
+        int i = (int) (position - bufferOffset) + from;
+        while (i < buffer.limit() && buffer.get(i) != '\n' && buffer.get(i) != '\r') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Gets the offset in {@link #buffer} after the line terminator at {@code i}.
+     */
+    private int skipLineTerminator(final int i) {
+        if (i < buffer.limit() && buffer.get(i) == '\r' && i + 1 < buffer.limit() && buffer.get(i + 1) == '\n') {
+            return i + 2;
+        }
+        return i < buffer.limit() ? i + 1 : i;
+    }
+
+    /**
+     * Gets the start offset of the line at or after {@code offset}.
+     */
+    private long toLineStart(final long offset) throws Exception {
+        map(offset - 1, windowSize);
+        final byte previous = buffer.get(0);
+        if (previous == '\n' || previous == '\r') {
+            return offset;
+        }
+        position = offset - 1;
+        int i = lineEnd(0);
+        while (i == buffer.limit() && bufferOffset + i < fileSize) {
+            position = bufferOffset + i;
+            map(position, windowSize);
+            i = lineEnd(0);
+        }
+        return bufferOffset + skipLineTerminator(i);
+    }
+
+    private void map(final long offset, final int size) throws Exception {
+        bufferOffset = offset;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size, fileSize - offset));
+    }
+
+    private byte toByte(final int c, final String key) {
+        if (c > 0x7F) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, String.valueOf((char) c), key);
+        }
+        return (byte) c;
+    }
+
+    private Object populateBean(final String[] names, final List<Object> values) throws Exception {
+        final Object bean = beanType.isInterface() ? BeanInterfaceProxy.createProxy(beanType) : beanType.newInstance();
+        for (int i = 0; i < names.length; i++) {
+            final Object value = values.get(i);
+            if (names[i] == null || value == null) {
+                continue;
+            }
+            final Method setMethod = cache.getSetMethod(bean, names[i], value.getClass());
+            try {
+                setMethod.invoke(bean, value);
+            } catch (final Exception e) {
+                throw new SuperCsvReflectionException(String.format("error invoking method %s()", setMethod.getName()), e);
+            }
+        }
+        return bean;
+    }
+}
@@ -13,20 +13,21 @@
 package org.jberet.support.io;
 
 import java.io.Serializable;
+import java.util.List;
 import javax.batch.api.BatchProperty;
-import javax.batch.api.chunk.ItemReader;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import com.mongodb.util.JSON;
+import org.jberet.spi.BatchItemReader;
 
 /**
  * An implementation of {@code javax.batch.api.chunk.ItemReader} that reads from a collection in a MongoDB database.
  */
 @Named
-public class MongoItemReader extends MongoItemReaderWriterBase implements ItemReader {
+public class MongoItemReader extends MongoItemReaderWriterBase implements BatchItemReader {
     @Inject
     @BatchProperty
     protected String criteria;
@@ -87,6 +88,20 @@ public class MongoItemReader extends MongoItemReaderWriterBase implements ItemRe
         return null;
     }
 
+    @Override
+    public int readItems(final int maxItems, final List<Object> items) throws Exception {
+        int count = 0;
+        while (count < maxItems && cursor.hasNext()) {
+            final Object readValue = cursor.next();
+            if (!skipBeanValidation) {
+                ItemReaderWriterBase.validate(readValue);
+            }
+            items.add(readValue);
+            count++;
+        }
+        return count;
+    }
+
     @Override
     public void close() throws Exception {
         if (cursor != null) {
@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.RowId;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import org.jberet.support._private.SupportMessages;
+
+/**
+ * Sets a {@code PreparedStatement} parameter with the {@code PreparedStatement} setter method for a parameter type
+ * configured in {@link JdbcItemWriter#parameterTypes}, converting the value to the type expected by the setter method
+ * when necessary.  Binders are created once per parameter when the writer is opened, so that the parameter type is
+ * not looked up again for each data item.
+ */
+abstract class ParameterBinder {
+    /**
+     * Binder that calls {@link PreparedStatement#setObject(int, Object)}.  Since JDBC drivers may not accept
+     * {@code java.util.Date}, it is converted to {@code java.sql.Timestamp}.
+     */
+    static final ParameterBinder OBJECT = new ParameterBinder() {
+        @Override
+        void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+            if (val instanceof java.util.Date && !(val instanceof java.sql.Date) && !(val instanceof Time) &&
+                    !(val instanceof Timestamp)) {
+                ps.setTimestamp(pos, new Timestamp(((java.util.Date) val).getTime()));
+            } else {
+                ps.setObject(pos, val);
+            }
+        }
+    };
+
+    /**
+     * Sets the parameter at {@code pos} to {@code val}.
+     *
+     * @param ps  the {@code PreparedStatement}
+     * @param pos the 1-based parameter position
+     * @param val the parameter value
+     * @throws Exception
+     */
+    abstract void bind(PreparedStatement ps, int pos, Object val) throws Exception;
+
+    /**
+     * Gets the binder for a parameter type.
+     *
+     * @param type the parameter type, as configured in {@link JdbcItemWriter#parameterTypes}
+     * @return the binder for the parameter type
+     * @throws javax.batch.operations.BatchRuntimeException if the parameter type is not recognized
+     */
+    static ParameterBinder forType(final String type) {
+        if (type.equals("String")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setString(pos, val == null ? null : val.toString());
+                }
+            };
+        }
+        if (type.equals("Date")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setDate(pos, null);
+                    } else {
+                        final java.sql.Date sqlDate;
+                        if (val instanceof java.sql.Date) {
+                            sqlDate = (java.sql.Date) val;
+                        } else if (val instanceof java.util.Date) {
+                            sqlDate = new java.sql.Date(((java.util.Date) val).getTime());
+                        } else if (val instanceof Long) {
+                            sqlDate = new java.sql.Date((Long) val);
+                        } else {
+                            sqlDate = new java.sql.Date(Long.parseLong(val.toString()));
+                        }
+                        ps.setDate(pos, sqlDate);
+                    }
+                }
+            };
+        }
+        if (type.equals("Timestamp")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setTimestamp(pos, null);
+                    } else {
+                        final Timestamp sqlTimestamp;
+                        if (val instanceof Timestamp) {
+                            sqlTimestamp = (Timestamp) val;
+                        } else if (val instanceof java.util.Date) {
+                            sqlTimestamp = new Timestamp(((java.util.Date) val).getTime());
+                        } else if (val instanceof Long) {
+                            sqlTimestamp = new Timestamp((Long) val);
+                        } else {
+                            sqlTimestamp = new Timestamp(Long.parseLong(val.toString()));
+                        }
+                        ps.setTimestamp(pos, sqlTimestamp);
+                    }
+                }
+            };
+        }
+        if (type.equals("Time")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setTime(pos, null);
+                    } else {
+                        final Time sqlTime;
+                        if (val instanceof Time) {
+                            sqlTime = (Time) val;
+                        } else if (val instanceof java.util.Date) {
+                            sqlTime = new Time(((java.util.Date) val).getTime());
+                        } else if (val instanceof Long) {
+                            sqlTime = new Time((Long) val);
+                        } else {
+                            sqlTime = new Time(Long.parseLong(val.toString()));
+                        }
+                        ps.setTime(pos, sqlTime);
+                    }
+                }
+            };
+        }
+        if (type.equals("Object") || type.equals("null")) {
+            return OBJECT;
+        }
+        if (type.equals("NString")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setNString(pos, val == null ? null : val.toString());
+                }
+            };
+        }
+        if (type.equals("Boolean")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setBoolean(pos, (val instanceof Boolean ? (Boolean) val :
+                            val != null && Boolean.parseBoolean(val.toString())));
+                }
+            };
+        }
+        if (type.equals("Int")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setInt(pos, (val instanceof Integer ? (Integer) val :
+                            val == null ? 0 : Integer.parseInt(val.toString())));
+                }
+            };
+        }
+        if (type.equals("Long")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setLong(pos, (val instanceof Long ? (Long) val :
+                            val == null ? 0 : Long.parseLong(val.toString())));
+                }
+            };
+        }
+        if (type.equals("Double")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setDouble(pos, (val instanceof Double ? (Double) val :
+                            val == null ? 0 : Double.parseDouble(val.toString())));
+                }
+            };
+        }
+        if (type.equals("Float")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setFloat(pos, (val instanceof Float ? (Float) val :
+                            val == null ? 0 : Float.parseFloat(val.toString())));
+                }
+            };
+        }
+        if (type.equals("Short")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setShort(pos, (val instanceof Short ? (Short) val :
+                            val == null ? 0 : Short.parseShort(val.toString())));
+                }
+            };
+        }
+        if (type.equals("Byte")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setByte(pos, (val instanceof Byte ? (Byte) val :
+                            val == null ? 0 : Byte.parseByte(val.toString())));
+                }
+            };
+        }
+        if (type.equals("Blob")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setBlob(pos, (Blob) null);
+                    } else if (val instanceof Blob) {
+                        ps.setBlob(pos, (Blob) val);
+                    } else if (val instanceof InputStream) {
+                        ps.setBlob(pos, (InputStream) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("Blob | InputStream", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("Clob")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setClob(pos, (Clob) null);
+                    } else if (val instanceof Clob) {
+                        ps.setClob(pos, (Clob) val);
+                    } else if (val instanceof Reader) {
+                        ps.setClob(pos, (Reader) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("Clob | Reader", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("NClob")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setNClob(pos, (NClob) null);
+                    } else if (val instanceof NClob) {
+                        ps.setNClob(pos, (NClob) val);
+                    } else if (val instanceof Reader) {
+                        ps.setNClob(pos, (Reader) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("NClob | Reader", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("BigDecimal")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setBigDecimal(pos, (val instanceof BigDecimal ? (BigDecimal) val :
+                            val == null ? null : new BigDecimal(val.toString())));
+                }
+            };
+        }
+        if (type.equals("URL")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setURL(pos, (val instanceof URL ? (URL) val :
+                            val == null ? null : (new URI(val.toString())).toURL()));
+                }
+            };
+        }
+        if (type.equals("Bytes")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    ps.setBytes(pos, (val instanceof byte[] ? (byte[]) val :
+                            val == null ? null : val.toString().getBytes()));
+                }
+            };
+        }
+        if (type.equals("BinaryStream")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setBinaryStream(pos, null);
+                    } else if (val instanceof InputStream) {
+                        ps.setBinaryStream(pos, (InputStream) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("InputStream", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("CharacterStream")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setCharacterStream(pos, null);
+                    } else if (val instanceof Reader) {
+                        ps.setCharacterStream(pos, (Reader) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("Reader", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("NCharacterStream")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setNCharacterStream(pos, null);
+                    } else if (val instanceof Reader) {
+                        ps.setNCharacterStream(pos, (Reader) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("Reader", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("AsciiStream")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setAsciiStream(pos, null);
+                    } else if (val instanceof InputStream) {
+                        ps.setAsciiStream(pos, (InputStream) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("InputStream", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("Ref")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setRef(pos, null);
+                    } else if (val instanceof Ref) {
+                        ps.setRef(pos, (Ref) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("java.sql.Ref", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("RowId")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setRowId(pos, null);
+                    } else if (val instanceof RowId) {
+                        ps.setRowId(pos, (RowId) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("java.sql.RowId", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("SQLXML")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setSQLXML(pos, null);
+                    } else if (val instanceof SQLXML) {
+                        ps.setSQLXML(pos, (SQLXML) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("java.sql.SQLXML", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        if (type.equals("Array")) {
+            return new ParameterBinder() {
+                @Override
+                void bind(final PreparedStatement ps, final int pos, final Object val) throws Exception {
+                    if (val == null) {
+                        ps.setArray(pos, null);
+                    } else if (val instanceof Array) {
+                        ps.setArray(pos, (Array) val);
+                    } else {
+                        throw SupportMessages.MESSAGES.unexpectedDataType("java.sql.Array", val.getClass().getName(), val);
+                    }
+                }
+            };
+        }
+        throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, type, "parameterTypes");
+    }
+}
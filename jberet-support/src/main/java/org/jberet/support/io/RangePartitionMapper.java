@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.batch.api.BatchProperty;
+import javax.batch.api.partition.PartitionMapper;
+import javax.batch.api.partition.PartitionPlan;
+import javax.batch.api.partition.PartitionPlanImpl;
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.jberet.support._private.SupportLogger;
+import org.jberet.support._private.SupportMessages;
+
+/**
+ * An implementation of {@code javax.batch.api.partition.PartitionMapper} that splits a database query or a CSV or
+ * JSON resource into ranges of about the same size, without reading the data items themselves.
+ * <p/>
+ * If {@link #keyColumn} is set, the query specified with {@link #sql} is split by the value of the numeric key
+ * column: its min and max values are queried, and the range between them is divided evenly.  The partition plan
+ * properties of each partition are:
+ * <ul>
+ * <li>{@code sql}: the query restricted to the key range of the partition and ordered by the key column, which can be
+ * used as the {@code sql} property of {@link JdbcItemReader};</li>
+ * <li>{@code keyStart} and {@code keyEnd}: the first and last key value of the partition (inclusive), which can be
+ * used as the {@code keyStart} and {@code keyEnd} properties of {@link JdbcItemReader} in keyset mode, together with
+ * the original query and the same {@code keyColumn}, so that a restarted partition resumes after its last key
+ * value.</li>
+ * </ul>
+ * Otherwise, the {@link #resource} is split by byte size.  If the resource is a local CSV file and
+ * {@link #countRecords} is false, the mapper seeks to each partition's share of bytes and moves forward to the start
+ * of the next line, so only a few bytes around each split point are read.  The partition plan properties of each
+ * partition are:
+ * <ul>
+ * <li>{@code startOffset} and {@code endOffset}: the byte offset where the first row of the partition starts, and the
+ * byte offset where the next partition starts, which can be used as the {@code startOffset} and {@code endOffset}
+ * properties of {@link CsvItemReader} or {@link MappedCsvItemReader}.  The first partition starts at offset 0,
+ * including the header row, if any.</li>
+ * </ul>
+ * Seeking assumes that quoted values do not contain line terminators, since whether a split point is inside a quoted
+ * value cannot be known without reading all bytes before it.
+ * <p/>
+ * For JSON resources, resources that are not local files (which cannot be seeked, and whose size is not known in
+ * advance), or if {@link #countRecords} is true, the resource bytes are instead scanned once for record boundaries
+ * (line terminators outside quotes for CSV, and top-level JSON objects for JSON), and each partition starts at about
+ * its share of bytes, at a record boundary.  The partition plan properties of each partition are:
+ * <ul>
+ * <li>{@code start} and {@code end}: the first and last record number of the partition (1-based, inclusive, and not
+ * counting the CSV header), which can be used as the {@code start} and {@code end} properties of
+ * {@link CsvItemReader} and {@link JsonItemReader};</li>
+ * <li>{@code startOffset} and {@code endOffset}: the byte offset where the first record of the partition starts, and
+ * the byte offset after its last record.</li>
+ * </ul>
+ * Finding CSV record boundaries assumes a charset where line terminators and quote characters are single bytes
+ * (e.g., UTF-8, ISO-8859-1), and does not recognize comment lines.
+ *
+ * @since 1.1.0
+ */
+@Named
+@Dependent
+public class RangePartitionMapper extends JdbcItemReaderWriterBase implements PartitionMapper {
+    /**
+     * The partition plan property for the query of a partition.
+     */
+    public static final String SQL_KEY = "sql";
+
+    /**
+     * The partition plan property for the first key value of a partition.
+     */
+    public static final String KEY_START_KEY = "keyStart";
+
+    /**
+     * The partition plan property for the last key value of a partition.
+     */
+    public static final String KEY_END_KEY = "keyEnd";
+
+    /**
+     * The partition plan property for the byte offset of the first record of a partition.
+     */
+    public static final String START_OFFSET_KEY = "startOffset";
+
+    /**
+     * The partition plan property for the byte offset after the last record of a partition.
+     */
+    public static final String END_OFFSET_KEY = "endOffset";
+
+    /**
+     * Alias of the query specified with {@link #sql} when used as a derived table.
+     */
+    private static final String DERIVED_TABLE_ALIAS = "JBERET_RANGE";
+
+    /**
+     * The number of partitions.  Optional property, and defaults to the number of available processors.  Fewer
+     * partitions may be created if there are not enough key values or records.
+     */
+    @Inject
+    @BatchProperty
+    protected int partitionCount;
+
+    /**
+     * The max number of threads to run partitions.  Optional property, and defaults to the number of partitions.
+     */
+    @Inject
+    @BatchProperty
+    protected int threadCount;
+
+    /**
+     * The numeric key column to split the query by.  The query specified with {@link #sql} should select this column,
+     * and should not contain ORDER BY clause.
+     */
+    @Inject
+    @BatchProperty
+    protected String keyColumn;
+
+    /**
+     * The format of {@link #resource}, either {@code csv} or {@code json}.  Optional property, and defaults to
+     * {@code json} if the resource name ends with {@code .json}, and {@code csv} otherwise.
+     */
+    @Inject
+    @BatchProperty
+    protected String resourceFormat;
+
+    /**
+     * Whether the CSV resource has no header row.  Optional property, and defaults to false.
+     */
+    @Inject
+    @BatchProperty
+    protected boolean headerless;
+
+    /**
+     * The quote character of the CSV resource.  Optional property, and defaults to double quote.
+     */
+    @Inject
+    @BatchProperty
+    protected String quoteChar;
+
+    /**
+     * Whether to scan a local CSV file to count its records, so that the {@code start} and {@code end} record numbers
+     * of each partition are planned, e.g., for {@link CsvItemReader}, or so that quoted values containing line
+     * terminators are not split.  Optional property, and defaults to false, i.e., a local CSV file is split by seeking
+     * to line starts, and only byte offsets are planned.
+     */
+    @Inject
+    @BatchProperty
+    protected boolean countRecords;
+
+    @Override
+    public PartitionPlan mapPartitions() throws Exception {
+        final int count = partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors();
+        final List<Properties> partitions = keyColumn != null ? mapKeyRanges(count) : mapByteRanges(count);
+
+        final PartitionPlanImpl plan = new PartitionPlanImpl();
+        plan.setPartitions(partitions.size());
+        plan.setThreads(threadCount > 0 ? threadCount : partitions.size());
+        plan.setPartitionProperties(partitions.toArray(new Properties[partitions.size()]));
+        return plan;
+    }
+
+    protected List<Properties> mapKeyRanges(final int count) throws Exception {
+        if (sql == null) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, null, SQL_KEY);
+        }
+        init();
+        final String minMax = "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM (" + sql + ") " + DERIVED_TABLE_ALIAS;
+        final List<Properties> partitions = new ArrayList<Properties>();
+        final Connection connection = getConnection();
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = connection.prepareStatement(minMax);
+            final ResultSet rs = preparedStatement.executeQuery();
+            rs.next();
+            final long min = rs.getLong(1);
+            final boolean empty = rs.wasNull();
+            final long max = rs.getLong(2);
+            rs.close();
+            if (empty) {
+                //no rows at all, and a single partition with the original query will find none either
+                final Properties props = new Properties();
+                props.setProperty(SQL_KEY, sql);
+                partitions.add(props);
+                return partitions;
+            }
+
+            final long size = max - min + 1;
+            final int n = (int) Math.min(count, size);
+            final long base = size / n;
+            final long remainder = size % n;
+            long first = min;
+            for (int i = 0; i < n; i++) {
+                final long last = first + base - (i < remainder ? 0 : 1);
+                final Properties props = new Properties();
+                props.setProperty(SQL_KEY, "SELECT * FROM (" + sql + ") " + DERIVED_TABLE_ALIAS + " WHERE " +
+                        keyColumn + " BETWEEN " + first + " AND " + last + " ORDER BY " + keyColumn);
+                props.setProperty(KEY_START_KEY, String.valueOf(first));
+                props.setProperty(KEY_END_KEY, String.valueOf(last));
+                partitions.add(props);
+                first = last + 1;
+            }
+        } finally {
+            close(connection, preparedStatement);
+        }
+        return partitions;
+    }
+
+    protected List<Properties> mapByteRanges(final int count) throws Exception {
+        if (resource == null) {
+            throw SupportMessages.MESSAGES.invalidReaderWriterProperty(null, null, CsvProperties.RESOURCE_KEY);
+        }
+        final boolean json = resourceFormat == null ? resource.toLowerCase().endsWith(".json") :
+                "json".equalsIgnoreCase(resourceFormat.trim());
+        final File file = json || countRecords ? null : getLocalFile();
+        if (file != null) {
+            return mapLineRanges(file, count);
+        }
+
+        final RecordBoundaries boundaries = new RecordBoundaries(json || headerless ? 0 : 1);
+        final long size = scan(boundaries, json);
+        final List<Properties> partitions = new ArrayList<Properties>();
+        final int sampleCount = boundaries.sampleCount;
+        int sample = 0;
+        long startRecord = 0;
+        long startOffset = 0;
+        for (int i = 0; i < count && sample < sampleCount; i++) {
+            final long target = size / count * i + size % count * i / count;
+            while (sample < sampleCount && boundaries.sampleOffsets[sample] < target) {
+                sample++;
+            }
+            if (sample == sampleCount) {
+                break;
+            }
+            if (!partitions.isEmpty()) {
+                setRange(partitions.get(partitions.size() - 1), startRecord, boundaries.sampleRecords[sample] - 1,
+                        startOffset, boundaries.sampleOffsets[sample]);
+            }
+            startRecord = boundaries.sampleRecords[sample];
+            startOffset = boundaries.sampleOffsets[sample];
+            partitions.add(new Properties());
+            //a record larger than the share of a partition just pushes the next partition to the next record
+            sample++;
+        }
+        if (partitions.isEmpty()) {
+            //no records at all, and a single partition will find none either
+            final Properties props = new Properties();
+            setRange(props, 1, 1, size, size);
+            partitions.add(props);
+        } else {
+            setRange(partitions.get(partitions.size() - 1), startRecord, boundaries.records - boundaries.skippedRecords,
+                    startOffset, size);
+        }
+        return partitions;
+    }
+
+    /**
+     * Splits a local CSV file into byte ranges that start at line starts, by seeking to each partition's share of
+     * bytes and reading forward to the next line terminator.
+     *
+     * @param file  the local CSV file
+     * @param count the number of partitions
+     * @return partition plan properties with the start and end offsets of each partition
+     * @throws IOException if failed to read the file
+     */
+    private List<Properties> mapLineRanges(final File file, final int count) throws IOException {
+        final List<Long> starts = new ArrayList<Long>();
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        SupportLogger.LOGGER.openingResource(resource, getClass());
+        final long size;
+        try {
+            size = raf.length();
+            final byte[] buf = new byte[8 * 1024];
+            //the first partition also reads the header row, so the next one starts after it
+            long previous = headerless ? 0 : nextLineStart(raf, buf, 1);
+            starts.add(0L);
+            for (int i = 1; i < count; i++) {
+                final long target = size / count * i + size % count * i / count;
+                final long lineStart = nextLineStart(raf, buf, target);
+                if (lineStart > previous && lineStart < size) {
+                    starts.add(lineStart);
+                    previous = lineStart;
+                }
+            }
+        } finally {
+            SupportLogger.LOGGER.closingResource(resource, getClass());
+            raf.close();
+        }
+
+        final List<Properties> partitions = new ArrayList<Properties>();
+        for (int i = 0; i < starts.size(); i++) {
+            final Properties props = new Properties();
+            props.setProperty(START_OFFSET_KEY, String.valueOf(starts.get(i)));
+            props.setProperty(END_OFFSET_KEY, String.valueOf(i < starts.size() - 1 ? starts.get(i + 1) : size));
+            partitions.add(props);
+        }
+        return partitions;
+    }
+
+    /**
+     * Gets the offset of the first line that starts at or after {@code offset}.
+     *
+     * @return the offset of the next line start, or the file size if there is none
+     */
+    private static long nextLineStart(final RandomAccessFile raf, final byte[] buf, final long offset) throws IOException {
+        if (offset <= 0) {
+            return 0;
+        }
+        long position = offset - 1;
+        raf.seek(position);
+        int n;
+        while ((n = raf.read(buf)) > 0) {
+            for (int i = 0; i < n; i++) {
+                if (buf[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return position;
+    }
+
+    private static void setRange(final Properties props, final long startRecord, final long endRecord,
+                                 final long startOffset, final long endOffset) {
+        props.setProperty(CsvProperties.START_KEY, String.valueOf(startRecord));
+        props.setProperty(CsvProperties.END_KEY, String.valueOf(endRecord));
+        props.setProperty(START_OFFSET_KEY, String.valueOf(startOffset));
+        props.setProperty(END_OFFSET_KEY, String.valueOf(endOffset));
+    }
+
+    /**
+     * Scans the resource once for record boundaries, reading it in blocks.
+     *
+     * @param boundaries where to record boundaries
+     * @param json       whether the resource is JSON
+     * @return the number of bytes in the resource
+     * @throws IOException if failed to read the resource
+     */
+    private long scan(final RecordBoundaries boundaries, final boolean json) throws IOException {
+        final InputStream in = getInputStream(resource, false);
+        final byte quote = quoteChar == null || quoteChar.isEmpty() ? (byte) '"' : (byte) quoteChar.trim().charAt(0);
+        SupportLogger.LOGGER.openingResource(resource, getClass());
+        final byte[] buf = new byte[64 * 1024];
+        long offset = 0;
+        try {
+            boolean quoted = false;
+            boolean escaped = false;
+            boolean lineEmpty = true;
+            long lineOffset = 0;
+            int depth = 0;
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                for (int i = 0; i < n; i++, offset++) {
+                    final byte b = buf[i];
+                    if (json) {
+                        if (quoted) {
+                            if (escaped) {
+                                escaped = false;
+                            } else if (b == '\\') {
+                                escaped = true;
+                            } else if (b == '"') {
+                                quoted = false;
+                            }
+                        } else if (b == '"') {
+                            quoted = true;
+                        } else if (b == '{') {
+                            if (depth++ == 0) {
+                                boundaries.recordStart(offset);
+                            }
+                        } else if (b == '}') {
+                            depth--;
+                        }
+                    } else if (b == quote) {
+                        quoted = !quoted;
+                        if (lineEmpty) {
+                            lineEmpty = false;
+                            boundaries.recordStart(lineOffset);
+                        }
+                    } else if (b == '\n' && !quoted) {
+                        lineEmpty = true;
+                        lineOffset = offset + 1;
+                    } else if (lineEmpty && b != '\r') {
+                        lineEmpty = false;
+                        boundaries.recordStart(lineOffset);
+                    }
+                }
+            }
+        } finally {
+            SupportLogger.LOGGER.closingResource(resource, getClass());
+            in.close();
+        }
+        return offset;
+    }
+
+    /**
+     * Samples the record number and byte offset of record starts as records are found, since the resource size, and
+     * therefore where each partition should start, is only known after the scan.  A record is sampled if it starts at
+     * least {@link #granularity} bytes after the previous sample.  When {@link #MAX_SAMPLES} samples have been taken,
+     * every other sample is dropped and the granularity is doubled, so partitions start within about
+     * {@code 2 * size / MAX_SAMPLES} bytes of their share.
+     */
+    private static final class RecordBoundaries {
+        private static final int MAX_SAMPLES = 8192;
+
+        private final long[] sampleRecords = new long[MAX_SAMPLES];
+        private final long[] sampleOffsets = new long[MAX_SAMPLES];
+        private final int skippedRecords;
+        private int sampleCount;
+        private long granularity = 1;
+        private long nextSampleOffset;
+        private long records;
+
+        /**
+         * @param skippedRecords the number of leading records that are not data items, i.e., the CSV header
+         */
+        private RecordBoundaries(final int skippedRecords) {
+            this.skippedRecords = skippedRecords;
+        }
+
+        private void recordStart(final long offset) {
+            records++;
+            if (records <= skippedRecords || offset < nextSampleOffset) {
+                return;
+            }
+            if (sampleCount == MAX_SAMPLES) {
+                for (int i = 0; i < MAX_SAMPLES / 2; i++) {
+                    sampleRecords[i] = sampleRecords[i * 2];
+                    sampleOffsets[i] = sampleOffsets[i * 2];
+                }
+                sampleCount = MAX_SAMPLES / 2;
+                granularity *= 2;
+            }
+            sampleRecords[sampleCount] = records - skippedRecords;
+            sampleOffsets[sampleCount] = offset;
+            sampleCount++;
+            nextSampleOffset = offset + granularity;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link CsvItemReader} resumes at the right row when reopened with its checkpoint info, whether it
+ * seeks to the byte offset of a local file, or skips rows of other resources.
+ */
+public class CsvItemReaderRestartTest {
+    private static final String content =
+            "id,name,note\r\n" +
+            "1,a,\"multi\r\nline\"\r\n" +
+            "2,b,\"quoted \"\"text\"\"\"\r\n" +
+            "\r\n" +
+            "3,éè,x\n" +
+            "4,d,\"中\r\n文\"\r\n" +
+            "5,e,y\r" +
+            "6,f,z\r\n" +
+            "7,g,last";
+
+    @Test
+    public void seekLocalFile() throws Exception {
+        final File file = writeFile("CsvItemReaderRestartTest.csv", true);
+        for (int i = 0; i <= 7; i++) {
+            final Serializable checkpoint = restart(file.getPath(), false, i);
+            Assert.assertTrue(String.valueOf(checkpoint), checkpoint instanceof CsvCheckpoint);
+        }
+        restart(file.toURI().toString(), false, 3);
+    }
+
+    @Test
+    public void seekLocalFileHeaderless() throws Exception {
+        final File file = writeFile("CsvItemReaderRestartTest-headerless.csv", false);
+        for (int i = 1; i <= 7; i++) {
+            restart(file.getPath(), true, i);
+        }
+    }
+
+    @Test
+    public void skipClasspathResource() throws Exception {
+        final Serializable checkpoint = restart("movies-2012.csv", false, 40);
+        Assert.assertTrue(String.valueOf(checkpoint), checkpoint instanceof Integer);
+    }
+
+    /**
+     * Reads {@code itemsBeforeRestart} items, and then reopens a new reader with the checkpoint info to read the
+     * remaining items, which should be the same as read without restart.
+     *
+     * @return the checkpoint info to restart with
+     */
+    private static Serializable restart(final String resource, final boolean headerless, final int itemsBeforeRestart)
+            throws Exception {
+        final List<Object> expected = readAll(resource, headerless, null, Integer.MAX_VALUE);
+        final CsvItemReader reader = createReader(resource, headerless);
+        reader.open(null);
+        for (int i = 0; i < itemsBeforeRestart; i++) {
+            reader.readItem();
+        }
+        final Serializable checkpoint = reader.checkpointInfo();
+        reader.close();
+
+        final List<Object> remaining = readAll(resource, headerless, checkpoint, Integer.MAX_VALUE);
+        System.out.printf("Restarted %s after %s items with checkpoint %s%n", resource, itemsBeforeRestart, checkpoint);
+        Assert.assertEquals(expected.subList(itemsBeforeRestart, expected.size()), remaining);
+        return checkpoint;
+    }
+
+    private static List<Object> readAll(final String resource, final boolean headerless,
+                                        final Serializable checkpoint, final int end) throws Exception {
+        final CsvItemReader reader = createReader(resource, headerless);
+        reader.end = end;
+        reader.open(checkpoint);
+        final List<Object> items = new ArrayList<Object>();
+        Object item;
+        while ((item = reader.readItem()) != null) {
+            items.add(item);
+        }
+        reader.close();
+        return items;
+    }
+
+    private static CsvItemReader createReader(final String resource, final boolean headerless) {
+        final CsvItemReader reader = new CsvItemReader();
+        reader.resource = resource;
+        reader.beanType = List.class;
+        reader.headerless = headerless;
+        reader.charset = "UTF-8";
+        return reader;
+    }
+
+    private static File writeFile(final String name, final boolean header) throws Exception {
+        final File file = new File(CsvItemReaderWriterTest.tmpdir, name);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            //UTF-8 BOM
+            out.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+            out.write((header ? content : content.substring(content.indexOf('\n') + 1)).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link JdbcBulkLoadItemWriter} with the H2 dialect and the fallback to INSERT statements, and the CSV
+ * formatting of the PostgreSQL dialect.
+ */
+public class JdbcBulkLoadItemWriterTest {
+    @Before
+    public void before() throws Exception {
+        JdbcItemWriterTest.execute("create table if not exists PERSON (ID INT PRIMARY KEY, NAME VARCHAR(30), AGE INT)");
+        JdbcItemWriterTest.execute("delete from PERSON");
+    }
+
+    @Test
+    public void detectDialect() throws Exception {
+        final Connection connection = DriverManager.getConnection(JdbcItemWriterTest.url);
+        try {
+            Assert.assertTrue(BulkLoadDialect.forName(null, connection) instanceof BulkLoadDialect.H2);
+            Assert.assertNull(BulkLoadDialect.forName("insert", connection));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void loadH2() throws Exception {
+        final JdbcBulkLoadItemWriter writer = createWriter(Map.class);
+        writer.open(null);
+        writer.writeItems(JdbcItemWriterTest.createItems(1, 10, true));
+        writer.writeItems(JdbcItemWriterTest.createItems(11, 1, true));
+        writer.close();
+        JdbcItemWriterTest.assertRows(11);
+
+        final JdbcBulkLoadItemWriter beanWriter = createWriter(JdbcItemWriterTest.PersonBean.class);
+        beanWriter.parameterNames = new String[]{"id", "NAME", "age"};
+        beanWriter.open(null);
+        beanWriter.writeItems(Arrays.<Object>asList(new JdbcItemWriterTest.PersonBean(12, "name12", 12),
+                new JdbcItemWriterTest.PersonBean(13, "name13", 13)));
+        beanWriter.close();
+        JdbcItemWriterTest.assertRows(13);
+    }
+
+    @Test
+    public void loadH2WithDataSource() throws Exception {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(JdbcItemWriterTest.url);
+        final JdbcBulkLoadItemWriter writer = createWriter(Map.class);
+        writer.dataSource = dataSource;
+        writer.open(null);
+
+        //the connection is obtained and closed for each chunk, to be enlisted in each chunk transaction
+        writer.writeItems(JdbcItemWriterTest.createItems(1, 4, true));
+        Assert.assertNull(writer.connection);
+        writer.writeItems(JdbcItemWriterTest.createItems(5, 3, true));
+        Assert.assertNull(writer.connection);
+        writer.writeItems(JdbcItemWriterTest.createItems(8, 2, true));
+        Assert.assertNull(writer.connection);
+        writer.close();
+        JdbcItemWriterTest.assertRows(9);
+    }
+
+    @Test
+    public void recoverFromFailedChunk() throws Exception {
+        final JdbcBulkLoadItemWriter writer = createWriter(List.class);
+        writer.open(null);
+        writer.writeItems(JdbcItemWriterTest.createItems(1, 2, false));
+        try {
+            writer.writeItems(JdbcItemWriterTest.createItems(2, 2, false));
+            Assert.fail("Expecting primary key violation");
+        } catch (final Exception e) {
+            System.out.printf("Got expected exception: %s%n", e);
+        }
+        Assert.assertNull(writer.connection);
+        writer.writeItems(JdbcItemWriterTest.createItems(3, 3, false));
+        writer.close();
+        JdbcItemWriterTest.assertRows(5);
+    }
+
+    @Test
+    public void insertFallback() throws Exception {
+        final JdbcBulkLoadItemWriter writer = createWriter(List.class);
+        writer.dialect = "insert";
+        writer.parameterTypes = new String[]{"Int", "String", "Int"};
+        writer.open(null);
+        writer.writeItems(JdbcItemWriterTest.createItems(1, 7, false));
+        writer.close();
+        JdbcItemWriterTest.assertRows(7);
+    }
+
+    @Test
+    public void csvRows() throws Exception {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[]{1, "plain", null});
+        rows.add(new Object[]{2L, "with \"quotes\", commas\nand newlines", ""});
+        rows.add(new Object[]{3.5, new byte[]{0, (byte) 0xAB}, Boolean.TRUE});
+        rows.add(new Object[]{null, new java.sql.Date(0).toString(), new java.util.Date(0)});
+
+        final Reader reader = new BulkLoadDialect.CsvRowsReader(new BulkLoadDialect.Rows() {
+            @Override
+            public int size() {
+                return rows.size();
+            }
+
+            @Override
+            public Object[] get(final int index) {
+                return rows.get(index);
+            }
+        });
+        final StringBuilder sb = new StringBuilder();
+        final char[] buf = new char[7];
+        int n;
+        while ((n = reader.read(buf, 0, buf.length)) >= 0) {
+            sb.append(buf, 0, n);
+        }
+        Assert.assertEquals("1,\"plain\",\n" +
+                "2,\"with \"\"quotes\"\", commas\nand newlines\",\"\"\n" +
+                "3.5,\"\\x00ab\",true\n" +
+                ",\"" + new java.sql.Date(0) + "\",\"" + new java.sql.Timestamp(0) + "\"\n", sb.toString());
+    }
+
+    private static JdbcBulkLoadItemWriter createWriter(final Class<?> beanType) {
+        final JdbcBulkLoadItemWriter writer = new JdbcBulkLoadItemWriter();
+        writer.url = JdbcItemWriterTest.url;
+        writer.sql = JdbcItemWriterTest.insertSql;
+        writer.beanType = beanType;
+        return writer;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Rows per second mapped by {@link JdbcItemReader} from an in-memory H2 table, for each bean type.
+ * {@code readItemsConverted} is the baseline: the same query mapped through a {@code java.util.HashMap} and Jackson,
+ * with column types looked up by name.  Run its {@code main} method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcItemReaderBenchmark {
+    static final int ROWS = 10000;
+    static final String url = "jdbc:h2:mem:JdbcItemReaderBenchmark;DB_CLOSE_DELAY=-1";
+
+    @Param({"java.util.List", "java.util.Map", "org.jberet.support.io.JdbcItemReaderTest$Person"})
+    public String beanType;
+
+    private Connection connection;
+
+    private JdbcItemReader reader;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        connection = DriverManager.getConnection(url);
+        connection.prepareStatement("drop table if exists PERSON").execute();
+        connection.prepareStatement(
+                "create table PERSON (ID INT PRIMARY KEY, NAME VARCHAR(30), AGE INT, BIRTHDAY TIMESTAMP)").execute();
+        final PreparedStatement insert = connection.prepareStatement("insert into PERSON values(?, ?, ?, ?)");
+        for (int id = 1; id <= ROWS; id++) {
+            insert.setInt(1, id);
+            insert.setString(2, "name" + id);
+            insert.setInt(3, id % 100);
+            insert.setTimestamp(4, new java.sql.Timestamp(id * 86400000L));
+            insert.addBatch();
+        }
+        insert.executeBatch();
+
+        reader = new JdbcItemReader();
+        reader.url = url;
+        reader.sql = JdbcItemReaderTest.selectSql;
+        reader.beanType = Class.forName(beanType);
+        reader.columnMapping = new String[]{"id", "NAME", "age", "birthday"};
+        reader.columnTypes = new String[]{"Int", "String", "Int", "Timestamp"};
+        reader.skipBeanValidation = true;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void readItems(final Blackhole blackhole) throws Exception {
+        reader.open(null);
+        Object item;
+        while ((item = reader.readItem()) != null) {
+            blackhole.consume(item);
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void readItemsConverted(final Blackhole blackhole) throws Exception {
+        reader.open(null);
+        final ResultSet resultSet = reader.resultSet;
+        final String[] columnMapping = reader.columnMapping;
+        while (resultSet.next()) {
+            if (reader.beanType == List.class) {
+                final List<Object> resultList = new ArrayList<Object>();
+                for (int i = 0; i < columnMapping.length; ++i) {
+                    resultList.add(getColumnValue(resultSet, reader.columnTypes[i], i + 1));
+                }
+                blackhole.consume(resultList);
+            } else {
+                final Map<String, Object> resultMap = new HashMap<String, Object>();
+                for (int i = 0; i < columnMapping.length; ++i) {
+                    resultMap.put(columnMapping[i], getColumnValue(resultSet, reader.columnTypes[i], i + 1));
+                }
+                blackhole.consume(reader.beanType == Map.class ? resultMap :
+                        reader.objectMapper.convertValue(resultMap, reader.beanType));
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * The lookup of column types previously done for each column of each row, up to the types used in this benchmark.
+     */
+    private static Object getColumnValue(final ResultSet resultSet, final String type, final int pos) throws Exception {
+        if (type.equals("String")) {
+            return resultSet.getString(pos);
+        } else if (type.equals("Date")) {
+            return resultSet.getDate(pos);
+        } else if (type.equals("Timestamp")) {
+            return resultSet.getTimestamp(pos);
+        } else if (type.equals("Time")) {
+            return resultSet.getTime(pos);
+        } else if (type.equals("Object") || type.equals("null")) {
+            return resultSet.getObject(pos);
+        } else if (type.equals("NString")) {
+            return resultSet.getNString(pos);
+        } else if (type.equals("Boolean")) {
+            return resultSet.getBoolean(pos);
+        } else if (type.equals("Int")) {
+            return resultSet.getInt(pos);
+        }
+        return resultSet.getObject(pos);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(JdbcItemReaderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.File;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.batch.api.partition.PartitionPlan;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests {@link JdbcItemReader} mapping rows to lists, maps and beans, and verifies that beans populated directly from
+ * the {@code ResultSet} are the same as those converted from {@code java.util.Map} with Jackson.
+ */
+public class JdbcItemReaderTest {
+    static final File dbDir = new File(CsvItemReaderWriterTest.tmpdir, "JdbcItemReaderTest");
+    static final String url = "jdbc:h2:" + dbDir.getPath();
+    static final String selectSql = "select ID, NAME, AGE, BIRTHDAY from PERSON order by ID";
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        final Connection connection = DriverManager.getConnection(url);
+        try {
+            connection.prepareStatement("drop table if exists PERSON").execute();
+            connection.prepareStatement(
+                    "create table PERSON (ID INT PRIMARY KEY, NAME VARCHAR(30), AGE INT, BIRTHDAY TIMESTAMP)").execute();
+            final PreparedStatement insert = connection.prepareStatement("insert into PERSON values(?, ?, ?, ?)");
+            for (int id = 1; id <= 10; id++) {
+                insert.setInt(1, id);
+                insert.setString(2, id == 5 ? null : "name" + id);
+                if (id == 5) {
+                    insert.setNull(3, java.sql.Types.INTEGER);
+                    insert.setNull(4, java.sql.Types.TIMESTAMP);
+                } else {
+                    insert.setInt(3, id * 10);
+                    insert.setTimestamp(4, new java.sql.Timestamp(id * 86400000L));
+                }
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void readList() throws Exception {
+        final JdbcItemReader reader = createReader(List.class);
+        reader.columnTypes = new String[]{"Int", "String", "Int", "Timestamp"};
+        final List<Object> items = read(reader);
+        Assert.assertEquals(10, items.size());
+        Assert.assertEquals(Arrays.<Object>asList(1, "name1", 10, new java.sql.Timestamp(86400000L)), items.get(0));
+
+        //ResultSet.getInt returns 0 for SQL NULL
+        Assert.assertEquals(Arrays.<Object>asList(5, null, 0, null), items.get(4));
+    }
+
+    @Test
+    public void readMap() throws Exception {
+        final JdbcItemReader reader = createReader(Map.class);
+        reader.columnMapping = new String[]{"id", "name", "age", "birthday"};
+        final List<Object> items = read(reader);
+        Assert.assertEquals(10, items.size());
+        final Map<?, ?> item = (Map<?, ?>) items.get(9);
+        Assert.assertEquals(4, item.size());
+        Assert.assertEquals(10, item.get("id"));
+        Assert.assertEquals("name10", item.get("name"));
+        Assert.assertEquals(100, item.get("age"));
+    }
+
+    @Test
+    public void readBean() throws Exception {
+        final JdbcItemReader reader = createReader(Person.class);
+        reader.columnMapping = new String[]{"id", "NAME", "age", "birthday"};
+        reader.open(null);
+        Assert.assertNotNull("Expecting beans to be populated directly", reader.mutators);
+        reader.close();
+
+        final List<Object> expected = readConverted(Person.class, reader.columnMapping);
+        Assert.assertEquals(10, expected.size());
+        Assert.assertEquals(expected.toString(), read(reader).toString());
+    }
+
+    @Test
+    public void readBeanWithCreator() throws Exception {
+        final JdbcItemReader reader = createReader(CreatorPerson.class);
+        reader.columnMapping = new String[]{"id", "name", "age", "birthday"};
+        reader.open(null);
+        Assert.assertNull("Expecting beans to be converted with Jackson", reader.mutators);
+        reader.close();
+
+        final List<Object> items = read(reader);
+        Assert.assertEquals(readConverted(CreatorPerson.class, reader.columnMapping).toString(), items.toString());
+        Assert.assertEquals("name1", ((CreatorPerson) items.get(0)).name);
+    }
+
+    @Test
+    public void restartWithKey() throws Exception {
+        final List<Object> expected = read(createReader(List.class));
+        for (int i = 0; i <= expected.size(); i++) {
+            final JdbcItemReader reader = createKeysetReader();
+            reader.open(null);
+            for (int j = 0; j < i; j++) {
+                reader.readItem();
+            }
+            final Serializable checkpoint = reader.checkpointInfo();
+            reader.close();
+            Assert.assertEquals(i == 0 ? null : i, checkpoint);
+
+            final JdbcItemReader reader2 = createKeysetReader();
+            reader2.open(checkpoint);
+            final List<Object> items = new ArrayList<Object>();
+            Object item;
+            while ((item = reader2.readItem()) != null) {
+                items.add(item);
+            }
+            reader2.close();
+            Assert.assertEquals(expected.subList(i, expected.size()), items);
+        }
+    }
+
+    @Test
+    public void readItemsInBatches() throws Exception {
+        final List<Object> expected = read(createReader(List.class));
+        final JdbcItemReader reader = createKeysetReader();
+        reader.open(null);
+        final List<Object> items = new ArrayList<Object>();
+        Assert.assertEquals(4, reader.readItems(4, items));
+        Assert.assertEquals(4, reader.checkpointInfo());
+        Assert.assertEquals(4, reader.readItems(4, items));
+        Assert.assertEquals(2, reader.readItems(4, items));
+
+        //the final partial batch runs out of rows, and the checkpoint is still the key of its last row
+        Assert.assertEquals(10, reader.checkpointInfo());
+        Assert.assertEquals(0, reader.readItems(4, items));
+        Assert.assertEquals(10, reader.checkpointInfo());
+        reader.close();
+        Assert.assertEquals(expected, items);
+    }
+
+    @Test
+    public void readPartitionsWithKey() throws Exception {
+        final RangePartitionMapper mapper = new RangePartitionMapper();
+        mapper.url = url;
+        mapper.sql = "select ID, NAME, AGE, BIRTHDAY from PERSON";
+        mapper.keyColumn = "ID";
+        mapper.partitionCount = 3;
+        final PartitionPlan plan = mapper.mapPartitions();
+
+        final List<Object> actual = new ArrayList<Object>();
+        for (final Properties p : plan.getPartitionProperties()) {
+            final JdbcItemReader reader = createKeysetReader();
+            reader.keyStart = p.getProperty(RangePartitionMapper.KEY_START_KEY);
+            reader.keyEnd = p.getProperty(RangePartitionMapper.KEY_END_KEY);
+
+            //restart each partition after its first row
+            reader.open(null);
+            reader.readItem();
+            final Serializable checkpoint = reader.checkpointInfo();
+            reader.close();
+            actual.addAll(read(reader).subList(0, 1));
+            reader.open(checkpoint);
+            Object item;
+            while ((item = reader.readItem()) != null) {
+                actual.add(item);
+            }
+            reader.close();
+        }
+        Assert.assertEquals(read(createReader(List.class)), actual);
+    }
+
+    public static class Person {
+        @JsonProperty
+        private long id;
+
+        @JsonProperty("NAME")
+        private String name;
+
+        private String age;
+
+        private Date birthday;
+
+        public void setAge(final String age) {
+            this.age = age;
+        }
+
+        public void setBirthday(final Date birthday) {
+            this.birthday = birthday;
+        }
+
+        @Override
+        public String toString() {
+            return "Person{id=" + id + ", name=" + name + ", age=" + age +
+                    ", birthday=" + (birthday == null ? null : birthday.getTime()) + '}';
+        }
+    }
+
+    public static class CreatorPerson {
+        final int id;
+        final String name;
+        int age;
+        Date birthday;
+
+        @JsonCreator
+        public CreatorPerson(@JsonProperty("id") final int id, @JsonProperty("name") final String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public void setAge(final int age) {
+            this.age = age;
+        }
+
+        public void setBirthday(final Date birthday) {
+            this.birthday = birthday;
+        }
+
+        @Override
+        public String toString() {
+            return "CreatorPerson{id=" + id + ", name=" + name + ", age=" + age + ", birthday=" + birthday + '}';
+        }
+    }
+
+    static JdbcItemReader createReader(final Class<?> beanType) {
+        final JdbcItemReader reader = new JdbcItemReader();
+        reader.url = url;
+        reader.sql = selectSql;
+        reader.beanType = beanType;
+        reader.skipBeanValidation = true;
+        return reader;
+    }
+
+    private static JdbcItemReader createKeysetReader() {
+        final JdbcItemReader reader = createReader(List.class);
+        reader.sql = "select ID, NAME, AGE, BIRTHDAY from PERSON";
+        reader.keyColumn = "ID";
+        return reader;
+    }
+
+    static List<Object> read(final JdbcItemReader reader) throws Exception {
+        reader.open(null);
+        final List<Object> items = new ArrayList<Object>();
+        Object item;
+        while ((item = reader.readItem()) != null) {
+            items.add(item);
+        }
+        reader.close();
+        return items;
+    }
+
+    /**
+     * Reads all rows as {@code java.util.Map} and converts them to beans with Jackson.
+     */
+    private static List<Object> readConverted(final Class<?> beanType, final String[] columnMapping) throws Exception {
+        final JdbcItemReader reader = createReader(Map.class);
+        reader.columnMapping = columnMapping;
+        reader.initJsonFactoryAndObjectMapper();
+        final List<Object> beans = new ArrayList<Object>();
+        for (final Object item : read(reader)) {
+            beans.add(reader.objectMapper.convertValue(item, beanType));
+        }
+        return beans;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link JdbcItemWriter} writing multiple chunks with the same connection or a {@code DataSource}, in sub-batches
+ * and with multi-row INSERT statements, and binding parameters from lists, maps and beans.
+ */
+public class JdbcItemWriterTest {
+    static final File dbDir = new File(CsvItemReaderWriterTest.tmpdir, "JdbcItemWriterTest");
+    static final String url = "jdbc:h2:" + dbDir.getPath();
+    static final String insertSql = "insert into PERSON (ID, NAME, AGE) values(?, ?, ?)";
+
+    @Before
+    public void before() throws Exception {
+        execute("create table if not exists PERSON (ID INT PRIMARY KEY, NAME VARCHAR(30), AGE INT)");
+        execute("delete from PERSON");
+    }
+
+    @Test
+    public void writeList() throws Exception {
+        final JdbcItemWriter writer = createWriter(List.class);
+        writer.batchSize = 4;
+        writer.open(null);
+        final Connection connection = writer.connection;
+        writer.writeItems(createItems(1, 10, false));
+        writer.writeItems(createItems(11, 3, false));
+        Assert.assertSame(connection, writer.connection);
+        writer.close();
+        Assert.assertNull(writer.connection);
+        assertRows(13);
+    }
+
+    @Test
+    public void writeWithDataSource() throws Exception {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        final JdbcItemWriter writer = createWriter(List.class);
+        writer.dataSource = dataSource;
+        writer.rowsPerStatement = 2;
+        writer.open(null);
+        Assert.assertNull(writer.connection);
+
+        //the connection is obtained and closed for each chunk, to be enlisted in each chunk transaction
+        writer.writeItems(createItems(1, 5, false));
+        Assert.assertNull(writer.connection);
+        writer.writeItems(createItems(6, 3, false));
+        Assert.assertNull(writer.connection);
+        writer.close();
+        assertRows(8);
+    }
+
+    @Test
+    public void writeMultiRowValues() throws Exception {
+        final JdbcItemWriter writer = createWriter(Map.class);
+        writer.batchSize = 6;
+        writer.rowsPerStatement = 3;
+        writer.open(null);
+        writer.writeItems(createItems(1, 10, true));
+        writer.writeItems(createItems(11, 2, true));
+        writer.writeItems(createItems(13, 2, true));
+        writer.writeItems(createItems(15, 3, true));
+        writer.close();
+        assertRows(17);
+    }
+
+    @Test
+    public void recoverFromFailedChunk() throws Exception {
+        final JdbcItemWriter writer = createWriter(List.class);
+        writer.rowsPerStatement = 2;
+        writer.open(null);
+        writer.writeItems(createItems(1, 2, false));
+        try {
+            writer.writeItems(createItems(2, 2, false));
+            Assert.fail("Expecting primary key violation");
+        } catch (final Exception e) {
+            System.out.printf("Got expected exception: %s%n", e);
+        }
+        Assert.assertNull(writer.connection);
+        writer.writeItems(createItems(3, 3, false));
+        writer.close();
+        assertRows(5);
+    }
+
+    @Test
+    public void writeBean() throws Exception {
+        final JdbcItemWriter writer = createWriter(PersonBean.class);
+        writer.parameterNames = new String[]{"id", "NAME", "age"};
+        writer.rowsPerStatement = 2;
+        writer.open(null);
+        final List<Object> items = new ArrayList<Object>();
+        for (int id = 1; id <= 5; id++) {
+            items.add(new PersonBean(id, "name" + id, id % 100));
+        }
+        writer.writeItems(items);
+
+        //beans whose properties need Jackson serialization are converted to java.util.Map
+        writer.writeItems(Arrays.<Object>asList(new FormattedPersonBean(6, "name6", 6)));
+        writer.close();
+        assertRows(6);
+    }
+
+    @Test
+    public void writeBeanWithEnum() throws Exception {
+        final JdbcItemWriter writer = createWriter(StatusBean.class);
+        writer.sql = "insert into PERSON (ID, NAME) values(?, ?)";
+        writer.parameterNames = new String[]{"id", "status"};
+        writer.parameterTypes = null;
+        writer.open(null);
+        writer.writeItems(Arrays.<Object>asList(new StatusBean(1, Status.ACTIVE), new StatusBean(2, Status.INACTIVE)));
+        writer.close();
+
+        //enum properties are converted by Jackson to their names, as drivers may not accept enum values
+        final Connection connection = DriverManager.getConnection(url);
+        try {
+            final PreparedStatement statement = connection.prepareStatement("select NAME from PERSON order by ID");
+            final ResultSet rs = statement.executeQuery();
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(Status.ACTIVE.name(), rs.getString(1));
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(Status.INACTIVE.name(), rs.getString(1));
+            Assert.assertFalse(rs.next());
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    public enum Status {
+        ACTIVE, INACTIVE
+    }
+
+    public static class StatusBean {
+        private final int id;
+        private final Status status;
+
+        StatusBean(final int id, final Status status) {
+            this.id = id;
+            this.status = status;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+    }
+
+    public static class PersonBean {
+        private final int id;
+
+        @JsonProperty("NAME")
+        private final String name;
+
+        private final Integer age;
+
+        PersonBean(final int id, final String name, final Integer age) {
+            this.id = id;
+            this.name = name;
+            this.age = age;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+    }
+
+    public static class FormattedPersonBean extends PersonBean {
+        FormattedPersonBean(final int id, final String name, final Integer age) {
+            super(id, name, age);
+        }
+
+        @Override
+        @JsonSerialize(using = ToStringSerializer.class)
+        public Integer getAge() {
+            return super.getAge();
+        }
+    }
+
+    private static JdbcItemWriter createWriter(final Class<?> beanType) {
+        final JdbcItemWriter writer = new JdbcItemWriter();
+        writer.url = url;
+        writer.sql = insertSql;
+        writer.beanType = beanType;
+        writer.parameterTypes = new String[]{"Int", "String", "Int"};
+        return writer;
+    }
+
+    static List<Object> createItems(final int firstId, final int count, final boolean map) {
+        final List<Object> items = new ArrayList<Object>();
+        for (int id = firstId; id < firstId + count; id++) {
+            if (map) {
+                final Map<String, Object> item = new HashMap<String, Object>();
+                item.put("ID", id);
+                item.put("NAME", "name" + id);
+                item.put("AGE", id % 100);
+                items.add(item);
+            } else {
+                items.add(Arrays.<Object>asList(id, "name" + id, id % 100));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Verifies that the table contains rows with ID from 1 to {@code count}.
+     */
+    static void assertRows(final int count) throws Exception {
+        final Connection connection = DriverManager.getConnection(url);
+        try {
+            final PreparedStatement statement = connection.prepareStatement("select ID, NAME, AGE from PERSON order by ID");
+            final ResultSet rs = statement.executeQuery();
+            int id = 0;
+            while (rs.next()) {
+                id++;
+                Assert.assertEquals(id, rs.getInt(1));
+                Assert.assertEquals("name" + id, rs.getString(2));
+                Assert.assertEquals(id % 100, rs.getInt(3));
+            }
+            Assert.assertEquals(count, id);
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    static void execute(final String sql) throws Exception {
+        final Connection connection = DriverManager.getConnection(url);
+        try {
+            final PreparedStatement statement = connection.prepareStatement(sql);
+            statement.execute();
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+}
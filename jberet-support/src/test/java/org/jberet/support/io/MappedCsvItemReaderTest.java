@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.batch.api.partition.PartitionPlan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link MappedCsvItemReader} reads the same items as {@link CsvItemReader}, including when reading
+ * byte ranges of the file and restarting from its checkpoint info.
+ */
+public class MappedCsvItemReaderTest {
+    private static final String content =
+            "id,name,note\r\n" +
+            "1,a,\"multi\r\nline\"\r\n" +
+            "2,b,\"quoted \"\"text\"\"\"\r\n" +
+            "\r\n" +
+            "3,éè,x\n" +
+            "4,d,\"中\r\n文\"\r\n" +
+            "5,,\"\"\r" +
+            "6,f,z\r\n" +
+            "7,g,\"a very long column that does not fit in a small window\"\n" +
+            "8,h,last";
+
+    private static final String moviesCsv = MappedCsvItemReaderTest.class.getClassLoader()
+            .getResource(MovieTest.moviesCsv).toString();
+
+    @Test
+    public void readList() throws Exception {
+        final File file = writeFile("MappedCsvItemReaderTest.csv");
+        final List<Object> expected = read(createCsvItemReader(file.getPath(), List.class), null);
+        Assert.assertEquals(8, expected.size());
+
+        for (final int windowSize : new int[]{0, 8, 17}) {
+            final MappedCsvItemReader reader = createMappedReader(file.getPath(), List.class);
+            reader.windowSize = windowSize;
+            Assert.assertEquals(expected, read(reader, null));
+        }
+    }
+
+    @Test
+    public void readWithBOM() throws Exception {
+        final File file = new File(CsvItemReaderWriterTest.tmpdir, "MappedCsvItemReaderTest-bom.csv");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("\uFEFF" + content).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        final List<Object> expected = read(createCsvItemReader(file.getPath(), Map.class), null);
+        final List<Object> actual = read(createMappedReader(file.getPath(), Map.class), null);
+        Assert.assertEquals(8, actual.size());
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals("1", ((Map<?, ?>) actual.get(0)).get("id"));
+    }
+
+    @Test
+    public void readBeanAndMap() throws Exception {
+        final CsvItemReader csvItemReader = createCsvItemReader(moviesCsv, Movie.class);
+        csvItemReader.cellProcessors = MovieTest.cellProcessors;
+        final List<Object> expected = read(csvItemReader, null);
+
+        final MappedCsvItemReader reader = createMappedReader(moviesCsv, Movie.class);
+        reader.cellProcessors = MovieTest.cellProcessors;
+        final List<Object> actual = read(reader, null);
+        Assert.assertEquals(100, actual.size());
+        Assert.assertEquals(expected.toString(), actual.toString());
+
+        //unmapped columns are neither converted nor processed
+        final MappedCsvItemReader mapReader = createMappedReader(moviesCsv, Map.class);
+        mapReader.nameMapping = new String[]{null, "tit", null, null};
+        mapReader.cellProcessors = MovieTest.cellProcessors;
+        final List<Object> maps = read(mapReader, null);
+        Assert.assertEquals(100, maps.size());
+        Assert.assertEquals("Marvel's The Avengers", ((Map<?, ?>) maps.get(0)).get("tit"));
+        Assert.assertEquals(1, ((Map<?, ?>) maps.get(0)).size());
+    }
+
+    @Test
+    public void readPartitions() throws Exception {
+        final List<Object> expected = read(createCsvItemReader(moviesCsv, List.class), null);
+        final RangePartitionMapper mapper = new RangePartitionMapper();
+        mapper.resource = moviesCsv;
+        mapper.partitionCount = 3;
+        final PartitionPlan plan = mapper.mapPartitions();
+
+        final List<Object> actual = new ArrayList<Object>();
+        for (final Properties p : plan.getPartitionProperties()) {
+            final MappedCsvItemReader reader = createMappedReader(moviesCsv, List.class);
+            reader.nameMapping = MovieTest.header.split(",");
+            reader.startOffset = Long.parseLong(p.getProperty(RangePartitionMapper.START_OFFSET_KEY));
+            reader.endOffset = Long.parseLong(p.getProperty(RangePartitionMapper.END_OFFSET_KEY));
+            actual.addAll(read(reader, null));
+        }
+        Assert.assertEquals(expected, actual);
+
+        //offsets not at the start of a row are moved to the next row
+        final MappedCsvItemReader reader = createMappedReader(moviesCsv, List.class);
+        reader.startOffset = 20;
+        reader.endOffset = 70;
+        Assert.assertEquals(expected.subList(1, 2), read(reader, null));
+    }
+
+    @Test
+    public void restart() throws Exception {
+        final File file = writeFile("MappedCsvItemReaderTest-restart.csv");
+        final List<Object> expected = read(createCsvItemReader(file.getPath(), List.class), null);
+        for (int i = 0; i <= expected.size(); i++) {
+            final MappedCsvItemReader reader = createMappedReader(file.getPath(), List.class);
+            reader.windowSize = 16;
+            reader.open(null);
+            for (int j = 0; j < i; j++) {
+                reader.readItem();
+            }
+            final Serializable checkpoint = reader.checkpointInfo();
+            reader.close();
+
+            final MappedCsvItemReader reader2 = createMappedReader(file.getPath(), List.class);
+            Assert.assertEquals(expected.subList(i, expected.size()), read(reader2, checkpoint));
+        }
+    }
+
+    private static List<Object> read(final CsvItemReaderWriterBase reader, final Serializable checkpoint)
+            throws Exception {
+        final javax.batch.api.chunk.ItemReader itemReader = (javax.batch.api.chunk.ItemReader) reader;
+        itemReader.open(checkpoint);
+        final List<Object> items = new ArrayList<Object>();
+        Object item;
+        while ((item = itemReader.readItem()) != null) {
+            items.add(item);
+        }
+        itemReader.close();
+        return items;
+    }
+
+    private static CsvItemReader createCsvItemReader(final String resource, final Class<?> beanType) {
+        final CsvItemReader reader = new CsvItemReader();
+        reader.resource = resource;
+        reader.beanType = beanType;
+        reader.charset = "UTF-8";
+        return reader;
+    }
+
+    private static MappedCsvItemReader createMappedReader(final String resource, final Class<?> beanType) {
+        final MappedCsvItemReader reader = new MappedCsvItemReader();
+        reader.resource = resource;
+        reader.beanType = beanType;
+        reader.charset = "UTF-8";
+        reader.skipBeanValidation = true;
+        return reader;
+    }
+
+    private static File writeFile(final String name) throws Exception {
+        final File file = new File(CsvItemReaderWriterTest.tmpdir, name);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.support.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.batch.api.partition.PartitionPlan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangePartitionMapperTest {
+    private static final File dbDir = new File(CsvItemReaderWriterTest.tmpdir, "RangePartitionMapperTest");
+    private static final String url = "jdbc:h2:" + dbDir.getPath();
+
+    @Test
+    public void csvResource() throws Exception {
+        final RangePartitionMapper mapper = new RangePartitionMapper();
+        mapper.resource = "movies-2012.csv";
+        mapper.partitionCount = 3;
+        final PartitionPlan plan = mapper.mapPartitions();
+
+        //movies-2012.csv has a header and 100 data records
+        Assert.assertEquals(3, plan.getPartitions());
+        Assert.assertEquals(3, plan.getThreads());
+        assertContiguous(plan, 100);
+        Assert.assertEquals("1", plan.getPartitionProperties()[0].getProperty(CsvProperties.START_KEY));
+    }
+
+    @Test
+    public void csvQuotedLineBreaks() throws Exception {
+        final File file = new File(CsvItemReaderWriterTest.tmpdir, "RangePartitionMapperTest.csv");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("id,text\r\n" +
+                    "1,\"a\r\nb\"\r\n" +
+                    "2,\"c\nd\ne\nf\ng\"\r\n" +
+                    "\r\n" +
+                    "3,h\r\n" +
+                    "4,i\r\n").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        final RangePartitionMapper mapper = new RangePartitionMapper();
+        mapper.resource = file.getPath();
+        mapper.partitionCount = 10;
+        mapper.threadCount = 2;
+        mapper.countRecords = true;
+        final PartitionPlan plan = mapper.mapPartitions();
+
+        //fewer partitions than requested, since there are only 4 records
+        Assert.assertEquals(4, plan.getPartitions());
+        Assert.assertEquals(2, plan.getThreads());
+        assertContiguous(plan, 4);
+        final Properties last = plan.getPartitionProperties()[3];
+        Assert.assertEquals(String.valueOf(file.length() - "4,i\r\n".length()), last.getProperty(RangePartitionMapper.START_OFFSET_KEY));
+        Assert.assertEquals(String.valueOf(file.length()), last.getProperty(RangePartitionMapper.END_OFFSET_KEY));
+
+        mapper.headerless = true;
+        assertContiguous(mapper.mapPartitions(), 5);
+    }
+
+    @Test
+    public void csvLocalFileSeek() throws Exception {
+        final File file = new File(CsvItemReaderWriterTest.tmpdir, "RangePartitionMapperTest-seek.csv");
+        final StringBuilder sb = new StringBuilder("id,text\r\n");
+        for (int i = 1; i <= 100; i++) {
+            sb.append(i).append(",text").append(i).append("\r\n");
+        }
+        final byte[] bytes = sb.toString().getBytes("UTF-8");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        final RangePartitionMapper mapper = new RangePartitionMapper();
+        mapper.resource = file.getPath();
+        mapper.partitionCount = 4;
+        final PartitionPlan plan = mapper.mapPartitions();
+
+        //only offsets are planned, each partition starts at a line start, and the first one includes the header
+        Assert.assertEquals(4, plan.getPartitions());
+        String nextOffset = "0";
+        for (final Properties p : plan.getPartitionProperties()) {
+            Assert.assertNull(p.getProperty(CsvProperties.START_KEY));
+            final String startOffset = p.getProperty(RangePartitionMapper.START_OFFSET_KEY);
+            Assert.assertEquals(nextOffset, startOffset);
+            final int start = Integer.parseInt(startOffset);
+            Assert.assertTrue(start == 0 || bytes[start - 1] == '\n');
+            nextOffset = p.getProperty(RangePartitionMapper.END_OFFSET_KEY);
+        }
+        Assert.assertEquals(String.valueOf(bytes.length), nextOffset);
+
+        //each partition reads only its own rows with CsvItemReader, so together they read every row exactly once
+        final List<String> ids = new ArrayList<String>();
+        for (final Properties p : plan.getPartitionProperties()) {
+            final CsvItemReader reader = new CsvItemReader();
+            reader.resource = file.getPath();
+            reader.beanType = List.class;
+            reader.charset = "UTF-8";
+            reader.startOffset = Long.parseLong(p.getProperty(RangePartitionMapper.START_OFFSET_KEY));
+            reader.endOffset = Long.parseLong(p.getProperty(RangePartitionMapper.END_OFFSET_KEY));
+            reader.open(null);
+            Object item;
+            while ((item = reader.readItem()) != null) {
+                ids.add(((List<?>) item).get(0).toString());
+            }
+            reader.close();
+        }
+        Assert.assertEquals(100, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Assert.assertEquals(String.valueOf(i + 1), ids.get(i));
+        }
+    }
+
+    @Test
+    public void jsonResource() throws Exception {
+        final RangePartitionMapper mapper = new RangePartitionMapper();
+        mapper.resource = "movies-2012.json";
+        mapper.partitionCount = 4;
+        final PartitionPlan plan = mapper.mapPartitions();
+
+        //movies-2012.json contains 100 movies
+        Assert.assertEquals(4, plan.getPartitions());
+        assertContiguous(plan, 100);
+    }
+
+    @Test
+    public void jdbcKeyRanges() throws Exception {
+        final Connection connection = DriverManager.getConnection(url);
+        try {
+            PreparedStatement statement = connection.prepareStatement(
+                    "create table if not exists RANGE_ITEM (ID BIGINT PRIMARY KEY, NAME VARCHAR(30))");
+            statement.execute();
+            statement.close();
+            statement = connection.prepareStatement("delete from RANGE_ITEM");
+            statement.execute();
+            statement.close();
+            statement = connection.prepareStatement("insert into RANGE_ITEM values(?, ?)");
+            for (int i = 11; i <= 20; i++) {
+                statement.setInt(1, i);
+                statement.setString(2, "item" + i);
+                statement.execute();
+            }
+            statement.close();
+        } finally {
+            connection.close();
+        }
+
+        final RangePartitionMapper mapper = new RangePartitionMapper();
+        mapper.url = url;
+        mapper.sql = "select ID, NAME from RANGE_ITEM";
+        mapper.keyColumn = "ID";
+        mapper.partitionCount = 3;
+        final PartitionPlan plan = mapper.mapPartitions();
+
+        Assert.assertEquals(3, plan.getPartitions());
+        final Properties[] partitionProperties = plan.getPartitionProperties();
+        Assert.assertEquals("11", partitionProperties[0].getProperty(RangePartitionMapper.KEY_START_KEY));
+        Assert.assertEquals("14", partitionProperties[0].getProperty(RangePartitionMapper.KEY_END_KEY));
+        Assert.assertEquals("15", partitionProperties[1].getProperty(RangePartitionMapper.KEY_START_KEY));
+        Assert.assertEquals("17", partitionProperties[1].getProperty(RangePartitionMapper.KEY_END_KEY));
+        Assert.assertEquals("18", partitionProperties[2].getProperty(RangePartitionMapper.KEY_START_KEY));
+        Assert.assertEquals("20", partitionProperties[2].getProperty(RangePartitionMapper.KEY_END_KEY));
+
+        final Connection connection2 = DriverManager.getConnection(url);
+        try {
+            int total = 0;
+            for (final Properties p : partitionProperties) {
+                final PreparedStatement statement = connection2.prepareStatement(p.getProperty(RangePartitionMapper.SQL_KEY));
+                final ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    total++;
+                }
+                statement.close();
+            }
+            Assert.assertEquals(10, total);
+        } finally {
+            connection2.close();
+        }
+    }
+
+    /**
+     * Verifies that the record ranges and byte ranges of all partitions are contiguous and cover all records.
+     */
+    private static void assertContiguous(final PartitionPlan plan, final long records) {
+        long nextRecord = 1;
+        String nextOffset = null;
+        for (final Properties p : plan.getPartitionProperties()) {
+            System.out.printf("partition: %s%n", p);
+            Assert.assertEquals(String.valueOf(nextRecord), p.getProperty(CsvProperties.START_KEY));
+            if (nextOffset != null) {
+                Assert.assertEquals(nextOffset, p.getProperty(RangePartitionMapper.START_OFFSET_KEY));
+            }
+            final long end = Long.parseLong(p.getProperty(CsvProperties.END_KEY));
+            Assert.assertTrue(end >= nextRecord);
+            nextRecord = end + 1;
+            nextOffset = p.getProperty(RangePartitionMapper.END_OFFSET_KEY);
+        }
+        Assert.assertEquals(records + 1, nextRecord);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.testapps.chunkpartition;
+
+import javax.batch.api.BatchProperty;
+import javax.batch.api.partition.PartitionMapper;
+import javax.batch.api.partition.PartitionPlan;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.jberet.spi.RangePartitionPlan;
+
+@Named
+public final class IntegerRangeMapper implements PartitionMapper {
+    @Inject @BatchProperty(name = "data.count")
+    private int dataCount;
+
+    @Inject @BatchProperty(name = "thread.count")
+    private int threadCount;
+
+    @Inject @BatchProperty(name = "partition.count")
+    private int partitionCount;
+
+    @Override
+    public PartitionPlan mapPartitions() throws Exception {
+        final RangePartitionPlan plan = new RangePartitionPlan(0, dataCount - 1);
+        plan.setStartProperty("partition.start");
+        plan.setEndProperty("partition.end");
+        plan.setThreads(threadCount);
+        plan.setPartitions(partitionCount);
+        return plan;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.testapps.chunkpartition;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.batch.api.BatchProperty;
+import javax.batch.api.chunk.AbstractItemWriter;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Records all items written by all partitions.  The partition starting at 0 sleeps for {@code writer.sleep.time}
+ * milliseconds in each write, so that other partitions finish first and take over part of its range.
+ */
+@Named
+public final class IntegerRangeWriter extends AbstractItemWriter {
+    static final Queue<Object> written = new ConcurrentLinkedQueue<Object>();
+
+    @Inject @BatchProperty(name = "partition.start")
+    private int partitionStart;
+
+    @Inject @BatchProperty(name = "writer.sleep.time")
+    private long writerSleepTime;
+
+    @Override
+    public void writeItems(final List<Object> items) throws Exception {
+        if (partitionStart == 0 && writerSleepTime > 0) {
+            Thread.sleep(writerSleepTime);
+        }
+        written.addAll(items);
+    }
+}
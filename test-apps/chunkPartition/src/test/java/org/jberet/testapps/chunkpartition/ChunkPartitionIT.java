@@ -12,6 +12,8 @@
 
 package org.jberet.testapps.chunkpartition;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import javax.batch.runtime.BatchStatus;
@@ -27,6 +29,7 @@ public class ChunkPartitionIT extends AbstractIT {
     static final String jobXml = "org.jberet.test.chunkPartition";
     static final String jobChunkPartitionFailComplete = "org.jberet.test.chunkPartitionFailComplete";
     static final String jobChunkPartitionMetricsCombined = "org.jberet.test.chunkPartitionMetricsCombined";
+    static final String jobChunkPartitionRange = "org.jberet.test.chunkPartitionRange";
 
     @Test
     public void partitionThreads() throws Exception {
@@ -120,4 +123,65 @@ public class ChunkPartitionIT extends AbstractIT {
         Assert.assertEquals(0, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_SKIP_COUNT));
         Assert.assertEquals(0, MetricImpl.getMetric(stepExecution0, Metric.MetricType.FILTER_COUNT));
     }
+
+    /**
+     * Verifies that with a range partition plan, the partition that finishes early takes over part of the range of
+     * the slow partition, and each item is read and written exactly once.
+     */
+    @Test
+    public void rangePartition() throws Exception {
+        IntegerRangeWriter.written.clear();
+        this.params = new Properties();
+        this.params.setProperty("writer.sleep.time", "50");
+        startJobAndWait(jobChunkPartitionRange);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+
+        final List<PartitionExecutionImpl> partitionExecutions = stepExecution0.getPartitionExecutions();
+        System.out.printf("Range partitions: %s%n", partitionExecutions.size());
+        Assert.assertTrue(partitionExecutions.size() > 2);
+        for (final PartitionExecutionImpl e : partitionExecutions) {
+            Assert.assertEquals(BatchStatus.COMPLETED, e.getBatchStatus());
+        }
+        Assert.assertEquals(100, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(100, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        assertWrittenOnce(100);
+    }
+
+    /**
+     * Verifies that restarting a failed range partitioned step only processes the positions not committed in the
+     * original execution.
+     */
+    @Test
+    public void rangePartitionRestart() throws Exception {
+        IntegerRangeWriter.written.clear();
+        this.params = new Properties();
+        this.params.setProperty("writer.sleep.time", "50");
+        this.params.setProperty("reader.fail.at", "40");
+        startJobAndWait(jobChunkPartitionRange);
+        Assert.assertEquals(BatchStatus.FAILED, jobExecution.getBatchStatus());
+        final int writtenBeforeRestart = IntegerRangeWriter.written.size();
+        Assert.assertTrue(writtenBeforeRestart < 100);
+
+        this.params.setProperty("reader.fail.at", "-1");
+        restartAndWait();
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+        for (final PartitionExecutionImpl e : stepExecution0.getPartitionExecutions()) {
+            Assert.assertEquals(BatchStatus.COMPLETED, e.getBatchStatus());
+        }
+        Assert.assertEquals(100 - writtenBeforeRestart, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+        assertWrittenOnce(100);
+    }
+
+    private static void assertWrittenOnce(final int count) {
+        final List<Integer> written = new ArrayList<Integer>();
+        for (final Object o : IntegerRangeWriter.written) {
+            written.add((Integer) o);
+        }
+        Collections.sort(written);
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, written);
+    }
 }
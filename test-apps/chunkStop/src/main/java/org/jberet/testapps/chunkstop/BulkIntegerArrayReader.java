@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.testapps.chunkstop;
+
+import java.util.List;
+import javax.inject.Named;
+
+import org.jberet.spi.BatchItemReader;
+import org.jberet.testapps.common.IntegerArrayReader;
+
+/**
+ * Same as {@code IntegerArrayReader}, but also reads items in bulk.  If reader.fail.at is reached, items read before
+ * it are added to the list before the exception is thrown.
+ */
+@Named
+public final class BulkIntegerArrayReader extends IntegerArrayReader implements BatchItemReader {
+    @Override
+    public int readItems(final int maxItems, final List<Object> items) throws Exception {
+        int count = 0;
+        Object item;
+        while (count < maxItems && (item = readItem()) != null) {
+            items.add(item);
+            count++;
+        }
+        return count;
+    }
+}
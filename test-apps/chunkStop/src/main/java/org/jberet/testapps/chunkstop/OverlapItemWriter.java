@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.testapps.chunkstop;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.batch.api.chunk.AbstractItemWriter;
+import javax.inject.Named;
+
+/**
+ * An item writer that blocks writing the first chunk until {@link OverlapReadListener} has seen the next chunk being
+ * read, and fails if that does not happen in time, i.e., if writing does not overlap reading.
+ */
+@Named
+public final class OverlapItemWriter extends AbstractItemWriter {
+    static volatile CountDownLatch nextChunkRead;
+
+    private boolean firstChunk;
+
+    @Override
+    public void open(final Serializable checkpoint) throws Exception {
+        nextChunkRead = new CountDownLatch(1);
+        firstChunk = true;
+    }
+
+    @Override
+    public void writeItems(final List<Object> items) throws Exception {
+        if (firstChunk) {
+            firstChunk = false;
+            if (!nextChunkRead.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The next chunk was not read while writing " + items);
+            }
+        }
+        System.out.printf("Wrote items: %s%n", items);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.testapps.chunkstop;
+
+import javax.batch.api.BatchProperty;
+import javax.batch.api.chunk.listener.AbstractItemReadListener;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * An item read listener that releases {@link OverlapItemWriter} once the first item of the second chunk is read.
+ */
+@Named
+public final class OverlapReadListener extends AbstractItemReadListener {
+    @Inject
+    @BatchProperty(name = "item.count")
+    private int itemCount;
+
+    private int readCount;
+
+    @Override
+    public void afterRead(final Object item) throws Exception {
+        if (item != null && ++readCount == itemCount + 1) {
+            OverlapItemWriter.nextChunkRead.countDown();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Cheng Fang - Initial API and implementation
+ */
+
+package org.jberet.testapps.chunkstop;
+
+import java.util.List;
+import javax.batch.api.BatchProperty;
+import javax.batch.api.chunk.AbstractItemWriter;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * An item writer that fails whenever the items to write contain any of the poison items.
+ */
+@Named
+public final class PoisonItemWriter extends AbstractItemWriter {
+    /**
+     * Comma-separated list of items that always fail to write.
+     */
+    @Inject
+    @BatchProperty(name = "poison.items")
+    private String poisonItems;
+
+    @Override
+    public void writeItems(final List<Object> items) throws Exception {
+        if (poisonItems != null) {
+            for (final String poison : poisonItems.split(",")) {
+                if (items.contains(Integer.valueOf(poison.trim()))) {
+                    throw new PoisonItemException("Failed to write poison item " + poison + " in " + items);
+                }
+            }
+        }
+        System.out.printf("Wrote items: %s%n", items);
+    }
+
+    public static final class PoisonItemException extends Exception {
+        public PoisonItemException(final String message) {
+            super(message);
+        }
+    }
+}
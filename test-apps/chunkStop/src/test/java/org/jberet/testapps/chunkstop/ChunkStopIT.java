@@ -25,6 +25,12 @@ import org.junit.Test;
 public class ChunkStopIT extends AbstractIT {
     protected int dataCount = 30;
     protected static final String jobXml = "chunkStop.xml";
+    protected static final String pipelinedJobXml = "chunkStopPipelined.xml";
+    protected static final String pipelinedOverlapJobXml = "chunkStopPipelinedOverlap.xml";
+    protected static final String processorThreadsJobXml = "chunkStopProcessorThreads.xml";
+    protected static final String adaptiveJobXml = "chunkStopAdaptive.xml";
+    protected static final String bulkReadJobXml = "chunkStopBulkRead.xml";
+    protected static final String bisectWriteJobXml = "chunkStopBisectWrite.xml";
 
     @Before
     public void before() {
@@ -104,4 +110,162 @@ public class ChunkStopIT extends AbstractIT {
         Assert.assertEquals(BatchStatus.COMPLETED.name(), stepExecution0.getExitStatus());
         Assert.assertEquals(1, MetricImpl.getMetric(stepExecution0, Metric.MetricType.PROCESS_SKIP_COUNT));
     }
+
+    @Test
+    public void pipelinedComplete() throws Exception {
+        startJobAndWait(pipelinedJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        Assert.assertEquals(3, MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT));
+    }
+
+    @Test
+    public void pipelinedWriterFailRestart() throws Exception {
+        params.setProperty("writer.fail.at", "13");
+        startJobAndWait(pipelinedJobXml);
+        Assert.assertEquals(BatchStatus.FAILED, jobExecution.getBatchStatus());
+
+        //the chunk read ahead while the failed chunk was being written is discarded
+        Assert.assertEquals(10, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        Assert.assertEquals(1, MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT));
+
+        params.setProperty("writer.fail.at", "-1");
+        restartAndWait();
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+
+        Assert.assertEquals(20, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(20, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        Assert.assertEquals(2, MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT));
+    }
+
+    @Test
+    public void pipelinedSkippableExceptions() throws Exception {
+        params.setProperty("data.count", "1");
+        params.setProperty("throwException", "true");
+        startJobAndWait(pipelinedJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+        Assert.assertEquals(1, MetricImpl.getMetric(stepExecution0, Metric.MetricType.PROCESS_SKIP_COUNT));
+    }
+
+    @Test
+    public void pipelinedWriteOverlapsRead() throws Exception {
+        //the writer blocks writing the first chunk until the second chunk is being read
+        params.setProperty("pipelined", "true");
+        startJobAndWait(pipelinedOverlapJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+
+        //without pipelining, the next chunk is only read after the write, so the writer times out
+        params.setProperty("pipelined", "false");
+        startJobAndWait(pipelinedOverlapJobXml);
+        Assert.assertEquals(BatchStatus.FAILED, jobExecution.getBatchStatus());
+    }
+
+    @Test
+    public void processorThreadsComplete() throws Exception {
+        startJobAndWait(processorThreadsJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        Assert.assertEquals(4, MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT));
+    }
+
+    @Test
+    public void processorThreadsSkippableExceptions() throws Exception {
+        params.setProperty("throwException", "true");
+        startJobAndWait(processorThreadsJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.PROCESS_SKIP_COUNT));
+        Assert.assertEquals(0, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+    }
+
+    @Test
+    public void adaptiveCheckpointComplete() throws Exception {
+        startJobAndWait(adaptiveJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+
+        //item count grows from 2 up to at most 8
+        final long checkpointItemCount = stepExecution0.getStepMetrics().getCheckpointItemCount();
+        Assert.assertTrue(checkpointItemCount >= 2 && checkpointItemCount <= 8);
+        final long commitCount = MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT);
+        Assert.assertTrue(commitCount >= dataCount / 8 && commitCount <= dataCount / 2 + 1);
+    }
+
+    @Test
+    public void bulkReadComplete() throws Exception {
+        startJobAndWait(bulkReadJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(dataCount, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        Assert.assertEquals(4, MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT));
+    }
+
+    @Test
+    public void bulkReadStopRestart() throws Exception {
+        params.setProperty("writer.sleep.time", "500");
+        startJob(bulkReadJobXml);
+        jobOperator.stop(jobExecutionId);
+        awaitTermination();
+        Assert.assertEquals(BatchStatus.STOPPED, jobExecution.getBatchStatus());
+
+        //items already read in bulk are processed and written before stopping
+        Assert.assertEquals(10, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        Assert.assertEquals(1, MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT));
+
+        restartAndWait();
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+        Assert.assertEquals(dataCount - 10, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+    }
+
+    @Test
+    public void bulkReadFailRestart() throws Exception {
+        params.setProperty("reader.fail.at", "13");
+        startJobAndWait(bulkReadJobXml);
+        Assert.assertEquals(BatchStatus.FAILED, jobExecution.getBatchStatus());
+
+        //items read in bulk before the failure are still counted as successful reads
+        Assert.assertEquals(13, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+        Assert.assertEquals(10, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        Assert.assertEquals(1, MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT));
+
+        params.setProperty("reader.fail.at", "-1");
+        restartAndWait();
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+        Assert.assertEquals(dataCount - 10, MetricImpl.getMetric(stepExecution0, Metric.MetricType.READ_COUNT));
+    }
+
+    @Test
+    public void bisectWriteFailure() throws Exception {
+        params.setProperty("bisect", "true");
+        params.setProperty("poison.items", "13, 17");
+        startJobAndWait(bisectWriteJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+
+        Assert.assertEquals(dataCount - 2, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_COUNT));
+        Assert.assertEquals(2, MetricImpl.getMetric(stepExecution0, Metric.MetricType.WRITE_SKIP_COUNT));
+
+        //the failed chunk 10 - 19 is retried as 10-14 (split into 10-12, 13-14 (split into 13, 14)) and 15-19 (split
+        //into 15-17 (split into 15-16, 17) and 18-19), and each poison item is merged into the next segment after skip
+        Assert.assertEquals(7, MetricImpl.getMetric(stepExecution0, Metric.MetricType.ROLLBACK_COUNT));
+        Assert.assertEquals(7, MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT));
+    }
+
+    @Test
+    public void bisectWriteFailureDisabled() throws Exception {
+        params.setProperty("bisect", "false");
+        params.setProperty("poison.items", "13, 17");
+        startJobAndWait(bisectWriteJobXml);
+        Assert.assertEquals(BatchStatus.COMPLETED, jobExecution.getBatchStatus());
+
+        //the failed chunk is retried one item per transaction
+        Assert.assertEquals(1, MetricImpl.getMetric(stepExecution0, Metric.MetricType.ROLLBACK_COUNT));
+        Assert.assertTrue(MetricImpl.getMetric(stepExecution0, Metric.MetricType.COMMIT_COUNT) > 10);
+    }
 }
@@ -16,7 +16,7 @@ import javax.batch.api.chunk.ItemReader;
 import javax.inject.Named;
 
 @Named("integerArrayReader")
-public final class IntegerArrayReader extends IntegerArrayReaderWriterBase implements ItemReader {
+public class IntegerArrayReader extends IntegerArrayReaderWriterBase implements ItemReader {
     @Override
     public Object readItem() throws Exception {
         if (cursor > partitionEnd || cursor < partitionStart) {